@@ -0,0 +1,52 @@
+package com.parkit.parkingsystem.benchmark;
+
+import com.parkit.parkingsystem.config.EmbeddedDataBaseConfig;
+import com.parkit.parkingsystem.config.SchemaMigrator;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+
+// Stockage embarqué en mémoire pour mesurer les DAO sans serveur MySQL.
+// Tables de départ de db/schema.sql, plus les migrations versionnées ; même pool que la prod.
+public class BenchmarkDataBaseConfig extends EmbeddedDataBaseConfig {
+
+    public BenchmarkDataBaseConfig() {
+        super("jdbc:h2:mem:parkit-benchmark;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1");
+    }
+
+    // Crée le schéma si besoin puis le remplit avec le nombre de places demandé par type, toutes libres, et aucun ticket.
+    public void reset(int spotsPerType) throws Exception {
+        createSchemaIfMissing();
+        Connection connection = getConnection();
+        try {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("delete from ticket");
+                statement.execute("delete from parking");
+            }
+            try (PreparedStatement ps = connection.prepareStatement("insert into parking(PARKING_NUMBER,AVAILABLE,TYPE) values(?,true,?)")) {
+                for (int i = 1; i <= 2 * spotsPerType; i++) {
+                    ps.setInt(1, i);
+                    ps.setString(2, i <= spotsPerType ? "CAR" : "BIKE");
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+        } finally {
+            closeConnection(connection);
+        }
+        if (new SchemaMigrator(this).migrate() < 0) {
+            throw new IllegalStateException("Benchmark schema migration failed");
+        }
+    }
+
+    public void clearTickets() throws Exception {
+        Connection connection = getConnection();
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("update parking set available = true");
+            statement.execute("truncate table ticket");
+        } finally {
+            closeConnection(connection);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.parkit.parkingsystem.benchmark;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.service.FareCalculatorService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// Noyau de tarification sur horodatages primitifs. Avec -prof gc, gc.alloc.rate.norm doit rester à ~0 B/op :
+//   mvn -Pbenchmark -DskipTests verify -Djmh.args="FareKernel -prof gc"
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FareKernelBenchmark {
+
+    private static final int TICKETS = 10_000;
+
+    private final long[] inTimes = new long[TICKETS];
+    private final long[] outTimes = new long[TICKETS];
+    private final byte[] types = new byte[TICKETS];
+    private final boolean[] discounts = new boolean[TICKETS];
+    private final long[] cents = new long[TICKETS];
+    private int next;
+
+    @Setup
+    public void setUp() {
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < TICKETS; i++) {
+            inTimes[i] = now - (i % 48) * 30 * 60 * 1000L;
+            outTimes[i] = now;
+            types[i] = (byte) (i % ParkingType.values().length);
+            discounts[i] = i % 3 == 0;
+        }
+    }
+
+    @Benchmark
+    public long calculateFareInCents() {
+        next = (next + 1) % TICKETS;
+        return FareCalculatorService.calculateFareInCents(inTimes[next], outTimes[next], ParkingType.CAR, discounts[next]);
+    }
+
+    // Temps et allocation par ticket
+    @Benchmark
+    @OperationsPerInvocation(TICKETS)
+    public long[] calculateFaresInCents() {
+        FareCalculatorService.calculateFaresInCents(inTimes, outTimes, types, discounts, cents);
+        return cents;
+    }
+}
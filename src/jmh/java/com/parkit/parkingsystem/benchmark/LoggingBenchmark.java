@@ -0,0 +1,80 @@
+package com.parkit.parkingsystem.benchmark;
+
+import com.parkit.parkingsystem.constants.DBConstants;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.concurrent.TimeUnit;
+
+// Coût du journal pour une entrée puis une sortie de véhicule : mêmes ouvertures et fermetures de ressources
+// via DataBaseConfig que TicketDAO.enterVehicle/exitVehicle, sans exécuter les requêtes (seul le journal varie).
+// Chaque configuration tourne dans sa propre JVM, le sélecteur de loggers étant fixé au démarrage de log4j2.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@State(Scope.Benchmark)
+public class LoggingBenchmark {
+
+    private static final String SYNC_LOGGERS = "-Dlog4j2.contextSelector=org.apache.logging.log4j.core.selector.ClassLoaderContextSelector";
+
+    private final BenchmarkDataBaseConfig dataBaseConfig = new BenchmarkDataBaseConfig();
+    private final ResultSet resultSet = (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(),
+            new Class<?>[]{ResultSet.class}, (proxy, method, args) -> null);
+
+    @Setup
+    public void setUp() throws Exception {
+        dataBaseConfig.reset(1);
+    }
+
+    // Ancienne configuration : loggers synchrones, DEBUG avec ligne d'appel, chaque événement de ressource écrit
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = {SYNC_LOGGERS, "-Dlog4j.configurationFile=log4j2-benchmark-legacy.properties",
+            "-Dparkit.log.lifecycleSampleRate=1"})
+    public void legacySyncLogging() throws Exception {
+        enterAndExitVehicle();
+    }
+
+    // Loggers asynchrones, chaque événement de ressource encore écrit : effet de l'anneau seul
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = {"-Dlog4j.configurationFile=log4j2-benchmark.properties",
+            "-Dparkit.log.lifecycleSampleRate=1"})
+    public void asyncLogging() throws Exception {
+        enterAndExitVehicle();
+    }
+
+    // Configuration livrée : loggers asynchrones et canal de cycle de vie échantillonné
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = {"-Dlog4j.configurationFile=log4j2-benchmark.properties"})
+    public void asyncSampledLogging() throws Exception {
+        enterAndExitVehicle();
+    }
+
+    private void enterAndExitVehicle() throws Exception {
+        transaction(DBConstants.CLAIM_PARKING_SPOT_AND_COUNT_TICKET, DBConstants.OCCUPY_PARKING_SPOT, DBConstants.SAVE_TICKET);
+        transaction(DBConstants.GET_TICKET_FOR_UPDATE, DBConstants.UPDATE_TICKET, DBConstants.UPDATE_PARKING_SPOT);
+    }
+
+    private void transaction(String query, String... updates) throws Exception {
+        Connection con = dataBaseConfig.getConnection();
+        PreparedStatement ps = con.prepareStatement(query);
+        dataBaseConfig.closeResultSet(resultSet);
+        dataBaseConfig.closePreparedStatement(ps);
+        for (String update : updates) {
+            dataBaseConfig.closePreparedStatement(con.prepareStatement(update));
+        }
+        dataBaseConfig.closeConnection(con);
+    }
+}
@@ -0,0 +1,84 @@
+package com.parkit.parkingsystem.benchmark;
+
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.service.ParkingService;
+import com.parkit.parkingsystem.util.InputReaderUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+// Parcours complet d'une borne : menu, saisie simulée, transaction d'entrée puis de sortie sur la base H2 embarquée.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParkingServiceBenchmark {
+
+    private static final int VEHICLES = 50;
+
+    private final BenchmarkDataBaseConfig dataBaseConfig = new BenchmarkDataBaseConfig();
+    private final ScriptedInput input = new ScriptedInput();
+    private ParkingService parkingService;
+    private int nextVehicle;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        dataBaseConfig.reset(VEHICLES);
+        ParkingSpotDAO parkingSpotDAO = new ParkingSpotDAO();
+        parkingSpotDAO.dataBaseConfig = dataBaseConfig;
+        PrintStream discard = new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        });
+        parkingService = new ParkingService(input, parkingSpotDAO, new TicketDAO(dataBaseConfig), discard);
+    }
+
+    @Setup(Level.Iteration)
+    public void clearTickets() throws Exception {
+        dataBaseConfig.clearTickets();
+    }
+
+    // Entrée puis sortie du même véhicule : la place est libérée, le parking ne se remplit pas
+    @Benchmark
+    public void processIncomingAndExitingVehicle() {
+        nextVehicle = (nextVehicle + 1) % VEHICLES;
+        input.vehicleRegNumber = "FLOW" + nextVehicle;
+        parkingService.processIncomingVehicle();
+        parkingService.processExitingVehicle();
+    }
+
+    // Saisie de la borne : toujours une voiture, immatriculation fixée par le benchmark
+    private static final class ScriptedInput extends InputReaderUtil {
+        private String vehicleRegNumber;
+
+        @Override
+        public int readSelection() {
+            return 1;
+        }
+
+        @Override
+        public String readVehicleRegistrationNumber() {
+            return vehicleRegNumber;
+        }
+    }
+}
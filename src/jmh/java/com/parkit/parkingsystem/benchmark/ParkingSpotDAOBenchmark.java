@@ -0,0 +1,80 @@
+package com.parkit.parkingsystem.benchmark;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Aller-retour de chaque méthode de ParkingSpotDAO sur la base H2 embarquée.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParkingSpotDAOBenchmark {
+
+    private static final int SPOTS_PER_TYPE = 100;
+
+    private final BenchmarkDataBaseConfig dataBaseConfig = new BenchmarkDataBaseConfig();
+    private ParkingSpotDAO parkingSpotDAO;
+    private List<ParkingSpot> parkingSpots;
+    private int nextSpot;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        dataBaseConfig.reset(SPOTS_PER_TYPE);
+        parkingSpotDAO = new ParkingSpotDAO();
+        parkingSpotDAO.dataBaseConfig = dataBaseConfig;
+        parkingSpots = new ArrayList<>();
+        for (int i = 1; i <= SPOTS_PER_TYPE; i++) {
+            parkingSpots.add(new ParkingSpot(i, ParkingType.CAR, true));
+        }
+    }
+
+    @Benchmark
+    public int getNextAvailableSlot() {
+        return parkingSpotDAO.getNextAvailableSlot(ParkingType.CAR);
+    }
+
+    @Benchmark
+    public boolean updateParking() {
+        nextSpot = nextSpot % SPOTS_PER_TYPE + 1;
+        return parkingSpotDAO.updateParking(new ParkingSpot(nextSpot, ParkingType.CAR, true));
+    }
+
+    // Temps par lot de SPOTS_PER_TYPE places
+    @Benchmark
+    public boolean updateParkings() {
+        return parkingSpotDAO.updateParkings(parkingSpots);
+    }
+
+    // Mêmes SPOTS_PER_TYPE places mises à jour une par une, à comparer à updateParkings
+    @Benchmark
+    public boolean updateParkingsOneByOne() {
+        boolean updated = true;
+        for (ParkingSpot parkingSpot : parkingSpots) {
+            updated &= parkingSpotDAO.updateParking(parkingSpot);
+        }
+        return updated;
+    }
+
+    @Benchmark
+    public List<ParkingSpot> getParkingSpots() {
+        return parkingSpotDAO.getParkingSpots();
+    }
+}
@@ -0,0 +1,146 @@
+package com.parkit.parkingsystem.benchmark;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.model.TicketRecord;
+import com.parkit.parkingsystem.service.FareCalculatorService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Aller-retour de chaque méthode de TicketDAO sur la base H2 embarquée.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TicketDAOBenchmark {
+
+    private static final int VEHICLES = 100;
+    private static final int VISITS_PER_VEHICLE = 10;
+    private static final int BATCH_SIZE = 100;
+
+    private final BenchmarkDataBaseConfig dataBaseConfig = new BenchmarkDataBaseConfig();
+    private final FareCalculatorService fareCalculatorService = new FareCalculatorService();
+    private TicketDAO ticketDAO;
+    private Ticket closedTicket;
+    private List<Ticket> closedTickets;
+    private List<Ticket> batch;
+    private int nextVehicle;
+
+    @Setup(Level.Trial)
+    public void setUpDataBase() throws Exception {
+        dataBaseConfig.reset(VEHICLES);
+        ticketDAO = new TicketDAO(dataBaseConfig);
+    }
+
+    // Historique identique à chaque itération : la table ne grossit pas avec la durée de la mesure
+    @Setup(Level.Iteration)
+    public void setUpTickets() throws Exception {
+        dataBaseConfig.clearTickets();
+        List<Ticket> history = new ArrayList<>();
+        for (int visit = 0; visit < VISITS_PER_VEHICLE; visit++) {
+            for (int vehicle = 0; vehicle < VEHICLES; vehicle++) {
+                history.add(newTicket("BENCH" + vehicle, visit));
+            }
+        }
+        ticketDAO.saveTickets(history);
+        closedTicket = history.get(0);
+        closedTickets = history.subList(0, BATCH_SIZE);
+        batch = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            batch.add(newTicket("BATCH" + i, 0));
+        }
+    }
+
+    @Benchmark
+    public boolean saveTicket() {
+        return ticketDAO.saveTicket(newTicket(nextVehicle(), 0));
+    }
+
+    // Temps par lot de BATCH_SIZE tickets
+    @Benchmark
+    public int[] saveTickets() {
+        return ticketDAO.saveTickets(batch);
+    }
+
+    // Mêmes BATCH_SIZE tickets enregistrés un par un, à comparer à saveTickets
+    @Benchmark
+    public boolean saveTicketsOneByOne() {
+        boolean saved = true;
+        for (Ticket ticket : batch) {
+            saved &= ticketDAO.saveTicket(ticket);
+        }
+        return saved;
+    }
+
+    @Benchmark
+    public TicketRecord getTicket() {
+        return ticketDAO.getTicket(nextVehicle());
+    }
+
+    @Benchmark
+    public boolean updateTicket() {
+        return ticketDAO.updateTicket(closedTicket);
+    }
+
+    // Clôture de BATCH_SIZE tickets de l'historique en une transaction
+    @Benchmark
+    public boolean updateTickets() {
+        return ticketDAO.updateTickets(closedTickets);
+    }
+
+    // Mêmes BATCH_SIZE clôtures une par une, à comparer à updateTickets
+    @Benchmark
+    public boolean updateTicketsOneByOne() {
+        boolean updated = true;
+        for (Ticket ticket : closedTickets) {
+            updated &= ticketDAO.updateTicket(ticket);
+        }
+        return updated;
+    }
+
+    @Benchmark
+    public int countTicketByVehicleRegNumber() {
+        return ticketDAO.countTicketByVehicleRegNumber(nextVehicle());
+    }
+
+    // Entrée puis sortie du même véhicule : la place est libérée, le parking ne se remplit pas
+    @Benchmark
+    public TicketRecord enterAndExitVehicle() {
+        String vehicleRegNumber = nextVehicle();
+        ticketDAO.enterVehicle(ParkingType.CAR, vehicleRegNumber, new Date());
+        return ticketDAO.exitVehicle(vehicleRegNumber, new Date(), fareCalculatorService);
+    }
+
+    private String nextVehicle() {
+        nextVehicle = (nextVehicle + 1) % VEHICLES;
+        return "BENCH" + nextVehicle;
+    }
+
+    private static Ticket newTicket(String vehicleRegNumber, int daysAgo) {
+        Ticket ticket = new Ticket();
+        ticket.setParkingSpot(new ParkingSpot(1, ParkingType.CAR, false));
+        ticket.setVehicleRegNumber(vehicleRegNumber);
+        ticket.setPrice(1.5);
+        ticket.setInTimeMillis(System.currentTimeMillis() - (daysAgo + 1) * 24L * 60 * 60 * 1000);
+        ticket.setOutTimeMillis(ticket.getInTimeMillis() + (60 * 60 * 1000));
+        return ticket;
+    }
+}
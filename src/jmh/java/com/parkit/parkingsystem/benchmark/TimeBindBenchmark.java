@@ -0,0 +1,72 @@
+package com.parkit.parkingsystem.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.concurrent.TimeUnit;
+
+// Liaison d'une heure de ticket (millisecondes epoch) à un paramètre DATETIME, sans exécution : Timestamp (TicketDAO.setTime)
+// contre les types java.time. Comparer gc.alloc.rate.norm :
+//   mvn -Pbenchmark -DskipTests verify -Djmh.args="TimeBind -prof gc"
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TimeBindBenchmark {
+
+    private final BenchmarkDataBaseConfig dataBaseConfig = new BenchmarkDataBaseConfig();
+    private final ZoneId zone = ZoneId.systemDefault();
+    private Connection connection;
+    private PreparedStatement ps;
+    private long millis = 1_700_000_000_000L;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        dataBaseConfig.reset(1);
+        connection = dataBaseConfig.getConnection();
+        ps = connection.prepareStatement("update ticket set OUT_TIME=? where ID=0");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        dataBaseConfig.closePreparedStatement(ps);
+        dataBaseConfig.closeConnection(connection);
+    }
+
+    @Benchmark
+    public PreparedStatement timestamp() throws SQLException {
+        ps.setTimestamp(1, new Timestamp(millis++));
+        return ps;
+    }
+
+    @Benchmark
+    public PreparedStatement localDateTime() throws SQLException {
+        ps.setObject(1, LocalDateTime.ofInstant(Instant.ofEpochMilli(millis++), zone));
+        return ps;
+    }
+
+    @Benchmark
+    public PreparedStatement instant() throws SQLException {
+        ps.setObject(1, Instant.ofEpochMilli(millis++));
+        return ps;
+    }
+}
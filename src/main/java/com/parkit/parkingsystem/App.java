@@ -1,13 +1,95 @@
 package com.parkit.parkingsystem;
 
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.config.SchemaMigrator;
+import com.parkit.parkingsystem.dao.GateJournal;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.ShardRouter;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.dao.TicketRepository;
+import com.parkit.parkingsystem.service.BatchReplayService;
+import com.parkit.parkingsystem.service.FareCalculatorService;
 import com.parkit.parkingsystem.service.InteractiveShell;
+import com.parkit.parkingsystem.service.OccupancyService;
+import com.parkit.parkingsystem.service.ParkingServer;
+import com.parkit.parkingsystem.service.ReportingEngine;
+import com.parkit.parkingsystem.service.RepricingJob;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
 public class App {
     private static final Logger logger = LogManager.getLogger("App");
-    public static void main(String args[]){
+    public static void main(String args[]) throws Exception {
         logger.info("Initializing Parking System");
-        InteractiveShell.loadInterface();
+        ShardRouter shardRouter = ShardRouter.configured();
+        for (String lot : shardRouter.getLots()) {
+            DataBaseConfig dataBaseConfig = shardRouter.getDataBaseConfig(lot);
+            dataBaseConfig.createSchemaIfMissing();
+            // Sur un schéma pas à jour, chaque requête sur VISIT_COUNT ou ticket_archive échouerait : on ne démarre pas
+            if (new SchemaMigrator(dataBaseConfig).migrate() < 0) {
+                throw new IllegalStateException("DB schema migration failed for lot " + lot);
+            }
+        }
+        if (Boolean.getBoolean(RepricingJob.ENABLED)) {
+            for (String lot : shardRouter.getLots()) {
+                reprice(shardRouter.getTicketDAO(lot));
+            }
+            return;
+        }
+        if (Boolean.getBoolean(ReportingEngine.ENABLED)) {
+            // Tous les sites, en parallèle
+            System.out.println("Report: " + ReportingEngine.fullReport(shardRouter,
+                    Integer.getInteger(ReportingEngine.WORKERS, Runtime.getRuntime().availableProcessors()),
+                    Integer.getInteger(ReportingEngine.FETCH_SIZE, TicketRepository.STREAMING_FETCH_SIZE)));
+            return;
+        }
+        // Bornes, rejeu et journal ne concernent que le site de ce processus
+        String lot = shardRouter.getLocalLot();
+        ParkingSpotDAO parkingSpotDAO = shardRouter.getParkingSpotDAO(lot);
+        TicketDAO ticketDAO = shardRouter.getTicketDAO(lot);
+        String replayFile = System.getProperty(BatchReplayService.FILE);
+        if (replayFile != null) {
+            replay(Paths.get(replayFile), parkingSpotDAO, ticketDAO);
+            return;
+        }
+        Integer port = Integer.getInteger(ParkingServer.PORT);
+        if (port == null) {
+            InteractiveShell.loadInterface(parkingSpotDAO, ticketDAO);
+            return;
+        }
+        // Mode serveur : une session par borne connectée
+        OccupancyService occupancyService = InteractiveShell.configureDAOs(parkingSpotDAO, ticketDAO);
+        GateJournal journal = InteractiveShell.openJournal(parkingSpotDAO, ticketDAO, occupancyService);
+        ParkingServer parkingServer = new ParkingServer(port, parkingSpotDAO, ticketDAO, journal, occupancyService,
+                parkingSpotDAO.parkingSpotIndex);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                parkingServer.close();
+            } catch (Exception ex) {
+                logger.error("Error stopping parking server", ex);
+            }
+        }));
+        parkingServer.start();
+    }
+
+    // Mode rejeu : traite tout le fichier d'événements puis affiche le débit obtenu
+    private static void replay(Path file, ParkingSpotDAO parkingSpotDAO, TicketDAO ticketDAO) throws Exception {
+        InteractiveShell.configureDAOs(parkingSpotDAO, ticketDAO);
+        BatchReplayService batchReplayService = new BatchReplayService(parkingSpotDAO, ticketDAO,
+                Integer.getInteger(BatchReplayService.WORKERS, Runtime.getRuntime().availableProcessors()),
+                Integer.getInteger(BatchReplayService.BATCH_SIZE, 1000));
+        System.out.println("Replay of " + file + ": " + batchReplayService.replay(file));
+    }
+
+    // Mode re-tarification : recalcule tous les tickets clôturés du site sur la grille en vigueur
+    private static void reprice(TicketDAO ticketDAO) throws Exception {
+        RepricingJob repricingJob = new RepricingJob(ticketDAO, new FareCalculatorService(),
+                Integer.getInteger(RepricingJob.CHUNK_SIZE, 10000),
+                Integer.getInteger(RepricingJob.PARALLELISM, Runtime.getRuntime().availableProcessors()),
+                !Boolean.getBoolean(RepricingJob.DRY_RUN));
+        System.out.println("Repricing of lot " + ticketDAO.lotId + ": " + repricingJob.run(Integer.getInteger(RepricingJob.FETCH_SIZE, TicketRepository.STREAMING_FETCH_SIZE)));
     }
 }
@@ -1,27 +1,208 @@
 package com.parkit.parkingsystem.config;
 
+import com.parkit.parkingsystem.metrics.MetricsRegistry;
+import com.parkit.parkingsystem.metrics.Timer;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.sql.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToDoubleFunction;
 
 public class DataBaseConfig {
 
     private static final Logger logger = LogManager.getLogger("DataBaseConfig");
+    // Ouvertures et fermetures de connexions, statements et result sets : plusieurs par véhicule,
+    // donc en DEBUG et échantillonnées (une sur parkit.log.lifecycleSampleRate).
+    private static final Logger lifecycleLogger = LogManager.getLogger("DataBaseConfig.lifecycle");
+    public static final String LIFECYCLE_SAMPLE_RATE = "parkit.log.lifecycleSampleRate";
+    private static final long LIFECYCLE_SAMPLE = Math.max(1, Long.getLong(LIFECYCLE_SAMPLE_RATE, 1000L));
+    private static final AtomicLong lifecycleEvents = new AtomicLong();
+
+    // Un pool par base : toutes les instances de DataBaseConfig (prod ou test) partagent le même.
+    private static final ConcurrentMap<String, ConnectionPool> POOLS = new ConcurrentHashMap<>();
+
+    public static final String POOL_MAX_SIZE = "parkit.db.pool.maxSize";
+    public static final String POOL_MAX_WAIT_MS = "parkit.db.pool.maxWaitMillis";
+    public static final String POOL_IDLE_TIMEOUT_MS = "parkit.db.pool.idleTimeoutMillis";
+    public static final String POOL_VALIDATION_INTERVAL_MS = "parkit.db.pool.validationIntervalMillis";
+    public static final String STATEMENT_CACHE_SIZE = "parkit.db.statementCacheSize";
+    // Prépare les requêtes côté serveur MySQL : combiné au cache, une seule préparation par connexion.
+    public static final String SERVER_PREPARED_STATEMENTS = "parkit.db.serverPreparedStatements";
+    // Réécrit les lots d'insertions en un seul insert multi-lignes (activé par défaut, =false pour désactiver).
+    public static final String REWRITE_BATCHED_STATEMENTS = "parkit.db.rewriteBatchedStatements";
+    // Stockage : mysql (par défaut) ou embedded, base H2 dans le processus (voir EmbeddedDataBaseConfig).
+    public static final String BACKEND = "parkit.db.backend";
+
+    private static final String DEFAULT_USER = "root";
+    private static final String DEFAULT_PASSWORD = "rootroot";
+
+    public MetricsRegistry metricsRegistry = MetricsRegistry.shared();
+
+    static {
+        try {
+            Class.forName("com.mysql.cj.jdbc.Driver");
+        } catch (ClassNotFoundException e) {
+            logger.error("MySQL JDBC driver not found", e);
+        }
+    }
+
+    // Configuration du stockage choisi par parkit.db.backend
+    public static DataBaseConfig configured() {
+        String backend = System.getProperty(BACKEND, "mysql");
+        switch (backend) {
+            case "mysql":
+                return new DataBaseConfig();
+            case "embedded":
+                return new EmbeddedDataBaseConfig();
+            default:
+                throw new IllegalArgumentException("Unknown DB backend: " + backend);
+        }
+    }
+
+    // Base d'une URL : embarquée pour une URL H2, MySQL sinon, avec les identifiants par défaut.
+    public static DataBaseConfig forUrl(String url) {
+        return forUrl(url, null, null);
+    }
+
+    // Base d'un site (parkit.lot.<site>.url) avec ses propres identifiants (null : ceux par défaut) ;
+    // H2 garde ceux du stockage embarqué.
+    public static DataBaseConfig forUrl(String url, String user, String password) {
+        if (url.startsWith("jdbc:h2:")) {
+            return new EmbeddedDataBaseConfig(url);
+        }
+        return new DataBaseConfig() {
+            @Override
+            protected String getUrl() {
+                return url;
+            }
+
+            @Override
+            protected String getUser() {
+                return user == null ? DEFAULT_USER : user;
+            }
+
+            @Override
+            protected String getPassword() {
+                return password == null ? DEFAULT_PASSWORD : password;
+            }
+        };
+    }
+
+    // Tables de départ (parking, ticket) : créées par resources/Data.sql pour MySQL, par db/schema.sql pour un stockage
+    // embarqué. Tout le reste du schéma vient des migrations : l'appelant lance ensuite SchemaMigrator.
+    public void createSchemaIfMissing() throws Exception {
+    }
 
     public Connection getConnection() throws ClassNotFoundException, SQLException {
-        logger.info("Create DB connection");
-        Class.forName("com.mysql.cj.jdbc.Driver");
+        logLifecycle("Create DB connection");
+        // Inclut l'attente d'une connexion libre dans le pool
+        Timer timer = metricsRegistry.timer("DataBaseConfig.getConnection");
+        long start = System.nanoTime();
+        try {
+            return getPool().getConnection();
+        } catch (SQLException | RuntimeException ex) {
+            timer.error();
+            throw ex;
+        } finally {
+            timer.record(start);
+        }
+    }
+
+    // Un pool par URL et utilisateur : deux sites sur le même serveur avec des comptes différents ne partagent rien
+    public ConnectionPool getPool() {
+        String url = getJdbcUrl();
+        return POOLS.computeIfAbsent(getUser() + "@" + url, key -> {
+            registerPoolGauges(metricsRegistry);
+            return new ConnectionPool(url, getUser(), getPassword(),
+                    Integer.getInteger(POOL_MAX_SIZE, 10),
+                    Long.getLong(POOL_MAX_WAIT_MS, 5000L),
+                    Long.getLong(POOL_IDLE_TIMEOUT_MS, 600000L),
+                    Long.getLong(POOL_VALIDATION_INTERVAL_MS, 5000L),
+                    Integer.getInteger(STATEMENT_CACHE_SIZE, 32));
+        });
+    }
+
+    // Jauges DataBaseConfig.pool.*, à côté du timer DataBaseConfig.getConnection : cumul des pools du processus (un par site),
+    // attentes en millisecondes
+    private static void registerPoolGauges(MetricsRegistry metricsRegistry) {
+        metricsRegistry.gauge("DataBaseConfig.pool.active", () -> sumPools(ConnectionPool.Stats::getActive));
+        metricsRegistry.gauge("DataBaseConfig.pool.idle", () -> sumPools(ConnectionPool.Stats::getIdle));
+        metricsRegistry.gauge("DataBaseConfig.pool.open", () -> sumPools(ConnectionPool.Stats::getOpen));
+        metricsRegistry.gauge("DataBaseConfig.pool.maxSize", () -> sumPools(ConnectionPool.Stats::getMaxSize));
+        metricsRegistry.gauge("DataBaseConfig.pool.timeouts", () -> sumPools(ConnectionPool.Stats::getTimeouts));
+        metricsRegistry.gauge("DataBaseConfig.pool.avgWaitMillis", () -> {
+            double borrows = sumPools(ConnectionPool.Stats::getBorrowCount);
+            return borrows == 0 ? 0 : sumPools(ConnectionPool.Stats::getTotalWaitNanos) / 1_000_000.0 / borrows;
+        });
+        metricsRegistry.gauge("DataBaseConfig.pool.maxWaitMillis", () -> {
+            long maxWaitNanos = 0;
+            for (ConnectionPool pool : POOLS.values()) {
+                maxWaitNanos = Math.max(maxWaitNanos, pool.getStats().getMaxWaitNanos());
+            }
+            return maxWaitNanos / 1_000_000.0;
+        });
+    }
+
+    private static double sumPools(ToDoubleFunction<ConnectionPool.Stats> metric) {
+        double sum = 0;
+        for (ConnectionPool pool : POOLS.values()) {
+            sum += metric.applyAsDouble(pool.getStats());
+        }
+        return sum;
+    }
+
+    // URL de connexion : les options du driver s'ajoutent aux paramètres de l'URL ou les introduisent
+    public String getJdbcUrl() {
+        String url = getUrl();
+        String options = getDriverOptions();
+        if (options.isEmpty()) {
+            return url;
+        }
+        return url + (url.indexOf('?') < 0 ? "?" : "&") + options;
+    }
+
+    // Paramètres du driver séparés par '&', sans séparateur initial
+    protected String getDriverOptions() {
+        StringBuilder options = new StringBuilder();
+        if (Boolean.getBoolean(SERVER_PREPARED_STATEMENTS)) {
+            options.append("useServerPrepStmts=true");
+        }
+        if (Boolean.parseBoolean(System.getProperty(REWRITE_BATCHED_STATEMENTS, "true"))) {
+            options.append(options.length() == 0 ? "" : "&").append("rewriteBatchedStatements=true");
+        }
+        return options.toString();
+    }
+
+    // fetchSize d'un parcours en flux : Integer.MIN_VALUE, ligne à ligne, est propre au driver MySQL
+    public int getStreamingFetchSize() {
+        return Integer.MIN_VALUE;
+    }
+
+    public ConnectionPool.Stats getPoolStats() {
+        return getPool().getStats();
+    }
+
+    protected String getUrl() {
         // Ajout d'un timezone pour corriger l'erreur des heures d'entrées et sorties.
-        return DriverManager.getConnection(
-                "jdbc:mysql://localhost:3306/prod?serverTimezone=UTC&allowPublicKeyRetrieval=true", "root", "rootroot");
+        return "jdbc:mysql://localhost:3306/prod?serverTimezone=UTC&allowPublicKeyRetrieval=true";
+    }
+
+    protected String getUser() {
+        return DEFAULT_USER;
+    }
+
+    protected String getPassword() {
+        return DEFAULT_PASSWORD;
     }
 
     public void closeConnection(Connection con) {
         if (con != null) {
             try {
                 con.close();
-                logger.info("Closing DB connection");
+                logLifecycle("Closing DB connection");
             } catch (SQLException e) {
                 logger.error("Error while closing connection", e);
             }
@@ -31,11 +212,22 @@ public class DataBaseConfig {
         }
     }
 
+    public void rollback(Connection con) {
+        if (con != null) {
+            try {
+                con.rollback();
+                logger.info("Rolling back DB transaction");
+            } catch (SQLException e) {
+                logger.error("Error while rolling back transaction", e);
+            }
+        }
+    }
+
     public void closePreparedStatement(PreparedStatement ps) {
         if (ps != null) {
             try {
                 ps.close();
-                logger.info("Closing Prepared Statement");
+                logLifecycle("Closing Prepared Statement");
             } catch (SQLException e) {
                 logger.error("Error while closing prepared statement", e);
             }
@@ -46,10 +238,19 @@ public class DataBaseConfig {
         if (rs != null) {
             try {
                 rs.close();
-                logger.info("Closing Result Set");
+                logLifecycle("Closing Result Set");
             } catch (SQLException e) {
                 logger.error("Error while closing result set", e);
             }
         }
     }
-}
\ No newline at end of file
+
+    private static void logLifecycle(String event) {
+        if (lifecycleLogger.isDebugEnabled()) {
+            long count = lifecycleEvents.incrementAndGet();
+            if (count % LIFECYCLE_SAMPLE == 0) {
+                lifecycleLogger.debug("{} (lifecycle event {})", event, count);
+            }
+        }
+    }
+}
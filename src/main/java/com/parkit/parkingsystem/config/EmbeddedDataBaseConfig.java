@@ -0,0 +1,120 @@
+package com.parkit.parkingsystem.config;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Stockage embarqué : base H2 dans le processus, en mode MySQL pour que les DAO gardent les mêmes requêtes.
+// Fichier local par défaut (les tickets survivent à un redémarrage) ou base en mémoire avec une URL jdbc:h2:mem:...
+// Pour un petit site sans serveur de base, et pour lancer tests et benchmarks sans MySQL.
+public class EmbeddedDataBaseConfig extends DataBaseConfig {
+
+    private static final Logger logger = LogManager.getLogger("EmbeddedDataBaseConfig");
+
+    public static final String URL = "parkit.db.embedded.url";
+    // Places créées dans une base vide, numérotées à la suite dans l'ordre donné (par défaut celles de resources/Data.sql).
+    public static final String SPOTS = "parkit.db.embedded.spots";
+
+    private static final String DEFAULT_URL = "jdbc:h2:./parkit-data/parkit;MODE=MySQL;DATABASE_TO_LOWER=TRUE";
+    private static final String DEFAULT_SPOTS = "CAR:3,BIKE:2";
+    private static final String SCHEMA = "db/schema.sql";
+
+    private final String url;
+
+    public EmbeddedDataBaseConfig() {
+        this(System.getProperty(URL, DEFAULT_URL));
+    }
+
+    public EmbeddedDataBaseConfig(String url) {
+        this.url = url;
+    }
+
+    @Override
+    protected String getUrl() {
+        return url;
+    }
+
+    // Les options du driver MySQL n'ont pas de sens pour H2
+    @Override
+    protected String getDriverOptions() {
+        return "";
+    }
+
+    // H2 refuse Integer.MIN_VALUE ; ses curseurs lisent les lignes par paquets
+    @Override
+    public int getStreamingFetchSize() {
+        return 1000;
+    }
+
+    @Override
+    protected String getUser() {
+        return "sa";
+    }
+
+    @Override
+    protected String getPassword() {
+        return "";
+    }
+
+    // Crée les tables de départ si besoin et, dans une base sans places, celles de parkit.db.embedded.spots.
+    // Index, archive et colonnes ajoutées viennent des migrations versionnées, appliquées ensuite par SchemaMigrator.
+    @Override
+    public void createSchemaIfMissing() throws Exception {
+        Map<ParkingType, Integer> spots = parseSpots(System.getProperty(SPOTS, DEFAULT_SPOTS));
+        Connection con = getConnection();
+        try {
+            try (Statement statement = con.createStatement()) {
+                for (String sql : SchemaMigrator.readStatements(SCHEMA)) {
+                    statement.execute(sql);
+                }
+                try (ResultSet rs = statement.executeQuery("select count(*) from parking")) {
+                    if (rs.next() && rs.getInt(1) > 0) {
+                        return;
+                    }
+                }
+            }
+            insertSpots(con, spots);
+        } finally {
+            closeConnection(con);
+        }
+    }
+
+    private static void insertSpots(Connection con, Map<ParkingType, Integer> spots) throws Exception {
+        int parkingNumber = 0;
+        try (PreparedStatement ps = con.prepareStatement("insert into parking(PARKING_NUMBER,AVAILABLE,TYPE) values(?,true,?)")) {
+            for (Map.Entry<ParkingType, Integer> entry : spots.entrySet()) {
+                for (int i = 0; i < entry.getValue(); i++) {
+                    ps.setInt(1, ++parkingNumber);
+                    ps.setString(2, entry.getKey().toString());
+                    ps.addBatch();
+                }
+            }
+            ps.executeBatch();
+        }
+        logger.info("Embedded DB created with {} parking spots", parkingNumber);
+    }
+
+    // "CAR:3,BIKE:2" : nombre de places par type
+    static Map<ParkingType, Integer> parseSpots(String value) {
+        Map<ParkingType, Integer> spots = new LinkedHashMap<>();
+        for (String pair : value.split(",")) {
+            String[] parts = pair.trim().split(":");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Invalid parking spots: " + value);
+            }
+            int count = Integer.parseInt(parts[1].trim());
+            if (count < 0) {
+                throw new IllegalArgumentException("Invalid parking spots: " + value);
+            }
+            spots.put(ParkingType.valueOf(parts[0].trim()), count);
+        }
+        return spots;
+    }
+}
@@ -0,0 +1,191 @@
+package com.parkit.parkingsystem.config;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Applique au démarrage les migrations versionnées de src/main/resources/db/migration
+// qui n'ont pas encore été enregistrées dans la table schema_version.
+// MySQL valide implicitement chaque ordre DDL : une migration interrompue après son premier ordre n'est pas annulée.
+// Chaque ordre est donc rejouable : un ajout de colonne ou d'index déjà présent dans le schéma est sauté.
+public class SchemaMigrator {
+
+    private static final Logger logger = LogManager.getLogger("SchemaMigrator");
+
+    private static final String MIGRATION_LOCATION = "db/migration/";
+
+    // Dans l'ordre d'application ; le numéro de version est le préfixe Vn__ du fichier.
+    public static final String[] MIGRATIONS = {
+            "V1__ticket_vehicle_in_time_index.sql",
+            "V2__parking_type_available_index.sql",
+            "V3__ticket_out_time_index.sql",
+            "V4__ticket_archive.sql",
+            "V5__ticket_visit_count.sql"
+    };
+
+    private static final String CREATE_VERSION_TABLE = "create table if not exists schema_version(VERSION int PRIMARY KEY, DESCRIPTION varchar(100) NOT NULL, INSTALLED_ON DATETIME NOT NULL)";
+    private static final String GET_CURRENT_VERSION = "select max(VERSION) from schema_version";
+    private static final String SAVE_VERSION = "insert into schema_version(VERSION, DESCRIPTION, INSTALLED_ON) values(?,?,?)";
+
+    private static final Pattern ADD_COLUMN = Pattern.compile("(?is)alter\\s+table\\s+(\\w+)\\s+add\\s+column\\s+(\\w+)\\b.*");
+    private static final Pattern CREATE_INDEX = Pattern.compile("(?is)create\\s+index\\s+(\\w+)\\s+on\\s+(\\w+)\\b.*");
+
+    private final DataBaseConfig dataBaseConfig;
+
+    public SchemaMigrator(DataBaseConfig dataBaseConfig) {
+        this.dataBaseConfig = dataBaseConfig;
+    }
+
+    // Retourne la version du schéma après migration, -1 en cas d'échec.
+    public int migrate() {
+        Connection con = null;
+        try {
+            con = dataBaseConfig.getConnection();
+            int currentVersion = getCurrentVersion(con);
+            for (String migration : MIGRATIONS) {
+                int version = versionOf(migration);
+                if (version > currentVersion) {
+                    apply(con, migration, version);
+                    currentVersion = version;
+                }
+            }
+            return currentVersion;
+        } catch (Exception ex) {
+            logger.error("Error migrating DB schema", ex);
+            return -1;
+        } finally {
+            dataBaseConfig.closeConnection(con);
+        }
+    }
+
+    private int getCurrentVersion(Connection con) throws SQLException {
+        try (Statement statement = con.createStatement()) {
+            statement.execute(CREATE_VERSION_TABLE);
+            try (ResultSet rs = statement.executeQuery(GET_CURRENT_VERSION)) {
+                return rs.next() ? rs.getInt(1) : 0;
+            }
+        }
+    }
+
+    // La version n'est enregistrée qu'une fois tous les ordres passés ; après un échec, le démarrage suivant reprend la migration.
+    private void apply(Connection con, String migration, int version) throws SQLException, IOException {
+        logger.info("Applying DB migration {}", migration);
+        try (Statement statement = con.createStatement()) {
+            for (String sql : readStatements(MIGRATION_LOCATION + migration)) {
+                if (isAlreadyApplied(con, sql)) {
+                    logger.info("Skipping statement of {} already applied: {}", migration, sql);
+                } else {
+                    statement.execute(sql);
+                }
+            }
+        }
+        try (PreparedStatement ps = con.prepareStatement(SAVE_VERSION)) {
+            ps.setInt(1, version);
+            ps.setString(2, migration);
+            ps.setTimestamp(3, new Timestamp(System.currentTimeMillis()));
+            ps.executeUpdate();
+        }
+    }
+
+    // Colonne ou index que l'ordre crée déjà présent (migration interrompue puis relancée) ; les autres ordres sont exécutés.
+    private static boolean isAlreadyApplied(Connection con, String sql) throws SQLException {
+        Matcher addColumn = ADD_COLUMN.matcher(sql);
+        if (addColumn.matches()) {
+            return hasColumn(con, addColumn.group(1), addColumn.group(2));
+        }
+        Matcher createIndex = CREATE_INDEX.matcher(sql);
+        if (createIndex.matches()) {
+            return hasIndex(con, createIndex.group(2), createIndex.group(1));
+        }
+        return false;
+    }
+
+    private static boolean hasColumn(Connection con, String table, String column) throws SQLException {
+        DatabaseMetaData metaData = con.getMetaData();
+        String tableName = findTable(metaData, con, table);
+        if (tableName == null) {
+            return false;
+        }
+        try (ResultSet rs = metaData.getColumns(con.getCatalog(), con.getSchema(), tableName, "%")) {
+            while (rs.next()) {
+                if (column.equalsIgnoreCase(rs.getString("COLUMN_NAME"))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean hasIndex(Connection con, String table, String index) throws SQLException {
+        DatabaseMetaData metaData = con.getMetaData();
+        String tableName = findTable(metaData, con, table);
+        if (tableName == null) {
+            return false;
+        }
+        try (ResultSet rs = metaData.getIndexInfo(con.getCatalog(), con.getSchema(), tableName, false, true)) {
+            while (rs.next()) {
+                if (index.equalsIgnoreCase(rs.getString("INDEX_NAME"))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    // Nom de la table tel que la base le stocke (H2 les met en minuscules, MySQL suit le système de fichiers), null si absente
+    private static String findTable(DatabaseMetaData metaData, Connection con, String table) throws SQLException {
+        try (ResultSet rs = metaData.getTables(con.getCatalog(), con.getSchema(), "%", new String[]{"TABLE"})) {
+            while (rs.next()) {
+                String name = rs.getString("TABLE_NAME");
+                if (table.equalsIgnoreCase(name)) {
+                    return name;
+                }
+            }
+        }
+        return null;
+    }
+
+    static int versionOf(String migration) {
+        return Integer.parseInt(migration.substring(1, migration.indexOf("__")));
+    }
+
+    static List<String> readStatements(String resource) throws IOException {
+        InputStream in = SchemaMigrator.class.getClassLoader().getResourceAsStream(resource);
+        if (in == null) {
+            throw new IOException("Migration not found on classpath: " + resource);
+        }
+        StringBuilder script = new StringBuilder();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String trimmed = line.trim();
+                if (!trimmed.isEmpty() && !trimmed.startsWith("/*") && !trimmed.startsWith("--")) {
+                    script.append(line).append('\n');
+                }
+            }
+        }
+        List<String> statements = new ArrayList<>();
+        for (String sql : script.toString().split(";")) {
+            if (!sql.trim().isEmpty()) {
+                statements.add(sql.trim());
+            }
+        }
+        return statements;
+    }
+}
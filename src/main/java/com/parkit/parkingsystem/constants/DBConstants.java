@@ -2,12 +2,57 @@ package com.parkit.parkingsystem.constants;
 
 public class DBConstants {
 
+    // Site utilisé quand un seul parking est configuré (parkit.lots absent)
+    public static final String DEFAULT_LOT = "main";
+
     public static final String GET_NEXT_PARKING_SPOT = "select min(PARKING_NUMBER) from parking where AVAILABLE = true and TYPE = ?";
     public static final String UPDATE_PARKING_SPOT = "update parking set available = ? where PARKING_NUMBER = ?";
+    // Sonde de disponibilité de la base : aucune table lue
+    public static final String PING = "select 1";
+    public static final String GET_PARKING_SPOTS = "select PARKING_NUMBER, TYPE, AVAILABLE from parking";
+    public static final String COUNT_FREE_PARKING_SPOTS = "select COUNT(*) from parking where AVAILABLE = true and TYPE = ?";
+    // Entrée en une transaction : la place est verrouillée (les autres bornes sautent les lignes verrouillées)
+    // et le nombre de passages du véhicule (tickets courants et archivés) revient dans le même aller-retour.
+    public static final String CLAIM_PARKING_SPOT_AND_COUNT_TICKET = "select PARKING_NUMBER, (select COUNT(*) from ticket where ticket.VEHICLE_REG_NUMBER=?) + (select COUNT(*) from ticket_archive where ticket_archive.VEHICLE_REG_NUMBER=?) from parking where AVAILABLE = true and TYPE = ? order by PARKING_NUMBER limit 1 for update skip locked";
+    // Même réservation quand le nombre de passages est déjà en cache.
+    public static final String CLAIM_PARKING_SPOT = "select PARKING_NUMBER from parking where AVAILABLE = true and TYPE = ? order by PARKING_NUMBER limit 1 for update skip locked";
+    // La place n'est prise que si elle est encore libre en base (protège aussi les places venant de l'index en mémoire).
+    public static final String OCCUPY_PARKING_SPOT = "update parking set AVAILABLE = false where PARKING_NUMBER = ? and AVAILABLE = true";
 
     public static final String SAVE_TICKET = "insert into ticket(PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME) values(?,?,?,?,?)";
-    public static final String UPDATE_TICKET = "update ticket set PRICE=?, OUT_TIME=? where ID=?";
-    public static final String GET_TICKET = "select t.PARKING_NUMBER, t.ID, t.PRICE, t.IN_TIME, t.OUT_TIME, p.TYPE from ticket t,parking p where p.parking_number = t.parking_number and t.VEHICLE_REG_NUMBER=? order by t.IN_TIME DESC limit 1";
+    // VISIT_COUNT : nombre de passages retenu pour la remise à la sortie (tous sites), réutilisé par re-tarification et rapports
+    public static final String UPDATE_TICKET = "update ticket set PRICE=?, OUT_TIME=?, VISIT_COUNT=? where ID=?";
+    // Clôture d'un ticket trouvé dans OpenTicketIndex : aucune ligne modifiée si le ticket a déjà été clôturé ailleurs.
+    public static final String UPDATE_OPEN_TICKET = "update ticket set PRICE=?, OUT_TIME=?, VISIT_COUNT=? where ID=? and OUT_TIME is null";
+    // Chargement d'OpenTicketIndex (index sur OUT_TIME) ; en cas de doublon, le ticket le plus récent est chargé en dernier.
+    public static final String GET_OPEN_TICKETS = "select t.VEHICLE_REG_NUMBER, t.ID, t.PARKING_NUMBER, p.TYPE, t.IN_TIME, (select COUNT(*) from ticket c where c.VEHICLE_REG_NUMBER = t.VEHICLE_REG_NUMBER) + (select COUNT(*) from ticket_archive a where a.VEHICLE_REG_NUMBER = t.VEHICLE_REG_NUMBER) from ticket t, parking p where p.PARKING_NUMBER = t.PARKING_NUMBER and t.OUT_TIME is null order by t.IN_TIME";
+    // Dernier ticket parmi les tickets courants (les archivés sont clôturés depuis longtemps).
+    // La dernière colonne donne le nombre de passages du véhicule, archives comprises, sans second aller-retour COUNT_TICKET.
+    public static final String GET_TICKET = "select t.PARKING_NUMBER, t.ID, t.PRICE, t.IN_TIME, t.OUT_TIME, p.TYPE, (select COUNT(*) from ticket c where c.VEHICLE_REG_NUMBER = t.VEHICLE_REG_NUMBER) + (select COUNT(*) from ticket_archive a where a.VEHICLE_REG_NUMBER = t.VEHICLE_REG_NUMBER) from ticket t,parking p where p.parking_number = t.parking_number and t.VEHICLE_REG_NUMBER=? order by t.IN_TIME DESC limit 1";
+    // Sortie en une transaction : verrouille le ticket et sa place jusqu'au commit.
+    public static final String GET_TICKET_FOR_UPDATE = GET_TICKET + " for update";
+    // Même lecture quand le nombre de passages est déjà en cache.
+    public static final String GET_LAST_TICKET_FOR_UPDATE = "select t.PARKING_NUMBER, t.ID, t.PRICE, t.IN_TIME, t.OUT_TIME, p.TYPE from ticket t,parking p where p.parking_number = t.parking_number and t.VEHICLE_REG_NUMBER=? order by t.IN_TIME DESC limit 1 for update";
+
+    // Parcours complet pour la re-tarification : l'ordre suit l'index (véhicule, entrée), les passages se comptent au fil de l'eau
+    // à partir du nombre de tickets archivés du véhicule (colonne 7), tous antérieurs aux tickets courants.
+    // Colonne 8 de chaque parcours : VISIT_COUNT enregistré à la sortie, prioritaire sur le rang calculé sur le site.
+    public static final String SCAN_TICKETS = "select t.ID, t.VEHICLE_REG_NUMBER, p.TYPE, t.IN_TIME, t.OUT_TIME, t.PRICE, (select COUNT(*) from ticket_archive a where a.VEHICLE_REG_NUMBER = t.VEHICLE_REG_NUMBER), t.VISIT_COUNT from ticket t, parking p where p.PARKING_NUMBER = t.PARKING_NUMBER order by t.VEHICLE_REG_NUMBER, t.IN_TIME";
+    // Même parcours sur les tickets archivés, après les tickets courants.
+    public static final String SCAN_ARCHIVED_TICKETS = "select t.ID, t.VEHICLE_REG_NUMBER, p.TYPE, t.IN_TIME, t.OUT_TIME, t.PRICE, 0, t.VISIT_COUNT from ticket_archive t, parking p where p.PARKING_NUMBER = t.PARKING_NUMBER order by t.VEHICLE_REG_NUMBER, t.IN_TIME";
+    // Tickets clôturés dans ]après, jusqu'à], avec leur rang de passage pour le véhicule (index sur OUT_TIME).
+    public static final String SCAN_TICKETS_CLOSED_BETWEEN = "select t.ID, t.VEHICLE_REG_NUMBER, p.TYPE, t.IN_TIME, t.OUT_TIME, t.PRICE, (select COUNT(*) from ticket c where c.VEHICLE_REG_NUMBER = t.VEHICLE_REG_NUMBER and c.IN_TIME <= t.IN_TIME) + (select COUNT(*) from ticket_archive a where a.VEHICLE_REG_NUMBER = t.VEHICLE_REG_NUMBER), t.VISIT_COUNT from ticket t, parking p where p.PARKING_NUMBER = t.PARKING_NUMBER and t.OUT_TIME > ? and t.OUT_TIME <= ? order by t.OUT_TIME";
+    public static final String SCAN_ARCHIVED_TICKETS_CLOSED_BETWEEN = "select t.ID, t.VEHICLE_REG_NUMBER, p.TYPE, t.IN_TIME, t.OUT_TIME, t.PRICE, (select COUNT(*) from ticket_archive c where c.VEHICLE_REG_NUMBER = t.VEHICLE_REG_NUMBER and c.IN_TIME <= t.IN_TIME), t.VISIT_COUNT from ticket_archive t, parking p where p.PARKING_NUMBER = t.PARKING_NUMBER and t.OUT_TIME > ? and t.OUT_TIME <= ? order by t.OUT_TIME";
+    public static final String UPDATE_TICKET_PRICE = "update ticket set PRICE=? where ID=?";
+    public static final String UPDATE_ARCHIVED_TICKET_PRICE = "update ticket_archive set PRICE=? where ID=?";
+
+    // Passages du véhicule : tickets courants et archivés (véhicule en premier et second paramètre).
+    public static final String COUNT_TICKET = "select (select COUNT(*) from ticket where VEHICLE_REG_NUMBER=?) + (select COUNT(*) from ticket_archive where VEHICLE_REG_NUMBER=?)";
 
-    public static final String COUNT_TICKET = "select COUNT(*) from ticket WHERE ticket.VEHICLE_REG_NUMBER=?";
+    // Archivage : tickets clôturés avant la date limite, les plus anciens d'abord (index sur OUT_TIME), verrouillés jusqu'au déplacement.
+    // Le dernier ID reste dans ticket : au redémarrage, MySQL 5.7 repart du plus grand ID présent pour l'auto-incrément.
+    public static final String GET_TICKETS_TO_ARCHIVE = "select ID from ticket where OUT_TIME < ? and ID < (select max(ID) from ticket) order by OUT_TIME limit ? for update";
+    // L'identifiant d'origine est conservé : les ID restent uniques entre tickets courants et archivés.
+    public static final String ARCHIVE_TICKET = "insert into ticket_archive(ID, PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME, VISIT_COUNT) select ID, PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME, VISIT_COUNT from ticket where ID=?";
+    public static final String DELETE_TICKET = "delete from ticket where ID=?";
 }
@@ -2,5 +2,22 @@ package com.parkit.parkingsystem.constants;
 
 public enum ParkingType {
     CAR,
-    BIKE
+    BIKE;
+
+    // values() copie le tableau à chaque appel : copie unique pour les lectures du type en base et dans le journal
+    private static final ParkingType[] VALUES = values();
+
+    // Type d'après son nom en base (colonne TYPE) ; comme valueOf, IllegalArgumentException si le nom est inconnu.
+    public static ParkingType fromName(String name) {
+        for (ParkingType parkingType : VALUES) {
+            if (parkingType.name().equals(name)) {
+                return parkingType;
+            }
+        }
+        throw new IllegalArgumentException("Unknown parking type: " + name);
+    }
+
+    public static ParkingType fromOrdinal(int ordinal) {
+        return VALUES[ordinal];
+    }
 }
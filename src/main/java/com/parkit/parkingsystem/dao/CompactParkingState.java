@@ -0,0 +1,207 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+// État des places et de leurs tickets ouverts, hors du tas : un enregistrement de taille fixe par numéro de place
+// (type, occupation, ticket, heure d'entrée, passages, immatriculation) et une table de hachage d'immatriculations vers
+// numéros de place, toutes deux dans des ByteBuffer directs. Une immatriculation n'est stockée qu'une fois, dans
+// l'enregistrement de sa place, et comparée caractère par caractère : ni String ni Date ni objet par véhicule garé.
+// Les lectures remplissent un OpenTicket fourni par l'appelant (poids mouche) et n'allouent rien.
+public class CompactParkingState {
+
+    // Longueur de VEHICLE_REG_NUMBER (varchar(10))
+    public static final int MAX_PLATE_LENGTH = 10;
+
+    // Type, occupée, longueur de l'immatriculation, ticket, heure d'entrée, passages, immatriculation (UTF-16)
+    private static final int TYPE = 0;
+    private static final int OCCUPIED = 1;
+    private static final int PLATE_LENGTH = 2;
+    private static final int TICKET_ID = 4;
+    private static final int IN_TIME = 8;
+    private static final int VISIT_COUNT = 16;
+    private static final int PLATE = 20;
+    static final int RECORD = PLATE + 2 * MAX_PLATE_LENGTH;
+
+    private final int maxParkingNumber;
+    private final ByteBuffer records;
+    // Adressage ouvert, sondage linéaire ; 0 : case vide, sinon numéro de place
+    private final ByteBuffer plates;
+    private final int mask;
+    private int size;
+
+    public CompactParkingState(int maxParkingNumber) {
+        if (maxParkingNumber < 1) {
+            throw new IllegalArgumentException("At least one parking spot is required");
+        }
+        this.maxParkingNumber = maxParkingNumber;
+        this.records = ByteBuffer.allocateDirect((maxParkingNumber + 1) * RECORD).order(ByteOrder.nativeOrder());
+        // Taux de remplissage inférieur à 1/2 : les sondages restent courts
+        int slots = Integer.highestOneBit(maxParkingNumber) << 2;
+        this.plates = ByteBuffer.allocateDirect(slots * 4).order(ByteOrder.nativeOrder());
+        this.mask = slots - 1;
+    }
+
+    // Occupe la place avec ce ticket, qui remplace celui qu'elle portait encore (périmé) ; le véhicule quitte sa place
+    // précédente s'il en avait une. false si la place n'existe pas ou si l'immatriculation est trop longue.
+    public synchronized boolean occupy(int parkingNumber, ParkingType parkingType, CharSequence vehicleRegNumber, int ticketId,
+                                       long inTime, int visitCount) {
+        if (parkingNumber < 1 || parkingNumber > maxParkingNumber || vehicleRegNumber.length() > MAX_PLATE_LENGTH) {
+            return false;
+        }
+        int record = parkingNumber * RECORD;
+        if (records.get(record + OCCUPIED) != 0) {
+            release(parkingNumber);
+        }
+        int previous = find(vehicleRegNumber);
+        if (previous > 0) {
+            release(previous);
+        }
+        records.put(record + TYPE, (byte) parkingType.ordinal());
+        records.put(record + OCCUPIED, (byte) 1);
+        records.put(record + PLATE_LENGTH, (byte) vehicleRegNumber.length());
+        for (int i = 0; i < vehicleRegNumber.length(); i++) {
+            records.putChar(record + PLATE + 2 * i, vehicleRegNumber.charAt(i));
+        }
+        records.putInt(record + TICKET_ID, ticketId);
+        records.putLong(record + IN_TIME, inTime);
+        records.putInt(record + VISIT_COUNT, visitCount);
+        int slot = hash(vehicleRegNumber) & mask;
+        while (plates.getInt(slot * 4) != 0) {
+            slot = (slot + 1) & mask;
+        }
+        plates.putInt(slot * 4, parkingNumber);
+        size++;
+        return true;
+    }
+
+    // Copie le ticket ouvert du véhicule dans into ; false si le véhicule n'est pas garé.
+    public synchronized boolean read(CharSequence vehicleRegNumber, OpenTicketIndex.OpenTicket into) {
+        int parkingNumber = find(vehicleRegNumber);
+        if (parkingNumber < 0) {
+            return false;
+        }
+        int record = parkingNumber * RECORD;
+        into.set(vehicleRegNumber.toString(), parkingNumber, ParkingType.fromOrdinal(records.get(record + TYPE)), records.getInt(record + TICKET_ID),
+                records.getLong(record + IN_TIME), records.getInt(record + VISIT_COUNT));
+        return true;
+    }
+
+    // Libère la place du véhicule si elle porte encore ce ticket (ticketId < 0 : quel que soit le ticket).
+    public synchronized boolean release(CharSequence vehicleRegNumber, int ticketId) {
+        int parkingNumber = find(vehicleRegNumber);
+        if (parkingNumber < 0 || (ticketId >= 0 && records.getInt(parkingNumber * RECORD + TICKET_ID) != ticketId)) {
+            return false;
+        }
+        release(parkingNumber);
+        return true;
+    }
+
+    public synchronized boolean isOccupied(int parkingNumber) {
+        return parkingNumber >= 1 && parkingNumber <= maxParkingNumber && records.get(parkingNumber * RECORD + OCCUPIED) != 0;
+    }
+
+    public synchronized void clear() {
+        for (int i = 0; i < records.capacity(); i++) {
+            records.put(i, (byte) 0);
+        }
+        for (int i = 0; i < plates.capacity(); i += 4) {
+            plates.putInt(i, 0);
+        }
+        size = 0;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public int getMaxParkingNumber() {
+        return maxParkingNumber;
+    }
+
+    // Mémoire hors tas réservée à la construction, indépendante du nombre de véhicules garés
+    public long getAllocatedBytes() {
+        return (long) records.capacity() + plates.capacity();
+    }
+
+    private void release(int parkingNumber) {
+        int record = parkingNumber * RECORD;
+        int slot = slotOf(parkingNumber, hash(record));
+        records.put(record + OCCUPIED, (byte) 0);
+        size--;
+        // Suppression par décalage arrière : les entrées suivantes de la même chaîne remontent dans le trou
+        int hole = slot;
+        int next = (hole + 1) & mask;
+        int moved;
+        while ((moved = plates.getInt(next * 4)) != 0) {
+            int home = hash(moved * RECORD) & mask;
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                plates.putInt(hole * 4, moved);
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        plates.putInt(hole * 4, 0);
+    }
+
+    private int find(CharSequence vehicleRegNumber) {
+        if (vehicleRegNumber.length() > MAX_PLATE_LENGTH) {
+            return -1;
+        }
+        int slot = hash(vehicleRegNumber) & mask;
+        int parkingNumber;
+        while ((parkingNumber = plates.getInt(slot * 4)) != 0) {
+            if (plateEquals(parkingNumber * RECORD, vehicleRegNumber)) {
+                return parkingNumber;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private int slotOf(int parkingNumber, int hash) {
+        int slot = hash & mask;
+        while (plates.getInt(slot * 4) != parkingNumber) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private boolean plateEquals(int record, CharSequence vehicleRegNumber) {
+        int length = records.get(record + PLATE_LENGTH);
+        if (length != vehicleRegNumber.length()) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (records.getChar(record + PLATE + 2 * i) != vehicleRegNumber.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Même valeur que hash(CharSequence) pour l'immatriculation stockée dans l'enregistrement
+    private int hash(int record) {
+        int h = 0;
+        int length = records.get(record + PLATE_LENGTH);
+        for (int i = 0; i < length; i++) {
+            h = 31 * h + records.getChar(record + PLATE + 2 * i);
+        }
+        return mix(h);
+    }
+
+    private static int hash(CharSequence vehicleRegNumber) {
+        int h = 0;
+        for (int i = 0; i < vehicleRegNumber.length(); i++) {
+            h = 31 * h + vehicleRegNumber.charAt(i);
+        }
+        return mix(h);
+    }
+
+    private static int mix(int h) {
+        h *= 0x9e3779b9;
+        return h ^ (h >>> 16);
+    }
+}
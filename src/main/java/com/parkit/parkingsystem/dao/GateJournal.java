@@ -0,0 +1,289 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.GateEvent;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.CRC32;
+
+// Journal local des passages aux bornes, écrit avant d'acquitter la borne : fichier projeté en mémoire, en ajout seul.
+// Chaque enregistrement est encadré par sa taille et un CRC32 ; un enregistrement incomplet (arrêt brutal) termine le journal.
+// Les écritures concurrentes partagent un même fsync (group commit). JournalDrainer applique ensuite les événements en base
+// et avance le point de reprise ; une fois tout appliqué, le journal repart du début avec une nouvelle génération.
+public class GateJournal implements Closeable {
+
+    private static final Logger logger = LogManager.getLogger("GateJournal");
+
+    public static final String FILE = "parkit.journal.file";
+    public static final String SIZE_BYTES = "parkit.journal.sizeBytes";
+    // Journal des événements refusés par la base (voir JournalDrainer) ; par défaut à côté du journal, suffixé .rejected
+    public static final String REJECTED_FILE = "parkit.journal.rejectedFile";
+
+    private static final int MAGIC = 0x504b4a32;
+    // En-tête : magic, génération, puis position jusqu'à laquelle les événements sont appliqués en base
+    private static final int GENERATION_OFFSET = 4;
+    private static final int CHECKPOINT_OFFSET = 8;
+    private static final int HEADER = 16;
+    // Taille de l'enregistrement puis CRC32 (xor génération, pour ignorer les restes d'une génération précédente)
+    private static final int FRAME = 8;
+    // Heure, sens, type, place
+    private static final int FIXED_PAYLOAD = 14;
+    private static final int MAX_VEHICLE_BYTES = 255;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    private final CRC32 crc = new CRC32();
+    private final LongAdder fsyncs = new LongAdder();
+
+    // Protégés par this
+    private int generation;
+    private int checkpoint;
+    private int writePosition;
+    private int durablePosition;
+    private boolean flushing;
+
+    public GateJournal(Path file, int capacity) throws IOException {
+        if (capacity < HEADER + FRAME + FIXED_PAYLOAD + MAX_VEHICLE_BYTES) {
+            throw new IllegalArgumentException("Journal capacity too small: " + capacity);
+        }
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.capacity = (int) Math.min(Integer.MAX_VALUE, Math.max(capacity, channel.size()));
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, this.capacity);
+        int magic = buffer.getInt(0);
+        if (magic == 0) {
+            generation = 1;
+            writeHeader(HEADER);
+            buffer.force();
+        } else if (magic != MAGIC) {
+            channel.close();
+            throw new IOException("Not a gate journal: " + file);
+        }
+        generation = buffer.getInt(GENERATION_OFFSET);
+        checkpoint = (int) buffer.getLong(CHECKPOINT_OFFSET);
+        if (checkpoint < HEADER || checkpoint > this.capacity) {
+            channel.close();
+            throw new IOException("Corrupted gate journal checkpoint: " + file);
+        }
+        int position = checkpoint;
+        int length;
+        while ((length = validRecordLength(position)) > 0) {
+            position += FRAME + length;
+        }
+        writePosition = position;
+        durablePosition = position;
+        logger.info("Gate journal {} opened, {} bytes to apply", file, position - checkpoint);
+    }
+
+    // Rend l'événement durable avant de rendre la main ; IOException si le journal est plein ou n'a pas pu être écrit.
+    public void append(GateEvent event) throws IOException {
+        byte[] vehicle = event.getVehicleRegNumber().getBytes(StandardCharsets.UTF_8);
+        if (vehicle.length > MAX_VEHICLE_BYTES) {
+            throw new IllegalArgumentException("Vehicle registration number too long");
+        }
+        int length = FIXED_PAYLOAD + vehicle.length;
+        int end;
+        synchronized (this) {
+            if (writePosition + FRAME + length > capacity) {
+                if (checkpoint != writePosition) {
+                    throw new IOException("Gate journal full, " + (writePosition - checkpoint) + " bytes not applied");
+                }
+                restart();
+            }
+            int payload = writePosition + FRAME;
+            buffer.putLong(payload, event.getTime());
+            buffer.put(payload + 8, (byte) event.getDirection().ordinal());
+            buffer.put(payload + 9, (byte) (event.getParkingType() == null ? -1 : event.getParkingType().ordinal()));
+            buffer.putInt(payload + 10, event.getParkingNumber());
+            for (int i = 0; i < vehicle.length; i++) {
+                buffer.put(payload + FIXED_PAYLOAD + i, vehicle[i]);
+            }
+            buffer.putInt(writePosition + 4, checksum(payload, length));
+            buffer.putInt(writePosition, length);
+            writePosition += FRAME + length;
+            end = writePosition;
+        }
+        sync(end);
+    }
+
+    // Group commit : un seul appelant force le fichier pour toutes les écritures en attente, les autres attendent son résultat.
+    private void sync(int position) throws IOException {
+        int target;
+        int flushGeneration;
+        synchronized (this) {
+            while (flushing && durablePosition < position) {
+                try {
+                    wait();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while syncing gate journal");
+                }
+            }
+            if (durablePosition >= position) {
+                return;
+            }
+            flushing = true;
+            target = writePosition;
+            flushGeneration = generation;
+        }
+        boolean synced = false;
+        try {
+            buffer.force();
+            fsyncs.increment();
+            synced = true;
+        } finally {
+            synchronized (this) {
+                flushing = false;
+                if (synced && flushGeneration == generation) {
+                    durablePosition = Math.max(durablePosition, target);
+                }
+                notifyAll();
+            }
+        }
+    }
+
+    // Événements durables pas encore appliqués, dans l'ordre, au plus max.
+    public List<Entry> read(int max) {
+        int position;
+        int end;
+        synchronized (this) {
+            position = checkpoint;
+            end = durablePosition;
+        }
+        List<Entry> entries = new ArrayList<>(Math.min(max, 1024));
+        while (position < end && entries.size() < max) {
+            int length = buffer.getInt(position);
+            int payload = position + FRAME;
+            byte[] vehicle = new byte[length - FIXED_PAYLOAD];
+            for (int i = 0; i < vehicle.length; i++) {
+                vehicle[i] = buffer.get(payload + FIXED_PAYLOAD + i);
+            }
+            byte type = buffer.get(payload + 9);
+            GateEvent event = new GateEvent(buffer.getLong(payload), GateEvent.Direction.values()[buffer.get(payload + 8)],
+                    new String(vehicle, StandardCharsets.UTF_8), type < 0 ? null : ParkingType.fromOrdinal(type), buffer.getInt(payload + 10));
+            position = payload + length;
+            entries.add(new Entry(event, position));
+        }
+        return entries;
+    }
+
+    // Attend qu'un événement durable soit à appliquer, au plus timeoutMillis.
+    public synchronized boolean awaitEntries(long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        long remaining = timeoutMillis;
+        while (durablePosition == checkpoint && remaining > 0) {
+            wait(remaining);
+            remaining = deadline - System.currentTimeMillis();
+        }
+        return durablePosition > checkpoint;
+    }
+
+    // Les événements jusqu'à position sont en base : le point de reprise est rendu durable.
+    public void checkpoint(int position) {
+        synchronized (this) {
+            if (position <= checkpoint || position > durablePosition) {
+                return;
+            }
+            checkpoint = position;
+            if (checkpoint == writePosition && writePosition > capacity / 2) {
+                restart();
+            } else {
+                buffer.putLong(CHECKPOINT_OFFSET, checkpoint);
+            }
+        }
+        buffer.force();
+        fsyncs.increment();
+    }
+
+    // Tout est appliqué : reprise au début du fichier, les anciens enregistrements ne sont plus valides pour la nouvelle génération.
+    private void restart() {
+        generation++;
+        checkpoint = HEADER;
+        writePosition = HEADER;
+        durablePosition = HEADER;
+        writeHeader(HEADER);
+    }
+
+    private void writeHeader(int checkpoint) {
+        buffer.putInt(GENERATION_OFFSET, generation);
+        buffer.putLong(CHECKPOINT_OFFSET, checkpoint);
+        buffer.putInt(0, MAGIC);
+    }
+
+    private int validRecordLength(int position) {
+        if (position + FRAME + FIXED_PAYLOAD > capacity) {
+            return 0;
+        }
+        int length = buffer.getInt(position);
+        if (length < FIXED_PAYLOAD || length > FIXED_PAYLOAD + MAX_VEHICLE_BYTES || position + FRAME + length > capacity) {
+            return 0;
+        }
+        if (buffer.getInt(position + 4) != checksum(position + FRAME, length)) {
+            logger.warn("Gate journal ends with an incomplete record at {}", position);
+            return 0;
+        }
+        return length;
+    }
+
+    private int checksum(int payload, int length) {
+        ByteBuffer record = buffer.duplicate();
+        record.limit(payload + length).position(payload);
+        crc.reset();
+        crc.update(record);
+        return (int) crc.getValue() ^ generation;
+    }
+
+    // Heure du plus ancien passage pas encore appliqué en base, Long.MAX_VALUE si tout est appliqué.
+    // Les bornes journalisent dans l'ordre d'arrivée : c'est le premier après le point de reprise.
+    public synchronized long getOldestPendingTime() {
+        return checkpoint == writePosition ? Long.MAX_VALUE : buffer.getLong(checkpoint + FRAME);
+    }
+
+    // Octets journalisés pas encore appliqués en base
+    public synchronized int getBacklog() {
+        return writePosition - checkpoint;
+    }
+
+    public long getFsyncs() {
+        return fsyncs.sum();
+    }
+
+    // Le fichier reste projeté jusqu'au passage du GC (pas de démappage explicite en Java 8).
+    @Override
+    public void close() throws IOException {
+        buffer.force();
+        channel.close();
+    }
+
+    public static final class Entry {
+        private final GateEvent event;
+        private final int end;
+
+        private Entry(GateEvent event, int end) {
+            this.event = event;
+            this.end = end;
+        }
+
+        public GateEvent getEvent() {
+            return event;
+        }
+
+        // Position à passer à checkpoint une fois l'événement appliqué
+        public int getEnd() {
+            return end;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.metrics.MetricsRegistry;
+
+import java.util.Collection;
+
+// Véhicules actuellement garés (immatriculation -> ticket ouvert), chargé au démarrage depuis les tickets sans heure de sortie
+// puis tenu à jour par TicketDAO à chaque entrée et sortie : la sortie retrouve le ticket sans lecture en base.
+// Stocké hors du tas dans CompactParkingState, un enregistrement par place : la taille est bornée par le plus grand numéro
+// de place du site. Une entrée périmée (ticket clôturé par un autre processus) est détectée à la clôture, retirée,
+// et la sortie repasse par la base.
+public class OpenTicketIndex {
+
+    public static final String ENABLED = "parkit.openTicketIndex.enabled";
+
+    public static final String SIZE = "OpenTicketIndex.size";
+    public static final String BYTES = "OpenTicketIndex.bytes";
+
+    // Un OpenTicket par thread (une session de borne ou un worker de rejeu) : get, et donc la sortie, n'allouent rien
+    private static final ThreadLocal<OpenTicket> HOLDERS = ThreadLocal.withInitial(OpenTicket::new);
+
+    private final CompactParkingState state;
+
+    // maxParkingNumber : plus grand numéro de place du site
+    public OpenTicketIndex(int maxParkingNumber, MetricsRegistry metricsRegistry) {
+        this.state = new CompactParkingState(maxParkingNumber);
+        metricsRegistry.gauge(SIZE, this::size);
+        metricsRegistry.gauge(BYTES, this::getEstimatedBytes);
+    }
+
+    // Copie le ticket ouvert du véhicule dans into, sans allocation ; false s'il n'est pas connu (la base reste alors la référence).
+    public boolean read(String vehicleRegNumber, OpenTicket into) {
+        return state.read(vehicleRegNumber, into);
+    }
+
+    // Ticket ouvert connu pour ce véhicule, null sinon. L'objet rendu appartient au thread appelant :
+    // sa prochaine lecture le réécrit, il ne doit pas être conservé ni passé à un autre thread.
+    public OpenTicket get(String vehicleRegNumber) {
+        OpenTicket openTicket = HOLDERS.get();
+        return read(vehicleRegNumber, openTicket) ? openTicket : null;
+    }
+
+    // false si la place est hors de l'index ou l'immatriculation trop longue : la sortie du véhicule passera par la base.
+    public boolean put(String vehicleRegNumber, int ticketId, int parkingNumber, ParkingType parkingType, long inTime,
+                       int visitCount) {
+        return state.occupy(parkingNumber, parkingType, vehicleRegNumber, ticketId, inTime, visitCount);
+    }
+
+    public boolean put(String vehicleRegNumber, OpenTicket openTicket) {
+        return put(vehicleRegNumber, openTicket.getTicketId(), openTicket.getParkingNumber(), openTicket.getParkingType(),
+                openTicket.getInTime(), openTicket.getVisitCount());
+    }
+
+    // Retire le véhicule seulement s'il pointe encore sur ce ticket (une nouvelle entrée a pu le remplacer).
+    public void remove(String vehicleRegNumber, int ticketId) {
+        state.release(vehicleRegNumber, ticketId);
+    }
+
+    public void remove(String vehicleRegNumber) {
+        state.release(vehicleRegNumber, -1);
+    }
+
+    // Remplace le contenu par les tickets ouverts lus en base ; retourne le nombre de véhicules indexés.
+    public int reload(Collection<OpenTicket> loaded) {
+        state.clear();
+        int indexed = 0;
+        for (OpenTicket openTicket : loaded) {
+            if (put(openTicket.getVehicleRegNumber(), openTicket)) {
+                indexed++;
+            }
+        }
+        return indexed;
+    }
+
+    public int size() {
+        return state.size();
+    }
+
+    public int getCapacity() {
+        return state.getMaxParkingNumber();
+    }
+
+    // Mémoire hors tas de l'index, réservée à la construction
+    public long getEstimatedBytes() {
+        return state.getAllocatedBytes();
+    }
+
+    // Ticket ouvert d'un véhicule ; réutilisable d'une lecture à l'autre (read le remplit).
+    public static final class OpenTicket {
+        private String vehicleRegNumber;
+        private int ticketId;
+        private int parkingNumber;
+        private ParkingType parkingType;
+        private long inTime;
+        // Passages du véhicule sur ce site, ce ticket compris
+        private int visitCount;
+
+        public OpenTicket() {
+        }
+
+        public OpenTicket(String vehicleRegNumber, int ticketId, int parkingNumber, ParkingType parkingType, long inTime,
+                          int visitCount) {
+            set(vehicleRegNumber, parkingNumber, parkingType, ticketId, inTime, visitCount);
+        }
+
+        void set(String vehicleRegNumber, int parkingNumber, ParkingType parkingType, int ticketId, long inTime, int visitCount) {
+            this.vehicleRegNumber = vehicleRegNumber;
+            this.ticketId = ticketId;
+            this.parkingNumber = parkingNumber;
+            this.parkingType = parkingType;
+            this.inTime = inTime;
+            this.visitCount = visitCount;
+        }
+
+        public String getVehicleRegNumber() {
+            return vehicleRegNumber;
+        }
+
+        public int getTicketId() {
+            return ticketId;
+        }
+
+        public int getParkingNumber() {
+            return parkingNumber;
+        }
+
+        public ParkingType getParkingType() {
+            return parkingType;
+        }
+
+        public long getInTime() {
+            return inTime;
+        }
+
+        public int getVisitCount() {
+            return visitCount;
+        }
+    }
+}
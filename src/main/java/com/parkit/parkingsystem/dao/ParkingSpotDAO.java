@@ -3,6 +3,8 @@ package com.parkit.parkingsystem.dao;
 import com.parkit.parkingsystem.config.DataBaseConfig;
 import com.parkit.parkingsystem.constants.DBConstants;
 import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.metrics.MetricsRegistry;
+import com.parkit.parkingsystem.metrics.Timer;
 import com.parkit.parkingsystem.model.ParkingSpot;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -10,50 +12,256 @@ import org.apache.logging.log4j.Logger;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.ToIntFunction;
 
-public class ParkingSpotDAO {
+public class ParkingSpotDAO implements ParkingSpotRepository {
     private static final Logger logger = LogManager.getLogger("ParkingSpotDAO");
 
-    public DataBaseConfig dataBaseConfig = new DataBaseConfig();
+    private static final int PING_TIMEOUT_SECONDS = 1;
 
+    public DataBaseConfig dataBaseConfig = DataBaseConfig.configured();
+
+    // Site dont dataBaseConfig est la base : renseigné sur les places lues, vérifié sur celles écrites.
+    public String lotId = DBConstants.DEFAULT_LOT;
+
+    // Index optionnel des places libres : évite la lecture en base à chaque arrivée.
+    public ParkingSpotIndex parkingSpotIndex;
+
+    // Prévenu des places mises à jour (compteurs d'occupation), null si désactivé.
+    public ParkingSpotListener parkingSpotListener;
+
+    // Places libres par type tenues en mémoire par les compteurs d'occupation, null si désactivés.
+    public ToIntFunction<ParkingType> freeSpotCounter;
+
+    public MetricsRegistry metricsRegistry = MetricsRegistry.shared();
+
+    @Override
     public int getNextAvailableSlot(ParkingType parkingType){
+        Timer timer = metricsRegistry.timer("ParkingSpotDAO.getNextAvailableSlot");
+        long start = System.nanoTime();
+        if (parkingSpotIndex != null) {
+            int result = parkingSpotIndex.peekNextAvailableSlot(parkingType);
+            timer.record(start);
+            return result;
+        }
         Connection con = null;
+        PreparedStatement ps = null;
+        ResultSet rs = null;
         int result=-1;
         try {
             con = dataBaseConfig.getConnection();
-            PreparedStatement ps = con.prepareStatement(DBConstants.GET_NEXT_PARKING_SPOT);
+            ps = con.prepareStatement(DBConstants.GET_NEXT_PARKING_SPOT);
             ps.setString(1, parkingType.toString());
-            ResultSet rs = ps.executeQuery();
+            rs = ps.executeQuery();
             if(rs.next()){
                 result = rs.getInt(1);;
             }
-            dataBaseConfig.closeResultSet(rs);
-            dataBaseConfig.closePreparedStatement(ps);
         }catch (Exception ex){
             logger.error("Error fetching next available slot",ex);
+            timer.error();
         }finally {
+            dataBaseConfig.closeResultSet(rs);
+            dataBaseConfig.closePreparedStatement(ps);
             dataBaseConfig.closeConnection(con);
+            timer.record(start);
         }
         return result;
     }
 
+    @Override
     public boolean updateParking(ParkingSpot parkingSpot){
         //update the availability fo that parking slot
+        Timer timer = metricsRegistry.timer("ParkingSpotDAO.updateParking");
+        long start = System.nanoTime();
         Connection con = null;
+        PreparedStatement ps = null;
         try {
+            checkLot(parkingSpot);
             con = dataBaseConfig.getConnection();
-            PreparedStatement ps = con.prepareStatement(DBConstants.UPDATE_PARKING_SPOT);
+            ps = con.prepareStatement(DBConstants.UPDATE_PARKING_SPOT);
             ps.setBoolean(1, parkingSpot.isAvailable());
             ps.setInt(2, parkingSpot.getId());
             int updateRowCount = ps.executeUpdate();
-            dataBaseConfig.closePreparedStatement(ps);
+            if (updateRowCount == 1 && parkingSpot.getParkingType() != null) {
+                if (parkingSpotIndex != null) {
+                    parkingSpotIndex.update(parkingSpot);
+                }
+                if (parkingSpotListener != null) {
+                    parkingSpotListener.onParkingSpotChange(parkingSpot.getParkingType(), parkingSpot.getId(), parkingSpot.isAvailable());
+                }
+            }
             return (updateRowCount == 1);
         }catch (Exception ex){
             logger.error("Error updating parking info",ex);
+            timer.error();
             return false;
         }finally {
+            dataBaseConfig.closePreparedStatement(ps);
+            dataBaseConfig.closeConnection(con);
+            timer.record(start);
+        }
+    }
+
+    // Mise à jour par lots dans une seule transaction. Retourne true si chaque place a été mise à jour ;
+    // les places trouvées sont répercutées dans l'index même si d'autres ne l'ont pas été.
+    @Override
+    public boolean updateParkings(Collection<ParkingSpot> parkingSpots){
+        Timer timer = metricsRegistry.timer("ParkingSpotDAO.updateParkings");
+        long start = System.nanoTime();
+        Connection con = null;
+        PreparedStatement ps = null;
+        try {
+            parkingSpots.forEach(this::checkLot);
+            con = dataBaseConfig.getConnection();
+            con.setAutoCommit(false);
+            ps = con.prepareStatement(DBConstants.UPDATE_PARKING_SPOT);
+            for (ParkingSpot parkingSpot : parkingSpots) {
+                ps.setBoolean(1, parkingSpot.isAvailable());
+                ps.setInt(2, parkingSpot.getId());
+                ps.addBatch();
+            }
+            int[] updateRowCounts = ps.executeBatch();
+            con.commit();
+            boolean allUpdated = true;
+            int i = 0;
+            for (ParkingSpot parkingSpot : parkingSpots) {
+                // Un lot réécrit par le driver peut ne pas détailler le nombre de lignes par requête
+                boolean updated = updateRowCounts[i] == 1 || updateRowCounts[i] == Statement.SUCCESS_NO_INFO;
+                if (updated && parkingSpot.getParkingType() != null) {
+                    if (parkingSpotIndex != null) {
+                        parkingSpotIndex.update(parkingSpot);
+                    }
+                    if (parkingSpotListener != null) {
+                        parkingSpotListener.onParkingSpotChange(parkingSpot.getParkingType(), parkingSpot.getId(),
+                                parkingSpot.isAvailable());
+                    }
+                }
+                allUpdated &= updated;
+                i++;
+            }
+            return allUpdated;
+        }catch (Exception ex){
+            logger.error("Error updating parking batch",ex);
+            timer.error();
+            dataBaseConfig.rollback(con);
+            return false;
+        }finally {
+            dataBaseConfig.closePreparedStatement(ps);
+            dataBaseConfig.closeConnection(con);
+            timer.record(start);
+        }
+    }
+
+    @Override
+    public List<ParkingSpot> getParkingSpots(){
+        Timer timer = metricsRegistry.timer("ParkingSpotDAO.getParkingSpots");
+        long start = System.nanoTime();
+        Connection con = null;
+        PreparedStatement ps = null;
+        ResultSet rs = null;
+        try {
+            con = dataBaseConfig.getConnection();
+            ps = con.prepareStatement(DBConstants.GET_PARKING_SPOTS);
+            rs = ps.executeQuery();
+            List<ParkingSpot> parkingSpots = new ArrayList<>();
+            while(rs.next()){
+                parkingSpots.add(new ParkingSpot(lotId, rs.getInt(1), ParkingType.fromName(rs.getString(2)), rs.getBoolean(3)));
+            }
+            return parkingSpots;
+        }catch (Exception ex){
+            logger.error("Error fetching parking spots",ex);
+            timer.error();
+            return null;
+        }finally {
+            dataBaseConfig.closeResultSet(rs);
+            dataBaseConfig.closePreparedStatement(ps);
             dataBaseConfig.closeConnection(con);
+            timer.record(start);
         }
     }
 
+    // Places libres pour ce type : lues en mémoire si l'occupation ou l'index est actif, sinon comptées en base. -1 en cas d'erreur.
+    @Override
+    public int getFreeSpotCount(ParkingType parkingType){
+        if (freeSpotCounter != null) {
+            return freeSpotCounter.applyAsInt(parkingType);
+        }
+        if (parkingSpotIndex != null) {
+            return parkingSpotIndex.getFreeCount(parkingType);
+        }
+        Connection con = null;
+        PreparedStatement ps = null;
+        ResultSet rs = null;
+        try {
+            con = dataBaseConfig.getConnection();
+            ps = con.prepareStatement(DBConstants.COUNT_FREE_PARKING_SPOTS);
+            ps.setString(1, parkingType.toString());
+            rs = ps.executeQuery();
+            return rs.next() ? rs.getInt(1) : 0;
+        }catch (Exception ex){
+            logger.error("Error counting free parking spots",ex);
+            return -1;
+        }finally {
+            dataBaseConfig.closeResultSet(rs);
+            dataBaseConfig.closePreparedStatement(ps);
+            dataBaseConfig.closeConnection(con);
+        }
+    }
+
+    @Override
+    public boolean isAvailable(){
+        Connection con = null;
+        PreparedStatement ps = null;
+        ResultSet rs = null;
+        try {
+            con = dataBaseConfig.getConnection();
+            ps = con.prepareStatement(DBConstants.PING);
+            ps.setQueryTimeout(PING_TIMEOUT_SECONDS);
+            rs = ps.executeQuery();
+            return rs.next();
+        }catch (Exception ex){
+            logger.warn("Database unavailable: {}", ex.getMessage());
+            return false;
+        }finally {
+            dataBaseConfig.closeResultSet(rs);
+            dataBaseConfig.closePreparedStatement(ps);
+            dataBaseConfig.closeConnection(con);
+        }
+    }
+
+    // Jauges ParkingSpotDAO.freeSpots.<type>, évaluées à chaque collecte des métriques
+    public void registerFreeSpotGauges(){
+        for (ParkingType parkingType : ParkingType.values()) {
+            metricsRegistry.gauge("ParkingSpotDAO.freeSpots." + parkingType, () -> getFreeSpotCount(parkingType));
+        }
+    }
+
+    // Chargement au démarrage puis passe de réconciliation périodique de l'index avec la table parking.
+    // Les places écrites pendant la lecture sont laissées telles quelles (voir ParkingSpotIndex.reconcile).
+    public boolean reconcileParkingSpotIndex(){
+        if (parkingSpotIndex == null) {
+            return false;
+        }
+        long version = parkingSpotIndex.getVersion();
+        List<ParkingSpot> parkingSpots = getParkingSpots();
+        if (parkingSpots == null) {
+            return false;
+        }
+        int corrections = parkingSpotIndex.reconcile(parkingSpots, version);
+        if (corrections > 0) {
+            logger.info("Parking spot index reconciled, {} spot(s) corrected", corrections);
+        }
+        return true;
+    }
+
+    // Une place d'un autre site irait dans la mauvaise base
+    private void checkLot(ParkingSpot parkingSpot) {
+        if (!lotId.equals(parkingSpot.getLotId())) {
+            throw new IllegalArgumentException("Parking spot of lot " + parkingSpot.getLotId() + " sent to lot " + lotId);
+        }
+    }
 }
@@ -0,0 +1,155 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.ParkingSpot;
+
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Index en mémoire des places libres par type, tenu à jour en écriture par les DAO (write-through).
+// pollFirst() sur une skip list est sans verrou et en O(log n) : deux bornes ne reçoivent jamais la même place.
+// Chaque écriture date la place (version) : la réconciliation ne touche pas une place modifiée depuis sa lecture en base,
+// ni une place réservée dont l'occupation n'est pas encore écrite.
+public class ParkingSpotIndex {
+
+    public static final String ENABLED = "parkit.spotIndex.enabled";
+    public static final String RECONCILE_PERIOD_MS = "parkit.spotIndex.reconcileMillis";
+
+    private final Map<ParkingType, ConcurrentSkipListSet<Integer>> freeSpots = new EnumMap<>(ParkingType.class);
+    private final Map<ParkingType, AtomicInteger> freeCounts = new EnumMap<>(ParkingType.class);
+    private final AtomicLong version = new AtomicLong();
+    // Version de la dernière écriture de chaque place
+    private final ConcurrentMap<Integer, Long> changedAt = new ConcurrentHashMap<>();
+    // Places rendues par claimNextAvailableSlot, jusqu'à markOccupied (occupation écrite) ou markAvailable (abandon)
+    private final Set<Integer> claimed = ConcurrentHashMap.newKeySet();
+    // Partagé par les écritures, exclusif pendant une réconciliation
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public ParkingSpotIndex() {
+        for (ParkingType parkingType : ParkingType.values()) {
+            freeSpots.put(parkingType, new ConcurrentSkipListSet<>());
+            freeCounts.put(parkingType, new AtomicInteger());
+        }
+    }
+
+    // Plus petit numéro libre sans le réserver, -1 si aucun.
+    public int peekNextAvailableSlot(ParkingType parkingType) {
+        Integer first = freeSpots.get(parkingType).ceiling(Integer.MIN_VALUE);
+        return first == null ? -1 : first;
+    }
+
+    // Retire atomiquement le plus petit numéro libre, -1 si aucun. L'appelant le confirme par markOccupied ou le rend par markAvailable.
+    public int claimNextAvailableSlot(ParkingType parkingType) {
+        lock.readLock().lock();
+        try {
+            Integer first = freeSpots.get(parkingType).pollFirst();
+            if (first == null) {
+                return -1;
+            }
+            freeCounts.get(parkingType).decrementAndGet();
+            claimed.add(first);
+            changedAt.put(first, version.incrementAndGet());
+            return first;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Retire cette place comme claimNextAvailableSlot (place attribuée par une borne avant un redémarrage) ;
+    // false si elle n'était pas libre dans l'index.
+    public boolean claim(ParkingType parkingType, int parkingNumber) {
+        lock.readLock().lock();
+        try {
+            claimed.add(parkingNumber);
+            changedAt.put(parkingNumber, version.incrementAndGet());
+            if (!freeSpots.get(parkingType).remove(parkingNumber)) {
+                return false;
+            }
+            freeCounts.get(parkingType).decrementAndGet();
+            return true;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void update(ParkingSpot parkingSpot) {
+        if (parkingSpot.isAvailable()) {
+            markAvailable(parkingSpot.getParkingType(), parkingSpot.getId());
+        } else {
+            markOccupied(parkingSpot.getParkingType(), parkingSpot.getId());
+        }
+    }
+
+    public void markAvailable(ParkingType parkingType, int parkingNumber) {
+        lock.readLock().lock();
+        try {
+            changedAt.put(parkingNumber, version.incrementAndGet());
+            claimed.remove(parkingNumber);
+            setAvailable(parkingType, parkingNumber, true);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void markOccupied(ParkingType parkingType, int parkingNumber) {
+        lock.readLock().lock();
+        try {
+            changedAt.put(parkingNumber, version.incrementAndGet());
+            claimed.remove(parkingNumber);
+            setAvailable(parkingType, parkingNumber, false);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void setAvailable(ParkingType parkingType, int parkingNumber, boolean available) {
+        if (available ? freeSpots.get(parkingType).add(parkingNumber) : freeSpots.get(parkingType).remove(parkingNumber)) {
+            freeCounts.get(parkingType).addAndGet(available ? 1 : -1);
+        }
+    }
+
+    public int getFreeCount(ParkingType parkingType) {
+        return freeCounts.get(parkingType).get();
+    }
+
+    // Version courante, à relever avant de lire l'état en base pour reconcile(parkingSpots, version).
+    public long getVersion() {
+        return version.get();
+    }
+
+    // Aligne l'index sur un état de la base lu sans écriture concurrente (chargement au démarrage).
+    public int reconcile(Collection<ParkingSpot> parkingSpots) {
+        return reconcile(parkingSpots, getVersion());
+    }
+
+    // Aligne l'index sur l'état lu en base après getVersion() == version et retourne le nombre de places corrigées.
+    // Une place écrite depuis, ou réservée et pas encore occupée en base, est ignorée : la lecture ne voit pas encore cette écriture.
+    public int reconcile(Collection<ParkingSpot> parkingSpots, long version) {
+        int corrections = 0;
+        lock.writeLock().lock();
+        try {
+            for (ParkingSpot parkingSpot : parkingSpots) {
+                if (claimed.contains(parkingSpot.getId()) || changedAt.getOrDefault(parkingSpot.getId(), 0L) > version) {
+                    continue;
+                }
+                ConcurrentSkipListSet<Integer> spots = freeSpots.get(parkingSpot.getParkingType());
+                if (parkingSpot.isAvailable() != spots.contains(parkingSpot.getId())) {
+                    setAvailable(parkingSpot.getParkingType(), parkingSpot.getId(), parkingSpot.isAvailable());
+                    corrections++;
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return corrections;
+    }
+}
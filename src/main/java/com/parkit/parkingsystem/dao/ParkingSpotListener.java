@@ -0,0 +1,9 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+
+// Prévenu par les DAO de chaque changement d'état d'une place validé en base (compteurs d'occupation).
+public interface ParkingSpotListener {
+
+    void onParkingSpotChange(ParkingType parkingType, int parkingNumber, boolean available);
+}
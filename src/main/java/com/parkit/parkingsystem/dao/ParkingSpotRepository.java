@@ -0,0 +1,26 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.ParkingSpot;
+
+import java.util.Collection;
+import java.util.List;
+
+// Accès aux places de parking utilisé par les services, indépendant du stockage.
+// Même contrat d'erreur que ParkingSpotDAO : les échecs sont journalisés et signalés par -1, false ou null.
+public interface ParkingSpotRepository {
+
+    // Plus petit numéro libre pour ce type, -1 si aucun.
+    int getNextAvailableSlot(ParkingType parkingType);
+
+    boolean updateParking(ParkingSpot parkingSpot);
+
+    boolean updateParkings(Collection<ParkingSpot> parkingSpots);
+
+    List<ParkingSpot> getParkingSpots();
+
+    int getFreeSpotCount(ParkingType parkingType);
+
+    // La base répond : sonde peu coûteuse pour distinguer un refus d'une panne.
+    boolean isAvailable();
+}
@@ -0,0 +1,212 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.DBConstants;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Répartition multi-sites : chaque parking (site) a sa propre base, donc son propre pool et ses propres tables parking/ticket,
+// et les DAO d'un site n'interrogent que celle-ci. Les numéros de place et identifiants de ticket restent locaux au site.
+// Les requêtes transverses (passages d'un véhicule, rapports) interrogent les sites en parallèle puis fusionnent les résultats.
+// Chaque site a ses propres threads de requête : un site lent ou bloqué n'occupe que les siens, et les bornes n'attendent
+// pas plus de parkit.lots.timeoutMillis les passages des autres sites.
+public class ShardRouter implements Closeable {
+
+    private static final Logger logger = LogManager.getLogger("ShardRouter");
+
+    // Sites configurés, séparés par des virgules ; absent : un seul site sur la base de parkit.db.backend
+    public static final String LOTS = "parkit.lots";
+    // Base de chaque site : parkit.lot.<site>.url
+    public static final String LOT_URL = "parkit.lot.%s.url";
+    // Compte MySQL de chaque site : parkit.lot.<site>.user et parkit.lot.<site>.password (root/rootroot par défaut)
+    public static final String LOT_USER = "parkit.lot.%s.user";
+    public static final String LOT_PASSWORD = "parkit.lot.%s.password";
+    // Site servi par ce processus (bornes, rejeu, journal) ; le premier site configuré par défaut
+    public static final String LOT = "parkit.lot";
+    // Attente maximale des autres sites pour la remise client régulier, à l'entrée et à la sortie
+    public static final String LOT_TIMEOUT_MS = "parkit.lots.timeoutMillis";
+
+    private static final int FAN_OUT_THREADS_PER_LOT = 4;
+
+    private final Map<String, DataBaseConfig> dataBaseConfigs;
+    private final Map<String, ParkingSpotDAO> parkingSpotDAOs = new LinkedHashMap<>();
+    private final Map<String, TicketDAO> ticketDAOs = new LinkedHashMap<>();
+    private final Map<String, ExecutorService> fanOutExecutors = new LinkedHashMap<>();
+    private final long gateTimeoutMillis = Long.getLong(LOT_TIMEOUT_MS, 500L);
+
+    public ShardRouter(Map<String, DataBaseConfig> dataBaseConfigs) {
+        if (dataBaseConfigs.isEmpty()) {
+            throw new IllegalArgumentException("At least one lot is required");
+        }
+        this.dataBaseConfigs = Collections.unmodifiableMap(new LinkedHashMap<>(dataBaseConfigs));
+        for (Map.Entry<String, DataBaseConfig> lot : this.dataBaseConfigs.entrySet()) {
+            ParkingSpotDAO parkingSpotDAO = new ParkingSpotDAO();
+            parkingSpotDAO.dataBaseConfig = lot.getValue();
+            parkingSpotDAO.lotId = lot.getKey();
+            parkingSpotDAOs.put(lot.getKey(), parkingSpotDAO);
+            TicketDAO ticketDAO = new TicketDAO(lot.getValue());
+            ticketDAO.lotId = lot.getKey();
+            if (this.dataBaseConfigs.size() > 1) {
+                ticketDAO.shardRouter = this;
+            }
+            ticketDAOs.put(lot.getKey(), ticketDAO);
+            AtomicInteger threadCount = new AtomicInteger();
+            fanOutExecutors.put(lot.getKey(), Executors.newFixedThreadPool(FAN_OUT_THREADS_PER_LOT, r -> {
+                Thread thread = new Thread(r, "shard-fan-out-" + lot.getKey() + "-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }));
+        }
+    }
+
+    public static ShardRouter configured() {
+        Map<String, DataBaseConfig> dataBaseConfigs = new LinkedHashMap<>();
+        String lots = System.getProperty(LOTS);
+        if (lots == null) {
+            dataBaseConfigs.put(DBConstants.DEFAULT_LOT, DataBaseConfig.configured());
+        } else {
+            for (String lot : lots.split(",")) {
+                lot = lot.trim();
+                String url = System.getProperty(String.format(LOT_URL, lot));
+                if (url == null) {
+                    throw new IllegalArgumentException("No database URL for lot " + lot);
+                }
+                dataBaseConfigs.put(lot, DataBaseConfig.forUrl(url, System.getProperty(String.format(LOT_USER, lot)),
+                        System.getProperty(String.format(LOT_PASSWORD, lot))));
+            }
+        }
+        return new ShardRouter(dataBaseConfigs);
+    }
+
+    public Set<String> getLots() {
+        return dataBaseConfigs.keySet();
+    }
+
+    public String getLocalLot() {
+        String lot = System.getProperty(LOT, getLots().iterator().next());
+        check(lot);
+        return lot;
+    }
+
+    public DataBaseConfig getDataBaseConfig(String lot) {
+        check(lot);
+        return dataBaseConfigs.get(lot);
+    }
+
+    public ParkingSpotDAO getParkingSpotDAO(String lot) {
+        check(lot);
+        return parkingSpotDAOs.get(lot);
+    }
+
+    public TicketDAO getTicketDAO(String lot) {
+        check(lot);
+        return ticketDAOs.get(lot);
+    }
+
+    // Exécute la requête sur chaque site en parallèle ; résultats dans l'ordre des sites.
+    // ExecutionException avec la première erreur si un site a échoué.
+    public <T> Map<String, T> fanOut(LotQuery<T> query) throws InterruptedException, ExecutionException {
+        return fanOut(getLots(), query);
+    }
+
+    private <T> Map<String, T> fanOut(Collection<String> lots, LotQuery<T> query) throws InterruptedException, ExecutionException {
+        Map<String, Future<T>> futures = submit(lots, query);
+        Map<String, T> results = new LinkedHashMap<>();
+        try {
+            for (Map.Entry<String, Future<T>> future : futures.entrySet()) {
+                results.put(future.getKey(), future.getValue().get());
+            }
+        } finally {
+            futures.values().forEach(future -> future.cancel(true));
+        }
+        return results;
+    }
+
+    private <T> Map<String, Future<T>> submit(Collection<String> lots, LotQuery<T> query) {
+        Map<String, Future<T>> futures = new LinkedHashMap<>();
+        for (String lot : lots) {
+            futures.put(lot, fanOutExecutors.get(lot).submit(() -> query.query(lot)));
+        }
+        return futures;
+    }
+
+    // Passages du véhicule sur tous les sites ; -1 si un site n'a pas répondu.
+    public int countTicketByVehicleRegNumber(String vehicleRegNumber) {
+        return countTickets(getLots(), vehicleRegNumber, false);
+    }
+
+    // Passages sur les sites autres que lot, pour la remise client régulier. Un site en échec ou qui ne répond pas dans
+    // parkit.lots.timeoutMillis compte pour 0 : la remise est alors décidée sur les sites joignables plutôt que de
+    // bloquer l'entrée ou la sortie.
+    int countTicketsOutside(String lot, String vehicleRegNumber) {
+        List<String> otherLots = new ArrayList<>(getLots());
+        otherLots.remove(lot);
+        return countTickets(otherLots, vehicleRegNumber, true);
+    }
+
+    // Somme des passages des sites ; si partial, un site en échec ou hors délai est ignoré, sinon le résultat est -1.
+    private int countTickets(Collection<String> lots, String vehicleRegNumber, boolean partial) {
+        if (lots.isEmpty()) {
+            return 0;
+        }
+        Map<String, Future<Integer>> futures = submit(lots, lot -> ticketDAOs.get(lot).countTicketByVehicleRegNumber(vehicleRegNumber));
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(gateTimeoutMillis);
+        try {
+            int total = 0;
+            for (Map.Entry<String, Future<Integer>> future : futures.entrySet()) {
+                int count;
+                try {
+                    count = partial ? future.getValue().get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS) : future.getValue().get();
+                } catch (TimeoutException ex) {
+                    logger.warn("Lot {} did not count tickets of vehicle {} within {} ms", future.getKey(), vehicleRegNumber, gateTimeoutMillis);
+                    continue;
+                } catch (ExecutionException ex) {
+                    logger.error("Unable to count tickets of vehicle {} in lot {}", vehicleRegNumber, future.getKey(), ex);
+                    count = -1;
+                }
+                if (count >= 0) {
+                    total += count;
+                } else if (!partial) {
+                    return -1;
+                }
+            }
+            return total;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return partial ? 0 : -1;
+        } finally {
+            futures.values().forEach(future -> future.cancel(true));
+        }
+    }
+
+    private void check(String lot) {
+        if (!dataBaseConfigs.containsKey(lot)) {
+            throw new IllegalArgumentException("Unknown lot: " + lot);
+        }
+    }
+
+    @Override
+    public void close() {
+        fanOutExecutors.values().forEach(ExecutorService::shutdownNow);
+    }
+
+    public interface LotQuery<T> {
+        T query(String lot) throws Exception;
+    }
+}
@@ -0,0 +1,9 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+
+// Tarif appliqué par TicketDAO.exitVehicle à la clôture d'un ticket, fourni par l'appelant (FareCalculatorService).
+public interface TicketPricing {
+
+    double calculateFare(ParkingType parkingType, long inEpochMillis, long outEpochMillis, int visitCount, boolean discount);
+}
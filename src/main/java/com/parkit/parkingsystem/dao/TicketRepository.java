@@ -0,0 +1,56 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.model.TicketRecord;
+
+import java.util.Collection;
+import java.util.Date;
+
+// Accès aux tickets utilisé par les services, indépendant du stockage.
+// Même contrat d'erreur que TicketDAO : les échecs sont journalisés et signalés par false, null ou -1.
+public interface TicketRepository {
+
+    // fetchSize des parcours : flux ligne à ligne propre au stockage (DataBaseConfig.getStreamingFetchSize)
+    int STREAMING_FETCH_SIZE = 0;
+
+    boolean saveTicket(Ticket ticket);
+
+    int[] saveTickets(Collection<Ticket> tickets);
+
+    // Réserve une place et crée le ticket en une opération ; null si aucune place n'est libre.
+    Ticket enterVehicle(ParkingType parkingType, String vehicleRegNumber, Date inTime);
+
+    // Occupe cette place et crée le ticket en une opération (entrée journalisée) ; null si la place n'est plus libre.
+    Ticket enterVehicle(ParkingType parkingType, int parkingNumber, String vehicleRegNumber, Date inTime);
+
+    // Dernier ticket du véhicule, en valeur immuable ; null s'il n'en a pas.
+    TicketRecord getTicket(String vehicleRegNumber);
+
+    // Tarifie et clôt le ticket ouvert puis libère sa place en une opération ; null sans ticket ouvert.
+    TicketRecord exitVehicle(String vehicleRegNumber, Date outTime, TicketPricing ticketPricing);
+
+    // Ticket ouvert tarifié comme si le véhicule sortait à outTime, sans lire ni modifier la base ; null s'il n'est pas en mémoire.
+    TicketRecord priceOpenTicket(String vehicleRegNumber, Date outTime, TicketPricing ticketPricing);
+
+    boolean updateTicket(Ticket ticket);
+
+    boolean updateTickets(Collection<Ticket> tickets);
+
+    long scanTickets(int fetchSize, TicketScanHandler handler);
+
+    long scanTicketsClosedBetween(long afterMillis, long upToMillis, int fetchSize, TicketScanHandler handler);
+
+    boolean updateTicketPrices(int[] ids, double[] prices, int count);
+
+    int countTicketByVehicleRegNumber(String vehicleRegNumber);
+
+    // Déplace au plus limit tickets clôturés avant closedBeforeMillis vers l'archive ; nombre déplacé ou -1.
+    int archiveTickets(long closedBeforeMillis, int limit);
+
+    interface TicketScanHandler {
+        // outTime vaut -1 pour un ticket encore ouvert ; visitCount compte les passages du véhicule jusqu'à ce ticket inclus
+        void onTicket(int id, String vehicleRegNumber, ParkingType parkingType, long inTime, long outTime, double price,
+                      int visitCount) throws Exception;
+    }
+}
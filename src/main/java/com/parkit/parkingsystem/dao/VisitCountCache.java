@@ -0,0 +1,123 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.metrics.MetricsRegistry;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+// Cache LRU/TTL du nombre de tickets par immatriculation, pour décider de la remise client régulier sans COUNT(*).
+// Incrémenté à chaque ticket enregistré par ce processus ; le TTL borne l'écart avec les tickets créés ailleurs.
+public class VisitCountCache {
+
+    public static final String ENABLED = "parkit.visitCountCache.enabled";
+    public static final String MAX_SIZE = "parkit.visitCountCache.maxSize";
+    public static final String TTL_MS = "parkit.visitCountCache.ttlMillis";
+
+    public static final String HITS = "VisitCountCache.hits";
+    public static final String MISSES = "VisitCountCache.misses";
+    public static final String HIT_RATE = "VisitCountCache.hitRate";
+    public static final String SIZE = "VisitCountCache.size";
+
+    public static final int MISSING = -1;
+
+    private final int maxSize;
+    private final long ttlMillis;
+    private final LinkedHashMap<String, Entry> entries;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public VisitCountCache(int maxSize, long ttlMillis) {
+        this.maxSize = maxSize;
+        this.ttlMillis = ttlMillis;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > VisitCountCache.this.maxSize;
+            }
+        };
+    }
+
+    // Nombre de tickets connu pour ce véhicule, MISSING s'il est absent ou expiré.
+    public int get(String vehicleRegNumber) {
+        long now = System.currentTimeMillis();
+        synchronized (entries) {
+            Entry entry = entries.get(vehicleRegNumber);
+            if (entry != null && now - entry.loadedAt <= ttlMillis) {
+                hits.increment();
+                return entry.count;
+            }
+            if (entry != null) {
+                entries.remove(vehicleRegNumber);
+            }
+        }
+        misses.increment();
+        return MISSING;
+    }
+
+    public void put(String vehicleRegNumber, int count) {
+        synchronized (entries) {
+            entries.put(vehicleRegNumber, new Entry(count, System.currentTimeMillis()));
+        }
+    }
+
+    // Un nouveau ticket vient d'être enregistré ; sans valeur connue on laisse la prochaine lecture aller en base.
+    public void increment(String vehicleRegNumber) {
+        synchronized (entries) {
+            Entry entry = entries.get(vehicleRegNumber);
+            if (entry != null) {
+                entry.count++;
+            }
+        }
+    }
+
+    public void invalidate(String vehicleRegNumber) {
+        synchronized (entries) {
+            entries.remove(vehicleRegNumber);
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public double getHitRate() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    // Jauges VisitCountCache.*, évaluées à chaque collecte des métriques
+    public void registerGauges(MetricsRegistry metricsRegistry) {
+        metricsRegistry.gauge(HITS, this::getHits);
+        metricsRegistry.gauge(MISSES, this::getMisses);
+        metricsRegistry.gauge(HIT_RATE, this::getHitRate);
+        metricsRegistry.gauge(SIZE, this::size);
+    }
+
+    @Override
+    public String toString() {
+        return "size=" + size() + ", hits=" + getHits() + ", misses=" + getMisses()
+                + ", hitRate=" + String.format("%.3f", getHitRate());
+    }
+
+    private static final class Entry {
+        private int count;
+        private final long loadedAt;
+
+        Entry(int count, long loadedAt) {
+            this.count = count;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.parkit.parkingsystem.metrics;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+// Point d'accès HTTP local aux métriques : GET /metrics en texte, GET /metrics.json en JSON.
+// Un seul thread sert les requêtes l'une après l'autre, ce qui suffit à une collecte périodique.
+public class MetricsEndpoint implements Closeable {
+
+    private static final Logger logger = LogManager.getLogger("MetricsEndpoint");
+
+    public static final String PORT = "parkit.metrics.port";
+
+    private static final int READ_TIMEOUT_MS = 5000;
+
+    private final ServerSocket serverSocket;
+    private final MetricsRegistry metricsRegistry;
+    private Thread acceptor;
+
+    // N'écoute que sur l'interface locale : les métriques ne sortent pas de la machine sans relais explicite
+    public MetricsEndpoint(int port, MetricsRegistry metricsRegistry) throws IOException {
+        this.serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        this.metricsRegistry = metricsRegistry;
+    }
+
+    public void start() {
+        acceptor = new Thread(this::serve, "metrics-endpoint");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        logger.info("Metrics available on http://localhost:{}/metrics", getPort());
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    private void serve() {
+        while (!serverSocket.isClosed()) {
+            try (Socket client = serverSocket.accept()) {
+                client.setSoTimeout(READ_TIMEOUT_MS);
+                respond(client);
+            } catch (IOException ex) {
+                if (!serverSocket.isClosed()) {
+                    logger.error("Error serving metrics request", ex);
+                }
+            }
+        }
+    }
+
+    private void respond(Socket client) throws IOException {
+        BufferedReader in = new BufferedReader(new InputStreamReader(client.getInputStream(), StandardCharsets.US_ASCII));
+        String requestLine = in.readLine();
+        String line;
+        while ((line = in.readLine()) != null && !line.isEmpty()) {
+            // en-têtes ignorés
+        }
+        String[] request = requestLine == null ? new String[0] : requestLine.split(" ");
+        String path = request.length > 1 ? request[1] : "";
+        int query = path.indexOf('?');
+        if (query >= 0) {
+            path = path.substring(0, query);
+        }
+        if (request.length < 2 || !"GET".equals(request[0])) {
+            write(client.getOutputStream(), "405 Method Not Allowed", "text/plain", "Only GET is supported\n");
+        } else if ("/metrics.json".equals(path)) {
+            write(client.getOutputStream(), "200 OK", "application/json", metricsRegistry.toJson());
+        } else if ("/metrics".equals(path) || "/".equals(path)) {
+            write(client.getOutputStream(), "200 OK", "text/plain", metricsRegistry.toText());
+        } else {
+            write(client.getOutputStream(), "404 Not Found", "text/plain", "Try /metrics or /metrics.json\n");
+        }
+    }
+
+    private static void write(OutputStream out, String status, String contentType, String body) throws IOException {
+        byte[] content = body.getBytes(StandardCharsets.UTF_8);
+        String headers = "HTTP/1.1 " + status + "\r\n"
+                + "Content-Type: " + contentType + "; charset=utf-8\r\n"
+                + "Content-Length: " + content.length + "\r\n"
+                + "Connection: close\r\n\r\n";
+        out.write(headers.getBytes(StandardCharsets.US_ASCII));
+        out.write(content);
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        if (acceptor != null) {
+            try {
+                acceptor.join();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.parkit.parkingsystem.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+
+// Timers, compteurs et jauges nommés, exportés en texte ou en JSON (durées en microsecondes).
+// Les composants reçoivent le registre partagé par défaut ; un test ou un autre exporteur peut leur en donner un autre.
+public class MetricsRegistry {
+
+    private static final MetricsRegistry SHARED = new MetricsRegistry();
+
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+    private static final String[] PERCENTILE_NAMES = {"p50", "p90", "p99", "p999"};
+
+    private final ConcurrentMap<String, Timer> timers = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, DoubleSupplier> gauges = new ConcurrentHashMap<>();
+
+    public static MetricsRegistry shared() {
+        return SHARED;
+    }
+
+    public Timer timer(String name) {
+        Timer timer = timers.get(name);
+        return timer != null ? timer : timers.computeIfAbsent(name, n -> new Timer());
+    }
+
+    public LongAdder counter(String name) {
+        LongAdder counter = counters.get(name);
+        return counter != null ? counter : counters.computeIfAbsent(name, n -> new LongAdder());
+    }
+
+    // Jauge évaluée à chaque export ; un nouvel enregistrement sous le même nom remplace le précédent
+    public void gauge(String name, DoubleSupplier supplier) {
+        gauges.put(name, supplier);
+    }
+
+    // Valeur courante d'une jauge, NaN si elle est inconnue ou en erreur
+    public double getGauge(String name) {
+        DoubleSupplier supplier = gauges.get(name);
+        if (supplier == null) {
+            return Double.NaN;
+        }
+        try {
+            return supplier.getAsDouble();
+        } catch (RuntimeException ex) {
+            return Double.NaN;
+        }
+    }
+
+    // Une ligne "nom valeur" par mesure, triées par nom
+    public String toText() {
+        StringBuilder text = new StringBuilder();
+        for (Map.Entry<String, Timer> timer : new TreeMap<>(timers).entrySet()) {
+            for (Map.Entry<String, Object> field : timerFields(timer.getValue()).entrySet()) {
+                text.append(timer.getKey()).append('.').append(field.getKey()).append(' ').append(field.getValue()).append('\n');
+            }
+        }
+        for (Map.Entry<String, LongAdder> counter : new TreeMap<>(counters).entrySet()) {
+            text.append(counter.getKey()).append(' ').append(counter.getValue().sum()).append('\n');
+        }
+        for (String gauge : new TreeMap<>(gauges).keySet()) {
+            text.append(gauge).append(' ').append(formatGauge(getGauge(gauge))).append('\n');
+        }
+        return text.toString();
+    }
+
+    // {"timers":{nom:{count,errors,meanMicros,...}},"counters":{nom:valeur},"gauges":{nom:valeur}}
+    public String toJson() {
+        StringBuilder json = new StringBuilder("{\"timers\":{");
+        String separator = "";
+        for (Map.Entry<String, Timer> timer : new TreeMap<>(timers).entrySet()) {
+            json.append(separator).append(quote(timer.getKey())).append(":{");
+            String fieldSeparator = "";
+            for (Map.Entry<String, Object> field : timerFields(timer.getValue()).entrySet()) {
+                json.append(fieldSeparator).append(quote(field.getKey())).append(':').append(field.getValue());
+                fieldSeparator = ",";
+            }
+            json.append('}');
+            separator = ",";
+        }
+        json.append("},\"counters\":{");
+        separator = "";
+        for (Map.Entry<String, LongAdder> counter : new TreeMap<>(counters).entrySet()) {
+            json.append(separator).append(quote(counter.getKey())).append(':').append(counter.getValue().sum());
+            separator = ",";
+        }
+        json.append("},\"gauges\":{");
+        separator = "";
+        for (String gauge : new TreeMap<>(gauges).keySet()) {
+            double value = getGauge(gauge);
+            json.append(separator).append(quote(gauge)).append(':').append(Double.isNaN(value) ? "null" : formatGauge(value));
+            separator = ",";
+        }
+        return json.append("}}").toString();
+    }
+
+    private static Map<String, Object> timerFields(Timer timer) {
+        LatencyHistogram.Snapshot snapshot = timer.snapshot();
+        Map<String, Object> fields = new LinkedHashMap<>();
+        fields.put("count", snapshot.getCount());
+        fields.put("errors", timer.getErrors());
+        fields.put("meanMicros", micros(snapshot.getMean()));
+        for (int i = 0; i < PERCENTILES.length; i++) {
+            fields.put(PERCENTILE_NAMES[i] + "Micros", micros(snapshot.getValueAtPercentile(PERCENTILES[i])));
+        }
+        fields.put("maxMicros", micros(snapshot.getMax()));
+        return fields;
+    }
+
+    private static String micros(double nanos) {
+        return String.format(Locale.ROOT, "%.1f", nanos / 1000);
+    }
+
+    private static String formatGauge(double value) {
+        return value == Math.rint(value) && !Double.isInfinite(value)
+                ? Long.toString((long) value) : String.format(Locale.ROOT, "%.4f", value);
+    }
+
+    private static String quote(String name) {
+        return '"' + name.replace("\\", "\\\\").replace("\"", "\\\"") + '"';
+    }
+}
@@ -0,0 +1,27 @@
+package com.parkit.parkingsystem.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+// Durées d'appel d'une méthode (en nanosecondes) et nombre d'appels terminés en erreur.
+public class Timer {
+
+    private final LatencyHistogram histogram = new LatencyHistogram();
+    private final LongAdder errors = new LongAdder();
+
+    // Enregistre le temps écoulé depuis startNanos (valeur de System.nanoTime() en début d'appel)
+    public void record(long startNanos) {
+        histogram.record(System.nanoTime() - startNanos);
+    }
+
+    public void error() {
+        errors.increment();
+    }
+
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    public LatencyHistogram.Snapshot snapshot() {
+        return histogram.snapshot();
+    }
+}
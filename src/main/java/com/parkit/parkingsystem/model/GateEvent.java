@@ -0,0 +1,56 @@
+package com.parkit.parkingsystem.model;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+
+// Passage enregistré par une borne, tel que relu depuis un fichier d'événements.
+public class GateEvent {
+
+    // Aucune place attribuée par la borne : elle est choisie quand l'entrée est appliquée en base
+    public static final int NO_SPOT = 0;
+
+    public enum Direction {
+        ENTRY,
+        EXIT
+    }
+
+    private final long time;
+    private final Direction direction;
+    private final String vehicleRegNumber;
+    private final ParkingType parkingType;
+    private final int parkingNumber;
+
+    public GateEvent(long time, Direction direction, String vehicleRegNumber, ParkingType parkingType) {
+        this(time, direction, vehicleRegNumber, parkingType, NO_SPOT);
+    }
+
+    public GateEvent(long time, Direction direction, String vehicleRegNumber, ParkingType parkingType, int parkingNumber) {
+        this.time = time;
+        this.direction = direction;
+        this.vehicleRegNumber = vehicleRegNumber;
+        this.parkingType = parkingType;
+        this.parkingNumber = parkingNumber;
+    }
+
+    // Horodatage en millisecondes depuis l'epoch
+    public long getTime() {
+        return time;
+    }
+
+    public Direction getDirection() {
+        return direction;
+    }
+
+    public String getVehicleRegNumber() {
+        return vehicleRegNumber;
+    }
+
+    // Seulement renseigné pour les entrées
+    public ParkingType getParkingType() {
+        return parkingType;
+    }
+
+    // Place attribuée par la borne à une entrée journalisée, NO_SPOT sinon
+    public int getParkingNumber() {
+        return parkingNumber;
+    }
+}
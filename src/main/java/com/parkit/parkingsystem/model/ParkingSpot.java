@@ -1,18 +1,32 @@
 package com.parkit.parkingsystem.model;
 
+import com.parkit.parkingsystem.constants.DBConstants;
 import com.parkit.parkingsystem.constants.ParkingType;
 
+import java.util.Objects;
+
 public class ParkingSpot {
+    // Site du parking : les numéros de place ne sont uniques que dans un site
+    private final String lotId;
     private int number;
     private ParkingType parkingType;
     private boolean isAvailable;
 
     public ParkingSpot(int number, ParkingType parkingType, boolean isAvailable) {
+        this(DBConstants.DEFAULT_LOT, number, parkingType, isAvailable);
+    }
+
+    public ParkingSpot(String lotId, int number, ParkingType parkingType, boolean isAvailable) {
+        this.lotId = lotId;
         this.number = number;
         this.parkingType = parkingType;
         this.isAvailable = isAvailable;
     }
 
+    public String getLotId() {
+        return lotId;
+    }
+
     public int getId() {
         return number;
     }
@@ -42,11 +56,11 @@ public class ParkingSpot {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         ParkingSpot that = (ParkingSpot) o;
-        return number == that.number;
+        return number == that.number && Objects.equals(lotId, that.lotId);
     }
 
     @Override
     public int hashCode() {
-        return number;
+        return 31 * Objects.hashCode(lotId) + number;
     }
 }
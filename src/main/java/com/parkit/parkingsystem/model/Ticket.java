@@ -1,15 +1,28 @@
 package com.parkit.parkingsystem.model;
 
-import java.util.Calendar;
+import com.parkit.parkingsystem.constants.DBConstants;
+
 import java.util.Date;
 
+// Heures d'entrée et de sortie gardées en millisecondes epoch : les Date rendues et reçues sont des copies, un appelant
+// ne peut donc plus modifier un ticket à travers une Date partagée, et le chemin DAO lit et écrit les heures sans Date.
+// Bean des tickets construits étape par étape (entrée, lots, re-tarification) ; les lectures en base rendent un
+// TicketRecord immuable (voir toRecord).
 public class Ticket {
+
+    // Heure absente (ticket encore ouvert, ou entrée pas encore renseignée)
+    public static final long NO_TIME = Long.MIN_VALUE;
+
     private int id;
+    // Site du ticket : les identifiants ne sont uniques que dans la base d'un site
+    private String lotId = DBConstants.DEFAULT_LOT;
     private ParkingSpot parkingSpot;
     private String vehicleRegNumber;
     private double price;
-    private Date inTime;
-    private Date outTime;
+    private long inTime = NO_TIME;
+    private long outTime = NO_TIME;
+    // Nombre de tickets du véhicule, celui-ci compris (client régulier si > 1).
+    private int visitCount;
 
 
     public int getId() {
@@ -20,6 +33,14 @@ public class Ticket {
         this.id = id;
     }
 
+    public String getLotId() {
+        return lotId;
+    }
+
+    public void setLotId(String lotId) {
+        this.lotId = lotId;
+    }
+
     public ParkingSpot getParkingSpot() {
         return parkingSpot;
     }
@@ -45,19 +66,64 @@ public class Ticket {
     }
 
     public Date getInTime() {
-        return inTime;
+        return toDate(inTime);
     }
 
     public void setInTime(Date inTime) {
-        this.inTime = inTime;
+        this.inTime = toMillis(inTime);
     }
 
     public Date getOutTime() {
+        return toDate(outTime);
+    }
+
+    public void setOutTime(Date outTime) {
+        this.outTime = toMillis(outTime);
+    }
+
+    public long getInTimeMillis() {
+        return inTime;
+    }
+
+    public void setInTimeMillis(long inTime) {
+        this.inTime = inTime;
+    }
+
+    public long getOutTimeMillis() {
         return outTime;
     }
 
-    public void setOutTime(Date outTime) {this.outTime = outTime;}
+    public void setOutTimeMillis(long outTime) {
+        this.outTime = outTime;
+    }
+
+    public boolean hasInTime() {
+        return inTime != NO_TIME;
+    }
 
+    public boolean hasOutTime() {
+        return outTime != NO_TIME;
+    }
 
+    public int getVisitCount() {
+        return visitCount;
+    }
 
-}
\ No newline at end of file
+    public void setVisitCount(int visitCount) {
+        this.visitCount = visitCount;
+    }
+
+    // Copie immuable du ticket tel qu'il est à cet instant
+    public TicketRecord toRecord() {
+        return new TicketRecord(id, lotId, parkingSpot == null ? 0 : parkingSpot.getId(),
+                parkingSpot == null ? null : parkingSpot.getParkingType(), vehicleRegNumber, price, inTime, outTime, visitCount);
+    }
+
+    private static Date toDate(long millis) {
+        return millis == NO_TIME ? null : new Date(millis);
+    }
+
+    private static long toMillis(Date date) {
+        return date == null ? NO_TIME : date.getTime();
+    }
+}
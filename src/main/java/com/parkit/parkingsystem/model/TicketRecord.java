@@ -0,0 +1,99 @@
+package com.parkit.parkingsystem.model;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+
+import java.util.Objects;
+
+// Ticket lu ou clôturé en base (TicketRepository.getTicket et exitVehicle) : valeur immuable, heures en millisecondes
+// epoch (Ticket.NO_TIME si absente), sans Date ni ParkingSpot. Ticket reste le bean des tickets construits étape par
+// étape (entrée, lots, re-tarification) ; Ticket.toRecord le fige.
+public final class TicketRecord {
+
+    private final int id;
+    // Site du ticket : les identifiants ne sont uniques que dans la base d'un site
+    private final String lotId;
+    private final int parkingNumber;
+    private final ParkingType parkingType;
+    private final String vehicleRegNumber;
+    private final double price;
+    private final long inTime;
+    private final long outTime;
+    // Nombre de tickets du véhicule, celui-ci compris (client régulier si > 1).
+    private final int visitCount;
+
+    public TicketRecord(int id, String lotId, int parkingNumber, ParkingType parkingType, String vehicleRegNumber,
+                        double price, long inTime, long outTime, int visitCount) {
+        this.id = id;
+        this.lotId = lotId;
+        this.parkingNumber = parkingNumber;
+        this.parkingType = parkingType;
+        this.vehicleRegNumber = vehicleRegNumber;
+        this.price = price;
+        this.inTime = inTime;
+        this.outTime = outTime;
+        this.visitCount = visitCount;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getLotId() {
+        return lotId;
+    }
+
+    public int getParkingNumber() {
+        return parkingNumber;
+    }
+
+    public ParkingType getParkingType() {
+        return parkingType;
+    }
+
+    public String getVehicleRegNumber() {
+        return vehicleRegNumber;
+    }
+
+    public double getPrice() {
+        return price;
+    }
+
+    public long getInTimeMillis() {
+        return inTime;
+    }
+
+    public long getOutTimeMillis() {
+        return outTime;
+    }
+
+    public boolean hasOutTime() {
+        return outTime != Ticket.NO_TIME;
+    }
+
+    public int getVisitCount() {
+        return visitCount;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        TicketRecord that = (TicketRecord) o;
+        return id == that.id && parkingNumber == that.parkingNumber && Double.compare(that.price, price) == 0
+                && inTime == that.inTime && outTime == that.outTime && visitCount == that.visitCount
+                && Objects.equals(lotId, that.lotId) && parkingType == that.parkingType
+                && Objects.equals(vehicleRegNumber, that.vehicleRegNumber);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, lotId, parkingNumber, vehicleRegNumber, inTime);
+    }
+
+    @Override
+    public String toString() {
+        return "TicketRecord{id=" + id + ", lot=" + lotId + ", spot=" + parkingNumber + ", type=" + parkingType
+                + ", vehicle=" + vehicleRegNumber + ", price=" + price + ", inTime=" + inTime + ", outTime=" + outTime
+                + ", visitCount=" + visitCount + '}';
+    }
+}
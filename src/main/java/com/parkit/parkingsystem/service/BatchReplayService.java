@@ -0,0 +1,345 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.dao.ParkingSpotIndex;
+import com.parkit.parkingsystem.dao.ParkingSpotRepository;
+import com.parkit.parkingsystem.dao.TicketPricing;
+import com.parkit.parkingsystem.dao.TicketRepository;
+import com.parkit.parkingsystem.model.GateEvent;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.model.TicketRecord;
+import com.parkit.parkingsystem.util.GateEventReader;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// Rejeu non interactif d'un fichier d'événements de bornes (rapprochement, tests de capacité).
+// Le thread appelant lit le fichier par lots de lignes, découpés en événements par les workers en parallèle ;
+// un seul thread applique ensuite les lots dans l'ordre du fichier : places et tickets sont tenus en mémoire, puis chaque
+// lot est écrit par saveTickets, updateTickets et updateParkings (une transaction par appel). Place attribuée à chaque
+// véhicule et entrées refusées faute de place sont donc celles de la journée rejouée, d'un rejeu à l'autre.
+public class BatchReplayService {
+
+    private static final Logger logger = LogManager.getLogger("BatchReplayService");
+
+    public static final String FILE = "parkit.replay.file";
+    public static final String WORKERS = "parkit.replay.workers";
+    public static final String BATCH_SIZE = "parkit.replay.batchSize";
+
+    // Lots découpés en attente par worker : au-delà, la lecture attend (pas d'accumulation en mémoire)
+    private static final int QUEUED_BATCHES = 4;
+    // Attente maximale avant de vérifier que le thread d'application tourne encore
+    private static final long OFFER_TIMEOUT_MS = 100;
+    private static final Batch END = new Batch(0, CompletableFuture.completedFuture(Collections.emptyList()));
+
+    private final ParkingSpotRepository parkingSpotDAO;
+    private final TicketRepository ticketDAO;
+    private final int workers;
+    private final int batchSize;
+
+    // workers : threads de découpage des lignes ; l'application en base reste séquentielle
+    public BatchReplayService(ParkingSpotRepository parkingSpotDAO, TicketRepository ticketDAO, int workers, int batchSize) {
+        if (workers < 1 || batchSize < 1) {
+            throw new IllegalArgumentException("Workers and batch size must be positive");
+        }
+        this.parkingSpotDAO = parkingSpotDAO;
+        this.ticketDAO = ticketDAO;
+        this.workers = workers;
+        this.batchSize = batchSize;
+    }
+
+    public Report replay(Path file) throws IOException, InterruptedException {
+        try (GateEventReader reader = new GateEventReader(file)) {
+            return replay(reader);
+        }
+    }
+
+    // IllegalStateException si le thread d'application s'arrête avant la fin du fichier (le reste n'est pas lu).
+    public Report replay(GateEventReader reader) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        Report report = new Report();
+        // Lots dans l'ordre du fichier, chacun découpé dès qu'un worker est libre
+        BlockingQueue<Batch> batches = new ArrayBlockingQueue<>(workers * QUEUED_BATCHES);
+        AtomicInteger workerCount = new AtomicInteger();
+        ExecutorService parsers = Executors.newFixedThreadPool(workers, r -> {
+            Thread thread = new Thread(r, "replay-worker-" + workerCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        ExecutorService applierThread = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "replay-applier");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Future<?> applier = applierThread.submit(() -> {
+            applyBatches(batches, report);
+            return null;
+        });
+        try {
+            List<String> lines;
+            boolean running = true;
+            while (running && !(lines = reader.nextLines(batchSize)).isEmpty()) {
+                List<String> batch = lines;
+                running = offer(batches, new Batch(batch.size(), parsers.submit(() -> parse(batch, report))), applier);
+            }
+            if (running) {
+                offer(batches, END, applier);
+            }
+            applier.get();
+        } catch (ExecutionException ex) {
+            throw new IllegalStateException("Replay stopped: unable to apply gate events", ex.getCause());
+        } finally {
+            parsers.shutdownNow();
+            applierThread.shutdownNow();
+        }
+        report.elapsedNanos = System.nanoTime() - start;
+        logger.info("Replay finished: {}", report);
+        return report;
+    }
+
+    // Attente bornée : la lecture ne reste pas bloquée sur une file pleine que plus personne ne vide.
+    // false si le thread d'application s'est arrêté.
+    private static boolean offer(BlockingQueue<Batch> batches, Batch batch, Future<?> applier) throws InterruptedException {
+        while (!batches.offer(batch, OFFER_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+            if (applier.isDone()) {
+                batch.events.cancel(true);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static List<GateEvent> parse(List<String> lines, Report report) {
+        List<GateEvent> events = new ArrayList<>(lines.size());
+        for (String line : lines) {
+            try {
+                events.add(GateEventReader.parse(line));
+            } catch (RuntimeException ex) {
+                report.rejected.increment();
+                logger.error("Invalid gate event '{}': {}", line, ex.getMessage());
+            }
+        }
+        return events;
+    }
+
+    private void applyBatches(BlockingQueue<Batch> batches, Report report) throws InterruptedException {
+        Applier applier = new Applier(report);
+        applier.load();
+        Batch batch;
+        while ((batch = batches.take()) != END) {
+            List<GateEvent> events;
+            try {
+                events = batch.events.get();
+            } catch (ExecutionException ex) {
+                // Le lot est perdu mais la lecture continue : ses lignes sont comptées comme illisibles
+                logger.error("Unable to parse a batch of {} gate events", batch.lines, ex);
+                report.rejected.add(batch.lines);
+                continue;
+            }
+            applier.apply(events);
+        }
+    }
+
+    private static final class Batch {
+        private final int lines;
+        private final Future<List<GateEvent>> events;
+
+        private Batch(int lines, Future<List<GateEvent>> events) {
+            this.lines = lines;
+            this.events = events;
+        }
+    }
+
+    // État du site tenu par le thread d'application, relu en base après un lot dont l'écriture a échoué.
+    private final class Applier {
+        private final Report report;
+        private final TicketPricing ticketPricing = new FareCalculatorService();
+        // Ticket ouvert de chaque véhicule déjà vu (absent une fois sorti)
+        private final Map<String, Ticket> openTickets = new HashMap<>();
+        // Tickets du véhicule, archives comprises, celui en cours compris : remise client régulier au-delà de 1
+        private final Map<String, Integer> visits = new HashMap<>();
+        private ParkingSpotIndex parkingSpotIndex;
+        private String lotId;
+
+        private Applier(Report report) {
+            this.report = report;
+        }
+
+        private void load() {
+            List<ParkingSpot> parkingSpots = parkingSpotDAO.getParkingSpots();
+            if (parkingSpots == null) {
+                throw new IllegalStateException("Unable to read parking spots");
+            }
+            parkingSpotIndex = new ParkingSpotIndex();
+            parkingSpotIndex.reconcile(parkingSpots);
+            lotId = parkingSpots.isEmpty() ? DBConstants.DEFAULT_LOT : parkingSpots.get(0).getLotId();
+            openTickets.clear();
+            visits.clear();
+        }
+
+        private void apply(List<GateEvent> events) {
+            List<Ticket> entered = new ArrayList<>();
+            List<Ticket> exited = new ArrayList<>();
+            // État final de chaque place touchée par le lot
+            Map<Integer, ParkingSpot> parkingSpots = new LinkedHashMap<>();
+            int refused = 0;
+            boolean written;
+            try {
+                for (GateEvent event : events) {
+                    boolean entry = event.getDirection() == GateEvent.Direction.ENTRY;
+                    Ticket ticket = entry ? enter(event) : exit(event);
+                    if (ticket == null) {
+                        refused++;
+                        continue;
+                    }
+                    (entry ? entered : exited).add(ticket);
+                    ParkingSpot parkingSpot = ticket.getParkingSpot();
+                    parkingSpots.put(parkingSpot.getId(), new ParkingSpot(lotId, parkingSpot.getId(),
+                            parkingSpot.getParkingType(), !entry));
+                }
+                // Les tickets entrés et sortis dans le même lot sont créés puis clôturés avec leur nombre de passages
+                written = (entered.isEmpty() || ticketDAO.saveTickets(entered) != null)
+                        && (exited.isEmpty() || ticketDAO.updateTickets(exited))
+                        && (parkingSpots.isEmpty() || parkingSpotDAO.updateParkings(parkingSpots.values()));
+            } catch (RuntimeException ex) {
+                logger.error("Unable to replay a batch of {} gate events", events.size(), ex);
+                written = false;
+            }
+            if (!written) {
+                // Une partie du lot a pu être écrite : on repart de l'état en base
+                report.failures.add(events.size());
+                load();
+                return;
+            }
+            report.entries.add(entered.size());
+            report.exits.add(exited.size());
+            report.failures.add(refused);
+        }
+
+        // Ticket créé sur la plus petite place libre ; null si le parking est complet pour ce type.
+        private Ticket enter(GateEvent event) {
+            String vehicleRegNumber = event.getVehicleRegNumber();
+            int visitCount = lookup(vehicleRegNumber) + 1;
+            int parkingNumber = parkingSpotIndex.claimNextAvailableSlot(event.getParkingType());
+            if (parkingNumber < 0) {
+                return null;
+            }
+            Ticket ticket = new Ticket();
+            ticket.setLotId(lotId);
+            ticket.setParkingSpot(new ParkingSpot(lotId, parkingNumber, event.getParkingType(), false));
+            ticket.setVehicleRegNumber(vehicleRegNumber);
+            ticket.setPrice(0);
+            ticket.setInTimeMillis(event.getTime());
+            openTickets.put(vehicleRegNumber, ticket);
+            visits.put(vehicleRegNumber, visitCount);
+            return ticket;
+        }
+
+        // Ticket ouvert tarifié et clôturé, sa place rendue ; null si le véhicule n'a pas de ticket ouvert.
+        private Ticket exit(GateEvent event) {
+            String vehicleRegNumber = event.getVehicleRegNumber();
+            int visitCount = lookup(vehicleRegNumber);
+            Ticket ticket = openTickets.remove(vehicleRegNumber);
+            if (ticket == null) {
+                return null;
+            }
+            ParkingSpot parkingSpot = ticket.getParkingSpot();
+            ticket.setOutTimeMillis(event.getTime());
+            ticket.setVisitCount(visitCount);
+            ticket.setPrice(ticketPricing.calculateFare(parkingSpot.getParkingType(), ticket.getInTimeMillis(),
+                    event.getTime(), visitCount, visitCount > 1));
+            parkingSpotIndex.markAvailable(parkingSpot.getParkingType(), parkingSpot.getId());
+            return ticket;
+        }
+
+        // Nombre de tickets du véhicule ; à la première rencontre, lu en base avec son éventuel ticket ouvert.
+        private int lookup(String vehicleRegNumber) {
+            Integer visitCount = visits.get(vehicleRegNumber);
+            if (visitCount != null) {
+                return visitCount;
+            }
+            TicketRecord last = ticketDAO.getTicket(vehicleRegNumber);
+            if (last == null) {
+                visits.put(vehicleRegNumber, 0);
+                return 0;
+            }
+            if (!last.hasOutTime()) {
+                Ticket ticket = new Ticket();
+                ticket.setId(last.getId());
+                ticket.setLotId(last.getLotId());
+                ticket.setParkingSpot(new ParkingSpot(last.getLotId(), last.getParkingNumber(), last.getParkingType(), false));
+                ticket.setVehicleRegNumber(vehicleRegNumber);
+                ticket.setPrice(last.getPrice());
+                ticket.setInTimeMillis(last.getInTimeMillis());
+                openTickets.put(vehicleRegNumber, ticket);
+            }
+            visits.put(vehicleRegNumber, last.getVisitCount());
+            return last.getVisitCount();
+        }
+    }
+
+    public static final class Report {
+        private final LongAdder entries = new LongAdder();
+        private final LongAdder exits = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+        private long elapsedNanos;
+
+        public long getEvents() {
+            return getEntries() + getExits() + getFailures();
+        }
+
+        public long getEntries() {
+            return entries.sum();
+        }
+
+        public long getExits() {
+            return exits.sum();
+        }
+
+        // Événements refusés (parking complet, pas de ticket ouvert) ou d'un lot dont l'écriture en base a échoué
+        public long getFailures() {
+            return failures.sum();
+        }
+
+        // Lignes du fichier qui n'ont pas pu être lues comme événements
+        public long getRejected() {
+            return rejected.sum();
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        public double getEventsPerSecond() {
+            return elapsedNanos == 0 ? 0 : getEvents() * 1e9 / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return "events=" + getEvents() + ", entries=" + getEntries() + ", exits=" + getExits()
+                    + ", failures=" + getFailures() + ", rejected=" + getRejected()
+                    + ", elapsed=" + TimeUnit.NANOSECONDS.toMillis(elapsedNanos) + "ms"
+                    + ", eventsPerSecond=" + String.format("%.0f", getEventsPerSecond());
+        }
+    }
+}
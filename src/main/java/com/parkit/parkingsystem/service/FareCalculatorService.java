@@ -1,10 +1,25 @@
 package com.parkit.parkingsystem.service;
 
-import com.parkit.parkingsystem.config.DataBaseConfig;
-import com.parkit.parkingsystem.constants.Fare;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.TicketPricing;
 import com.parkit.parkingsystem.model.Ticket;
 
-public class FareCalculatorService {
+import java.util.Date;
+
+public class FareCalculatorService implements TicketPricing {
+
+    // Nombre de passages qui déclenche la remise de fidélité historique (calcul avec discount)
+    private static final int RECURRING_VISIT_COUNT = 2;
+
+    private final TariffEngine tariffEngine;
+
+    public FareCalculatorService() {
+        this(TariffEngine.shared());
+    }
+
+    public FareCalculatorService(TariffEngine tariffEngine) {
+        this.tariffEngine = tariffEngine;
+    }
 
     // Fix Léa : Méthode ajoutée pour maintenir la compatibilité avec l'ancienne signature
     public void calculateFare(Ticket ticket) {
@@ -14,37 +29,76 @@ public class FareCalculatorService {
 
     // Fix Léa : Méthode existante modifiée pour prendre en compte le paramètre discount
     public void calculateFare(Ticket ticket, boolean discount) {
-        if ((ticket.getOutTime() == null) || (ticket.getOutTime().before(ticket.getInTime()))) {
-            throw new IllegalArgumentException("Out time provided is incorrect:" + ticket.getOutTime().toString());
+        ticket.setPrice(calculateFare(ticket.getParkingSpot().getParkingType(), ticket.getInTimeMillis(), ticket.getOutTimeMillis(),
+                ticket.getVisitCount(), discount));
+    }
+
+    // Même calcul sur la grille en vigueur, sans Ticket : la sortie d'un véhicule tarifie ses heures primitives
+    @Override
+    public double calculateFare(ParkingType parkingType, long inEpochMillis, long outEpochMillis, int visitCount, boolean discount) {
+        if (outEpochMillis == Ticket.NO_TIME || inEpochMillis == Ticket.NO_TIME || outEpochMillis < inEpochMillis) {
+            throw new IllegalArgumentException("Out time provided is incorrect:"
+                    + (outEpochMillis == Ticket.NO_TIME ? null : new Date(outEpochMillis)));
         }
+        // Avec discount, le palier de fidélité dépend du nombre de passages connu du ticket
+        int tier = discount ? Math.max(RECURRING_VISIT_COUNT, visitCount) : 1;
+        return tariffEngine.getPlan().price(inEpochMillis, outEpochMillis, parkingType, tier);
+    }
 
-        //Fix Léa : Changer le type de variable en long et modifier getHours(). en getTime().
-        long inHour = ticket.getInTime().getTime();
-        long outHour = ticket.getOutTime().getTime();
-        //Fix Léa : Changer le type de variable en double, puis convertir les millisecondes en heures.
-        double duration = (outHour - inHour) / (1000.0 * 60 * 60);
+    public TariffEngine getTariffEngine() {
+        return tariffEngine;
+    }
 
-        //Fix Léa : Ajout d'une condition de durée pour les 30 premières minutes gratuites.
-        if (duration < 0.5) {
-            ticket.setPrice(Fare.LESS_THAN_30_MINUTES);
-            return;
-        }
+    // Noyau de calcul sur horodatages primitifs, sans allocation (re-tarification en masse), sur la grille historique.
+    // Mêmes opérations et même ordre que le calcul historique : le prix obtenu est identique au bit près.
+    public static double calculateFare(long inEpochMillis, long outEpochMillis, ParkingType parkingType, boolean discount) {
+        return TariffPlan.DEFAULT.price(inEpochMillis, outEpochMillis, parkingType, discount ? RECURRING_VISIT_COUNT : 1);
+    }
 
-        //Si le user case rentre dans le if, on renvoie le prix à 0€. Sinon on rentre dans le switch.
-        switch (ticket.getParkingSpot().getParkingType()) {
-            case CAR: {
-                ticket.setPrice(duration * Fare.CAR_RATE_PER_HOUR);
-            }
-            break;
-            case BIKE: {
-                ticket.setPrice(duration * Fare.BIKE_RATE_PER_HOUR);
+    public static long calculateFareInCents(long inEpochMillis, long outEpochMillis, ParkingType parkingType, boolean discount) {
+        return Math.round(calculateFare(inEpochMillis, outEpochMillis, parkingType, discount) * 100);
+    }
+
+    // Calcul en masse : types[i] est l'ordinal du ParkingType, discounts peut être null (aucune remise).
+    // Écrit le prix en centimes de chaque ticket dans cents ; aucune allocation hors erreur.
+    public static void calculateFaresInCents(long[] inEpochMillis, long[] outEpochMillis, byte[] types, boolean[] discounts, long[] cents) {
+        calculateFaresInCents(TariffPlan.DEFAULT, inEpochMillis, outEpochMillis, types, discounts, cents);
+    }
+
+    // Même calcul en masse sur la grille en vigueur
+    public void calculateCurrentFaresInCents(long[] inEpochMillis, long[] outEpochMillis, byte[] types, boolean[] discounts, long[] cents) {
+        calculateFaresInCents(tariffEngine.getPlan(), inEpochMillis, outEpochMillis, types, discounts, cents);
+    }
+
+    // Tarifie les tickets [from, to) sur une grille donnée (une re-tarification garde la même grille du début à la fin).
+    // visitCounts[i] est le nombre de passages du véhicule à la sortie, comme pour calculateFare(ticket, visitCount > 1).
+    public static void calculateFares(TariffPlan plan, long[] inEpochMillis, long[] outEpochMillis, byte[] types,
+                                      int[] visitCounts, double[] prices, int from, int to) {
+        for (int i = from; i < to; i++) {
+            long duration = outEpochMillis[i] - inEpochMillis[i];
+            int type = types[i];
+            if (duration < 0 || type < 0 || type >= plan.getTypeCount()) {
+                throw new IllegalArgumentException("Invalid ticket at index " + i);
             }
-            break;
-            default:
-                throw new IllegalArgumentException("Unknown Parking Type");
+            prices[i] = plan.price(duration, type, visitCounts[i]);
+        }
+    }
+
+    private static void calculateFaresInCents(TariffPlan plan, long[] inEpochMillis, long[] outEpochMillis, byte[] types,
+                                              boolean[] discounts, long[] cents) {
+        int length = cents.length;
+        if (inEpochMillis.length != length || outEpochMillis.length != length || types.length != length
+                || (discounts != null && discounts.length != length)) {
+            throw new IllegalArgumentException("All fare arrays must have the same length");
         }
-        if (discount) {
-            ticket.setPrice(ticket.getPrice() * Fare.DISCOUNT5);
+        for (int i = 0; i < length; i++) {
+            long duration = outEpochMillis[i] - inEpochMillis[i];
+            int type = types[i];
+            if (duration < 0 || type < 0 || type >= plan.getTypeCount()) {
+                throw new IllegalArgumentException("Invalid ticket at index " + i);
+            }
+            int visitCount = discounts != null && discounts[i] ? RECURRING_VISIT_COUNT : 1;
+            cents[i] = Math.round(plan.price(duration, type, visitCount) * 100);
         }
     }
-}
\ No newline at end of file
+}
@@ -1,27 +1,53 @@
 package com.parkit.parkingsystem.service;
 
+import com.parkit.parkingsystem.dao.GateJournal;
+import com.parkit.parkingsystem.dao.OpenTicketIndex;
 import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.ParkingSpotIndex;
 import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.dao.VisitCountCache;
+import com.parkit.parkingsystem.metrics.MetricsEndpoint;
+import com.parkit.parkingsystem.metrics.MetricsRegistry;
+import com.parkit.parkingsystem.model.ParkingSpot;
 import com.parkit.parkingsystem.util.InputReaderUtil;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Paths;
+import java.time.Clock;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
 public class InteractiveShell {
 
     private static final Logger logger = LogManager.getLogger("InteractiveShell");
 
-    public static void loadInterface(){
+    // Console d'une borne du site servi par ce processus.
+    public static void loadInterface(ParkingSpotDAO parkingSpotDAO, TicketDAO ticketDAO){
         logger.info("App initialized!!!");
         System.out.println("Welcome to Parking System!");
 
-        boolean continueApp = true;
         InputReaderUtil inputReaderUtil = new InputReaderUtil();
-        ParkingSpotDAO parkingSpotDAO = new ParkingSpotDAO();
-        TicketDAO ticketDAO = new TicketDAO();
-        ParkingService parkingService = new ParkingService(inputReaderUtil, parkingSpotDAO, ticketDAO);
+        OccupancyService occupancyService = configureDAOs(parkingSpotDAO, ticketDAO);
+        GateJournal journal = openJournal(parkingSpotDAO, ticketDAO, occupancyService);
+        ParkingService parkingService = new ParkingService(inputReaderUtil, parkingSpotDAO, ticketDAO, System.out,
+                Clock.systemDefaultZone(), MetricsRegistry.shared(), journal, occupancyService, parkingSpotDAO.parkingSpotIndex);
 
+        runSession(inputReaderUtil, parkingService, System.out);
+    }
+
+    // Boucle de menu d'une borne, jusqu'à l'arrêt demandé ou la fermeture de l'entrée.
+    public static void runSession(InputReaderUtil inputReaderUtil, ParkingService parkingService, PrintStream out){
+        boolean continueApp = true;
         while(continueApp){
-            loadMenu();
+            loadMenu(out);
+            if(!inputReaderUtil.hasNextLine()){
+                break;
+            }
             int option = inputReaderUtil.readSelection();
             switch(option){
                 case 1: {
@@ -33,20 +59,153 @@ public class InteractiveShell {
                     break;
                 }
                 case 3: {
-                    System.out.println("Exiting from the system!");
+                    out.println("Exiting from the system!");
                     continueApp = false;
                     break;
                 }
-                default: System.out.println("Unsupported option. Please enter a number corresponding to the provided menu");
+                default: out.println("Unsupported option. Please enter a number corresponding to the provided menu");
             }
         }
     }
 
-    private static void loadMenu(){
-        System.out.println("Please select an option. Simply enter the number to choose an action");
-        System.out.println("1 New Vehicle Entering - Allocate Parking Space");
-        System.out.println("2 Vehicle Exiting - Generate Ticket Price");
-        System.out.println("3 Shutdown System");
+    // Options activées par propriétés système, communes à la console et au mode serveur.
+    // Retourne les compteurs d'occupation, ou null. Le journal des passages active aussi les compteurs et l'index des places,
+    // où les bornes réservent et prennent les places des entrées journalisées, et l'index des tickets ouverts qui tarifie les sorties.
+    public static OccupancyService configureDAOs(ParkingSpotDAO parkingSpotDAO, TicketDAO ticketDAO){
+        boolean journaled = System.getProperty(GateJournal.FILE) != null;
+        if (Boolean.getBoolean(ParkingSpotIndex.ENABLED) || journaled) {
+            enableParkingSpotIndex(parkingSpotDAO, ticketDAO);
+        }
+        if (Boolean.getBoolean(VisitCountCache.ENABLED)) {
+            VisitCountCache visitCountCache = new VisitCountCache(Integer.getInteger(VisitCountCache.MAX_SIZE, 10000),
+                    Long.getLong(VisitCountCache.TTL_MS, 3600000L));
+            visitCountCache.registerGauges(MetricsRegistry.shared());
+            ticketDAO.visitCountCache = visitCountCache;
+            logger.info("Visit count cache enabled");
+        }
+        OccupancyService occupancyService = null;
+        if (Boolean.getBoolean(OccupancyService.ENABLED) || journaled) {
+            occupancyService = enableOccupancyService(parkingSpotDAO, ticketDAO);
+        }
+        if (Boolean.getBoolean(OpenTicketIndex.ENABLED) || journaled) {
+            enableOpenTicketIndex(parkingSpotDAO, ticketDAO);
+        }
+        if (Boolean.getBoolean(TicketArchiver.ENABLED)) {
+            new TicketArchiver(ticketDAO, Integer.getInteger(TicketArchiver.AGE_DAYS, 90), Integer.getInteger(TicketArchiver.BATCH_SIZE, 1000),
+                    Clock.systemDefaultZone(), MetricsRegistry.shared()).start(Long.getLong(TicketArchiver.PERIOD_MS, 3600000L));
+            logger.info("Ticket archiving enabled");
+        }
+        parkingSpotDAO.registerFreeSpotGauges();
+        Integer metricsPort = Integer.getInteger(MetricsEndpoint.PORT);
+        if (metricsPort != null) {
+            startMetricsEndpoint(metricsPort);
+        }
+        return occupancyService;
+    }
+
+    // Ouvre le journal des passages et démarre son application en base ; null s'il n'est pas configuré ou pas utilisable
+    // (les bornes attendent alors la base, comme sans journal). occupancyService est celui retourné par configureDAOs.
+    public static GateJournal openJournal(ParkingSpotDAO parkingSpotDAO, TicketDAO ticketDAO, OccupancyService occupancyService){
+        String file = System.getProperty(GateJournal.FILE);
+        if (file == null) {
+            return null;
+        }
+        try {
+            int size = Integer.getInteger(GateJournal.SIZE_BYTES, 64 * 1024 * 1024);
+            GateJournal journal = new GateJournal(Paths.get(file), size);
+            GateJournal rejectedJournal = new GateJournal(Paths.get(System.getProperty(GateJournal.REJECTED_FILE, file + ".rejected")), size);
+            new JournalDrainer(journal, rejectedJournal, parkingSpotDAO, ticketDAO, occupancyService, parkingSpotDAO.parkingSpotIndex,
+                    Integer.getInteger(JournalDrainer.BATCH_SIZE, 500), Long.getLong(JournalDrainer.RETRY_MS, 1000L),
+                    MetricsRegistry.shared()).start();
+            logger.info("Gate journal enabled");
+            return journal;
+        } catch (IOException ex) {
+            logger.error("Unable to open gate journal {}", file, ex);
+            return null;
+        }
+    }
+
+    // Charge les compteurs de places libres au démarrage puis les réconcilie périodiquement avec la base.
+    // Les DAO les préviennent de chaque place occupée ou libérée.
+    private static OccupancyService enableOccupancyService(ParkingSpotDAO parkingSpotDAO, TicketDAO ticketDAO){
+        OccupancyService occupancyService = new OccupancyService();
+        parkingSpotDAO.parkingSpotListener = occupancyService;
+        parkingSpotDAO.freeSpotCounter = occupancyService::getFreeCount;
+        ticketDAO.parkingSpotListener = occupancyService;
+        occupancyService.reconcile(parkingSpotDAO);
+        occupancyService.start();
+
+        long period = Long.getLong(OccupancyService.RECONCILE_PERIOD_MS, 60000L);
+        ScheduledExecutorService reconciler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "occupancy-reconciler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reconciler.scheduleWithFixedDelay(() -> occupancyService.reconcile(parkingSpotDAO), period, period, TimeUnit.MILLISECONDS);
+        logger.info("Occupancy counters enabled");
+
+        Integer boardPort = Integer.getInteger(OccupancyBoardServer.PORT);
+        if (boardPort != null) {
+            try {
+                new OccupancyBoardServer(boardPort, occupancyService).start();
+            } catch (IOException ex) {
+                logger.error("Unable to serve occupancy boards on port {}", boardPort, ex);
+            }
+        }
+        return occupancyService;
+    }
+
+    // Sans le point d'accès, l'application fonctionne normalement : l'échec est seulement journalisé.
+    private static void startMetricsEndpoint(int port){
+        try {
+            new MetricsEndpoint(port, MetricsRegistry.shared()).start();
+        } catch (IOException ex) {
+            logger.error("Unable to start metrics endpoint on port {}", port, ex);
+        }
+    }
+
+    // Charge les tickets ouverts au démarrage ; l'index a un enregistrement par numéro de place du site.
+    private static void enableOpenTicketIndex(ParkingSpotDAO parkingSpotDAO, TicketDAO ticketDAO){
+        List<ParkingSpot> parkingSpots = parkingSpotDAO.getParkingSpots();
+        if (parkingSpots == null || parkingSpots.isEmpty()) {
+            logger.error("Unable to size the open ticket index, exits will read tickets from the database");
+            return;
+        }
+        int maxParkingNumber = 0;
+        for (ParkingSpot parkingSpot : parkingSpots) {
+            maxParkingNumber = Math.max(maxParkingNumber, parkingSpot.getId());
+        }
+        ticketDAO.openTicketIndex = new OpenTicketIndex(maxParkingNumber, MetricsRegistry.shared());
+        if (!ticketDAO.reloadOpenTicketIndex()) {
+            ticketDAO.openTicketIndex = null;
+            logger.error("Unable to load open tickets, exits will read tickets from the database");
+            return;
+        }
+        logger.info("Open ticket index enabled");
+    }
+
+    // Charge l'index des places libres au démarrage puis le réconcilie périodiquement avec la base.
+    private static void enableParkingSpotIndex(ParkingSpotDAO parkingSpotDAO, TicketDAO ticketDAO){
+        ParkingSpotIndex parkingSpotIndex = new ParkingSpotIndex();
+        parkingSpotDAO.parkingSpotIndex = parkingSpotIndex;
+        ticketDAO.parkingSpotIndex = parkingSpotIndex;
+        parkingSpotDAO.reconcileParkingSpotIndex();
+
+        long period = Long.getLong(ParkingSpotIndex.RECONCILE_PERIOD_MS, 60000L);
+        ScheduledExecutorService reconciler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "spot-index-reconciler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reconciler.scheduleWithFixedDelay(parkingSpotDAO::reconcileParkingSpotIndex, period, period, TimeUnit.MILLISECONDS);
+        logger.info("Parking spot index enabled");
+    }
+
+    private static void loadMenu(PrintStream out){
+        out.println("Please select an option. Simply enter the number to choose an action");
+        out.println("1 New Vehicle Entering - Allocate Parking Space");
+        out.println("2 Vehicle Exiting - Generate Ticket Price");
+        out.println("3 Shutdown System");
     }
 
 }
@@ -0,0 +1,254 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.dao.GateJournal;
+import com.parkit.parkingsystem.dao.ParkingSpotIndex;
+import com.parkit.parkingsystem.dao.ParkingSpotRepository;
+import com.parkit.parkingsystem.dao.TicketRepository;
+import com.parkit.parkingsystem.metrics.MetricsRegistry;
+import com.parkit.parkingsystem.model.GateEvent;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.model.TicketRecord;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+// Applique en base, par lots et dans l'ordre, les passages journalisés par les bornes (GateJournal).
+// Si la base ne répond pas, le lot s'arrête sur l'événement en échec et reprend après retryMillis : rien n'est perdu ni sauté.
+// Un événement refusé par la base joignable (place déjà occupée, pas de ticket ouvert) est déplacé dans le journal des refus,
+// signalé (log d'erreur, compteur, taille en attente) et réappliqué dans l'ordre au démarrage pour réconciliation.
+public class JournalDrainer implements Closeable {
+
+    private static final Logger logger = LogManager.getLogger("JournalDrainer");
+
+    public static final String BATCH_SIZE = "parkit.journal.drainBatchSize";
+    public static final String RETRY_MS = "parkit.journal.retryMillis";
+
+    public static final String APPLIED = "JournalDrainer.applied";
+    public static final String REJECTED = "JournalDrainer.rejected";
+    public static final String BACKLOG = "GateJournal.backlogBytes";
+    public static final String REJECTED_BACKLOG = "GateJournal.rejectedBytes";
+
+    private final GateJournal journal;
+    // Événements refusés par la base, gardés jusqu'à leur réconciliation
+    private final GateJournal rejectedJournal;
+    private final ParkingSpotRepository parkingSpotDAO;
+    private final TicketRepository ticketDAO;
+    // Places réservées par les bornes pour les entrées journalisées, rendues une fois l'entrée appliquée ou refusée
+    private final OccupancyService occupancyService;
+    // Places libres : celles attribuées par les bornes aux entrées encore dans le journal y restent retirées
+    private final ParkingSpotIndex parkingSpotIndex;
+    private final FareCalculatorService fareCalculatorService = new FareCalculatorService();
+    private final int batchSize;
+    private final long retryMillis;
+    private final LongAdder applied;
+    private final LongAdder rejected;
+    // Mêmes compteurs que les sorties traitées par les bornes (ParkingService.DISCOUNT_HIT_RATE)
+    private final LongAdder exits;
+    private final LongAdder discountedExits;
+    private volatile Thread thread;
+    // Après un redémarrage ou une panne, le premier lot a pu être appliqué sans que le point de reprise soit écrit
+    private boolean recovering = true;
+    // Les refus en attente sont réappliqués une fois, quand le journal est vide
+    private boolean reconciling = true;
+
+    public JournalDrainer(GateJournal journal, GateJournal rejectedJournal, ParkingSpotRepository parkingSpotDAO, TicketRepository ticketDAO,
+                          OccupancyService occupancyService, ParkingSpotIndex parkingSpotIndex, int batchSize, long retryMillis, MetricsRegistry metricsRegistry) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive");
+        }
+        this.journal = journal;
+        this.rejectedJournal = rejectedJournal;
+        this.parkingSpotDAO = parkingSpotDAO;
+        this.ticketDAO = ticketDAO;
+        this.occupancyService = occupancyService;
+        this.parkingSpotIndex = parkingSpotIndex;
+        this.batchSize = batchSize;
+        this.retryMillis = retryMillis;
+        this.applied = metricsRegistry.counter(APPLIED);
+        this.rejected = metricsRegistry.counter(REJECTED);
+        this.exits = metricsRegistry.counter(ParkingService.EXITS);
+        this.discountedExits = metricsRegistry.counter(ParkingService.DISCOUNTED_EXITS);
+        metricsRegistry.gauge(BACKLOG, journal::getBacklog);
+        metricsRegistry.gauge(REJECTED_BACKLOG, rejectedJournal::getBacklog);
+        // Entrées acquittées avant un redémarrage : leurs places restent promises jusqu'à leur application
+        for (GateJournal.Entry entry : journal.read(Integer.MAX_VALUE)) {
+            GateEvent event = entry.getEvent();
+            if (event.getDirection() == GateEvent.Direction.ENTRY) {
+                occupancyService.restoreReservation(event.getParkingType());
+                if (event.getParkingNumber() != GateEvent.NO_SPOT) {
+                    parkingSpotIndex.claim(event.getParkingType(), event.getParkingNumber());
+                }
+            }
+        }
+    }
+
+    public synchronized void start() {
+        if (thread != null) {
+            return;
+        }
+        thread = new Thread(this::run, "journal-drainer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void run() {
+        try {
+            while (thread != null) {
+                if (reconciling && journal.getBacklog() == 0) {
+                    reconciling = !reconcile();
+                }
+                if (!journal.awaitEntries(retryMillis)) {
+                    continue;
+                }
+                if (!drain()) {
+                    Thread.sleep(retryMillis);
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Applique un lot ; false si la base est indisponible (le reste du lot est repris plus tard).
+    public synchronized boolean drain() {
+        List<GateJournal.Entry> entries = journal.read(batchSize);
+        int end = -1;
+        boolean available = true;
+        for (GateJournal.Entry entry : entries) {
+            GateEvent event = entry.getEvent();
+            if (!apply(event)) {
+                available = false;
+                break;
+            }
+            if (event.getDirection() == GateEvent.Direction.ENTRY) {
+                occupancyService.release(event.getParkingType());
+            }
+            end = entry.getEnd();
+        }
+        if (end > 0) {
+            journal.checkpoint(end);
+        }
+        recovering = !available;
+        return available;
+    }
+
+    // Réapplique dans l'ordre les événements refusés ; ceux encore refusés restent dans le journal des refus.
+    // false si la base est indisponible (la suite est reprise plus tard).
+    public synchronized boolean reconcile() {
+        List<GateJournal.Entry> entries = rejectedJournal.read(Integer.MAX_VALUE);
+        int end = -1;
+        boolean available = true;
+        for (GateJournal.Entry entry : entries) {
+            GateEvent event = entry.getEvent();
+            // Une réconciliation interrompue avant son point de reprise ne rejoue pas ce qu'elle a déjà appliqué
+            if (alreadyApplied(event)) {
+                end = entry.getEnd();
+                continue;
+            }
+            if (applyToDatabase(event)) {
+                logger.info("Rejected {} of vehicle {} at {} reconciled", event.getDirection(), event.getVehicleRegNumber(),
+                        new Date(event.getTime()));
+                applied.increment();
+            } else if (!databaseAvailable(event) || !reject(event)) {
+                available = false;
+                break;
+            }
+            end = entry.getEnd();
+        }
+        if (end > 0) {
+            rejectedJournal.checkpoint(end);
+        }
+        return available;
+    }
+
+    // Événements refusés en attente de réconciliation, dans l'ordre
+    public List<GateEvent> getRejected() {
+        List<GateEvent> events = new ArrayList<>();
+        for (GateJournal.Entry entry : rejectedJournal.read(Integer.MAX_VALUE)) {
+            events.add(entry.getEvent());
+        }
+        return events;
+    }
+
+    // false si l'événement doit rester dans le journal (base indisponible, journal des refus inutilisable).
+    private boolean apply(GateEvent event) {
+        if (recovering && alreadyApplied(event)) {
+            return true;
+        }
+        if (applyToDatabase(event)) {
+            applied.increment();
+            return true;
+        }
+        if (!databaseAvailable(event)) {
+            return false;
+        }
+        logger.error("Journaled {} of vehicle {} at {} rejected by the database, kept for reconciliation", event.getDirection(),
+                event.getVehicleRegNumber(), new Date(event.getTime()));
+        rejected.increment();
+        return reject(event);
+    }
+
+    private boolean applyToDatabase(GateEvent event) {
+        Date time = new Date(event.getTime());
+        if (event.getDirection() == GateEvent.Direction.ENTRY) {
+            return ticketDAO.enterVehicle(event.getParkingType(), event.getParkingNumber(), event.getVehicleRegNumber(), time) != null;
+        }
+        TicketRecord ticket = ticketDAO.exitVehicle(event.getVehicleRegNumber(), time, fareCalculatorService);
+        if (ticket == null) {
+            return false;
+        }
+        exits.increment();
+        if (ticket.getVisitCount() > 1) {
+            discountedExits.increment();
+        }
+        return true;
+    }
+
+    // Les DAO signalent de la même façon un refus et une panne : on vérifie que la base répond
+    private boolean databaseAvailable(GateEvent event) {
+        if (!parkingSpotDAO.isAvailable()) {
+            logger.warn("Database unavailable, {} of vehicle {} will be retried", event.getDirection(), event.getVehicleRegNumber());
+            return false;
+        }
+        return true;
+    }
+
+    private boolean reject(GateEvent event) {
+        try {
+            rejectedJournal.append(event);
+            return true;
+        } catch (IOException ex) {
+            logger.error("Unable to keep rejected {} of vehicle {}, it stays in the journal", event.getDirection(),
+                    event.getVehicleRegNumber(), ex);
+            return false;
+        }
+    }
+
+    // Dernier ticket du véhicule déjà daté de cet événement (à la seconde près, précision des colonnes DATETIME)
+    private boolean alreadyApplied(GateEvent event) {
+        TicketRecord ticket = ticketDAO.getTicket(event.getVehicleRegNumber());
+        if (ticket == null) {
+            return false;
+        }
+        long time = event.getDirection() == GateEvent.Direction.ENTRY ? ticket.getInTimeMillis() : ticket.getOutTimeMillis();
+        return time != Ticket.NO_TIME && Math.abs(time - event.getTime()) < 1000;
+    }
+
+    @Override
+    public void close() {
+        Thread running;
+        synchronized (this) {
+            running = thread;
+            thread = null;
+        }
+        if (running != null) {
+            running.interrupt();
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Panneaux d'affichage connectés en TCP : chaque panneau reçoit une ligne "TYPE delta libres" par variation,
+// en commençant par les compteurs courants. Chaque panneau a son propre thread d'envoi : le thread de publication de
+// OccupancyService ne fait que déposer la variation, regroupée par type avec celles pas encore envoyées. Un panneau
+// bloqué en écriture au-delà de writeTimeoutMillis est déconnecté ; un panneau déconnecté est désabonné.
+public class OccupancyBoardServer implements Closeable {
+
+    private static final Logger logger = LogManager.getLogger("OccupancyBoardServer");
+
+    public static final String PORT = "parkit.occupancy.port";
+    // Interface d'écoute, locale par défaut comme MetricsEndpoint
+    public static final String BIND_ADDRESS = "parkit.occupancy.bindAddress";
+    public static final String WRITE_TIMEOUT_MS = "parkit.occupancy.writeTimeoutMillis";
+
+    private final ServerSocket serverSocket;
+    private final OccupancyService occupancyService;
+    private final long writeTimeoutMillis;
+    private final Set<Board> boards = ConcurrentHashMap.newKeySet();
+    private Thread acceptor;
+
+    public OccupancyBoardServer(int port, OccupancyService occupancyService) throws IOException {
+        this(port, bindAddress(), Long.getLong(WRITE_TIMEOUT_MS, 5000L), occupancyService);
+    }
+
+    public OccupancyBoardServer(int port, InetAddress bindAddress, long writeTimeoutMillis, OccupancyService occupancyService) throws IOException {
+        this.serverSocket = new ServerSocket(port, 50, bindAddress);
+        this.occupancyService = occupancyService;
+        this.writeTimeoutMillis = writeTimeoutMillis;
+    }
+
+    private static InetAddress bindAddress() throws IOException {
+        String address = System.getProperty(BIND_ADDRESS);
+        return address == null ? InetAddress.getLoopbackAddress() : InetAddress.getByName(address);
+    }
+
+    public void start() {
+        acceptor = new Thread(this::acceptBoards, "board-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        logger.info("Occupancy boards served on {}:{}", serverSocket.getInetAddress().getHostAddress(), getPort());
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public int getConnectedBoards() {
+        return boards.size();
+    }
+
+    private void acceptBoards() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                Board board = new Board(socket);
+                boards.add(board);
+                Thread writer = new Thread(board::sendChanges, "board-writer-" + socket.getPort());
+                writer.setDaemon(true);
+                writer.start();
+                occupancyService.subscribe(board);
+            } catch (IOException ex) {
+                if (!serverSocket.isClosed()) {
+                    logger.error("Error accepting board connection", ex);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        for (Board board : boards) {
+            board.disconnect();
+        }
+        if (acceptor != null) {
+            try {
+                acceptor.join();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private final class Board implements OccupancyService.Listener {
+        private final Socket socket;
+        // Protégés par this : variations pas encore envoyées, par type
+        private final int[] pendingDeltas = new int[ParkingType.values().length];
+        private final int[] pendingFreeCounts = new int[ParkingType.values().length];
+        private final boolean[] pending = new boolean[ParkingType.values().length];
+        private int pendingTypes;
+        // Début de l'écriture en cours, 0 si aucune
+        private long writingSince;
+        private boolean closed;
+
+        Board(Socket socket) {
+            this.socket = socket;
+        }
+
+        // Appelé par le thread de publication de OccupancyService : ne bloque jamais sur le socket
+        @Override
+        public void onOccupancyChange(ParkingType parkingType, int delta, int freeCount) {
+            boolean stalled;
+            synchronized (this) {
+                int i = parkingType.ordinal();
+                pendingDeltas[i] += delta;
+                pendingFreeCounts[i] = freeCount;
+                if (!pending[i]) {
+                    pending[i] = true;
+                    pendingTypes++;
+                }
+                stalled = writingSince != 0 && System.currentTimeMillis() - writingSince > writeTimeoutMillis;
+                notifyAll();
+            }
+            if (stalled) {
+                logger.warn("Board {} not reading for more than {}ms, disconnecting", socket.getRemoteSocketAddress(), writeTimeoutMillis);
+                disconnect();
+            }
+        }
+
+        // Thread d'envoi du panneau
+        void sendChanges() {
+            StringBuilder lines = new StringBuilder();
+            try {
+                OutputStream out = socket.getOutputStream();
+                while (true) {
+                    synchronized (this) {
+                        while (!closed && pendingTypes == 0) {
+                            wait();
+                        }
+                        if (closed) {
+                            return;
+                        }
+                        for (ParkingType parkingType : ParkingType.values()) {
+                            int i = parkingType.ordinal();
+                            if (pending[i]) {
+                                lines.append(parkingType).append(' ').append(pendingDeltas[i]).append(' ').append(pendingFreeCounts[i]).append('\n');
+                                pending[i] = false;
+                                pendingDeltas[i] = 0;
+                            }
+                        }
+                        pendingTypes = 0;
+                        writingSince = System.currentTimeMillis();
+                    }
+                    out.write(lines.toString().getBytes(StandardCharsets.US_ASCII));
+                    out.flush();
+                    lines.setLength(0);
+                    synchronized (this) {
+                        writingSince = 0;
+                    }
+                }
+            } catch (IOException ex) {
+                logger.info("Board {} disconnected", socket.getRemoteSocketAddress());
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            } finally {
+                disconnect();
+            }
+        }
+
+        void disconnect() {
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                notifyAll();
+            }
+            occupancyService.unsubscribe(this);
+            boards.remove(this);
+            try {
+                socket.close();
+            } catch (IOException ex) {
+                logger.error("Error while closing board connection", ex);
+            }
+        }
+    }
+}
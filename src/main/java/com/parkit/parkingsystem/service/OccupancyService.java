@@ -0,0 +1,240 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSpotListener;
+import com.parkit.parkingsystem.dao.ParkingSpotRepository;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.Closeable;
+import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Nombre de places libres par type pour les panneaux d'affichage, tenu en mémoire par les DAO à chaque changement d'état
+// et réconcilié périodiquement avec la table parking. La lecture est une simple lecture atomique.
+// Les abonnés reçoivent les variations depuis un thread dédié : une rafale de changements est regroupée en un seul envoi
+// par type, et un abonné lent ne ralentit jamais une borne.
+public class OccupancyService implements ParkingSpotListener, Closeable {
+
+    private static final Logger logger = LogManager.getLogger("OccupancyService");
+
+    public static final String ENABLED = "parkit.occupancy.enabled";
+    public static final String RECONCILE_PERIOD_MS = "parkit.occupancy.reconcileMillis";
+
+    private static final Object CHANGED = new Object();
+
+    // Reçoit la variation du nombre de places libres et la nouvelle valeur ; à l'abonnement, delta == freeCount
+    public interface Listener {
+        void onOccupancyChange(ParkingType parkingType, int delta, int freeCount);
+    }
+
+    private final ConcurrentMap<Integer, Boolean> availability = new ConcurrentHashMap<>();
+    // Version de la dernière mise à jour de chaque place, pour ne pas la réconcilier sur une lecture antérieure
+    private final AtomicLong version = new AtomicLong();
+    private final ConcurrentMap<Integer, Long> changedAt = new ConcurrentHashMap<>();
+    // Partagé par les mises à jour, exclusif pendant une réconciliation
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final AtomicInteger[] freeCounts = new AtomicInteger[ParkingType.values().length];
+    // Places promises aux entrées journalisées pas encore appliquées en base (voir ParkingService et JournalDrainer)
+    private final AtomicInteger[] reserved = new AtomicInteger[ParkingType.values().length];
+    private final BlockingQueue<Object> changes = new ArrayBlockingQueue<>(1);
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final Queue<Listener> pendingListeners = new ConcurrentLinkedQueue<>();
+    // Valeurs déjà envoyées aux abonnés, lues et écrites par le seul thread de publication
+    private final int[] published = new int[ParkingType.values().length];
+    private Thread publisher;
+
+    public OccupancyService() {
+        for (int i = 0; i < freeCounts.length; i++) {
+            freeCounts[i] = new AtomicInteger();
+            reserved[i] = new AtomicInteger();
+        }
+    }
+
+    // Places libres en base moins celles réservées
+    public int getFreeCount(ParkingType parkingType) {
+        int i = parkingType.ordinal();
+        return Math.max(0, freeCounts[i].get() - reserved[i].get());
+    }
+
+    // Réserve une place pour une entrée journalisée ; false si le parking est complet.
+    public boolean reserve(ParkingType parkingType) {
+        int i = parkingType.ordinal();
+        int current;
+        do {
+            current = reserved[i].get();
+            if (current >= freeCounts[i].get()) {
+                return false;
+            }
+        } while (!reserved[i].compareAndSet(current, current + 1));
+        changes.offer(CHANGED);
+        return true;
+    }
+
+    // Réservation d'une entrée déjà acquittée et encore dans le journal au redémarrage : sans contrôle de capacité.
+    public void restoreReservation(ParkingType parkingType) {
+        reserved[parkingType.ordinal()].incrementAndGet();
+        changes.offer(CHANGED);
+    }
+
+    // L'entrée réservée a été appliquée en base (la place y est occupée) ou refusée.
+    public void release(ParkingType parkingType) {
+        if (reserved[parkingType.ordinal()].getAndUpdate(n -> n > 0 ? n - 1 : 0) > 0) {
+            changes.offer(CHANGED);
+        }
+    }
+
+    @Override
+    public void onParkingSpotChange(ParkingType parkingType, int parkingNumber, boolean available) {
+        update(parkingType, parkingNumber, available);
+    }
+
+    public void update(ParkingSpot parkingSpot) {
+        update(parkingSpot.getParkingType(), parkingSpot.getId(), parkingSpot.isAvailable());
+    }
+
+    // Seul un changement d'état de la place modifie le compteur : une mise à jour répétée ne compte pas deux fois.
+    public void update(ParkingType parkingType, int parkingNumber, boolean available) {
+        lock.readLock().lock();
+        try {
+            changedAt.put(parkingNumber, version.incrementAndGet());
+            setAvailable(parkingType, parkingNumber, available);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void setAvailable(ParkingType parkingType, int parkingNumber, boolean available) {
+        Boolean previous = availability.put(parkingNumber, available);
+        if (previous == null ? available : previous != available) {
+            freeCounts[parkingType.ordinal()].addAndGet(available ? 1 : -1);
+            changes.offer(CHANGED);
+        }
+    }
+
+    // Version courante, à relever avant de lire l'état en base pour reconcile(parkingSpots, version).
+    public long getVersion() {
+        return version.get();
+    }
+
+    // Aligne les compteurs sur un état de la base lu sans mise à jour concurrente (chargement au démarrage).
+    public int reconcile(Collection<ParkingSpot> parkingSpots) {
+        return reconcile(parkingSpots, getVersion());
+    }
+
+    // Aligne les compteurs sur l'état lu en base après getVersion() == version et retourne le nombre de places corrigées.
+    // Une place mise à jour depuis est ignorée : la lecture en base ne voit peut-être pas encore ce changement.
+    public int reconcile(Collection<ParkingSpot> parkingSpots, long version) {
+        int corrections = 0;
+        lock.writeLock().lock();
+        try {
+            for (ParkingSpot parkingSpot : parkingSpots) {
+                if (changedAt.getOrDefault(parkingSpot.getId(), 0L) > version) {
+                    continue;
+                }
+                if (!Boolean.valueOf(parkingSpot.isAvailable()).equals(availability.get(parkingSpot.getId()))) {
+                    setAvailable(parkingSpot.getParkingType(), parkingSpot.getId(), parkingSpot.isAvailable());
+                    corrections++;
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return corrections;
+    }
+
+    // Chargement au démarrage puis réconciliation périodique des compteurs avec la table parking.
+    public boolean reconcile(ParkingSpotRepository parkingSpotRepository) {
+        long version = getVersion();
+        List<ParkingSpot> parkingSpots = parkingSpotRepository.getParkingSpots();
+        if (parkingSpots == null) {
+            return false;
+        }
+        int corrections = reconcile(parkingSpots, version);
+        if (corrections > 0) {
+            logger.info("Occupancy counters reconciled, {} spot(s) corrected", corrections);
+        }
+        return true;
+    }
+
+    // Le nouvel abonné reçoit d'abord les compteurs courants, puis chaque variation
+    public void subscribe(Listener listener) {
+        pendingListeners.add(listener);
+        changes.offer(CHANGED);
+    }
+
+    public void unsubscribe(Listener listener) {
+        pendingListeners.remove(listener);
+        listeners.remove(listener);
+    }
+
+    public synchronized void start() {
+        if (publisher != null) {
+            return;
+        }
+        publisher = new Thread(this::publishChanges, "occupancy-publisher");
+        publisher.setDaemon(true);
+        publisher.start();
+    }
+
+    @Override
+    public synchronized void close() {
+        if (publisher != null) {
+            publisher.interrupt();
+            try {
+                publisher.join();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            publisher = null;
+        }
+    }
+
+    private void publishChanges() {
+        try {
+            while (true) {
+                changes.take();
+                for (ParkingType parkingType : ParkingType.values()) {
+                    int i = parkingType.ordinal();
+                    int freeCount = getFreeCount(parkingType);
+                    if (freeCount != published[i]) {
+                        int delta = freeCount - published[i];
+                        published[i] = freeCount;
+                        for (Listener listener : listeners) {
+                            notify(listener, parkingType, delta, freeCount);
+                        }
+                    }
+                }
+                Listener listener;
+                while ((listener = pendingListeners.poll()) != null) {
+                    listeners.add(listener);
+                    for (ParkingType parkingType : ParkingType.values()) {
+                        notify(listener, parkingType, published[parkingType.ordinal()], published[parkingType.ordinal()]);
+                    }
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void notify(Listener listener, ParkingType parkingType, int delta, int freeCount) {
+        try {
+            listener.onOccupancyChange(parkingType, delta, freeCount);
+        } catch (RuntimeException ex) {
+            logger.error("Occupancy listener failed for {}", parkingType, ex);
+        }
+    }
+}
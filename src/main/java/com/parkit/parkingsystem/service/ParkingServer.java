@@ -0,0 +1,179 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.dao.GateJournal;
+import com.parkit.parkingsystem.dao.ParkingSpotIndex;
+import com.parkit.parkingsystem.dao.ParkingSpotRepository;
+import com.parkit.parkingsystem.dao.TicketRepository;
+import com.parkit.parkingsystem.metrics.MetricsRegistry;
+import com.parkit.parkingsystem.util.InputReaderUtil;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.time.Clock;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Mode serveur : chaque borne (entrée ou sortie) se connecte en TCP et dispose de sa propre session
+// de menu, exécutée sur un thread virtuel. Les DAO et le pool de connexions sont partagés entre bornes.
+// Le shell des bornes n'est pas authentifié : le serveur n'écoute par défaut que sur l'interface locale, et une borne
+// silencieuse au-delà de readTimeoutMillis est déconnectée pour libérer sa session.
+public class ParkingServer implements Closeable {
+
+    private static final Logger logger = LogManager.getLogger("ParkingServer");
+
+    public static final String PORT = "parkit.server.port";
+    // Interface d'écoute, locale par défaut comme MetricsEndpoint et OccupancyBoardServer
+    public static final String BIND_ADDRESS = "parkit.server.bindAddress";
+    public static final String READ_TIMEOUT_MS = "parkit.server.readTimeoutMillis";
+
+    private final ServerSocket serverSocket;
+    private final int readTimeoutMillis;
+    private final ParkingSpotRepository parkingSpotDAO;
+    private final TicketRepository ticketDAO;
+    private final GateJournal journal;
+    private final OccupancyService occupancyService;
+    private final ParkingSpotIndex parkingSpotIndex;
+    private final ExecutorService sessions = newSessionExecutor();
+    private final Set<Socket> gates = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger servedGates = new AtomicInteger();
+    private Thread acceptor;
+
+    public ParkingServer(int port, ParkingSpotRepository parkingSpotDAO, TicketRepository ticketDAO) throws IOException {
+        this(port, parkingSpotDAO, ticketDAO, null, null, null);
+    }
+
+    // Avec un journal, les bornes y écrivent leurs passages sans attendre la base, places réservées dans occupancyService
+    // et prises dans parkingSpotIndex (voir ParkingService)
+    public ParkingServer(int port, ParkingSpotRepository parkingSpotDAO, TicketRepository ticketDAO, GateJournal journal,
+                         OccupancyService occupancyService, ParkingSpotIndex parkingSpotIndex) throws IOException {
+        this(port, bindAddress(), Integer.getInteger(READ_TIMEOUT_MS, 600000), parkingSpotDAO, ticketDAO, journal, occupancyService,
+                parkingSpotIndex);
+    }
+
+    public ParkingServer(int port, InetAddress bindAddress, int readTimeoutMillis, ParkingSpotRepository parkingSpotDAO,
+                         TicketRepository ticketDAO, GateJournal journal, OccupancyService occupancyService,
+                         ParkingSpotIndex parkingSpotIndex) throws IOException {
+        this.serverSocket = new ServerSocket(port, 50, bindAddress);
+        this.readTimeoutMillis = readTimeoutMillis;
+        this.parkingSpotDAO = parkingSpotDAO;
+        this.ticketDAO = ticketDAO;
+        this.journal = journal;
+        this.occupancyService = occupancyService;
+        this.parkingSpotIndex = parkingSpotIndex;
+    }
+
+    private static InetAddress bindAddress() throws IOException {
+        String address = System.getProperty(BIND_ADDRESS);
+        return address == null ? InetAddress.getLoopbackAddress() : InetAddress.getByName(address);
+    }
+
+    public void start() {
+        acceptor = new Thread(this::acceptGates, "gate-acceptor");
+        acceptor.start();
+        logger.info("Parking server listening on {}:{}", getAddress().getHostAddress(), getPort());
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public InetAddress getAddress() {
+        return serverSocket.getInetAddress();
+    }
+
+    public int getActiveGates() {
+        return gates.size();
+    }
+
+    public int getServedGates() {
+        return servedGates.get();
+    }
+
+    private void acceptGates() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket gate = serverSocket.accept();
+                gates.add(gate);
+                sessions.execute(() -> serveGate(gate));
+            } catch (IOException ex) {
+                if (!serverSocket.isClosed()) {
+                    logger.error("Error accepting gate connection", ex);
+                }
+            }
+        }
+    }
+
+    private void serveGate(Socket gate) {
+        try {
+            gate.setTcpNoDelay(true);
+            gate.setSoTimeout(readTimeoutMillis);
+            PrintStream out = new PrintStream(new BufferedOutputStream(gate.getOutputStream()), true, "UTF-8");
+            InputReaderUtil inputReaderUtil = new InputReaderUtil(gate.getInputStream());
+            out.println("Welcome to Parking System!");
+            ParkingService parkingService = new ParkingService(inputReaderUtil, parkingSpotDAO, ticketDAO, out, Clock.systemDefaultZone(),
+                    MetricsRegistry.shared(), journal, occupancyService, parkingSpotIndex);
+            InteractiveShell.runSession(inputReaderUtil, parkingService, out);
+            out.flush();
+            if (inputReaderUtil.getReadError() instanceof SocketTimeoutException) {
+                logger.warn("Gate {} idle for more than {}ms, disconnecting", gate.getRemoteSocketAddress(), readTimeoutMillis);
+            }
+        } catch (Exception ex) {
+            logger.error("Error serving gate {}", gate.getRemoteSocketAddress(), ex);
+        } finally {
+            gates.remove(gate);
+            servedGates.incrementAndGet();
+            try {
+                gate.close();
+            } catch (IOException ex) {
+                logger.error("Error while closing gate connection", ex);
+            }
+        }
+    }
+
+    // Arrête d'accepter de nouvelles bornes et coupe les sessions en cours.
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        for (Socket gate : gates) {
+            gate.close();
+        }
+        sessions.shutdown();
+        try {
+            if (!sessions.awaitTermination(5, TimeUnit.SECONDS)) {
+                logger.error("Gate sessions still running after shutdown");
+            }
+            if (acceptor != null) {
+                acceptor.join();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Threads virtuels (Java 21+) : une session bloquée en lecture ou en attente du pool ne monopolise pas de thread système.
+    // Le code reste compilé en Java 8 ; sur une JVM plus ancienne on retombe sur un pool de threads classiques.
+    static ExecutorService newSessionExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException ex) {
+            AtomicInteger sessionCount = new AtomicInteger();
+            return Executors.newCachedThreadPool(r -> {
+                Thread thread = new Thread(r, "gate-session-" + sessionCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+}
@@ -1,69 +1,191 @@
 package com.parkit.parkingsystem.service;
 
 import com.parkit.parkingsystem.constants.ParkingType;
-import com.parkit.parkingsystem.dao.ParkingSpotDAO;
-import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.dao.GateJournal;
+import com.parkit.parkingsystem.dao.ParkingSpotIndex;
+import com.parkit.parkingsystem.dao.ParkingSpotRepository;
+import com.parkit.parkingsystem.dao.TicketRepository;
+import com.parkit.parkingsystem.metrics.MetricsRegistry;
+import com.parkit.parkingsystem.metrics.Timer;
+import com.parkit.parkingsystem.model.GateEvent;
 import com.parkit.parkingsystem.model.ParkingSpot;
 import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.model.TicketRecord;
 import com.parkit.parkingsystem.util.InputReaderUtil;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.io.IOException;
+import java.io.PrintStream;
+import java.time.Clock;
 import java.util.Date;
+import java.util.concurrent.atomic.LongAdder;
 
 public class ParkingService {
 
     private static final Logger logger = LogManager.getLogger("ParkingService");
 
-    private static FareCalculatorService fareCalculatorService = new FareCalculatorService();
+    public static final String INCOMING_TIMER = "ParkingService.processIncomingVehicle";
+    public static final String EXITING_TIMER = "ParkingService.processExitingVehicle";
+    public static final String REJECTED_ENTRIES = "ParkingService.rejectedEntries";
+    public static final String EXITS = "ParkingService.exits";
+    public static final String DISCOUNTED_EXITS = "ParkingService.discountedExits";
+    public static final String DISCOUNT_HIT_RATE = "ParkingService.discountHitRate";
+
+    private final FareCalculatorService fareCalculatorService = new FareCalculatorService();
 
     private InputReaderUtil inputReaderUtil;
-    private ParkingSpotDAO parkingSpotDAO;
-    private  TicketDAO ticketDAO;
+    private ParkingSpotRepository parkingSpotDAO;
+    private  TicketRepository ticketDAO;
+    private final PrintStream out;
+    // Heure des entrées/sorties : horloge système, ou horodatage des événements en rejeu.
+    private final Clock clock;
+    private final Timer incomingTimer;
+    private final Timer exitingTimer;
+    private final LongAdder rejectedEntries;
+    private final LongAdder exits;
+    private final LongAdder discountedExits;
+    // Journal local des passages (null : la borne attend la base)
+    private final GateJournal journal;
+    private final OccupancyService occupancyService;
+    // Places libres où la borne journalisée choisit la place, sans attendre la base
+    private final ParkingSpotIndex parkingSpotIndex;
+
+    public ParkingService(InputReaderUtil inputReaderUtil, ParkingSpotRepository parkingSpotDAO, TicketRepository ticketDAO){
+        this(inputReaderUtil, parkingSpotDAO, ticketDAO, System.out);
+    }
+
+    // Une instance par borne : saisie et affichage propres, DAO partagés entre bornes.
+    public ParkingService(InputReaderUtil inputReaderUtil, ParkingSpotRepository parkingSpotDAO, TicketRepository ticketDAO, PrintStream out){
+        this(inputReaderUtil, parkingSpotDAO, ticketDAO, out, Clock.systemDefaultZone());
+    }
+
+    public ParkingService(InputReaderUtil inputReaderUtil, ParkingSpotRepository parkingSpotDAO, TicketRepository ticketDAO, PrintStream out, Clock clock){
+        this(inputReaderUtil, parkingSpotDAO, ticketDAO, out, clock, MetricsRegistry.shared());
+    }
+
+    public ParkingService(InputReaderUtil inputReaderUtil, ParkingSpotRepository parkingSpotDAO, TicketRepository ticketDAO, PrintStream out, Clock clock,
+                          MetricsRegistry metricsRegistry){
+        this(inputReaderUtil, parkingSpotDAO, ticketDAO, out, clock, metricsRegistry, null, null, null);
+    }
 
-    public ParkingService(InputReaderUtil inputReaderUtil, ParkingSpotDAO parkingSpotDAO, TicketDAO ticketDAO){
+    // Avec un journal, la borne n'attend jamais la base : la place est réservée dans les compteurs d'occupation (parking complet
+    // refusé) et prise dans l'index, le passage est rendu durable puis acquitté, et JournalDrainer crée ou clôt ensuite
+    // le ticket dans l'ordre, sur la place donnée à la borne.
+    public ParkingService(InputReaderUtil inputReaderUtil, ParkingSpotRepository parkingSpotDAO, TicketRepository ticketDAO, PrintStream out, Clock clock,
+                          MetricsRegistry metricsRegistry, GateJournal journal, OccupancyService occupancyService,
+                          ParkingSpotIndex parkingSpotIndex){
+        if (journal != null && (occupancyService == null || parkingSpotIndex == null)) {
+            throw new IllegalArgumentException("Journaled gates need the occupancy counters and the spot index to assign spots");
+        }
         this.inputReaderUtil = inputReaderUtil;
         this.parkingSpotDAO = parkingSpotDAO;
         this.ticketDAO = ticketDAO;
+        this.out = out;
+        this.clock = clock;
+        this.incomingTimer = metricsRegistry.timer(INCOMING_TIMER);
+        this.exitingTimer = metricsRegistry.timer(EXITING_TIMER);
+        this.rejectedEntries = metricsRegistry.counter(REJECTED_ENTRIES);
+        this.exits = metricsRegistry.counter(EXITS);
+        this.discountedExits = metricsRegistry.counter(DISCOUNTED_EXITS);
+        this.journal = journal;
+        this.occupancyService = occupancyService;
+        this.parkingSpotIndex = parkingSpotIndex;
+        //Part des sorties payées avec la remise client régulier
+        metricsRegistry.gauge(DISCOUNT_HIT_RATE, () -> {
+            long count = metricsRegistry.counter(EXITS).sum();
+            return count == 0 ? 0 : (double) metricsRegistry.counter(DISCOUNTED_EXITS).sum() / count;
+        });
     }
 
     public void processIncomingVehicle() {
         try{
-            ParkingSpot parkingSpot = getNextParkingNumberIfAvailable();
-            if(parkingSpot !=null && parkingSpot.getId() > 0){
-                String vehicleRegNumber = getVehichleRegNumber();
-                parkingSpot.setAvailable(false);
-                parkingSpotDAO.updateParking(parkingSpot);//allot this parking space and mark it's availability as false
-                Date inTime = new Date();
-                Ticket ticket = new Ticket();
-                //ID, PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME)
-                //ticket.setId(ticketID);
-                ticket.setParkingSpot(parkingSpot);
-                ticket.setVehicleRegNumber(vehicleRegNumber);
-                ticket.setPrice(0);
-                ticket.setInTime(inTime);
-                ticket.setOutTime(null);
-                ticketDAO.saveTicket(ticket);
-
-                //Vérif si client régulier
-                int numberOfTickets = ticketDAO.countTicketByVehicleRegNumber(vehicleRegNumber);
-                boolean hasDiscount = numberOfTickets > 1;
-                if (hasDiscount) {
-                    System.out.println("Heureux de vous revoir ! En tant qu’utilisateur régulier de notre parking, vous allez obtenir une remise de 5%");
+            ParkingType parkingType = getVehichleType();
+            String vehicleRegNumber = getVehichleRegNumber();
+            if(journal != null){
+                //Place attribuée avant l'acquittement, sans attendre la base : un parking complet est refusé tout de suite
+                int parkingNumber = claimSpot(parkingType);
+                if(parkingNumber < 0){
+                    rejectedEntries.increment();
+                    out.println("Unable to allocate a parking space. Parking slots might be full");
+                    return;
+                }
+                GateEvent event = new GateEvent(clock.millis(), GateEvent.Direction.ENTRY, vehicleRegNumber, parkingType, parkingNumber);
+                if(journal(event)){
+                    out.println("Entry recorded, your ticket will be saved shortly");
+                    out.println("Please park your vehicle in spot number:"+parkingNumber);
+                    out.println("Recorded in-time for vehicle number:"+vehicleRegNumber+" is:"+new Date(event.getTime()));
+                    return;
                 }
+                occupancyService.release(parkingType);
+                parkingSpotIndex.markAvailable(parkingType, parkingNumber);
+            }
+            Ticket ticket = processIncomingVehicle(parkingType, vehicleRegNumber);
+            if(ticket == null){
+                out.println("Unable to allocate a parking space. Parking slots might be full");
+                return;
+            }
 
-                //Reprendre schéma normal
-                System.out.println("Generated Ticket and saved in DB");
-                System.out.println("Please park your vehicle in spot number:"+parkingSpot.getId());
-                System.out.println("Recorded in-time for vehicle number:"+vehicleRegNumber+" is:"+inTime);
+            //Vérif si client régulier
+            boolean hasDiscount = ticket.getVisitCount() > 1;
+            if (hasDiscount) {
+                out.println("Heureux de vous revoir ! En tant qu’utilisateur régulier de notre parking, vous allez obtenir une remise de 5%");
             }
+
+            //Reprendre schéma normal
+            out.println("Generated Ticket and saved in DB");
+            out.println("Please park your vehicle in spot number:"+ticket.getParkingSpot().getId());
+            out.println("Recorded in-time for vehicle number:"+vehicleRegNumber+" is:"+ticket.getInTime());
+        }catch(IllegalArgumentException ie){
+            logger.error("Error parsing user input for incoming vehicle", ie);
+            incomingTimer.error();
         }catch(Exception e){
             logger.error("Unable to process incoming vehicle",e);
+            incomingTimer.error();
         }
     }
 
+    // Entrée sans saisie (rejeu d'événements) : null si aucune place n'a pu être attribuée.
+    public Ticket processIncomingVehicle(ParkingType parkingType, String vehicleRegNumber) {
+        //Réservation de la place, création du ticket et comptage des passages en une seule transaction
+        long start = System.nanoTime();
+        Ticket ticket = ticketDAO.enterVehicle(parkingType, vehicleRegNumber, new Date(clock.millis()));
+        incomingTimer.record(start);
+        if (ticket == null) {
+            rejectedEntries.increment();
+        }
+        return ticket;
+    }
+
+    // Réserve une place dans les compteurs d'occupation puis la prend dans l'index ; -1 si le parking est complet.
+    private int claimSpot(ParkingType parkingType) {
+        if (!occupancyService.reserve(parkingType)) {
+            return -1;
+        }
+        int parkingNumber = parkingSpotIndex.claimNextAvailableSlot(parkingType);
+        if (parkingNumber < 0) {
+            occupancyService.release(parkingType);
+        }
+        return parkingNumber;
+    }
+
+    // Écrit le passage dans le journal ; false si l'écriture échoue (la borne attend alors la base).
+    private boolean journal(GateEvent event) {
+        Timer timer = event.getDirection() == GateEvent.Direction.ENTRY ? incomingTimer : exitingTimer;
+        long start = System.nanoTime();
+        try {
+            journal.append(event);
+        } catch (IOException ex) {
+            logger.error("Unable to journal {} of vehicle {}, falling back to the database", event.getDirection(),
+                    event.getVehicleRegNumber(), ex);
+            return false;
+        }
+        timer.record(start);
+        return true;
+    }
+
     private String getVehichleRegNumber() throws Exception {
-        System.out.println("Please type the vehicle registration number and press enter key");
+        out.println("Please type the vehicle registration number and press enter key");
         return inputReaderUtil.readVehicleRegistrationNumber();
     }
 
@@ -87,9 +209,9 @@ public class ParkingService {
     }
 
     private ParkingType getVehichleType(){
-        System.out.println("Please select vehicle type from menu");
-        System.out.println("1 CAR");
-        System.out.println("2 BIKE");
+        out.println("Please select vehicle type from menu");
+        out.println("1 CAR");
+        out.println("2 BIKE");
         int input = inputReaderUtil.readSelection();
         switch(input){
             case 1: {
@@ -99,7 +221,7 @@ public class ParkingService {
                 return ParkingType.BIKE;
             }
             default: {
-                System.out.println("Incorrect input provided");
+                out.println("Incorrect input provided");
                 throw new IllegalArgumentException("Entered input is invalid");
             }
         }
@@ -108,26 +230,49 @@ public class ParkingService {
     public void processExitingVehicle() {
         try{
             String vehicleRegNumber = getVehichleRegNumber();
-            Ticket ticket = ticketDAO.getTicket(vehicleRegNumber);
-            Date outTime = new Date();
-            ticket.setOutTime(outTime);
-
-            //Client régulier = remise à la sortie.
-            int numberOfTickets = ticketDAO.countTicketByVehicleRegNumber(vehicleRegNumber);
-            boolean hasDiscount = numberOfTickets > 1;
-            fareCalculatorService.calculateFare(ticket,hasDiscount);
-
-            if(ticketDAO.updateTicket(ticket)) {
-                ParkingSpot parkingSpot = ticket.getParkingSpot();
-                parkingSpot.setAvailable(true);
-                parkingSpotDAO.updateParking(parkingSpot);
-                System.out.println("Please pay the parking fare:" + ticket.getPrice());
-                System.out.println("Recorded out-time for vehicle number:" + ticket.getVehicleRegNumber() + " is:" + outTime);
+            if(journal != null){
+                //Prix calculé sur le ticket ouvert en mémoire, sans attendre la base ; JournalDrainer refait le même calcul à la clôture
+                Date outTime = new Date(clock.millis());
+                TicketRecord ticket = ticketDAO.priceOpenTicket(vehicleRegNumber, outTime, fareCalculatorService);
+                if(journal(new GateEvent(outTime.getTime(), GateEvent.Direction.EXIT, vehicleRegNumber, null))){
+                    //Ticket pas encore en mémoire (entrée encore dans le journal) : le prix est calculé à la clôture
+                    if(ticket == null){
+                        out.println("Exit recorded, the parking fare will be charged on your ticket");
+                    }else{
+                        out.println("Please pay the parking fare:" + ticket.getPrice());
+                    }
+                    out.println("Recorded out-time for vehicle number:"+vehicleRegNumber+" is:"+outTime);
+                    return;
+                }
+            }
+            TicketRecord ticket = processExitingVehicle(vehicleRegNumber);
+
+            if(ticket != null) {
+                out.println("Please pay the parking fare:" + ticket.getPrice());
+                out.println("Recorded out-time for vehicle number:" + ticket.getVehicleRegNumber() + " is:" + new Date(ticket.getOutTimeMillis()));
             }else{
-                System.out.println("Unable to update ticket information. Error occurred");
+                out.println("Unable to update ticket information. Error occurred");
             }
         }catch(Exception e){
             logger.error("Unable to process exiting vehicle",e);
+            exitingTimer.error();
+        }
+    }
+
+    // Sortie sans saisie (rejeu d'événements) : null si aucun ticket ouvert n'a été trouvé.
+    public TicketRecord processExitingVehicle(String vehicleRegNumber) {
+        //Recherche du ticket, calcul du prix (remise client régulier) et libération de la place en une seule transaction
+        long start = System.nanoTime();
+        TicketRecord ticket = ticketDAO.exitVehicle(vehicleRegNumber, new Date(clock.millis()), fareCalculatorService);
+        exitingTimer.record(start);
+        if (ticket == null) {
+            exitingTimer.error();
+        } else {
+            exits.increment();
+            if (ticket.getVisitCount() > 1) {
+                discountedExits.increment();
+            }
         }
+        return ticket;
     }
 }
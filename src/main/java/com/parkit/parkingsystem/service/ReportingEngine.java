@@ -0,0 +1,250 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ShardRouter;
+import com.parkit.parkingsystem.dao.TicketRepository;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.function.LongSupplier;
+
+// Rapports de recettes et d'occupation calculés en flux sur la table ticket.
+// Le thread de lecture remplit des lots primitifs que des workers agrègent chacun dans leur propre RevenueReport,
+// fusionnés à la fin. Après un rapport complet, le mode incrémental ne lit que les tickets clôturés depuis le watermark.
+// Le watermark ne dépasse pas le plus ancien passage encore dans le journal des bornes : une sortie appliquée plus tard
+// par JournalDrainer garde son heure de sortie d'origine et serait sinon déjà derrière lui.
+public class ReportingEngine {
+
+    private static final Logger logger = LogManager.getLogger("ReportingEngine");
+
+    public static final String ENABLED = "parkit.report";
+    public static final String FETCH_SIZE = "parkit.report.fetchSize";
+    public static final String WORKERS = "parkit.report.workers";
+    // Les tickets clôturés depuis moins longtemps sont laissés au rapport suivant (sorties pas encore validées en base)
+    public static final String WATERMARK_LAG_MS = "parkit.report.watermarkLagMillis";
+
+    private static final int CHUNK_SIZE = 4096;
+    private static final Chunk END = new Chunk(0);
+
+    private final TicketRepository ticketDAO;
+    private final int workers;
+    private final long watermarkLagMillis;
+    private final Clock clock;
+    // Heure du plus ancien passage journalisé pas encore en base (Long.MAX_VALUE sans journal)
+    private final LongSupplier oldestPendingTime;
+
+    private RevenueReport cumulative;
+    private long watermark = Long.MIN_VALUE;
+    private long lastScanned;
+
+    public ReportingEngine(TicketRepository ticketDAO, int workers) {
+        this(ticketDAO, workers, Long.getLong(WATERMARK_LAG_MS, 5000L), Clock.systemUTC());
+    }
+
+    public ReportingEngine(TicketRepository ticketDAO, int workers, long watermarkLagMillis, Clock clock) {
+        this(ticketDAO, workers, watermarkLagMillis, clock, () -> Long.MAX_VALUE);
+    }
+
+    // Avec le journal des bornes (GateJournal::getOldestPendingTime), les sorties pas encore appliquées retiennent le watermark.
+    public ReportingEngine(TicketRepository ticketDAO, int workers, long watermarkLagMillis, Clock clock, LongSupplier oldestPendingTime) {
+        if (workers < 1) {
+            throw new IllegalArgumentException("Workers must be positive");
+        }
+        this.ticketDAO = ticketDAO;
+        this.workers = workers;
+        this.watermarkLagMillis = watermarkLagMillis;
+        this.clock = clock;
+        this.oldestPendingTime = oldestPendingTime;
+    }
+
+    // Parcourt toute la table et repart de ce rapport pour le mode incrémental. Null si le parcours échoue.
+    public synchronized RevenueReport fullReport(int fetchSize) throws InterruptedException {
+        long upTo = upTo();
+        RevenueReport report = aggregate(fetchSize, Long.MIN_VALUE, upTo);
+        if (report == null) {
+            return null;
+        }
+        cumulative = report;
+        watermark = upTo;
+        return cumulative.copy();
+    }
+
+    // Rapport complet de tous les sites : leurs bases sont parcourues en parallèle puis les rapports fusionnés.
+    // Le rang de passage (remise) est celui du site. Null si le parcours d'un site échoue.
+    public static RevenueReport fullReport(ShardRouter shardRouter, int workers, int fetchSize) throws InterruptedException, ExecutionException {
+        Map<String, RevenueReport> lotReports = shardRouter.fanOut(
+                lot -> new ReportingEngine(shardRouter.getTicketDAO(lot), workers).fullReport(fetchSize));
+        RevenueReport report = new RevenueReport();
+        for (Map.Entry<String, RevenueReport> lotReport : lotReports.entrySet()) {
+            if (lotReport.getValue() == null) {
+                logger.error("Report of lot {} failed", lotReport.getKey());
+                return null;
+            }
+            report.merge(lotReport.getValue());
+        }
+        return report;
+    }
+
+    // Ajoute au rapport cumulé les tickets clôturés depuis le watermark (rapport complet au premier appel).
+    // Null si le parcours échoue : le rapport cumulé et le watermark restent alors inchangés.
+    public synchronized RevenueReport incrementalReport(int fetchSize) throws InterruptedException {
+        if (cumulative == null) {
+            return fullReport(fetchSize);
+        }
+        long upTo = upTo();
+        if (upTo <= watermark) {
+            lastScanned = 0;
+            return cumulative.copy();
+        }
+        RevenueReport increment = aggregate(fetchSize, watermark, upTo);
+        if (increment == null) {
+            return null;
+        }
+        cumulative.merge(increment);
+        watermark = upTo;
+        return cumulative.copy();
+    }
+
+    // Les événements journalisés sont appliqués dans l'ordre : tout ce qui précède le plus ancien en attente est en base.
+    private long upTo() {
+        long pending = oldestPendingTime.getAsLong();
+        return Math.min(clock.millis() - watermarkLagMillis, pending == Long.MAX_VALUE ? Long.MAX_VALUE : pending - 1);
+    }
+
+    // Heure de sortie (millisecondes depuis l'epoch) jusqu'à laquelle les tickets sont comptés
+    public synchronized long getWatermark() {
+        return watermark;
+    }
+
+    // Tickets lus lors du dernier rapport
+    public synchronized long getLastScanned() {
+        return lastScanned;
+    }
+
+    private RevenueReport aggregate(int fetchSize, long after, long upTo) throws InterruptedException {
+        long start = System.nanoTime();
+        BlockingQueue<Chunk> free = new ArrayBlockingQueue<>(workers + 2);
+        BlockingQueue<Chunk> full = new ArrayBlockingQueue<>(workers + 2);
+        for (int i = 0; i < workers + 2; i++) {
+            free.add(new Chunk(CHUNK_SIZE));
+        }
+        List<RevenueReport> partials = new ArrayList<>(workers);
+        List<Thread> threads = new ArrayList<>(workers);
+        for (int i = 0; i < workers; i++) {
+            RevenueReport partial = new RevenueReport();
+            partials.add(partial);
+            Thread thread = new Thread(() -> aggregateChunks(full, free, partial), "report-worker-" + partials.size());
+            thread.setDaemon(true);
+            thread.start();
+            threads.add(thread);
+        }
+        Reader reader = new Reader(free, full, upTo);
+        long scanned;
+        try {
+            scanned = after == Long.MIN_VALUE
+                    ? ticketDAO.scanTickets(fetchSize, reader)
+                    : ticketDAO.scanTicketsClosedBetween(after, upTo, fetchSize, reader);
+            reader.flush();
+        } finally {
+            for (int i = 0; i < workers; i++) {
+                full.put(END);
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        }
+        if (scanned < 0) {
+            return null;
+        }
+        RevenueReport report = partials.get(0);
+        for (int i = 1; i < workers; i++) {
+            report.merge(partials.get(i));
+        }
+        lastScanned = scanned;
+        logger.info("Report over {} tickets in {}ms", scanned, (System.nanoTime() - start) / 1000000);
+        return report;
+    }
+
+    private static void aggregateChunks(BlockingQueue<Chunk> full, BlockingQueue<Chunk> free, RevenueReport partial) {
+        try {
+            Chunk chunk;
+            while ((chunk = full.take()) != END) {
+                for (int i = 0; i < chunk.count; i++) {
+                    partial.add(chunk.types[i], chunk.inTimes[i], chunk.outTimes[i], chunk.prices[i], chunk.visitCounts[i]);
+                }
+                chunk.count = 0;
+                free.put(chunk);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Appelé par le thread de lecture pour chaque ligne du curseur : ne garde que les tickets clôturés avant upTo
+    private static final class Reader implements TicketRepository.TicketScanHandler {
+        private final BlockingQueue<Chunk> free;
+        private final BlockingQueue<Chunk> full;
+        private final long upTo;
+        private Chunk chunk;
+
+        Reader(BlockingQueue<Chunk> free, BlockingQueue<Chunk> full, long upTo) {
+            this.free = free;
+            this.full = full;
+            this.upTo = upTo;
+        }
+
+        @Override
+        public void onTicket(int id, String vehicleRegNumber, ParkingType parkingType, long inTime, long outTime, double price,
+                             int visitCount) throws InterruptedException {
+            if (outTime < 0 || outTime > upTo || outTime < inTime) {
+                return;
+            }
+            if (chunk == null) {
+                chunk = free.take();
+            }
+            chunk.add(parkingType.ordinal(), inTime, outTime, price, visitCount);
+            if (chunk.count == chunk.types.length) {
+                flush();
+            }
+        }
+
+        void flush() throws InterruptedException {
+            if (chunk != null && chunk.count > 0) {
+                full.put(chunk);
+                chunk = null;
+            }
+        }
+    }
+
+    private static final class Chunk {
+        final int[] types;
+        final long[] inTimes;
+        final long[] outTimes;
+        final double[] prices;
+        final int[] visitCounts;
+        int count;
+
+        Chunk(int size) {
+            types = new int[size];
+            inTimes = new long[size];
+            outTimes = new long[size];
+            prices = new double[size];
+            visitCounts = new int[size];
+        }
+
+        void add(int type, long inTime, long outTime, double price, int visitCount) {
+            types[count] = type;
+            inTimes[count] = inTime;
+            outTimes[count] = outTime;
+            prices[count] = price;
+            visitCounts[count++] = visitCount;
+        }
+    }
+}
@@ -0,0 +1,321 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.TicketRepository;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Audit d'une grille tarifaire : recalcule le prix de tous les tickets clôturés et réécrit ceux qui changent.
+// La lecture en flux remplit un lot pendant que le précédent est tarifé en parallèle (fork-join) ;
+// un thread d'écriture envoie les écarts en lots JDBC. Deux lots et quelques écarts en attente au plus : mémoire bornée.
+public class RepricingJob {
+
+    private static final Logger logger = LogManager.getLogger("RepricingJob");
+
+    public static final String ENABLED = "parkit.reprice";
+    // Integer.MIN_VALUE par défaut : lecture ligne à ligne du driver MySQL
+    public static final String FETCH_SIZE = "parkit.reprice.fetchSize";
+    public static final String CHUNK_SIZE = "parkit.reprice.chunkSize";
+    public static final String PARALLELISM = "parkit.reprice.parallelism";
+    public static final String DRY_RUN = "parkit.reprice.dryRun";
+
+    // En dessous, un lot est tarifé sans être redécoupé
+    private static final int SPLIT_THRESHOLD = 2048;
+    private static final int QUEUED_DIFFS = 2;
+    private static final Diffs END = new Diffs(0);
+
+    private final TicketRepository ticketDAO;
+    private final FareCalculatorService fareCalculatorService;
+    private final int chunkSize;
+    private final int parallelism;
+    private final boolean write;
+    private long progressInterval = 100000;
+
+    public RepricingJob(TicketRepository ticketDAO, FareCalculatorService fareCalculatorService, int chunkSize, int parallelism, boolean write) {
+        if (chunkSize < 1 || parallelism < 1) {
+            throw new IllegalArgumentException("Chunk size and parallelism must be positive");
+        }
+        this.ticketDAO = ticketDAO;
+        this.fareCalculatorService = fareCalculatorService;
+        this.chunkSize = chunkSize;
+        this.parallelism = parallelism;
+        this.write = write;
+    }
+
+    public void setProgressInterval(long progressInterval) {
+        this.progressInterval = progressInterval;
+    }
+
+    public Report run(int fetchSize) throws InterruptedException {
+        Report report = new Report();
+        report.start = System.nanoTime();
+        // Une seule grille pour tout le parcours, même si elle est rechargée entre-temps
+        TariffPlan plan = fareCalculatorService.getTariffEngine().getPlan();
+        BlockingQueue<Diffs> diffsQueue = new ArrayBlockingQueue<>(QUEUED_DIFFS);
+        Thread writer = new Thread(() -> writeDiffs(diffsQueue, report), "reprice-writer");
+        writer.setDaemon(true);
+        writer.start();
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        Scan scan = new Scan(plan, pool, diffsQueue, report);
+        try {
+            if (ticketDAO.scanTickets(fetchSize, scan) < 0) {
+                // Les lots déjà tarifés sont écrits, le lot en cours est abandonné
+                report.failed = true;
+            } else {
+                scan.finish();
+            }
+        } finally {
+            pool.shutdownNow();
+            diffsQueue.put(END);
+            writer.join();
+        }
+        report.elapsedNanos = System.nanoTime() - report.start;
+        logger.info("Repricing finished: {}", report);
+        return report;
+    }
+
+    private void writeDiffs(BlockingQueue<Diffs> diffsQueue, Report report) {
+        try {
+            Diffs diffs;
+            while ((diffs = diffsQueue.take()) != END) {
+                if (!write) {
+                    continue;
+                }
+                if (ticketDAO.updateTicketPrices(diffs.ids, diffs.prices, diffs.count)) {
+                    report.written.add(diffs.count);
+                } else {
+                    report.writeFailures.add(diffs.count);
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Appelé par le thread de lecture pour chaque ligne du curseur
+    private final class Scan implements TicketRepository.TicketScanHandler {
+        private final TariffPlan plan;
+        private final ForkJoinPool pool;
+        private final BlockingQueue<Diffs> diffsQueue;
+        private final Report report;
+        private Chunk filling = new Chunk(chunkSize);
+        private Chunk pricing = new Chunk(chunkSize);
+        private ForkJoinTask<?> pending;
+
+        Scan(TariffPlan plan, ForkJoinPool pool, BlockingQueue<Diffs> diffsQueue, Report report) {
+            this.plan = plan;
+            this.pool = pool;
+            this.diffsQueue = diffsQueue;
+            this.report = report;
+        }
+
+        @Override
+        public void onTicket(int id, String vehicleRegNumber, ParkingType parkingType, long inTime, long outTime, double price,
+                             int visitCount) throws InterruptedException {
+            long scanned = ++report.scanned;
+            if (outTime >= inTime) {
+                filling.add(id, parkingType, inTime, outTime, visitCount, price);
+                if (filling.count == chunkSize) {
+                    submitFilling();
+                }
+            } else if (outTime >= 0) {
+                report.invalid++;
+            }
+            if (scanned % progressInterval == 0) {
+                logger.info("Repricing progress: {}", report);
+            }
+        }
+
+        // Le lot plein part à la tarification ; on attend le précédent pour récupérer son tampon
+        private void submitFilling() throws InterruptedException {
+            awaitPricing();
+            Chunk chunk = filling;
+            filling = pricing;
+            pricing = chunk;
+            pending = pool.submit(new PricingTask(plan, chunk, 0, chunk.count));
+        }
+
+        private void awaitPricing() throws InterruptedException {
+            if (pending == null) {
+                return;
+            }
+            pending.join();
+            pending = null;
+            diffsQueue.put(pricing.diffs(report));
+            pricing.count = 0;
+        }
+
+        void finish() throws InterruptedException {
+            if (filling.count > 0) {
+                submitFilling();
+            }
+            awaitPricing();
+        }
+    }
+
+    private static final class PricingTask extends RecursiveAction {
+        private final TariffPlan plan;
+        private final Chunk chunk;
+        private final int from;
+        private final int to;
+
+        PricingTask(TariffPlan plan, Chunk chunk, int from, int to) {
+            this.plan = plan;
+            this.chunk = chunk;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= SPLIT_THRESHOLD) {
+                FareCalculatorService.calculateFares(plan, chunk.inTimes, chunk.outTimes, chunk.types, chunk.visitCounts,
+                        chunk.newPrices, from, to);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new PricingTask(plan, chunk, from, middle), new PricingTask(plan, chunk, middle, to));
+        }
+    }
+
+    // Tampon de tickets réutilisé d'un lot à l'autre
+    private static final class Chunk {
+        final int[] ids;
+        final long[] inTimes;
+        final long[] outTimes;
+        final byte[] types;
+        final int[] visitCounts;
+        final double[] oldPrices;
+        final double[] newPrices;
+        int count;
+
+        Chunk(int size) {
+            ids = new int[size];
+            inTimes = new long[size];
+            outTimes = new long[size];
+            types = new byte[size];
+            visitCounts = new int[size];
+            oldPrices = new double[size];
+            newPrices = new double[size];
+        }
+
+        void add(int id, ParkingType parkingType, long inTime, long outTime, int visitCount, double price) {
+            ids[count] = id;
+            inTimes[count] = inTime;
+            outTimes[count] = outTime;
+            types[count] = (byte) parkingType.ordinal();
+            visitCounts[count] = visitCount;
+            oldPrices[count++] = price;
+        }
+
+        // Écarts d'au moins un centime entre le prix enregistré et le nouveau prix
+        Diffs diffs(Report report) {
+            int changed = 0;
+            for (int i = 0; i < count; i++) {
+                if (Math.round(oldPrices[i] * 100) != Math.round(newPrices[i] * 100)) {
+                    changed++;
+                }
+            }
+            Diffs diffs = new Diffs(changed);
+            double delta = 0;
+            for (int i = 0; i < count; i++) {
+                if (Math.round(oldPrices[i] * 100) != Math.round(newPrices[i] * 100)) {
+                    diffs.ids[diffs.count] = ids[i];
+                    diffs.prices[diffs.count++] = newPrices[i];
+                    delta += newPrices[i] - oldPrices[i];
+                }
+            }
+            report.priced += count;
+            report.changed += changed;
+            report.priceDelta += delta;
+            return diffs;
+        }
+    }
+
+    private static final class Diffs {
+        final int[] ids;
+        final double[] prices;
+        int count;
+
+        Diffs(int size) {
+            ids = new int[size];
+            prices = new double[size];
+        }
+    }
+
+    // Compteurs de lecture tenus par le seul thread de lecture, lus pour la progression et à la fin
+    public static final class Report {
+        private volatile long scanned;
+        private volatile long priced;
+        private volatile long changed;
+        private volatile long invalid;
+        private volatile double priceDelta;
+        private final LongAdder written = new LongAdder();
+        private final LongAdder writeFailures = new LongAdder();
+        private volatile boolean failed;
+        private long start;
+        private long elapsedNanos;
+
+        public long getScanned() {
+            return scanned;
+        }
+
+        // Tickets clôturés dont le prix a été recalculé
+        public long getPriced() {
+            return priced;
+        }
+
+        public long getChanged() {
+            return changed;
+        }
+
+        // Tickets clôturés avec une sortie antérieure à l'entrée, laissés tels quels
+        public long getInvalid() {
+            return invalid;
+        }
+
+        // Somme des écarts (nouveau prix - prix enregistré) sur les tickets modifiés
+        public double getPriceDelta() {
+            return priceDelta;
+        }
+
+        public long getWritten() {
+            return written.sum();
+        }
+
+        public long getWriteFailures() {
+            return writeFailures.sum();
+        }
+
+        // Le parcours s'est arrêté avant la fin de la table
+        public boolean isFailed() {
+            return failed;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos != 0 ? elapsedNanos : System.nanoTime() - start;
+        }
+
+        public double getTicketsPerSecond() {
+            long elapsed = getElapsedNanos();
+            return elapsed == 0 ? 0 : scanned * 1e9 / elapsed;
+        }
+
+        @Override
+        public String toString() {
+            return "scanned=" + scanned + ", priced=" + priced + ", changed=" + changed + ", invalid=" + invalid
+                    + ", written=" + getWritten() + ", writeFailures=" + getWriteFailures()
+                    + ", priceDelta=" + String.format("%.2f", priceDelta) + (failed ? ", failed" : "")
+                    + ", elapsed=" + TimeUnit.NANOSECONDS.toMillis(getElapsedNanos()) + "ms"
+                    + ", ticketsPerSecond=" + String.format("%.0f", getTicketsPerSecond());
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+// Agrégats de recettes et d'occupation sur des tickets clôturés, en accumulateurs primitifs (UTC).
+// Les recettes sont comptées à l'heure de sortie ; un véhicule est présent dans chaque heure entamée de son stationnement.
+public final class RevenueReport {
+
+    private static final long MILLIS_PER_HOUR = 60 * 60 * 1000L;
+    private static final int HOURS_PER_DAY = 24;
+
+    private final long[] ticketsByType = new long[ParkingType.values().length];
+    private final double[] revenueByType = new double[ParkingType.values().length];
+    private final long[] dwellMillisByType = new long[ParkingType.values().length];
+    private long discountedTickets;
+    private double discountedRevenue;
+    // Par jour depuis l'epoch
+    private final Map<Long, Day> days = new HashMap<>();
+
+    private static final class Day {
+        final double[] revenueByHour = new double[HOURS_PER_DAY];
+        final long[] presenceByHour = new long[HOURS_PER_DAY];
+    }
+
+    // visitCount > 1 : le ticket a bénéficié de la remise des usagers récurrents
+    void add(int type, long inEpochMillis, long outEpochMillis, double price, int visitCount) {
+        ticketsByType[type]++;
+        revenueByType[type] += price;
+        dwellMillisByType[type] += outEpochMillis - inEpochMillis;
+        if (visitCount > 1) {
+            discountedTickets++;
+            discountedRevenue += price;
+        }
+        long outHour = Math.floorDiv(outEpochMillis, MILLIS_PER_HOUR);
+        day(Math.floorDiv(outHour, HOURS_PER_DAY)).revenueByHour[(int) Math.floorMod(outHour, HOURS_PER_DAY)] += price;
+        for (long hour = Math.floorDiv(inEpochMillis, MILLIS_PER_HOUR); hour <= outHour; hour++) {
+            day(Math.floorDiv(hour, HOURS_PER_DAY)).presenceByHour[(int) Math.floorMod(hour, HOURS_PER_DAY)]++;
+        }
+    }
+
+    void merge(RevenueReport other) {
+        for (int type = 0; type < ticketsByType.length; type++) {
+            ticketsByType[type] += other.ticketsByType[type];
+            revenueByType[type] += other.revenueByType[type];
+            dwellMillisByType[type] += other.dwellMillisByType[type];
+        }
+        discountedTickets += other.discountedTickets;
+        discountedRevenue += other.discountedRevenue;
+        for (Map.Entry<Long, Day> entry : other.days.entrySet()) {
+            Day day = day(entry.getKey());
+            for (int hour = 0; hour < HOURS_PER_DAY; hour++) {
+                day.revenueByHour[hour] += entry.getValue().revenueByHour[hour];
+                day.presenceByHour[hour] += entry.getValue().presenceByHour[hour];
+            }
+        }
+    }
+
+    RevenueReport copy() {
+        RevenueReport copy = new RevenueReport();
+        copy.merge(this);
+        return copy;
+    }
+
+    private Day day(long epochDay) {
+        Day day = days.get(epochDay);
+        if (day == null) {
+            day = new Day();
+            days.put(epochDay, day);
+        }
+        return day;
+    }
+
+    public long getTickets() {
+        long tickets = 0;
+        for (long count : ticketsByType) {
+            tickets += count;
+        }
+        return tickets;
+    }
+
+    public long getTickets(ParkingType parkingType) {
+        return ticketsByType[parkingType.ordinal()];
+    }
+
+    public double getRevenue() {
+        double revenue = 0;
+        for (double amount : revenueByType) {
+            revenue += amount;
+        }
+        return revenue;
+    }
+
+    public double getRevenue(ParkingType parkingType) {
+        return revenueByType[parkingType.ordinal()];
+    }
+
+    public long getAverageDwellMillis() {
+        long dwell = 0;
+        for (long millis : dwellMillisByType) {
+            dwell += millis;
+        }
+        long tickets = getTickets();
+        return tickets == 0 ? 0 : dwell / tickets;
+    }
+
+    public long getAverageDwellMillis(ParkingType parkingType) {
+        long tickets = ticketsByType[parkingType.ordinal()];
+        return tickets == 0 ? 0 : dwellMillisByType[parkingType.ordinal()] / tickets;
+    }
+
+    // Part des tickets ayant bénéficié de la remise
+    public double getDiscountShare() {
+        long tickets = getTickets();
+        return tickets == 0 ? 0 : (double) discountedTickets / tickets;
+    }
+
+    public double getDiscountedRevenue() {
+        return discountedRevenue;
+    }
+
+    // Clé : début de l'heure (millisecondes depuis l'epoch)
+    public SortedMap<Long, Double> getRevenueByHour() {
+        SortedMap<Long, Double> revenueByHour = new TreeMap<>();
+        for (Map.Entry<Long, Day> entry : days.entrySet()) {
+            for (int hour = 0; hour < HOURS_PER_DAY; hour++) {
+                if (entry.getValue().revenueByHour[hour] != 0) {
+                    revenueByHour.put((entry.getKey() * HOURS_PER_DAY + hour) * MILLIS_PER_HOUR, entry.getValue().revenueByHour[hour]);
+                }
+            }
+        }
+        return revenueByHour;
+    }
+
+    // Clé : début du jour (millisecondes depuis l'epoch)
+    public SortedMap<Long, Double> getRevenueByDay() {
+        SortedMap<Long, Double> revenueByDay = new TreeMap<>();
+        for (Map.Entry<Long, Day> entry : days.entrySet()) {
+            double revenue = 0;
+            for (double amount : entry.getValue().revenueByHour) {
+                revenue += amount;
+            }
+            revenueByDay.put(entry.getKey() * HOURS_PER_DAY * MILLIS_PER_HOUR, revenue);
+        }
+        return revenueByDay;
+    }
+
+    // Plus grand nombre de véhicules présents au cours d'une même heure
+    public long getPeakOccupancy() {
+        long peak = 0;
+        for (Day day : days.values()) {
+            for (long presence : day.presenceByHour) {
+                peak = Math.max(peak, presence);
+            }
+        }
+        return peak;
+    }
+
+    // Début de la première heure où le pic est atteint, -1 sans ticket
+    public long getPeakOccupancyHour() {
+        long peak = 0;
+        long peakHour = -1;
+        for (Map.Entry<Long, Day> entry : days.entrySet()) {
+            for (int hour = 0; hour < HOURS_PER_DAY; hour++) {
+                long presence = entry.getValue().presenceByHour[hour];
+                long start = (entry.getKey() * HOURS_PER_DAY + hour) * MILLIS_PER_HOUR;
+                if (presence > peak || (presence == peak && presence > 0 && start < peakHour)) {
+                    peak = presence;
+                    peakHour = start;
+                }
+            }
+        }
+        return peakHour;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder("tickets=").append(getTickets())
+                .append(", revenue=").append(String.format("%.2f", getRevenue()));
+        for (ParkingType parkingType : ParkingType.values()) {
+            text.append(", revenue").append(parkingType).append('=').append(String.format("%.2f", getRevenue(parkingType)));
+        }
+        return text.append(", averageDwell=").append(getAverageDwellMillis() / 60000).append("min")
+                .append(", discountShare=").append(String.format("%.3f", getDiscountShare()))
+                .append(", peakOccupancy=").append(getPeakOccupancy())
+                .append(", days=").append(days.size())
+                .toString();
+    }
+}
@@ -0,0 +1,143 @@
+package com.parkit.parkingsystem.service;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+// Grille tarifaire en vigueur. Le calcul lit la référence courante sans verrou ;
+// un rechargement compile la nouvelle grille à part puis la publie en une seule écriture.
+public class TariffEngine {
+
+    private static final Logger logger = LogManager.getLogger("TariffEngine");
+
+    public static final String FILE = "parkit.tariff.file";
+    public static final String RELOAD_PERIOD_MS = "parkit.tariff.reloadPeriodMs";
+
+    private static final long DEFAULT_RELOAD_PERIOD_MS = 60000;
+
+    private static volatile TariffEngine shared;
+
+    private final Path file;
+    private final AtomicReference<TariffPlan> plan;
+    private volatile long loadedModifiedMillis;
+    private ScheduledExecutorService reloader;
+
+    public TariffEngine(TariffPlan plan) {
+        this.file = null;
+        this.plan = new AtomicReference<>(plan);
+    }
+
+    // Une grille invalide au démarrage est une erreur : on ne tarife pas avec une grille inconnue
+    public TariffEngine(Path file) throws IOException {
+        this.file = file;
+        this.loadedModifiedMillis = Files.getLastModifiedTime(file).toMillis();
+        this.plan = new AtomicReference<>(load(file));
+    }
+
+    public TariffPlan getPlan() {
+        return plan.get();
+    }
+
+    // Remplace la grille ; en cas d'erreur la grille courante reste en vigueur
+    public boolean reload() {
+        if (file == null) {
+            return false;
+        }
+        try {
+            long modifiedMillis = Files.getLastModifiedTime(file).toMillis();
+            plan.set(load(file));
+            loadedModifiedMillis = modifiedMillis;
+            logger.info("Tariff reloaded from {}", file);
+            return true;
+        } catch (Exception ex) {
+            logger.error("Invalid tariff file {}, keeping current tariff", file, ex);
+            return false;
+        }
+    }
+
+    public boolean reloadIfModified() {
+        if (file == null) {
+            return false;
+        }
+        try {
+            if (Files.getLastModifiedTime(file).toMillis() == loadedModifiedMillis) {
+                return false;
+            }
+        } catch (IOException ex) {
+            logger.error("Unable to check tariff file {}", file, ex);
+            return false;
+        }
+        return reload();
+    }
+
+    public synchronized void startReloader(long periodMillis) {
+        if (file == null || reloader != null || periodMillis <= 0) {
+            return;
+        }
+        reloader = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "tariff-reloader");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reloader.scheduleWithFixedDelay(this::reloadIfModified, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stopReloader() {
+        if (reloader != null) {
+            reloader.shutdownNow();
+            reloader = null;
+        }
+    }
+
+    // Moteur partagé par les services : fichier de parkit.tariff.file s'il est défini, grille historique sinon
+    public static TariffEngine shared() {
+        TariffEngine engine = shared;
+        if (engine == null) {
+            synchronized (TariffEngine.class) {
+                engine = shared;
+                if (engine == null) {
+                    engine = createShared();
+                    shared = engine;
+                }
+            }
+        }
+        return engine;
+    }
+
+    private static TariffEngine createShared() {
+        String file = System.getProperty(FILE);
+        if (file == null || file.isEmpty()) {
+            return new TariffEngine(TariffPlan.DEFAULT);
+        }
+        try {
+            TariffEngine engine = new TariffEngine(Paths.get(file));
+            engine.startReloader(Long.getLong(RELOAD_PERIOD_MS, DEFAULT_RELOAD_PERIOD_MS));
+            logger.info("Tariff loaded from {}", file);
+            return engine;
+        } catch (Exception ex) {
+            throw new IllegalStateException("Unable to load tariff file " + file, ex);
+        }
+    }
+
+    private static TariffPlan load(Path file) throws IOException {
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(file);
+             Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        return TariffPlan.compile(properties);
+    }
+}
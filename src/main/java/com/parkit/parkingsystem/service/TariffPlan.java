@@ -0,0 +1,210 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.constants.Fare;
+import com.parkit.parkingsystem.constants.ParkingType;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+// Grille tarifaire compilée, immuable : lue une fois depuis un fichier puis évaluée sans verrou ni allocation.
+//
+// Format (fichier properties) :
+//   free.minutes=30                 stationnement gratuit en dessous de cette durée
+//   CAR.bands=0:1.5,180:1.0         tranches "minute de début:tarif horaire", la durée est payée tranche par tranche
+//   CAR.dailyCap=20                 plafond par période de 24h depuis l'entrée (facultatif)
+//   BIKE.bands=0:1.0
+//   loyalty=2:0.95,10:0.90          "passages minimum:coefficient", le palier le plus élevé atteint s'applique
+// Chaque ParkingType doit avoir ses tranches.
+public final class TariffPlan {
+
+    private static final double MILLIS_PER_HOUR = 1000.0 * 60 * 60;
+    private static final long MILLIS_PER_MINUTE = 60 * 1000L;
+    private static final long MILLIS_PER_DAY = 24 * 60 * MILLIS_PER_MINUTE;
+
+    // Grille historique, identique aux constantes de Fare
+    public static final TariffPlan DEFAULT = defaultPlan();
+
+    private final long freeMillis;
+    // Par ParkingType.ordinal()
+    private final long[][] bandStarts;
+    private final double[][] bandRates;
+    private final double[][] bandBasePrices;
+    private final double[] dailyCaps;
+    private final int[] loyaltyMinVisits;
+    private final double[] loyaltyFactors;
+
+    private TariffPlan(long freeMillis, long[][] bandStarts, double[][] bandRates, double[] dailyCaps,
+                       int[] loyaltyMinVisits, double[] loyaltyFactors) {
+        this.freeMillis = freeMillis;
+        this.bandStarts = bandStarts;
+        this.bandRates = bandRates;
+        this.dailyCaps = dailyCaps;
+        this.loyaltyMinVisits = loyaltyMinVisits;
+        this.loyaltyFactors = loyaltyFactors;
+        // Prix cumulé au début de chaque tranche : une recherche dichotomique suffit ensuite
+        this.bandBasePrices = new double[bandStarts.length][];
+        for (int type = 0; type < bandStarts.length; type++) {
+            double[] basePrices = new double[bandStarts[type].length];
+            for (int band = 1; band < basePrices.length; band++) {
+                basePrices[band] = basePrices[band - 1]
+                        + ((bandStarts[type][band] - bandStarts[type][band - 1]) / MILLIS_PER_HOUR) * bandRates[type][band - 1];
+            }
+            bandBasePrices[type] = basePrices;
+        }
+    }
+
+    public double price(long inEpochMillis, long outEpochMillis, ParkingType parkingType, int visitCount) {
+        if (outEpochMillis < inEpochMillis) {
+            throw new IllegalArgumentException("Out time provided is incorrect");
+        }
+        long durationMillis = outEpochMillis - inEpochMillis;
+        if (durationMillis < freeMillis) {
+            return Fare.LESS_THAN_30_MINUTES;
+        }
+        return price(durationMillis, parkingType.ordinal(), visitCount);
+    }
+
+    // Durée déjà validée (positive) ; type = ParkingType.ordinal()
+    double price(long durationMillis, int type, int visitCount) {
+        if (durationMillis < freeMillis) {
+            return Fare.LESS_THAN_30_MINUTES;
+        }
+        double price;
+        double dailyCap = dailyCaps[type];
+        if (dailyCap > 0) {
+            price = cappedPrice(type, durationMillis, dailyCap);
+        } else {
+            price = bandedPrice(type, durationMillis);
+        }
+        double factor = loyaltyFactor(visitCount);
+        return factor == 1 ? price : price * factor;
+    }
+
+    public double loyaltyFactor(int visitCount) {
+        int tier = Arrays.binarySearch(loyaltyMinVisits, visitCount);
+        if (tier < 0) {
+            tier = -tier - 2;
+        }
+        return tier < 0 ? 1 : loyaltyFactors[tier];
+    }
+
+    public int getTypeCount() {
+        return bandStarts.length;
+    }
+
+    // Plafond appliqué jour par jour au prix continu des tranches (qui ne repartent pas de zéro chaque jour) :
+    // un plafond jamais atteint laisse le prix inchangé.
+    private double cappedPrice(int type, long durationMillis, double dailyCap) {
+        long[] starts = bandStarts[type];
+        long lastBandStart = starts[starts.length - 1];
+        double price = 0;
+        double dayStartPrice = 0;
+        long dayStart = 0;
+        while (dayStart < durationMillis && dayStart < lastBandStart) {
+            long dayEnd = Math.min(dayStart + MILLIS_PER_DAY, durationMillis);
+            double dayEndPrice = bandedPrice(type, dayEnd);
+            price += Math.min(dailyCap, dayEndPrice - dayStartPrice);
+            dayStartPrice = dayEndPrice;
+            dayStart = dayEnd;
+        }
+        if (dayStart < durationMillis) {
+            // Au-delà de la dernière tranche, toutes les journées entières coûtent le même prix
+            double rate = bandRates[type][starts.length - 1];
+            long remaining = durationMillis - dayStart;
+            price += (remaining / MILLIS_PER_DAY) * Math.min(dailyCap, (MILLIS_PER_DAY / MILLIS_PER_HOUR) * rate)
+                    + Math.min(dailyCap, ((remaining % MILLIS_PER_DAY) / MILLIS_PER_HOUR) * rate);
+        }
+        return price;
+    }
+
+    private double bandedPrice(int type, long durationMillis) {
+        long[] starts = bandStarts[type];
+        int band = Arrays.binarySearch(starts, durationMillis);
+        if (band < 0) {
+            band = -band - 2;
+        }
+        return bandBasePrices[type][band] + ((durationMillis - starts[band]) / MILLIS_PER_HOUR) * bandRates[type][band];
+    }
+
+    public static TariffPlan compile(Properties properties) {
+        long freeMillis = parseLong(properties, "free.minutes", 30) * MILLIS_PER_MINUTE;
+        int types = ParkingType.values().length;
+        long[][] bandStarts = new long[types][];
+        double[][] bandRates = new double[types][];
+        double[] dailyCaps = new double[types];
+        for (ParkingType parkingType : ParkingType.values()) {
+            String bands = properties.getProperty(parkingType + ".bands");
+            if (bands == null) {
+                throw new IllegalArgumentException("Missing " + parkingType + ".bands");
+            }
+            TreeMap<Long, Double> parsed = new TreeMap<>();
+            for (Map.Entry<String, Double> band : parsePairs(bands, parkingType + ".bands").entrySet()) {
+                parsed.put(Long.parseLong(band.getKey()) * MILLIS_PER_MINUTE, band.getValue());
+            }
+            if (parsed.firstKey() != 0) {
+                throw new IllegalArgumentException(parkingType + ".bands must start at minute 0");
+            }
+            int type = parkingType.ordinal();
+            bandStarts[type] = new long[parsed.size()];
+            bandRates[type] = new double[parsed.size()];
+            int band = 0;
+            for (Map.Entry<Long, Double> entry : parsed.entrySet()) {
+                bandStarts[type][band] = entry.getKey();
+                bandRates[type][band++] = entry.getValue();
+            }
+            dailyCaps[type] = parseDouble(properties, parkingType + ".dailyCap", 0);
+        }
+        TreeMap<Integer, Double> loyalty = new TreeMap<>();
+        String tiers = properties.getProperty("loyalty");
+        if (tiers != null && !tiers.trim().isEmpty()) {
+            for (Map.Entry<String, Double> tier : parsePairs(tiers, "loyalty").entrySet()) {
+                loyalty.put(Integer.parseInt(tier.getKey()), tier.getValue());
+            }
+        }
+        int[] loyaltyMinVisits = new int[loyalty.size()];
+        double[] loyaltyFactors = new double[loyalty.size()];
+        int tier = 0;
+        for (Map.Entry<Integer, Double> entry : loyalty.entrySet()) {
+            loyaltyMinVisits[tier] = entry.getKey();
+            loyaltyFactors[tier++] = entry.getValue();
+        }
+        return new TariffPlan(freeMillis, bandStarts, bandRates, dailyCaps, loyaltyMinVisits, loyaltyFactors);
+    }
+
+    private static Map<String, Double> parsePairs(String value, String key) {
+        Map<String, Double> pairs = new TreeMap<>();
+        for (String pair : value.split(",")) {
+            String[] parts = pair.trim().split(":");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Invalid entry '" + pair.trim() + "' in " + key);
+            }
+            double amount = Double.parseDouble(parts[1].trim());
+            if (amount < 0) {
+                throw new IllegalArgumentException("Negative value in " + key);
+            }
+            pairs.put(parts[0].trim(), amount);
+        }
+        return pairs;
+    }
+
+    private static long parseLong(Properties properties, String key, long defaultValue) {
+        String value = properties.getProperty(key);
+        return value == null ? defaultValue : Long.parseLong(value.trim());
+    }
+
+    private static double parseDouble(Properties properties, String key, double defaultValue) {
+        String value = properties.getProperty(key);
+        return value == null ? defaultValue : Double.parseDouble(value.trim());
+    }
+
+    private static TariffPlan defaultPlan() {
+        Properties properties = new Properties();
+        properties.setProperty("free.minutes", "30");
+        properties.setProperty(ParkingType.CAR + ".bands", "0:" + Fare.CAR_RATE_PER_HOUR);
+        properties.setProperty(ParkingType.BIKE + ".bands", "0:" + Fare.BIKE_RATE_PER_HOUR);
+        properties.setProperty("loyalty", "2:" + Fare.DISCOUNT5);
+        return compile(properties);
+    }
+}
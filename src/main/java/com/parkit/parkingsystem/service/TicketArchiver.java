@@ -0,0 +1,94 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.dao.TicketRepository;
+import com.parkit.parkingsystem.metrics.MetricsRegistry;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.Closeable;
+import java.time.Clock;
+import java.util.Date;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Déplace périodiquement vers ticket_archive les tickets clôturés depuis plus de ageDays jours, par lots de batchSize
+// tickets (une transaction courte par lot, pour ne pas bloquer les bornes). La table ticket ne garde ainsi que les tickets
+// ouverts et récents, sur lesquels portent les entrées et sorties ; les comptages de passages additionnent les deux tables.
+public class TicketArchiver implements Closeable {
+
+    private static final Logger logger = LogManager.getLogger("TicketArchiver");
+
+    public static final String ENABLED = "parkit.archive.enabled";
+    public static final String AGE_DAYS = "parkit.archive.ageDays";
+    public static final String BATCH_SIZE = "parkit.archive.batchSize";
+    public static final String PERIOD_MS = "parkit.archive.periodMillis";
+
+    public static final String ARCHIVED = "TicketArchiver.archived";
+
+    private static final long ONE_DAY = 24 * 60 * 60 * 1000L;
+
+    private final TicketRepository ticketDAO;
+    private final long ageMillis;
+    private final int batchSize;
+    private final Clock clock;
+    private final LongAdder archived;
+    // Un seul passage à la fois ; distinct de this pour que close n'attende pas la fin d'un passage
+    private final Object archiving = new Object();
+    private ScheduledExecutorService scheduler;
+
+    public TicketArchiver(TicketRepository ticketDAO, int ageDays, int batchSize, Clock clock, MetricsRegistry metricsRegistry) {
+        if (ageDays < 0 || batchSize < 1) {
+            throw new IllegalArgumentException("Invalid archive age or batch size");
+        }
+        this.ticketDAO = ticketDAO;
+        this.ageMillis = ageDays * ONE_DAY;
+        this.batchSize = batchSize;
+        this.clock = clock;
+        this.archived = metricsRegistry.counter(ARCHIVED);
+    }
+
+    public synchronized void start(long periodMillis) {
+        if (scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "ticket-archiver");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::archive, 0, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // Archive lot après lot jusqu'à épuisement ; retourne le nombre de tickets déplacés, -1 si un lot a échoué
+    // (les lots précédents restent archivés, le reste attend le passage suivant).
+    public long archive() {
+        synchronized (archiving) {
+            long closedBefore = clock.millis() - ageMillis;
+            long total = 0;
+            int moved;
+            do {
+                moved = ticketDAO.archiveTickets(closedBefore, batchSize);
+                if (moved < 0) {
+                    logger.error("Ticket archiving stopped after {} tickets", total);
+                    return -1;
+                }
+                total += moved;
+                archived.add(moved);
+            } while (moved == batchSize && !Thread.currentThread().isInterrupted());
+            if (total > 0) {
+                logger.info("{} tickets closed before {} archived", total, new Date(closedBefore));
+            }
+            return total;
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.parkit.parkingsystem.util;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.GateEvent;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+// Lecture en flux d'un fichier d'événements de bornes, une ligne par événement :
+//  - CSV : time,direction,vehicle[,type]   ex. 2024-05-01T08:00:00Z,ENTRY,AB-123-CD,CAR
+//  - NDJSON : {"time":"2024-05-01T08:00:00Z","direction":"ENTRY","vehicle":"AB-123-CD","type":"CAR"}
+// time est une date ISO-8601 avec décalage ou un nombre de millisecondes depuis l'epoch ;
+// direction accepte ENTRY/IN et EXIT/OUT. Les lignes vides, commentaires (#) et en-têtes sont ignorés.
+public class GateEventReader implements Closeable {
+
+    private static final Logger logger = LogManager.getLogger("GateEventReader");
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final BufferedReader reader;
+    private long lineNumber;
+    private long rejectedLines;
+
+    public GateEventReader(Path file) throws IOException {
+        this(new BufferedReader(new InputStreamReader(Files.newInputStream(file), StandardCharsets.UTF_8), BUFFER_SIZE));
+    }
+
+    public GateEventReader(BufferedReader reader) {
+        this.reader = reader;
+    }
+
+    // Prochain événement valide, null en fin de fichier. Une ligne invalide est journalisée puis ignorée.
+    public GateEvent next() throws IOException {
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            String trimmed = line.trim();
+            if (!isEvent(trimmed)) {
+                continue;
+            }
+            try {
+                return parse(trimmed);
+            } catch (RuntimeException ex) {
+                rejectedLines++;
+                logger.error("Invalid gate event at line {}: {}", lineNumber, ex.getMessage());
+            }
+        }
+        return null;
+    }
+
+    // Jusqu'à max lignes d'événements suivantes, sans les découper (parse peut alors tourner sur d'autres threads) ;
+    // liste vide en fin de fichier.
+    public List<String> nextLines(int max) throws IOException {
+        List<String> lines = new ArrayList<>(max);
+        String line;
+        while (lines.size() < max && (line = reader.readLine()) != null) {
+            lineNumber++;
+            String trimmed = line.trim();
+            if (isEvent(trimmed)) {
+                lines.add(trimmed);
+            }
+        }
+        return lines;
+    }
+
+    private static boolean isEvent(String trimmed) {
+        return !trimmed.isEmpty() && !trimmed.startsWith("#") && !trimmed.regionMatches(true, 0, "time,", 0, 5);
+    }
+
+    public long getLineNumber() {
+        return lineNumber;
+    }
+
+    public long getRejectedLines() {
+        return rejectedLines;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    public static GateEvent parse(String line) {
+        if (line.charAt(0) == '{') {
+            return toEvent(jsonField(line, "time"), jsonField(line, "direction"), jsonField(line, "vehicle"), jsonField(line, "type"));
+        }
+        String[] fields = line.split(",", -1);
+        if (fields.length < 3) {
+            throw new IllegalArgumentException("Expected time,direction,vehicle[,type]");
+        }
+        return toEvent(fields[0].trim(), fields[1].trim(), fields[2].trim(), fields.length > 3 ? fields[3].trim() : null);
+    }
+
+    private static GateEvent toEvent(String time, String direction, String vehicleRegNumber, String type) {
+        if (time == null || direction == null || vehicleRegNumber == null || vehicleRegNumber.isEmpty()) {
+            throw new IllegalArgumentException("Missing time, direction or vehicle");
+        }
+        GateEvent.Direction parsedDirection = parseDirection(direction);
+        ParkingType parkingType = null;
+        if (parsedDirection == GateEvent.Direction.ENTRY) {
+            if (type == null || type.isEmpty()) {
+                throw new IllegalArgumentException("Missing parking type for entry");
+            }
+            parkingType = ParkingType.valueOf(type.toUpperCase());
+        }
+        return new GateEvent(parseTime(time), parsedDirection, vehicleRegNumber, parkingType);
+    }
+
+    private static GateEvent.Direction parseDirection(String direction) {
+        switch (direction.toUpperCase()) {
+            case "ENTRY":
+            case "IN":
+                return GateEvent.Direction.ENTRY;
+            case "EXIT":
+            case "OUT":
+                return GateEvent.Direction.EXIT;
+            default:
+                throw new IllegalArgumentException("Unknown direction: " + direction);
+        }
+    }
+
+    private static long parseTime(String time) {
+        boolean digits = !time.isEmpty();
+        for (int i = 0; i < time.length() && digits; i++) {
+            digits = Character.isDigit(time.charAt(i));
+        }
+        return digits ? Long.parseLong(time) : OffsetDateTime.parse(time).toInstant().toEpochMilli();
+    }
+
+    // Valeur d'un champ d'un objet JSON plat (chaîne sans échappement ou nombre), null si absent.
+    private static String jsonField(String json, String name) {
+        int key = json.indexOf("\"" + name + "\"");
+        if (key < 0) {
+            return null;
+        }
+        int colon = json.indexOf(':', key + name.length() + 2);
+        if (colon < 0) {
+            throw new IllegalArgumentException("Malformed field: " + name);
+        }
+        int start = colon + 1;
+        while (start < json.length() && Character.isWhitespace(json.charAt(start))) {
+            start++;
+        }
+        if (start < json.length() && json.charAt(start) == '"') {
+            int end = json.indexOf('"', start + 1);
+            if (end < 0) {
+                throw new IllegalArgumentException("Unterminated string for field: " + name);
+            }
+            return json.substring(start + 1, end);
+        }
+        int end = start;
+        while (end < json.length() && json.charAt(end) != ',' && json.charAt(end) != '}') {
+            end++;
+        }
+        String value = json.substring(start, end).trim();
+        return "null".equals(value) ? null : value;
+    }
+}
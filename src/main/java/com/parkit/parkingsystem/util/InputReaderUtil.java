@@ -3,13 +3,38 @@ package com.parkit.parkingsystem.util;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.Scanner;
 
 public class InputReaderUtil {
 
-    private static Scanner scan = new Scanner(System.in);
+    // La console est partagée : un seul Scanner sur System.in pour toutes les instances par défaut.
+    private static final Scanner CONSOLE = new Scanner(System.in);
     private static final Logger logger = LogManager.getLogger("InputReaderUtil");
 
+    private final Scanner scan;
+
+    public InputReaderUtil() {
+        this.scan = CONSOLE;
+    }
+
+    // Lecture depuis une borne distante (mode serveur).
+    public InputReaderUtil(InputStream in) {
+        this.scan = new Scanner(in, StandardCharsets.UTF_8.name());
+    }
+
+    // Bloque jusqu'à la prochaine saisie ; false quand l'entrée est fermée.
+    public boolean hasNextLine() {
+        return scan.hasNextLine();
+    }
+
+    // Erreur de lecture qui a mis fin à l'entrée (délai de lecture d'une borne dépassé...), null sinon.
+    public IOException getReadError() {
+        return scan.ioException();
+    }
+
     public int readSelection() {
         try {
             int input = Integer.parseInt(scan.nextLine());
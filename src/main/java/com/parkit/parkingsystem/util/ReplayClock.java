@@ -0,0 +1,48 @@
+package com.parkit.parkingsystem.util;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+// Horloge pilotée par le rejeu : renvoie l'horodatage de l'événement en cours de traitement.
+// Une instance par thread de rejeu.
+public class ReplayClock extends Clock {
+
+    private final ZoneId zone;
+    private volatile long millis;
+
+    public ReplayClock() {
+        this(ZoneOffset.UTC);
+    }
+
+    private ReplayClock(ZoneId zone) {
+        this.zone = zone;
+    }
+
+    public void setMillis(long millis) {
+        this.millis = millis;
+    }
+
+    @Override
+    public long millis() {
+        return millis;
+    }
+
+    @Override
+    public Instant instant() {
+        return Instant.ofEpochMilli(millis);
+    }
+
+    @Override
+    public ZoneId getZone() {
+        return zone;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+        ReplayClock clock = new ReplayClock(zone);
+        clock.setMillis(millis);
+        return clock;
+    }
+}
@@ -0,0 +1,2 @@
+/* GET_TICKET (dernier ticket d'un véhicule) et COUNT_TICKET (passages d'un véhicule) */
+create index IDX_TICKET_VEHICLE_IN_TIME on ticket(VEHICLE_REG_NUMBER, IN_TIME);
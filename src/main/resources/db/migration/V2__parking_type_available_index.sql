@@ -0,0 +1,2 @@
+/* GET_NEXT_PARKING_SPOT et CLAIM_PARKING_SPOT (plus petite place libre d'un type) */
+create index IDX_PARKING_TYPE_AVAILABLE on parking(TYPE, AVAILABLE, PARKING_NUMBER);
@@ -0,0 +1,2 @@
+/* SCAN_TICKETS_CLOSED_BETWEEN (rapports incrémentaux depuis le dernier watermark) */
+create index IDX_TICKET_OUT_TIME on ticket(OUT_TIME);
@@ -0,0 +1,14 @@
+/* Tickets clôturés déplacés par TicketArchiver : la table ticket ne garde que les tickets ouverts et récents */
+create table if not exists ticket_archive(
+ ID int PRIMARY KEY,
+ PARKING_NUMBER int NOT NULL,
+ VEHICLE_REG_NUMBER varchar(10) NOT NULL,
+ PRICE double,
+ IN_TIME DATETIME NOT NULL,
+ OUT_TIME DATETIME NOT NULL,
+ FOREIGN KEY (PARKING_NUMBER)
+ REFERENCES parking(PARKING_NUMBER));
+/* COUNT_TICKET et rangs de passage sur les tickets archivés */
+create index IDX_TICKET_ARCHIVE_VEHICLE_IN_TIME on ticket_archive(VEHICLE_REG_NUMBER, IN_TIME);
+/* SCAN_ARCHIVED_TICKETS_CLOSED_BETWEEN */
+create index IDX_TICKET_ARCHIVE_OUT_TIME on ticket_archive(OUT_TIME);
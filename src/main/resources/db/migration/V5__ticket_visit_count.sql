@@ -0,0 +1,3 @@
+/* Nombre de passages retenu pour la remise à la sortie, tous sites confondus : re-tarification et rapports le réutilisent */
+alter table ticket add column VISIT_COUNT int;
+alter table ticket_archive add column VISIT_COUNT int;
@@ -0,0 +1,217 @@
+package com.parkit.parkingsystem.integration;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.model.TicketRecord;
+import com.parkit.parkingsystem.service.BatchReplayService;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BatchReplayServiceTest {
+
+    private static final long DAY_START = 1714550400000L;
+
+    // Enregistre l'heure reçue pour chaque passage : entrée à la création du ticket, sortie à sa clôture.
+    private final Map<String, List<Long>> passages = new ConcurrentHashMap<>();
+    // Tickets créés, dans l'ordre des appels : "véhicule@place"
+    private final List<String> saved = Collections.synchronizedList(new ArrayList<>());
+    private final AtomicInteger ids = new AtomicInteger();
+    private volatile boolean failSave;
+
+    private final TicketDAO ticketDAO = new TicketDAO() {
+        @Override
+        public TicketRecord getTicket(String vehicleRegNumber) {
+            return null;
+        }
+
+        @Override
+        public int[] saveTickets(Collection<Ticket> tickets) {
+            if (failSave) {
+                return null;
+            }
+            int[] savedIds = new int[tickets.size()];
+            int i = 0;
+            for (Ticket ticket : tickets) {
+                passages.computeIfAbsent(ticket.getVehicleRegNumber(), k -> Collections.synchronizedList(new ArrayList<>()))
+                        .add(ticket.getInTimeMillis());
+                saved.add(ticket.getVehicleRegNumber() + "@" + ticket.getParkingSpot().getId());
+                ticket.setId(ids.incrementAndGet());
+                savedIds[i++] = ticket.getId();
+            }
+            return savedIds;
+        }
+
+        @Override
+        public boolean updateTickets(Collection<Ticket> tickets) {
+            for (Ticket ticket : tickets) {
+                assertTrue(ticket.getId() > 0);
+                passages.get(ticket.getVehicleRegNumber()).add(ticket.getOutTimeMillis());
+            }
+            return true;
+        }
+    };
+
+    private final ParkingSpotDAO parkingSpotDAO = parkingSpots(50, 1);
+
+    // Site de cars places CAR (1 à cars) puis bikes places BIKE
+    private static ParkingSpotDAO parkingSpots(int cars, int bikes) {
+        return new ParkingSpotDAO() {
+            @Override
+            public List<ParkingSpot> getParkingSpots() {
+                List<ParkingSpot> parkingSpots = new ArrayList<>();
+                for (int i = 1; i <= cars + bikes; i++) {
+                    parkingSpots.add(new ParkingSpot(i, i <= cars ? ParkingType.CAR : ParkingType.BIKE, true));
+                }
+                return parkingSpots;
+            }
+
+            @Override
+            public boolean updateParkings(Collection<ParkingSpot> parkingSpots) {
+                return true;
+            }
+        };
+    }
+
+    @Test
+    public void testReplayUsesEventTimestampsAndKeepsVehicleOrder() throws Exception {
+        // Vérifie que chaque passage est enregistré à l'heure de l'événement, dans l'ordre du fichier pour un même véhicule.
+        StringBuilder events = new StringBuilder("time,direction,vehicle,type\n");
+        for (int i = 0; i < 500; i++) {
+            events.append(DAY_START + i).append(",ENTRY,CAR").append(i % 50).append(",CAR\n");
+            events.append(DAY_START + i).append(",EXIT,CAR").append(i % 50).append('\n');
+        }
+        Path file = writeEvents(".csv", events.toString());
+
+        BatchReplayService.Report report = new BatchReplayService(parkingSpotDAO, ticketDAO, 4, 16).replay(file);
+
+        assertEquals(1000, report.getEvents());
+        assertEquals(500, report.getEntries());
+        assertEquals(500, report.getExits());
+        assertEquals(0, report.getFailures());
+        assertTrue(report.getEventsPerSecond() > 0);
+        for (int v = 0; v < 50; v++) {
+            List<Long> times = passages.get("CAR" + v);
+            assertEquals(20, times.size());
+            for (int i = 0; i < times.size(); i++) {
+                assertEquals(DAY_START + v + 50 * (i / 2), (long) times.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void testReplayAppliesEventsInFileOrder() throws Exception {
+        // Vérifie que les passages de véhicules différents sont appliqués dans l'ordre du fichier, quel que soit le nombre
+        // de workers : places attribuées et entrées refusées sont celles d'un traitement un par un.
+        StringBuilder events = new StringBuilder();
+        List<String> expected = new ArrayList<>();
+        TreeSet<Integer> free = new TreeSet<>(Arrays.asList(1, 2, 3));
+        Map<String, Integer> parked = new HashMap<>();
+        int refused = 0;
+        for (int i = 0; i < 400; i++) {
+            String vehicle = "CAR" + (i % 37);
+            boolean entry = (i / 37) % 2 == 0;
+            events.append(DAY_START + i).append(entry ? ",ENTRY," : ",EXIT,").append(vehicle).append(entry ? ",CAR\n" : "\n");
+            if (entry && !free.isEmpty()) {
+                parked.put(vehicle, free.pollFirst());
+                expected.add(vehicle + "@" + parked.get(vehicle));
+            } else if (!entry && parked.containsKey(vehicle)) {
+                free.add(parked.remove(vehicle));
+            } else {
+                refused++;
+            }
+        }
+        Path file = writeEvents(".csv", events.toString());
+
+        BatchReplayService.Report report = new BatchReplayService(parkingSpots(3, 0), ticketDAO, 8, 3).replay(file);
+
+        assertEquals(expected, saved);
+        assertEquals(refused, report.getFailures());
+    }
+
+    @Test
+    public void testFailedBatchIsCountedAndStateReloaded() throws Exception {
+        // Vérifie que les événements d'un lot dont l'écriture échoue sont comptés en échec, puis que le rejeu repart
+        // de l'état en base : la place prise par le lot perdu est de nouveau attribuée.
+        Path file = writeEvents(".csv", DAY_START + ",ENTRY,AAA,CAR\n" + DAY_START + ",ENTRY,BBB,CAR\n"
+                + (DAY_START + 1) + ",ENTRY,CCC,CAR\n");
+        TicketDAO failingFirstBatch = new TicketDAO() {
+            @Override
+            public TicketRecord getTicket(String vehicleRegNumber) {
+                return null;
+            }
+
+            @Override
+            public int[] saveTickets(Collection<Ticket> tickets) {
+                failSave = tickets.stream().anyMatch(ticket -> ticket.getVehicleRegNumber().equals("AAA"));
+                return ticketDAO.saveTickets(tickets);
+            }
+        };
+
+        BatchReplayService.Report report = new BatchReplayService(parkingSpotDAO, failingFirstBatch, 1, 2).replay(file);
+
+        assertEquals(2, report.getFailures());
+        assertEquals(1, report.getEntries());
+        assertEquals(Collections.singletonList("CCC@1"), saved);
+    }
+
+    @Test
+    public void testReplayStopsWhenApplierFails() {
+        // Vérifie que la lecture ne reste pas bloquée sur une file pleine quand le thread d'application s'arrête.
+        StringBuilder events = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            events.append(DAY_START + i).append(",ENTRY,CAR").append(i).append(",CAR\n");
+        }
+        TicketDAO brokenDAO = new TicketDAO() {
+            @Override
+            public TicketRecord getTicket(String vehicleRegNumber) {
+                throw new AssertionError("database gone");
+            }
+        };
+
+        IllegalStateException ex = assertTimeoutPreemptively(Duration.ofSeconds(10),
+                () -> assertThrows(IllegalStateException.class,
+                        () -> new BatchReplayService(parkingSpotDAO, brokenDAO, 1, 1).replay(writeEvents(".csv", events.toString()))));
+        assertTrue(ex.getCause() instanceof AssertionError);
+    }
+
+    @Test
+    public void testRefusedAndInvalidEventsAreReported() throws Exception {
+        // Vérifie qu'une sortie sans ticket ouvert et une ligne illisible sont comptées sans interrompre le rejeu.
+        Path file = writeEvents(".ndjson", "{\"time\":1714550400000,\"direction\":\"EXIT\",\"vehicle\":\"GHOST\"}\n"
+                + "not an event\n"
+                + "{\"time\":1714550400000,\"direction\":\"ENTRY\",\"vehicle\":\"AAA\",\"type\":\"BIKE\"}\n");
+
+        BatchReplayService.Report report = new BatchReplayService(parkingSpotDAO, ticketDAO, 2, 1000).replay(file);
+
+        assertEquals(2, report.getEvents());
+        assertEquals(1, report.getEntries());
+        assertEquals(1, report.getFailures());
+        assertEquals(1, report.getRejected());
+    }
+
+    private static Path writeEvents(String suffix, String events) throws Exception {
+        Path file = Files.createTempFile("gate-events", suffix);
+        file.toFile().deleteOnExit();
+        Files.write(file, events.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+}
@@ -0,0 +1,197 @@
+package com.parkit.parkingsystem.integration;
+
+import com.parkit.parkingsystem.config.ConnectionPool;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class ConnectionPoolTest {
+
+    private List<Connection> physicalConnections;
+    // Requêtes préparées par le pilote, dans l'ordre de création
+    private List<PreparedStatement> physicalStatements;
+    private ConnectionPool pool;
+
+    @BeforeEach
+    public void setUp() {
+        physicalConnections = new ArrayList<>();
+        physicalStatements = new ArrayList<>();
+        pool = newPool(2, 100, 0, 2);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        pool.close();
+    }
+
+    private ConnectionPool newPool(int maxSize, long maxWaitMillis, long idleTimeoutMillis, int statementCacheSize) {
+        return new ConnectionPool("jdbc:test", "user", "password", maxSize, maxWaitMillis, idleTimeoutMillis, 60000, statementCacheSize) {
+            @Override
+            protected Connection createConnection() throws SQLException {
+                Connection connection = mock(Connection.class);
+                when(connection.getAutoCommit()).thenReturn(true);
+                when(connection.isValid(anyInt())).thenReturn(true);
+                when(connection.prepareStatement(anyString(), anyInt())).thenAnswer(invocation -> {
+                    PreparedStatement statement = mock(PreparedStatement.class);
+                    physicalStatements.add(statement);
+                    return statement;
+                });
+                physicalConnections.add(connection);
+                return connection;
+            }
+        };
+    }
+
+    @Test
+    public void testConnectionIsReusedAfterClose() throws Exception {
+        // Vérifie qu'une connexion rendue au pool est réutilisée au lieu d'en ouvrir une nouvelle.
+        Connection first = pool.getConnection();
+        first.close();
+        Connection second = pool.getConnection();
+        second.close();
+
+        assertEquals(1, physicalConnections.size());
+        verify(physicalConnections.get(0), never()).close();
+        assertEquals(2, pool.getStats().getBorrowCount());
+    }
+
+    @Test
+    public void testStatsTrackActiveAndIdle() throws Exception {
+        // Vérifie les compteurs de connexions actives et libres.
+        Connection connection = pool.getConnection();
+        assertEquals(1, pool.getStats().getActive());
+        assertEquals(0, pool.getStats().getIdle());
+
+        connection.close();
+        assertEquals(0, pool.getStats().getActive());
+        assertEquals(1, pool.getStats().getIdle());
+    }
+
+    @Test
+    public void testGetConnectionTimesOutWhenPoolExhausted() throws Exception {
+        // Vérifie qu'on attend au plus maxWait quand toutes les connexions sont empruntées.
+        pool.getConnection();
+        pool.getConnection();
+
+        assertThrows(SQLException.class, () -> pool.getConnection());
+        assertEquals(1, pool.getStats().getTimeouts());
+    }
+
+    @Test
+    public void testDoubleCloseReturnsConnectionOnce() throws Exception {
+        // Vérifie qu'un double close() ne rend pas deux fois la même connexion.
+        Connection connection = pool.getConnection();
+        connection.close();
+        connection.close();
+
+        assertTrue(connection.isClosed());
+        assertEquals(1, pool.getStats().getIdle());
+    }
+
+    @Test
+    public void testUncommittedTransactionIsRolledBackOnRelease() throws Exception {
+        // Vérifie qu'une transaction laissée ouverte est annulée avant le retour au pool.
+        Connection connection = pool.getConnection();
+        when(physicalConnections.get(0).getAutoCommit()).thenReturn(false);
+        connection.close();
+
+        verify(physicalConnections.get(0), times(1)).rollback();
+        verify(physicalConnections.get(0), times(1)).setAutoCommit(true);
+    }
+
+    @Test
+    public void testIdleConnectionsAreEvicted() throws Exception {
+        // Vérifie que les connexions inactives depuis plus que idleTimeout sont fermées.
+        ConnectionPool evictingPool = newPool(2, 100, 1, 2);
+        try {
+            evictingPool.getConnection().close();
+            Thread.sleep(10);
+            evictingPool.evictIdle();
+
+            assertEquals(0, evictingPool.getStats().getIdle());
+            verify(physicalConnections.get(0), times(1)).close();
+        } finally {
+            evictingPool.close();
+        }
+    }
+
+    @Test
+    public void testPreparedStatementIsCachedPerConnection() throws Exception {
+        // Vérifie qu'une même requête n'est préparée qu'une fois par connexion physique.
+        Connection connection = pool.getConnection();
+        PreparedStatement first = connection.prepareStatement("select 1");
+        first.close();
+        connection.close();
+
+        connection = pool.getConnection();
+        PreparedStatement second = connection.prepareStatement("select 1");
+        second.close();
+        connection.close();
+
+        verify(physicalConnections.get(0), times(1)).prepareStatement("select 1", Statement.NO_GENERATED_KEYS);
+        assertEquals(1, pool.getStats().getStatementHits());
+        assertEquals(1, pool.getStats().getStatementMisses());
+    }
+
+    @Test
+    public void testClosingCachedStatementClearsParametersWithoutClosingIt() throws Exception {
+        // Vérifie que close() sur un statement en cache le réinitialise sans le fermer réellement.
+        Connection connection = pool.getConnection();
+        PreparedStatement statement = connection.prepareStatement("select ?");
+        statement.setInt(1, 42);
+        statement.close();
+
+        assertTrue(statement.isClosed());
+        assertThrows(SQLException.class, () -> statement.setInt(1, 43));
+        connection.close();
+    }
+
+    @Test
+    public void testSameQueryOpenedTwiceUsesSeparateStatements() throws Exception {
+        // Vérifie qu'une requête déjà ouverte sur la connexion obtient un second statement distinct.
+        Connection connection = pool.getConnection();
+        PreparedStatement first = connection.prepareStatement("select 1");
+        PreparedStatement second = connection.prepareStatement("select 1");
+
+        assertNotSame(first, second);
+        first.close();
+        second.close();
+        connection.close();
+    }
+
+    @Test
+    public void testStatementsAreClosedWhenEvictedOrPoolClosed() throws Exception {
+        // Vérifie la libération déterministe : la requête évincée du cache LRU est fermée aussitôt, celles encore en cache
+        // à la fermeture du pool, puis la connexion physique.
+        Connection connection = pool.getConnection();
+        PreparedStatement first = connection.prepareStatement("select 1");
+        first.close();
+        connection.prepareStatement("select 2").close();
+        verify(physicalStatements.get(0), never()).close();
+
+        connection.prepareStatement("select 3").close();
+        assertEquals(3, physicalStatements.size());
+        verify(physicalStatements.get(0), times(1)).close();
+        verify(physicalStatements.get(1), never()).close();
+        verify(physicalStatements.get(2), never()).close();
+
+        connection.close();
+        pool.close();
+
+        assertEquals(3, pool.getStats().getStatementMisses());
+        verify(physicalStatements.get(0), times(1)).close();
+        verify(physicalStatements.get(1), times(1)).close();
+        verify(physicalStatements.get(2), times(1)).close();
+        verify(physicalConnections.get(0), times(1)).close();
+    }
+}
@@ -1,6 +1,8 @@
 package com.parkit.parkingsystem.integration;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
@@ -17,6 +19,8 @@ import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
 import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.integration.config.DataBaseTestConfig;
+import com.parkit.parkingsystem.metrics.MetricsRegistry;
 
 public class DataBaseConfigTest {
 
@@ -35,7 +39,8 @@ public class DataBaseConfigTest {
     @BeforeEach
     public void setUp() {
         MockitoAnnotations.initMocks(this);
-        dataBaseConfigSpy = spy(new DataBaseConfig());
+        // Base de test (H2 en mémoire, ou MySQL avec parkit.test.db.url) : pas de serveur requis par défaut
+        dataBaseConfigSpy = spy(DataBaseConfig.forUrl(DataBaseTestConfig.url()));
     }
 
     @Test
@@ -122,4 +127,38 @@ public class DataBaseConfigTest {
         dataBaseConfigSpy.closeResultSet(null);
         verify(resultSet, times(0)).close(); // No interaction with resultSet should occur
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testDriverOptionsJoinUrlParameters() {
+        // Vérifie que les options du driver introduisent les paramètres d'une URL qui n'en a pas, ou s'ajoutent aux siens.
+        assertEquals("jdbc:mysql://host/lot2?rewriteBatchedStatements=true",
+                DataBaseConfig.forUrl("jdbc:mysql://host/lot2", "lot2", "secret").getJdbcUrl());
+        assertEquals("jdbc:mysql://host/lot2?serverTimezone=UTC&rewriteBatchedStatements=true",
+                DataBaseConfig.forUrl("jdbc:mysql://host/lot2?serverTimezone=UTC").getJdbcUrl());
+        System.setProperty(DataBaseConfig.REWRITE_BATCHED_STATEMENTS, "false");
+        try {
+            assertEquals("jdbc:mysql://host/lot2", DataBaseConfig.forUrl("jdbc:mysql://host/lot2").getJdbcUrl());
+        } finally {
+            System.clearProperty(DataBaseConfig.REWRITE_BATCHED_STATEMENTS);
+        }
+    }
+
+    @Test
+    public void testPoolStatsArePublishedAsGauges() throws Exception {
+        // Vérifie que les connexions actives et libres du pool sont exportées avec les autres métriques.
+        DataBaseConfig dataBaseConfig = DataBaseConfig.forUrl("jdbc:h2:mem:poolGauges;MODE=MySQL;DB_CLOSE_DELAY=-1");
+        MetricsRegistry metricsRegistry = new MetricsRegistry();
+        dataBaseConfig.metricsRegistry = metricsRegistry;
+
+        // Les jauges cumulent tous les pools du processus, dont ceux des autres tests
+        Connection connection = dataBaseConfig.getConnection();
+        double active = metricsRegistry.getGauge("DataBaseConfig.pool.active");
+        double idle = metricsRegistry.getGauge("DataBaseConfig.pool.idle");
+        dataBaseConfig.closeConnection(connection);
+
+        assertTrue(active >= 1);
+        assertEquals(active - 1, metricsRegistry.getGauge("DataBaseConfig.pool.active"));
+        assertEquals(idle + 1, metricsRegistry.getGauge("DataBaseConfig.pool.idle"));
+        assertTrue(metricsRegistry.toText().contains("DataBaseConfig.pool.avgWaitMillis "));
+    }
+}
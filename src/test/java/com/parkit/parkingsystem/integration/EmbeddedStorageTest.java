@@ -0,0 +1,137 @@
+package com.parkit.parkingsystem.integration;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.config.EmbeddedDataBaseConfig;
+import com.parkit.parkingsystem.config.SchemaMigrator;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.dao.TicketRepository;
+import com.parkit.parkingsystem.model.TicketRecord;
+import com.parkit.parkingsystem.service.ParkingService;
+import com.parkit.parkingsystem.util.InputReaderUtil;
+import com.parkit.parkingsystem.util.ReplayClock;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.sql.Connection;
+import java.sql.Statement;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class EmbeddedStorageTest {
+
+    private static final String URL = "jdbc:h2:mem:parkit-embedded-test;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+    private static final long ONE_HOUR = 60 * 60 * 1000L;
+
+    private EmbeddedDataBaseConfig dataBaseConfig;
+    private ParkingSpotDAO parkingSpotDAO;
+    private TicketDAO ticketDAO;
+    private ReplayClock clock;
+    private ParkingService parkingService;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        dataBaseConfig = new EmbeddedDataBaseConfig(URL);
+        dataBaseConfig.createSchemaIfMissing();
+        assertTrue(new SchemaMigrator(dataBaseConfig).migrate() >= 0);
+        execute("update parking set available = true", "delete from ticket");
+
+        parkingSpotDAO = new ParkingSpotDAO();
+        parkingSpotDAO.dataBaseConfig = dataBaseConfig;
+        ticketDAO = new TicketDAO(dataBaseConfig);
+        InputReaderUtil inputReaderUtil = mock(InputReaderUtil.class);
+        when(inputReaderUtil.readSelection()).thenReturn(1);
+        when(inputReaderUtil.readVehicleRegistrationNumber()).thenReturn("ABCDEF");
+        clock = new ReplayClock();
+        clock.setMillis(1_700_000_000_000L);
+        parkingService = new ParkingService(inputReaderUtil, parkingSpotDAO, ticketDAO,
+                new PrintStream(new ByteArrayOutputStream()), clock);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        System.clearProperty(DataBaseConfig.BACKEND);
+    }
+
+    @Test
+    public void testSchemaIsSeededOnce() throws Exception {
+        // Vérifie que la base vide reçoit les places par défaut et qu'un second démarrage ne les duplique pas.
+        dataBaseConfig.createSchemaIfMissing();
+
+        assertEquals(5, parkingSpotDAO.getParkingSpots().size());
+        assertEquals(3, parkingSpotDAO.getFreeSpotCount(ParkingType.CAR));
+        assertEquals(2, parkingSpotDAO.getFreeSpotCount(ParkingType.BIKE));
+    }
+
+    @Test
+    public void testParkingAndExitWithoutServer() {
+        // Vérifie l'entrée et la sortie d'une voiture sur le stockage embarqué : ticket, tarif d'une heure et place libérée.
+        parkingService.processIncomingVehicle();
+        TicketRecord entryTicket = ticketDAO.getTicket("ABCDEF");
+        assertNotNull(entryTicket);
+        assertFalse(entryTicket.hasOutTime());
+        assertEquals(2, parkingSpotDAO.getFreeSpotCount(ParkingType.CAR));
+
+        clock.setMillis(clock.millis() + ONE_HOUR);
+        parkingService.processExitingVehicle();
+
+        TicketRecord exitTicket = ticketDAO.getTicket("ABCDEF");
+        assertTrue(exitTicket.hasOutTime());
+        assertEquals(1.5, exitTicket.getPrice(), 0.001);
+        assertEquals(entryTicket.getParkingNumber(), parkingSpotDAO.getNextAvailableSlot(ParkingType.CAR));
+    }
+
+    @Test
+    public void testRecurringUserDiscount() {
+        // Vérifie que la remise des usagers récurrents s'applique aussi avec le stockage embarqué.
+        parkingService.processIncomingVehicle();
+        clock.setMillis(clock.millis() + 25 * 60 * 1000L);
+        parkingService.processExitingVehicle();
+        parkingService.processIncomingVehicle();
+        clock.setMillis(clock.millis() + ONE_HOUR);
+        parkingService.processExitingVehicle();
+
+        assertEquals(2, ticketDAO.countTicketByVehicleRegNumber("ABCDEF"));
+        assertEquals(1.425, ticketDAO.getTicket("ABCDEF").getPrice(), 0.001);
+    }
+
+    @Test
+    public void testStreamingScan() {
+        // Vérifie que le parcours en flux par défaut (rapports, re-tarification) fonctionne sur H2, qui refuse le fetchSize de MySQL.
+        parkingService.processIncomingVehicle();
+        clock.setMillis(clock.millis() + ONE_HOUR);
+        parkingService.processExitingVehicle();
+
+        double[] revenue = new double[1];
+        assertEquals(1, ticketDAO.scanTickets(TicketRepository.STREAMING_FETCH_SIZE,
+                (id, vehicleRegNumber, parkingType, inTime, outTime, price, visitCount) -> revenue[0] += price));
+        assertEquals(1.5, revenue[0], 0.001);
+    }
+
+    @Test
+    public void testBackendSelection() {
+        // Vérifie que parkit.db.backend choisit le stockage et refuse une valeur inconnue.
+        assertFalse(DataBaseConfig.configured() instanceof EmbeddedDataBaseConfig);
+        System.setProperty(DataBaseConfig.BACKEND, "embedded");
+        assertTrue(DataBaseConfig.configured() instanceof EmbeddedDataBaseConfig);
+        System.setProperty(DataBaseConfig.BACKEND, "oracle");
+        assertThrows(IllegalArgumentException.class, DataBaseConfig::configured);
+    }
+
+    private void execute(String... sqls) throws Exception {
+        Connection connection = dataBaseConfig.getConnection();
+        try (Statement statement = connection.createStatement()) {
+            for (String sql : sqls) {
+                statement.execute(sql);
+            }
+        } finally {
+            dataBaseConfig.closeConnection(connection);
+        }
+    }
+}
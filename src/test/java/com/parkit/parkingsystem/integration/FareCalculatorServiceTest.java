@@ -66,7 +66,6 @@ public class FareCalculatorServiceTest {
     public void calculateFareUnknownType() {
         // Teste si une exception NullPointerException est levée lorsque le type de véhicule est inconnu (null).
         Date inTime = new Date();
-        Date inTime = new Date();
         inTime.setTime(System.currentTimeMillis() - (60 * 60 * 1000));
         Date outTime = new Date();
         ParkingSpot parkingSpot = new ParkingSpot(1, null, false);
@@ -202,4 +201,58 @@ public class FareCalculatorServiceTest {
         fareCalculatorService.calculateFare(ticket, discount);
         assertEquals(0.7125, ticket.getPrice(), 0.1);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void calculateFareWithoutOutTime() {
+        // Teste si une exception IllegalArgumentException (et non NullPointerException) est levée sans heure de sortie.
+        ticket.setInTime(new Date());
+        ticket.setParkingSpot(new ParkingSpot(1, ParkingType.CAR, false));
+        assertThrows(IllegalArgumentException.class, () -> fareCalculatorService.calculateFare(ticket));
+    }
+
+    @Test
+    public void calculateFareKernelMatchesTicketPricing() {
+        // Teste si le noyau sur horodatages primitifs donne exactement le même prix que le calcul sur ticket.
+        long outTime = System.currentTimeMillis();
+        for (ParkingType parkingType : ParkingType.values()) {
+            for (long minutes : new long[]{0, 29, 30, 45, 61, 24 * 60 + 7}) {
+                for (boolean discount : new boolean[]{false, true}) {
+                    long inTime = outTime - minutes * 60 * 1000;
+                    ticket.setInTime(new Date(inTime));
+                    ticket.setOutTime(new Date(outTime));
+                    ticket.setParkingSpot(new ParkingSpot(1, parkingType, false));
+                    fareCalculatorService.calculateFare(ticket, discount);
+
+                    assertEquals(ticket.getPrice(), FareCalculatorService.calculateFare(inTime, outTime, parkingType, discount));
+                    assertEquals(round(ticket.getPrice() * 100), FareCalculatorService.calculateFareInCents(inTime, outTime, parkingType, discount));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void calculateFaresInCentsBulk() {
+        // Teste si le calcul en masse écrit le prix en centimes de chaque ticket, avec ou sans remise.
+        long hour = 60 * 60 * 1000;
+        long[] inTimes = {0, 0, 0, 0};
+        long[] outTimes = {hour, hour, 2 * hour, hour / 4};
+        byte[] types = {(byte) ParkingType.CAR.ordinal(), (byte) ParkingType.BIKE.ordinal(), (byte) ParkingType.CAR.ordinal(), (byte) ParkingType.BIKE.ordinal()};
+        long[] cents = new long[4];
+
+        FareCalculatorService.calculateFaresInCents(inTimes, outTimes, types, new boolean[]{false, false, true, true}, cents);
+        assertArrayEquals(new long[]{150, 100, 285, 0}, cents);
+
+        FareCalculatorService.calculateFaresInCents(inTimes, outTimes, types, null, cents);
+        assertArrayEquals(new long[]{150, 100, 300, 0}, cents);
+    }
+
+    @Test
+    public void calculateFaresInCentsRejectsInvalidTicket() {
+        // Teste si une sortie antérieure à l'entrée ou un type inconnu est signalé avec l'index du ticket.
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class, () -> FareCalculatorService.calculateFaresInCents(
+                new long[]{0, 10}, new long[]{10, 0}, new byte[]{0, 0}, null, new long[2]));
+        assertEquals("Invalid ticket at index 1", ex.getMessage());
+        assertThrows(IllegalArgumentException.class, () -> FareCalculatorService.calculateFaresInCents(
+                new long[]{0}, new long[]{10}, new byte[]{7}, null, new long[1]));
+    }
+}
@@ -0,0 +1,65 @@
+package com.parkit.parkingsystem.integration;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.GateEvent;
+import com.parkit.parkingsystem.util.GateEventReader;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GateEventReaderTest {
+
+    @Test
+    public void testParseCsvEntry() {
+        // Vérifie la lecture d'une entrée au format CSV avec date ISO-8601.
+        GateEvent event = GateEventReader.parse("2024-05-01T08:00:00Z,ENTRY,AB-123-CD,car");
+
+        assertEquals(Instant.parse("2024-05-01T08:00:00Z").toEpochMilli(), event.getTime());
+        assertEquals(GateEvent.Direction.ENTRY, event.getDirection());
+        assertEquals("AB-123-CD", event.getVehicleRegNumber());
+        assertEquals(ParkingType.CAR, event.getParkingType());
+    }
+
+    @Test
+    public void testParseNdjsonExit() {
+        // Vérifie la lecture d'une sortie au format NDJSON avec horodatage en millisecondes.
+        GateEvent event = GateEventReader.parse("{\"time\": 1714550400000, \"direction\": \"OUT\", \"vehicle\": \"AB-123-CD\"}");
+
+        assertEquals(1714550400000L, event.getTime());
+        assertEquals(GateEvent.Direction.EXIT, event.getDirection());
+        assertEquals("AB-123-CD", event.getVehicleRegNumber());
+        assertNull(event.getParkingType());
+    }
+
+    @Test
+    public void testEntryWithoutParkingTypeIsInvalid() {
+        // Vérifie qu'une entrée sans type de véhicule est refusée.
+        assertThrows(IllegalArgumentException.class, () -> GateEventReader.parse("1714550400000,IN,AB-123-CD"));
+    }
+
+    @Test
+    public void testReaderSkipsHeaderCommentsAndInvalidLines() throws Exception {
+        // Vérifie que l'en-tête, les commentaires et les lignes vides sont ignorés et les lignes invalides comptées.
+        String file = "time,direction,vehicle,type\n"
+                + "# journée du 1er mai\n"
+                + "\n"
+                + "1714550400000,IN,AAA,BIKE\n"
+                + "1714550400000,SIDEWAYS,BBB,CAR\n"
+                + "{\"time\":\"2024-05-01T10:00:00+02:00\",\"direction\":\"EXIT\",\"vehicle\":\"AAA\"}\n";
+
+        try (GateEventReader reader = new GateEventReader(new BufferedReader(new StringReader(file)))) {
+            GateEvent entry = reader.next();
+            GateEvent exit = reader.next();
+
+            assertEquals("AAA", entry.getVehicleRegNumber());
+            assertEquals(Instant.parse("2024-05-01T08:00:00Z").toEpochMilli(), exit.getTime());
+            assertNull(reader.next());
+            assertEquals(1, reader.getRejectedLines());
+            assertEquals(6, reader.getLineNumber());
+        }
+    }
+}
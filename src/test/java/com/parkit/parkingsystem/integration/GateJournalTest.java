@@ -0,0 +1,331 @@
+package com.parkit.parkingsystem.integration;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.GateJournal;
+import com.parkit.parkingsystem.dao.ParkingSpotIndex;
+import com.parkit.parkingsystem.dao.ParkingSpotRepository;
+import com.parkit.parkingsystem.dao.TicketRepository;
+import com.parkit.parkingsystem.metrics.MetricsRegistry;
+import com.parkit.parkingsystem.model.GateEvent;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.model.TicketRecord;
+import com.parkit.parkingsystem.service.JournalDrainer;
+import com.parkit.parkingsystem.service.OccupancyService;
+import com.parkit.parkingsystem.service.ParkingService;
+import com.parkit.parkingsystem.util.InputReaderUtil;
+import com.parkit.parkingsystem.util.ReplayClock;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+public class GateJournalTest {
+
+    private static final int CAPACITY = 64 * 1024;
+
+    private Path file;
+    private Path rejectedFile;
+    private GateJournal journal;
+    private GateJournal rejectedJournal;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        file = Files.createTempFile("gate-journal", ".log");
+        Files.delete(file);
+        journal = new GateJournal(file, CAPACITY);
+        rejectedFile = Paths.get(file + ".rejected");
+        rejectedJournal = new GateJournal(rejectedFile, CAPACITY);
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        journal.close();
+        rejectedJournal.close();
+        Files.deleteIfExists(file);
+        Files.deleteIfExists(rejectedFile);
+    }
+
+    @Test
+    public void testEventsSurviveReopen() throws Exception {
+        // Vérifie que les passages acquittés sont relus dans l'ordre après réouverture, sans ceux déjà appliqués.
+        journal.append(new GateEvent(1000L, GateEvent.Direction.ENTRY, "AB-123", ParkingType.CAR));
+        journal.append(new GateEvent(2000L, GateEvent.Direction.ENTRY, "CD-456", ParkingType.BIKE, 4));
+        journal.append(new GateEvent(3000L, GateEvent.Direction.EXIT, "AB-123", null));
+        journal.checkpoint(journal.read(1).get(0).getEnd());
+        journal.close();
+
+        journal = new GateJournal(file, CAPACITY);
+        List<GateJournal.Entry> entries = journal.read(10);
+
+        assertEquals(2, entries.size());
+        assertEquals(2000L, journal.getOldestPendingTime());
+        GateEvent entry = entries.get(0).getEvent();
+        assertEquals(2000L, entry.getTime());
+        assertEquals(GateEvent.Direction.ENTRY, entry.getDirection());
+        assertEquals("CD-456", entry.getVehicleRegNumber());
+        assertEquals(ParkingType.BIKE, entry.getParkingType());
+        assertEquals(4, entry.getParkingNumber());
+        GateEvent exit = entries.get(1).getEvent();
+        assertEquals(GateEvent.Direction.EXIT, exit.getDirection());
+        assertNull(exit.getParkingType());
+        assertEquals(GateEvent.NO_SPOT, exit.getParkingNumber());
+    }
+
+    @Test
+    public void testTornRecordEndsJournal() throws Exception {
+        // Vérifie qu'un enregistrement dont le CRC ne correspond pas (écriture interrompue) termine le journal.
+        journal.append(new GateEvent(1000L, GateEvent.Direction.ENTRY, "AB-123", ParkingType.CAR));
+        journal.append(new GateEvent(2000L, GateEvent.Direction.ENTRY, "CD-456", ParkingType.CAR));
+        int end = journal.read(1).get(0).getEnd();
+        journal.close();
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.seek(end + 12);
+            raf.write(0x7f);
+        }
+
+        journal = new GateJournal(file, CAPACITY);
+
+        assertEquals(1, journal.read(10).size());
+        journal.append(new GateEvent(3000L, GateEvent.Direction.EXIT, "AB-123", null));
+        assertEquals(3000L, journal.read(10).get(1).getEvent().getTime());
+    }
+
+    @Test
+    public void testConcurrentAppendsShareFsyncs() throws Exception {
+        // Vérifie que des bornes concurrentes sont toutes acquittées, chaque fsync pouvant couvrir plusieurs passages.
+        ExecutorService gates = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> appends = new ArrayList<>();
+            for (int i = 0; i < 400; i++) {
+                String vehicle = "V" + i;
+                appends.add(gates.submit(() -> {
+                    journal.append(new GateEvent(1000L, GateEvent.Direction.ENTRY, vehicle, ParkingType.CAR));
+                    return null;
+                }));
+            }
+            for (Future<?> append : appends) {
+                append.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            gates.shutdownNow();
+        }
+
+        assertEquals(400, journal.read(1000).size());
+        assertTrue(journal.getFsyncs() <= 400);
+    }
+
+    @Test
+    public void testFullJournalRestartsOnceApplied() throws Exception {
+        // Vérifie qu'un journal plein refuse les passages tant qu'ils ne sont pas appliqués, puis repart du début.
+        List<GateJournal.Entry> entries = Collections.emptyList();
+        IOException full = null;
+        for (int i = 0; full == null; i++) {
+            try {
+                journal.append(new GateEvent(i, GateEvent.Direction.ENTRY, "V" + i, ParkingType.CAR));
+            } catch (IOException ex) {
+                full = ex;
+                entries = journal.read(Integer.MAX_VALUE);
+            }
+        }
+        journal.checkpoint(entries.get(entries.size() - 1).getEnd());
+        assertEquals(0, journal.getBacklog());
+        assertEquals(Long.MAX_VALUE, journal.getOldestPendingTime());
+
+        journal.append(new GateEvent(42L, GateEvent.Direction.EXIT, "AB-123", null));
+        journal.close();
+        journal = new GateJournal(file, CAPACITY);
+
+        List<GateJournal.Entry> reopened = journal.read(Integer.MAX_VALUE);
+        assertEquals(1, reopened.size());
+        assertEquals(42L, reopened.get(0).getEvent().getTime());
+    }
+
+    @Test
+    public void testDrainerWaitsForDatabase() throws Exception {
+        // Vérifie que les passages restent dans le journal tant que la base est indisponible, puis sont appliqués dans l'ordre,
+        // et que la place d'une entrée acquittée avant un redémarrage reste réservée jusque-là.
+        ParkingSpotRepository parkingSpotDAO = mock(ParkingSpotRepository.class);
+        TicketRepository ticketDAO = mock(TicketRepository.class);
+        when(parkingSpotDAO.isAvailable()).thenReturn(false);
+        OccupancyService occupancyService = occupancy(1);
+        journal.append(new GateEvent(1000L, GateEvent.Direction.ENTRY, "AB-123", ParkingType.CAR));
+        journal.append(new GateEvent(5000L, GateEvent.Direction.EXIT, "AB-123", null));
+        MetricsRegistry metricsRegistry = new MetricsRegistry();
+        JournalDrainer drainer = new JournalDrainer(journal, rejectedJournal, parkingSpotDAO, ticketDAO, occupancyService,
+                new ParkingSpotIndex(), 10, 10, metricsRegistry);
+        assertEquals(0, occupancyService.getFreeCount(ParkingType.CAR));
+
+        assertFalse(drainer.drain());
+        int backlog = journal.getBacklog();
+        assertTrue(backlog > 0);
+        assertEquals(0, occupancyService.getFreeCount(ParkingType.CAR));
+
+        when(ticketDAO.enterVehicle(ParkingType.CAR, GateEvent.NO_SPOT, "AB-123", new Date(1000L))).thenReturn(new Ticket());
+        when(ticketDAO.exitVehicle(eq("AB-123"), eq(new Date(5000L)), any()))
+                .thenReturn(new TicketRecord(1, "default", 1, ParkingType.CAR, "AB-123", 0.95, 1000L, 5000L, 2));
+        assertTrue(drainer.drain());
+
+        assertEquals(0, journal.getBacklog());
+        assertEquals(1, occupancyService.getFreeCount(ParkingType.CAR));
+        verify(ticketDAO, times(2)).enterVehicle(ParkingType.CAR, GateEvent.NO_SPOT, "AB-123", new Date(1000L));
+        verify(ticketDAO).exitVehicle(eq("AB-123"), eq(new Date(5000L)), any());
+        verify(parkingSpotDAO, never()).getParkingSpots();
+        assertEquals(1, metricsRegistry.counter(ParkingService.EXITS).sum());
+        assertEquals(1, metricsRegistry.counter(ParkingService.DISCOUNTED_EXITS).sum());
+    }
+
+    @Test
+    public void testDrainerKeepsRejectedEventsForReconciliation() throws Exception {
+        // Vérifie qu'un passage déjà en base au redémarrage n'est pas rejoué et qu'un refus de la base ne bloque pas le journal
+        // sans être perdu : il est gardé puis réappliqué à la réconciliation.
+        ParkingSpotRepository parkingSpotDAO = mock(ParkingSpotRepository.class);
+        TicketRepository ticketDAO = mock(TicketRepository.class);
+        Ticket applied = new Ticket();
+        applied.setInTime(new Date(1000L));
+        when(ticketDAO.getTicket("AB-123")).thenReturn(applied.toRecord());
+        when(parkingSpotDAO.isAvailable()).thenReturn(true);
+        MetricsRegistry metricsRegistry = new MetricsRegistry();
+        JournalDrainer drainer = new JournalDrainer(journal, rejectedJournal, parkingSpotDAO, ticketDAO, occupancy(1),
+                new ParkingSpotIndex(), 10, 10, metricsRegistry);
+        journal.append(new GateEvent(1000L, GateEvent.Direction.ENTRY, "AB-123", ParkingType.CAR));
+        journal.append(new GateEvent(2000L, GateEvent.Direction.EXIT, "ZZ-999", null));
+
+        assertTrue(drainer.drain());
+
+        assertEquals(0, journal.getBacklog());
+        verify(ticketDAO, never()).enterVehicle(any(), anyInt(), anyString(), any());
+        assertEquals(1, metricsRegistry.counter(JournalDrainer.REJECTED).sum());
+        assertEquals(1, drainer.getRejected().size());
+        assertEquals(2000L, drainer.getRejected().get(0).getTime());
+
+        assertTrue(drainer.reconcile());
+        assertEquals(1, drainer.getRejected().size());
+
+        when(ticketDAO.exitVehicle(eq("ZZ-999"), eq(new Date(2000L)), any())).thenReturn(new Ticket().toRecord());
+        assertTrue(drainer.reconcile());
+        assertTrue(drainer.getRejected().isEmpty());
+        verify(ticketDAO, times(3)).exitVehicle(eq("ZZ-999"), eq(new Date(2000L)), any());
+    }
+
+    @Test
+    public void testGateIsAcknowledgedFromJournal() throws Exception {
+        // Vérifie qu'avec un journal, la borne est acquittée dès le passage journalisé avec sa place, sans aucun appel à la base.
+        InputReaderUtil inputReaderUtil = mock(InputReaderUtil.class);
+        when(inputReaderUtil.readSelection()).thenReturn(1);
+        when(inputReaderUtil.readVehicleRegistrationNumber()).thenReturn("AB-123");
+        ParkingSpotRepository parkingSpotDAO = mock(ParkingSpotRepository.class);
+        TicketRepository ticketDAO = mock(TicketRepository.class);
+        ReplayClock clock = new ReplayClock();
+        clock.setMillis(1000L);
+        when(ticketDAO.priceOpenTicket(eq("AB-123"), eq(new Date(2000L)), any()))
+                .thenReturn(new TicketRecord(1, "default", 1, ParkingType.CAR, "AB-123", 1.5, 1000L, 2000L, 1));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ParkingService parkingService = new ParkingService(inputReaderUtil, parkingSpotDAO, ticketDAO,
+                new PrintStream(out, true), clock, new MetricsRegistry(), journal, occupancy(1), spotIndex(1));
+
+        parkingService.processIncomingVehicle();
+        clock.setMillis(2000L);
+        parkingService.processExitingVehicle();
+
+        verify(ticketDAO).priceOpenTicket(eq("AB-123"), eq(new Date(2000L)), any());
+        verifyNoMoreInteractions(ticketDAO);
+        verifyZeroInteractions(parkingSpotDAO);
+        assertTrue(out.toString().contains("Please park your vehicle in spot number:1"));
+        assertTrue(out.toString().contains("Please pay the parking fare:1.5"));
+        List<GateJournal.Entry> entries = journal.read(10);
+        assertEquals(2, entries.size());
+        assertEquals(1000L, entries.get(0).getEvent().getTime());
+        assertEquals(1, entries.get(0).getEvent().getParkingNumber());
+        assertEquals(GateEvent.Direction.EXIT, entries.get(1).getEvent().getDirection());
+    }
+
+    @Test
+    public void testJournaledEntriesReserveSpots() throws Exception {
+        // Vérifie qu'une entrée journalisée réserve sa place : la dernière place n'est promise qu'une fois, et l'entrée
+        // appliquée en base ne la compte pas deux fois.
+        InputReaderUtil inputReaderUtil = mock(InputReaderUtil.class);
+        when(inputReaderUtil.readSelection()).thenReturn(1);
+        when(inputReaderUtil.readVehicleRegistrationNumber()).thenReturn("AB-123", "CD-456");
+        OccupancyService occupancyService = occupancy(1);
+        ParkingSpotIndex parkingSpotIndex = spotIndex(1);
+        TicketRepository ticketDAO = mock(TicketRepository.class);
+        when(ticketDAO.enterVehicle(ParkingType.CAR, 1, "AB-123", new Date(0L))).thenAnswer(invocation -> {
+            occupancyService.update(ParkingType.CAR, 1, false);
+            parkingSpotIndex.markOccupied(ParkingType.CAR, 1);
+            return new Ticket();
+        });
+        JournalDrainer drainer = new JournalDrainer(journal, rejectedJournal, mock(ParkingSpotRepository.class), ticketDAO,
+                occupancyService, parkingSpotIndex, 10, 10, new MetricsRegistry());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ParkingService parkingService = new ParkingService(inputReaderUtil, mock(ParkingSpotRepository.class), ticketDAO,
+                new PrintStream(out, true), new ReplayClock(), new MetricsRegistry(), journal, occupancyService, parkingSpotIndex);
+
+        parkingService.processIncomingVehicle();
+        parkingService.processIncomingVehicle();
+
+        assertTrue(out.toString().contains("Parking slots might be full"));
+        assertEquals(1, journal.read(10).size());
+        assertEquals(0, occupancyService.getFreeCount(ParkingType.CAR));
+
+        assertTrue(drainer.drain());
+        verify(ticketDAO).enterVehicle(ParkingType.CAR, 1, "AB-123", new Date(0L));
+        assertEquals(0, occupancyService.getFreeCount(ParkingType.CAR));
+        assertEquals(0, parkingSpotIndex.getFreeCount(ParkingType.CAR));
+        assertFalse(occupancyService.reserve(ParkingType.CAR));
+        occupancyService.update(ParkingType.CAR, 1, true);
+        assertTrue(occupancyService.reserve(ParkingType.CAR));
+    }
+
+    @Test
+    public void testRestartKeepsSpotsAssignedToJournaledEntries() throws Exception {
+        // Vérifie qu'au redémarrage, la place donnée à une entrée encore dans le journal n'est pas redonnée à une autre borne.
+        journal.append(new GateEvent(1000L, GateEvent.Direction.ENTRY, "AB-123", ParkingType.CAR, 1));
+        ParkingSpotIndex parkingSpotIndex = spotIndex(2);
+
+        new JournalDrainer(journal, rejectedJournal, mock(ParkingSpotRepository.class), mock(TicketRepository.class),
+                occupancy(2), parkingSpotIndex, 10, 10, new MetricsRegistry());
+
+        assertEquals(1, parkingSpotIndex.getFreeCount(ParkingType.CAR));
+        assertEquals(2, parkingSpotIndex.claimNextAvailableSlot(ParkingType.CAR));
+    }
+
+    // Index avec les places de voiture 1 à freeCars libres
+    private static ParkingSpotIndex spotIndex(int freeCars) {
+        ParkingSpotIndex parkingSpotIndex = new ParkingSpotIndex();
+        for (int i = 1; i <= freeCars; i++) {
+            parkingSpotIndex.markAvailable(ParkingType.CAR, i);
+        }
+        return parkingSpotIndex;
+    }
+
+    // Compteurs d'occupation avec freeCars places de voiture libres
+    private static OccupancyService occupancy(int freeCars) {
+        OccupancyService occupancyService = new OccupancyService();
+        for (int i = 1; i <= freeCars; i++) {
+            occupancyService.update(ParkingType.CAR, i, true);
+        }
+        return occupancyService;
+    }
+}
@@ -0,0 +1,132 @@
+package com.parkit.parkingsystem.integration;
+
+import com.parkit.parkingsystem.metrics.LatencyHistogram;
+import com.parkit.parkingsystem.metrics.MetricsEndpoint;
+import com.parkit.parkingsystem.metrics.MetricsRegistry;
+import com.parkit.parkingsystem.metrics.Timer;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MetricsRegistryTest {
+
+    @Test
+    public void testHistogramPercentilesWithinPrecision() {
+        // Vérifie que les percentiles sont exacts à 3 % près sur une distribution uniforme de 1 µs à 100 ms.
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1; value <= 100000; value++) {
+            histogram.record(value * 1000);
+        }
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(100000, snapshot.getCount());
+        assertEquals(100000000L, snapshot.getMax());
+        assertEquals(50000500.0, snapshot.getMean(), 1e-6);
+        assertEquals(50000000, snapshot.getValueAtPercentile(50), 50000000 * 0.03);
+        assertEquals(99000000, snapshot.getValueAtPercentile(99), 99000000 * 0.03);
+        assertEquals(99900000, snapshot.getValueAtPercentile(99.9), 99900000 * 0.03);
+        assertTrue(snapshot.getValueAtPercentile(100) <= snapshot.getMax());
+        assertEquals(0, new LatencyHistogram().snapshot().getValueAtPercentile(99));
+    }
+
+    @Test
+    public void testConcurrentRecordingLosesNothing() throws Exception {
+        // Vérifie qu'aucun enregistrement n'est perdu quand plusieurs threads mesurent le même timer.
+        MetricsRegistry metricsRegistry = new MetricsRegistry();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 50000; i++) {
+                    Timer timer = metricsRegistry.timer("TicketDAO.enterVehicle");
+                    timer.record(System.nanoTime() - i);
+                    if (i % 10 == 0) {
+                        timer.error();
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        Timer timer = metricsRegistry.timer("TicketDAO.enterVehicle");
+        assertEquals(200000, timer.snapshot().getCount());
+        assertEquals(20000, timer.getErrors());
+    }
+
+    @Test
+    public void testTextAndJsonExport() {
+        // Vérifie les deux formats d'export : timers, compteurs et jauges, jauge en erreur incluse.
+        MetricsRegistry metricsRegistry = new MetricsRegistry();
+        metricsRegistry.timer("DataBaseConfig.getConnection").record(System.nanoTime());
+        metricsRegistry.timer("DataBaseConfig.getConnection").error();
+        metricsRegistry.counter("ParkingService.exits").add(3);
+        metricsRegistry.gauge("ParkingSpotDAO.freeSpots.CAR", () -> 2);
+        metricsRegistry.gauge("ParkingService.discountHitRate", () -> 1.0 / 3);
+        metricsRegistry.gauge("ParkingSpotDAO.freeSpots.BIKE", () -> {
+            throw new IllegalStateException("DB down");
+        });
+
+        String text = metricsRegistry.toText();
+        assertTrue(text.contains("DataBaseConfig.getConnection.count 1\n"));
+        assertTrue(text.contains("DataBaseConfig.getConnection.errors 1\n"));
+        assertTrue(text.contains("DataBaseConfig.getConnection.p99Micros "));
+        assertTrue(text.contains("ParkingService.exits 3\n"));
+        assertTrue(text.contains("ParkingService.discountHitRate 0.3333\n"));
+        assertTrue(text.contains("ParkingSpotDAO.freeSpots.BIKE NaN\n"));
+
+        String json = metricsRegistry.toJson();
+        assertTrue(json.startsWith("{\"timers\":{\"DataBaseConfig.getConnection\":{\"count\":1,\"errors\":1,\"meanMicros\":"));
+        assertTrue(json.contains("\"counters\":{\"ParkingService.exits\":3}"));
+        assertTrue(json.contains("\"gauges\":{\"ParkingService.discountHitRate\":0.3333,\"ParkingSpotDAO.freeSpots.BIKE\":null,\"ParkingSpotDAO.freeSpots.CAR\":2}}"));
+    }
+
+    @Test
+    public void testEndpointServesTextAndJson() throws Exception {
+        // Vérifie que le point d'accès local répond en texte sur /metrics, en JSON sur /metrics.json et 404 ailleurs.
+        MetricsRegistry metricsRegistry = new MetricsRegistry();
+        metricsRegistry.counter("ParkingService.rejectedEntries").increment();
+        MetricsEndpoint metricsEndpoint = new MetricsEndpoint(0, metricsRegistry);
+        metricsEndpoint.start();
+        try {
+            String text = get(metricsEndpoint.getPort(), "/metrics");
+            assertTrue(text.startsWith("HTTP/1.1 200 OK\r\nContent-Type: text/plain"));
+            assertTrue(text.endsWith("\r\n\r\nParkingService.rejectedEntries 1\n"));
+
+            String json = get(metricsEndpoint.getPort(), "/metrics.json");
+            assertTrue(json.startsWith("HTTP/1.1 200 OK\r\nContent-Type: application/json"));
+            assertTrue(json.endsWith(metricsRegistry.toJson()));
+
+            assertTrue(get(metricsEndpoint.getPort(), "/other").startsWith("HTTP/1.1 404"));
+        } finally {
+            metricsEndpoint.close();
+        }
+    }
+
+    private static String get(int port, String path) throws Exception {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            OutputStream out = socket.getOutputStream();
+            out.write(("GET " + path + " HTTP/1.1\r\nHost: localhost\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            StringBuilder response = new StringBuilder();
+            char[] buffer = new char[4096];
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                response.append(buffer, 0, read);
+            }
+            return response.toString();
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package com.parkit.parkingsystem.integration;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.service.OccupancyBoardServer;
+import com.parkit.parkingsystem.service.OccupancyService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OccupancyServiceTest {
+
+    private OccupancyService occupancyService;
+
+    @BeforeEach
+    public void setUp() {
+        occupancyService = new OccupancyService();
+        occupancyService.reconcile(Arrays.asList(
+                new ParkingSpot(1, ParkingType.CAR, true),
+                new ParkingSpot(2, ParkingType.CAR, true),
+                new ParkingSpot(3, ParkingType.CAR, false),
+                new ParkingSpot(4, ParkingType.BIKE, true)));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        occupancyService.close();
+    }
+
+    @Test
+    public void testOnlyStateChangesMoveCounters() {
+        // Vérifie qu'une mise à jour répétée de la même place ne compte qu'une fois.
+        occupancyService.update(ParkingType.CAR, 1, false);
+        occupancyService.update(ParkingType.CAR, 1, false);
+        occupancyService.update(ParkingType.CAR, 3, true);
+        occupancyService.update(ParkingType.BIKE, 4, true);
+
+        assertEquals(2, occupancyService.getFreeCount(ParkingType.CAR));
+        assertEquals(1, occupancyService.getFreeCount(ParkingType.BIKE));
+    }
+
+    @Test
+    public void testReconcileCorrectsDrift() {
+        // Vérifie que la réconciliation aligne les compteurs sur la base et compte les places corrigées.
+        occupancyService.update(ParkingType.CAR, 2, false);
+
+        int corrections = occupancyService.reconcile(Arrays.asList(
+                new ParkingSpot(1, ParkingType.CAR, false),
+                new ParkingSpot(2, ParkingType.CAR, true),
+                new ParkingSpot(3, ParkingType.CAR, false),
+                new ParkingSpot(4, ParkingType.BIKE, true),
+                new ParkingSpot(5, ParkingType.BIKE, true)));
+
+        assertEquals(3, corrections);
+        assertEquals(1, occupancyService.getFreeCount(ParkingType.CAR));
+        assertEquals(2, occupancyService.getFreeCount(ParkingType.BIKE));
+    }
+
+    @Test
+    public void testReconcileSkipsSpotsUpdatedSinceTheRead() {
+        // Vérifie qu'une lecture en base antérieure à une entrée ne rend pas sa place aux compteurs.
+        long version = occupancyService.getVersion();
+        occupancyService.update(ParkingType.CAR, 1, false);
+
+        int corrections = occupancyService.reconcile(Arrays.asList(
+                new ParkingSpot(1, ParkingType.CAR, true),
+                new ParkingSpot(2, ParkingType.CAR, false)), version);
+
+        assertEquals(1, corrections);
+        assertEquals(0, occupancyService.getFreeCount(ParkingType.CAR));
+    }
+
+    @Test
+    public void testSubscriberReceivesSnapshotThenDeltas() throws Exception {
+        // Vérifie qu'un abonné reçoit les compteurs courants puis les variations, sans jamais manquer la dernière valeur.
+        BlockingQueue<String> events = new LinkedBlockingQueue<>();
+        occupancyService.start();
+        occupancyService.subscribe((parkingType, delta, freeCount) -> events.add(parkingType + " " + delta + " " + freeCount));
+        assertEquals("CAR 2 2", events.poll(5, TimeUnit.SECONDS));
+        assertEquals("BIKE 1 1", events.poll(5, TimeUnit.SECONDS));
+
+        occupancyService.update(ParkingType.BIKE, 4, false);
+        assertEquals("BIKE -1 0", events.poll(5, TimeUnit.SECONDS));
+
+        // Une rafale peut être regroupée : la somme des variations reste égale au changement réel
+        occupancyService.update(ParkingType.CAR, 1, false);
+        occupancyService.update(ParkingType.CAR, 2, false);
+        int delta = 0;
+        int freeCount = -1;
+        while (freeCount != 0) {
+            String[] event = events.poll(5, TimeUnit.SECONDS).split(" ");
+            assertEquals("CAR", event[0]);
+            delta += Integer.parseInt(event[1]);
+            freeCount = Integer.parseInt(event[2]);
+        }
+        assertEquals(-2, delta);
+    }
+
+    @Test
+    public void testFailingSubscriberDoesNotStopOthers() throws Exception {
+        // Vérifie qu'un abonné en erreur n'empêche pas les autres de recevoir les variations.
+        BlockingQueue<Integer> freeCounts = new LinkedBlockingQueue<>();
+        occupancyService.start();
+        occupancyService.subscribe((parkingType, delta, freeCount) -> {
+            throw new IllegalStateException("board offline");
+        });
+        occupancyService.subscribe((parkingType, delta, freeCount) -> {
+            if (parkingType == ParkingType.CAR) {
+                freeCounts.add(freeCount);
+            }
+        });
+        assertEquals(Integer.valueOf(2), freeCounts.poll(5, TimeUnit.SECONDS));
+
+        occupancyService.update(ParkingType.CAR, 3, true);
+        assertEquals(Integer.valueOf(3), freeCounts.poll(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testBoardServerPushesLines() throws Exception {
+        // Vérifie qu'un panneau connecté en TCP reçoit les compteurs puis chaque variation, sans interroger.
+        occupancyService.start();
+        OccupancyBoardServer boardServer = new OccupancyBoardServer(0, occupancyService);
+        boardServer.start();
+        try (Socket board = new Socket(InetAddress.getLoopbackAddress(), boardServer.getPort())) {
+            board.setSoTimeout(5000);
+            BufferedReader in = new BufferedReader(new InputStreamReader(board.getInputStream(), StandardCharsets.US_ASCII));
+            assertEquals("CAR 2 2", in.readLine());
+            assertEquals("BIKE 1 1", in.readLine());
+
+            occupancyService.update(ParkingType.CAR, 3, true);
+            assertEquals("CAR 1 3", in.readLine());
+        } finally {
+            boardServer.close();
+        }
+    }
+
+    @Test
+    public void testStalledBoardDoesNotBlockOthers() throws Exception {
+        // Vérifie qu'un panneau qui ne lit plus ne bloque pas les autres abonnés et finit déconnecté.
+        BlockingQueue<Integer> freeCounts = new LinkedBlockingQueue<>();
+        occupancyService.start();
+        OccupancyBoardServer boardServer = new OccupancyBoardServer(0, InetAddress.getLoopbackAddress(), 100, occupancyService);
+        boardServer.start();
+        try (Socket stalled = new Socket()) {
+            stalled.setReceiveBufferSize(1024);
+            stalled.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), boardServer.getPort()));
+            occupancyService.subscribe((parkingType, delta, freeCount) -> {
+                if (parkingType == ParkingType.CAR) {
+                    freeCounts.add(freeCount);
+                }
+            });
+            assertEquals(Integer.valueOf(2), freeCounts.poll(5, TimeUnit.SECONDS));
+
+            long deadline = System.currentTimeMillis() + 10000;
+            boolean available = false;
+            while (boardServer.getConnectedBoards() > 0 && System.currentTimeMillis() < deadline) {
+                available = !available;
+                occupancyService.update(ParkingType.CAR, 3, available);
+                assertNotNull(freeCounts.poll(5, TimeUnit.SECONDS));
+            }
+            assertEquals(0, boardServer.getConnectedBoards());
+
+            occupancyService.update(ParkingType.CAR, 3, !available);
+            assertNotNull(freeCounts.poll(5, TimeUnit.SECONDS));
+        } finally {
+            boardServer.close();
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package com.parkit.parkingsystem.integration;
+
+import com.parkit.parkingsystem.config.EmbeddedDataBaseConfig;
+import com.parkit.parkingsystem.config.SchemaMigrator;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.CompactParkingState;
+import com.parkit.parkingsystem.dao.OpenTicketIndex;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.metrics.MetricsRegistry;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.model.TicketRecord;
+import com.parkit.parkingsystem.service.FareCalculatorService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OpenTicketIndexTest {
+
+    private static final String URL = "jdbc:h2:mem:parkit-open-ticket-test;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+    private static final long ONE_HOUR = 60 * 60 * 1000L;
+
+    private EmbeddedDataBaseConfig dataBaseConfig;
+    private MetricsRegistry metricsRegistry;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        dataBaseConfig = new EmbeddedDataBaseConfig(URL);
+        dataBaseConfig.createSchemaIfMissing();
+        assertTrue(new SchemaMigrator(dataBaseConfig).migrate() >= 0);
+        Connection connection = dataBaseConfig.getConnection();
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("update parking set available = true");
+            statement.execute("delete from ticket_archive");
+            statement.execute("delete from ticket");
+        } finally {
+            dataBaseConfig.closeConnection(connection);
+        }
+        metricsRegistry = new MetricsRegistry();
+    }
+
+    @Test
+    public void testIndexIsRebuiltFromOpenTickets() {
+        // Vérifie que le chargement ne reprend que les tickets sans heure de sortie, avec leur place et leur nombre de passages.
+        TicketDAO ticketDAO = new TicketDAO(dataBaseConfig);
+        ticketDAO.enterVehicle(ParkingType.CAR, "AB-123", new Date(0));
+        ticketDAO.exitVehicle("AB-123", new Date(ONE_HOUR), new FareCalculatorService());
+        Ticket parked = ticketDAO.enterVehicle(ParkingType.CAR, "AB-123", new Date(2 * ONE_HOUR));
+        ticketDAO.enterVehicle(ParkingType.BIKE, "CD-456", new Date(0));
+        ticketDAO.enterVehicle(ParkingType.CAR, "EF-789", new Date(0));
+        ticketDAO.exitVehicle("EF-789", new Date(ONE_HOUR), new FareCalculatorService());
+
+        TicketDAO restarted = indexedTicketDAO(5);
+        assertTrue(restarted.reloadOpenTicketIndex());
+
+        OpenTicketIndex index = restarted.openTicketIndex;
+        assertEquals(2, index.size());
+        assertNull(index.get("EF-789"));
+        OpenTicketIndex.OpenTicket openTicket = index.get("AB-123");
+        assertEquals(parked.getId(), openTicket.getTicketId());
+        assertEquals(parked.getParkingSpot().getId(), openTicket.getParkingNumber());
+        assertEquals(2 * ONE_HOUR, openTicket.getInTime());
+        assertEquals(2, openTicket.getVisitCount());
+        assertEquals(ParkingType.BIKE, index.get("CD-456").getParkingType());
+
+        TicketRecord exit = restarted.exitVehicle("AB-123", new Date(3 * ONE_HOUR), new FareCalculatorService());
+        assertEquals(1.425, exit.getPrice(), 0.001);
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    public void testEntryAndExitMaintainIndex() {
+        // Vérifie que l'entrée indexe le véhicule, que la sortie le retire, et qu'un véhicule déjà sorti n'est pas re-facturé.
+        TicketDAO ticketDAO = indexedTicketDAO(5);
+        Ticket entry = ticketDAO.enterVehicle(ParkingType.CAR, "AB-123", new Date(0));
+
+        assertEquals(entry.getId(), ticketDAO.openTicketIndex.get("AB-123").getTicketId());
+        assertNotNull(ticketDAO.exitVehicle("AB-123", new Date(ONE_HOUR), new FareCalculatorService()));
+        assertNull(ticketDAO.openTicketIndex.get("AB-123"));
+        assertNull(ticketDAO.exitVehicle("AB-123", new Date(2 * ONE_HOUR), new FareCalculatorService()));
+    }
+
+    @Test
+    public void testStaleEntryFallsBackToDatabase() {
+        // Vérifie qu'un ticket clôturé par un autre processus est détecté et que la sortie clôt le ticket ouvert lu en base.
+        TicketDAO indexed = indexedTicketDAO(5);
+        TicketDAO other = new TicketDAO(dataBaseConfig);
+        indexed.enterVehicle(ParkingType.CAR, "AB-123", new Date(0));
+        other.exitVehicle("AB-123", new Date(ONE_HOUR), new FareCalculatorService());
+        Ticket reentry = other.enterVehicle(ParkingType.CAR, "AB-123", new Date(2 * ONE_HOUR));
+
+        TicketRecord exit = indexed.exitVehicle("AB-123", new Date(3 * ONE_HOUR), new FareCalculatorService());
+
+        assertEquals(reentry.getId(), exit.getId());
+        assertEquals(2 * ONE_HOUR, exit.getInTimeMillis());
+        assertEquals(0, indexed.openTicketIndex.size());
+    }
+
+    @Test
+    public void testSizeIsBoundedAndAccounted() {
+        // Vérifie que l'index n'accepte que les places du site, une immatriculation par place, et publie sa mémoire hors tas.
+        OpenTicketIndex index = new OpenTicketIndex(2, metricsRegistry);
+
+        assertTrue(index.put("AB-123", new OpenTicketIndex.OpenTicket("AB-123", 1, 1, ParkingType.CAR, 0, 1)));
+        assertFalse(index.put("CD-456", new OpenTicketIndex.OpenTicket("CD-456", 2, 3, ParkingType.CAR, 0, 1)));
+        assertFalse(index.put("TOO-LONG-PLATE", new OpenTicketIndex.OpenTicket("TOO-LONG-PLATE", 2, 2, ParkingType.CAR, 0, 1)));
+        assertTrue(index.put("AB-123", new OpenTicketIndex.OpenTicket("AB-123", 3, 2, ParkingType.CAR, 0, 2)));
+
+        assertEquals(1, metricsRegistry.getGauge(OpenTicketIndex.SIZE), 0.001);
+        assertEquals(index.getEstimatedBytes(), metricsRegistry.getGauge(OpenTicketIndex.BYTES), 0.001);
+        assertEquals(2, index.get("AB-123").getParkingNumber());
+        index.remove("AB-123", 1);
+        assertNotNull(index.get("AB-123"));
+        index.remove("AB-123", 3);
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    public void testCompactStateSurvivesCollisionsAndRemovals() {
+        // Vérifie que les lectures restent exactes quand les immatriculations se partagent des cases de la table puis en sortent.
+        CompactParkingState state = new CompactParkingState(64);
+        for (int i = 1; i <= 64; i++) {
+            assertTrue(state.occupy(i, ParkingType.CAR, "V" + i, 1000 + i, i * 10L, i));
+        }
+        for (int i = 1; i <= 64; i += 2) {
+            assertTrue(state.release("V" + i, 1000 + i));
+        }
+        // Un véhicule qui change de place quitte la précédente
+        assertTrue(state.occupy(1, ParkingType.BIKE, "V2", 2002, 5L, 3));
+
+        OpenTicketIndex.OpenTicket openTicket = new OpenTicketIndex.OpenTicket();
+        assertEquals(32, state.size());
+        assertFalse(state.isOccupied(2));
+        assertTrue(state.read("V2", openTicket));
+        assertEquals(1, openTicket.getParkingNumber());
+        assertEquals(ParkingType.BIKE, openTicket.getParkingType());
+        for (int i = 4; i <= 64; i += 2) {
+            assertTrue(state.read("V" + i, openTicket));
+            assertEquals(1000 + i, openTicket.getTicketId());
+            assertEquals(i * 10L, openTicket.getInTime());
+        }
+        assertFalse(state.read("V3", openTicket));
+    }
+
+    private TicketDAO indexedTicketDAO(int capacity) {
+        TicketDAO ticketDAO = new TicketDAO(dataBaseConfig);
+        ticketDAO.openTicketIndex = new OpenTicketIndex(capacity, metricsRegistry);
+        return ticketDAO;
+    }
+
+    @Test
+    public void testLookupsReuseThreadHolder() throws Exception {
+        // Vérifie que les lectures d'un même thread réutilisent un seul OpenTicket, et que chaque thread a le sien.
+        OpenTicketIndex index = new OpenTicketIndex(2, metricsRegistry);
+        index.put("AB-123", 1, 1, ParkingType.CAR, 0, 1);
+        index.put("CD-456", 2, 2, ParkingType.BIKE, 0, 1);
+
+        OpenTicketIndex.OpenTicket first = index.get("AB-123");
+        assertSame(first, index.get("CD-456"));
+        assertEquals(2, first.getTicketId());
+
+        OpenTicketIndex.OpenTicket[] other = new OpenTicketIndex.OpenTicket[1];
+        Thread reader = new Thread(() -> other[0] = index.get("AB-123"));
+        reader.start();
+        reader.join();
+        assertNotSame(first, other[0]);
+        assertEquals(1, other[0].getTicketId());
+        assertEquals(2, first.getTicketId());
+    }
+}
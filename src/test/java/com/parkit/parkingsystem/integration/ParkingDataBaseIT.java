@@ -1,15 +1,11 @@
 package com.parkit.parkingsystem.integration;
 
-import static junit.framework.Assert.assertFalse;
 import static junit.framework.Assert.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.mockito.Mockito.spy;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.when;
 
-import java.time.Duration;
-import java.time.Instant;
-import java.util.Date;
-
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
@@ -18,12 +14,13 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import com.parkit.parkingsystem.constants.ParkingType;
 import com.parkit.parkingsystem.dao.ParkingSpotDAO;
 import com.parkit.parkingsystem.dao.TicketDAO;
 import com.parkit.parkingsystem.integration.config.DataBaseTestConfig;
 import com.parkit.parkingsystem.integration.service.DataBasePrepareService;
-import com.parkit.parkingsystem.model.ParkingSpot;
 import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.model.TicketRecord;
 import com.parkit.parkingsystem.service.ParkingService;
 import com.parkit.parkingsystem.util.InputReaderUtil;
 
@@ -43,6 +40,7 @@ public class ParkingDataBaseIT {
 
     @BeforeAll
     public static void setUp() throws Exception {
+        dataBaseTestConfig.prepareSchema();
         parkingSpotDAO = new ParkingSpotDAO();
         parkingSpotDAO.dataBaseConfig = dataBaseTestConfig;
         ticketDAO = new TicketDAO();
@@ -71,111 +69,70 @@ public class ParkingDataBaseIT {
         parkingService.processIncomingVehicle();
 
         // Vérifie que le ticket est bien enregistré dans la base de données
-        Ticket testSavedTicket = ticketDAO.getTicket("ABCDEF");
+        TicketRecord testSavedTicket = ticketDAO.getTicket("ABCDEF");
         assertNotNull(testSavedTicket);
         assertEquals("ABCDEF", testSavedTicket.getVehicleRegNumber());
 
         // Vérifie que la place de parking est bien marquée comme indisponible dans la base de données
-        ParkingSpot testParkingSpot = testSavedTicket.getParkingSpot();
-        assertNotNull(testParkingSpot);
-        assertFalse(testParkingSpot.isAvailable());
+        assertEquals(ParkingType.CAR, testSavedTicket.getParkingType());
+        assertNotEquals(testSavedTicket.getParkingNumber(), parkingSpotDAO.getNextAvailableSlot(ParkingType.CAR));
     }
 
     @Test
     public void testParkingLotExit() throws Exception {
         // Teste si le processus de sortie de parking met correctement à jour l'heure de sortie et calcule le tarif pour 1 heure de stationnement.
-
-        // Condition du test + utilisation d'un spy pour simuler le comportement de TicketDAO
-        TicketDAO ticketDAOspy = spy(ticketDAO);
-        ParkingService parkingService = new ParkingService(inputReaderUtil, parkingSpotDAO, ticketDAOspy);
+        ParkingService parkingService = new ParkingService(inputReaderUtil, parkingSpotDAO, ticketDAO);
 
         //Entrée du véhicule
         parkingService.processIncomingVehicle();
-
-        // Récupération et mise à jour du ticket en base
-        Ticket entryTicket = ticketDAO.getTicket("ABCDEF");
+        TicketRecord entryTicket = ticketDAO.getTicket("ABCDEF");
         assertNotNull(entryTicket);
 
-        // Espion basé sur le vrai ticket pour forcer l'heure de sortie à 1h plus tard
-        Ticket entryTicketSpy = spy(entryTicket);
-        Date currentTime = new Date();
-        Instant currentInstant = currentTime.toInstant();
-        Instant outInstant = currentInstant.plus(Duration.ofHours(1));
-        Date outTime = Date.from(outInstant);
-
-        // Quand la méthode de calcul aura besoin de l'heure de sortie, on renvoie la modifiée
-        when(entryTicketSpy.getOutTime()).thenReturn(outTime);
-
-        // Forcer le retour du ticket avec le comportement modifié pour tester le calcul du prix
-        when(ticketDAOspy.getTicket("ABCDEF")).thenReturn(entryTicketSpy);
+        // La transaction de sortie relit le ticket en base : on recule l'heure d'entrée d'une heure
+        dataBasePrepareService.shiftOpenTicketInTime("ABCDEF", 60);
 
         //Sortie du véhicule
         parkingService.processExitingVehicle();
 
-        // Mise à jour du ticket à la sortie
-        Ticket exitTicket = ticketDAO.getTicket("ABCDEF");
+        // Vérification que l'heure de sortie est mise à jour, que le prix est le bon et que la place est libérée
+        TicketRecord exitTicket = ticketDAO.getTicket("ABCDEF");
         assertNotNull(exitTicket);
-
-        // Vérification que l'heure de sortie est mise à jour et que le prix est le bon
-        assertNotNull(exitTicket.getOutTime());
-        assertEquals(1.5, entryTicketSpy.getPrice(), 0.1);
+        assertTrue(exitTicket.hasOutTime());
+        assertEquals(1.5, exitTicket.getPrice(), 0.1);
+        assertEquals(entryTicket.getParkingNumber(), parkingSpotDAO.getNextAvailableSlot(ParkingType.CAR));
     }
 
     @Test
     public void testParkingLotExitRecurringUser() throws Exception {
         // Teste si un utilisateur récurrent est correctement géré avec deux sessions de parking, en vérifiant les heures de sortie et les tarifs pour chaque session.
+        ParkingService parkingService = new ParkingService(inputReaderUtil, parkingSpotDAO, ticketDAO);
 
-        // Condition du test + utilisation d'un spy pour simuler le comportement de TicketDAO
-        TicketDAO ticketDAOspy = spy(ticketDAO);
-        ParkingService parkingService = new ParkingService(inputReaderUtil, parkingSpotDAO, ticketDAOspy);
-
-        // Première entrée du véhicule
+        // Première entrée du véhicule, stationnement de 25 min
         parkingService.processIncomingVehicle();
-        Ticket firstTicket = ticketDAO.getTicket("ABCDEF");
-
-        // Espion basé sur le vrai ticket pour forcer l'heure de sortie à 25 min plus tard
-        Ticket firstTicketSpy = spy(firstTicket);
-        Date currentTime = new Date();
-        Instant currentInstant = currentTime.toInstant();
-        Instant outInstant = currentInstant.plus(Duration.ofMinutes(25));
-        Date outTime = Date.from(outInstant);
-
-        // Quand la méthode de calcul aura besoin de l'heure de sortie, on renvoie la modifiée
-        when(firstTicketSpy.getOutTime()).thenReturn(outTime);
-        when(ticketDAOspy.getTicket("ABCDEF")).thenReturn(firstTicketSpy);
+        dataBasePrepareService.shiftOpenTicketInTime("ABCDEF", 25);
 
         // Première sortie du véhicule
         parkingService.processExitingVehicle();
+        TicketRecord firstTicket = ticketDAO.getTicket("ABCDEF");
+        // Le premier passage doit précéder le second, dont l'entrée va être reculée d'une heure
+        dataBasePrepareService.shiftClosedTickets("ABCDEF", 120);
 
-        // Deuxième entrée du véhicule
+        // Deuxième entrée du véhicule, stationnement d'une heure
         parkingService.processIncomingVehicle();
-
-        // On récupère le ticket pour modifier la date de sortie
-        Ticket secondTicket = ticketDAO.getTicket("ABCDEF");
-
-        // Espion basé sur le vrai ticket pour forcer l'heure de sortie à 1h plus tard
-        Ticket secondTicketSpy = spy(secondTicket);
-        currentTime = new Date();
-        currentInstant = currentTime.toInstant();
-        outInstant = currentInstant.plus(Duration.ofHours(1));
-        outTime = Date.from(outInstant);
-
-        // Quand la méthode de calcul aura besoin de l'heure de sortie, on renvoie la modifiée
-        when(secondTicketSpy.getOutTime()).thenReturn(outTime);
-
-        // Forcer le retour du ticket avec le comportement modifié pour tester le calcul du prix
-        when(ticketDAOspy.getTicket("ABCDEF")).thenReturn(secondTicketSpy);
+        dataBasePrepareService.shiftOpenTicketInTime("ABCDEF", 60);
 
         //Deuxième sortie du véhicule
         parkingService.processExitingVehicle();
+        TicketRecord secondTicket = ticketDAO.getTicket("ABCDEF");
 
         // Vérifie que le véhicule a deux tickets dans la base de données
         int count = ticketDAO.countTicketByVehicleRegNumber("ABCDEF");
         assertEquals(count, 2);
+        assertEquals(2, secondTicket.getVisitCount());
 
         // Vérifie les prix des différents passages
-        assertEquals(firstTicketSpy.getPrice(), 0.0);
-        assertEquals(1.425, secondTicketSpy.getPrice(), 0.1);
+        assertEquals(firstTicket.getPrice(), 0.0);
+        assertEquals(1.425, secondTicket.getPrice(), 0.1);
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,78 @@
+package com.parkit.parkingsystem.integration;
+
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.integration.service.GateSimulator;
+import com.parkit.parkingsystem.service.ParkingServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.List;
+
+import static com.parkit.parkingsystem.integration.service.GateSimulator.VEHICLES_PER_GATE;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ParkingServerLoadTest {
+
+    private final GateSimulator gateSimulator = new GateSimulator();
+    private ParkingServer parkingServer;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        parkingServer = new ParkingServer(0, new ParkingSpotDAO(), gateSimulator.ticketDAO());
+        parkingServer.start();
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        parkingServer.close();
+    }
+
+    @Test
+    public void testEachGateHasItsOwnSession() throws Exception {
+        // Vérifie que des bornes simultanées ne voient que leurs propres véhicules.
+        List<String> outputs = gateSimulator.runGates(parkingServer.getPort(), 4);
+
+        for (int gate = 0; gate < outputs.size(); gate++) {
+            String output = outputs.get(gate);
+            assertEquals(VEHICLES_PER_GATE, count(output, "Recorded in-time for vehicle number:GATE" + gate + "-"));
+            assertEquals(VEHICLES_PER_GATE, count(output, "Recorded out-time for vehicle number:GATE" + gate + "-"));
+            assertEquals(2 * VEHICLES_PER_GATE, count(output, "vehicle number:GATE"));
+            assertTrue(output.endsWith("Exiting from the system!\n"));
+        }
+        assertEquals(0, parkingServer.getActiveGates());
+    }
+
+    @Test
+    public void testListensOnLoopbackByDefault() {
+        // Vérifie que le shell des bornes, sans authentification, n'est pas exposé au réseau par défaut.
+        assertEquals(InetAddress.getLoopbackAddress(), parkingServer.getAddress());
+    }
+
+    @Test
+    public void testIdleGateIsDisconnected() throws Exception {
+        // Vérifie qu'une borne qui n'envoie plus rien perd sa session au lieu de la garder indéfiniment.
+        try (ParkingServer idleServer = new ParkingServer(0, InetAddress.getLoopbackAddress(), 200, new ParkingSpotDAO(),
+                gateSimulator.ticketDAO(), null, null, null)) {
+            idleServer.start();
+            try (Socket socket = new Socket("localhost", idleServer.getPort())) {
+                socket.setSoTimeout(5000);
+                String output = GateSimulator.readAll(socket.getInputStream());
+
+                assertTrue(output.startsWith("Welcome to Parking System!"));
+            }
+            assertEquals(1, idleServer.getServedGates());
+            assertEquals(0, idleServer.getActiveGates());
+        }
+    }
+
+    private static int count(String text, String token) {
+        int count = 0;
+        for (int i = text.indexOf(token); i >= 0; i = text.indexOf(token, i + 1)) {
+            count++;
+        }
+        return count;
+    }
+}
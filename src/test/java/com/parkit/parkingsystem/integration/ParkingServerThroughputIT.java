@@ -0,0 +1,46 @@
+package com.parkit.parkingsystem.integration;
+
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.integration.service.GateSimulator;
+import com.parkit.parkingsystem.service.ParkingServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static com.parkit.parkingsystem.integration.service.GateSimulator.VEHICLES_PER_GATE;
+import static org.junit.jupiter.api.Assertions.*;
+
+// Mesure en temps réel : hors de la suite unitaire, lancé par mvn verify.
+public class ParkingServerThroughputIT {
+
+    private final GateSimulator gateSimulator = new GateSimulator();
+    private ParkingServer parkingServer;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        parkingServer = new ParkingServer(0, new ParkingSpotDAO(), gateSimulator.ticketDAO());
+        parkingServer.start();
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        parkingServer.close();
+    }
+
+    @Test
+    public void testThroughputScalesWithGateCount() throws Exception {
+        // Vérifie que le débit croît avec le nombre de bornes : les sessions n'attendent pas les unes après les autres.
+        gateSimulator.runGates(parkingServer.getPort(), 2);
+        double singleGate = throughput(1);
+        double sixteenGates = throughput(16);
+
+        assertTrue(sixteenGates > 4 * singleGate, "16 gates: " + sixteenGates + " ops/s, 1 gate: " + singleGate + " ops/s");
+    }
+
+    private double throughput(int gateCount) throws Exception {
+        long start = System.nanoTime();
+        gateSimulator.runGates(parkingServer.getPort(), gateCount);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        return gateCount * VEHICLES_PER_GATE * 2 / seconds;
+    }
+}
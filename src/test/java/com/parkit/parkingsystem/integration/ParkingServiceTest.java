@@ -3,10 +3,14 @@ package com.parkit.parkingsystem.integration;
 import com.parkit.parkingsystem.constants.ParkingType;
 import com.parkit.parkingsystem.dao.ParkingSpotDAO;
 import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.metrics.MetricsRegistry;
 import com.parkit.parkingsystem.model.ParkingSpot;
 import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.model.TicketRecord;
+import com.parkit.parkingsystem.service.FareCalculatorService;
 import com.parkit.parkingsystem.service.ParkingService;
 import com.parkit.parkingsystem.util.InputReaderUtil;
+import com.parkit.parkingsystem.util.ReplayClock;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -14,6 +18,7 @@ import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.time.Clock;
 import java.util.Date;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -45,11 +50,16 @@ public class ParkingServiceTest {
             ticket.setVehicleRegNumber("ABCDEF");
 
             //Lenient permet de ne pas avoir d'erreurs si les conditions ne sont pas utilisées dans un test.
-            lenient().when(ticketDAO.getTicket(anyString())).thenReturn(ticket);
+            lenient().when(ticketDAO.getTicket(anyString())).thenReturn(ticket.toRecord());
             lenient().when(ticketDAO.updateTicket(any(Ticket.class))).thenReturn(true);
             lenient().when(parkingSpotDAO.updateParking(any(ParkingSpot.class))).thenReturn(true);
             lenient().when(ticketDAO.countTicketByVehicleRegNumber("ABCDEF")).thenReturn(1);
             lenient().when(ticketDAO.saveTicket(any(Ticket.class))).thenReturn(true);
+            lenient().when(ticketDAO.exitVehicle(eq("ABCDEF"), any(Date.class), any(FareCalculatorService.class))).thenAnswer(invocation -> {
+                ticket.setOutTime(invocation.getArgument(1));
+                invocation.<FareCalculatorService>getArgument(2).calculateFare(ticket, ticket.getVisitCount() > 1);
+                return ticket.toRecord();
+            });
 
 
             parkingService = new ParkingService(inputReaderUtil, parkingSpotDAO, ticketDAO);
@@ -61,49 +71,108 @@ public class ParkingServiceTest {
 
     @Test
     public void processExitingVehicleTest() {
-        // Teste si la méthode de sortie du véhicule met correctement à jour la place de parking et compte le nombre de tickets pour un véhicule spécifique.
+        // Teste si la sortie du véhicule passe par la transaction de sortie qui calcule le prix et libère la place.
 
         //Execution de la méthode à tester
         parkingService.processExitingVehicle();
 
         //Condition de réussite du test
-        verify(parkingSpotDAO, Mockito.times(1)).updateParking(any(ParkingSpot.class));
-        verify(ticketDAO, Mockito.times(1)).countTicketByVehicleRegNumber("ABCDEF");
+        verify(ticketDAO, Mockito.times(1)).exitVehicle(eq("ABCDEF"), any(Date.class), any(FareCalculatorService.class));
+        // Plus d'allers-retours séparés : lecture, comptage et mises à jour sont dans la transaction
+        verify(ticketDAO, never()).getTicket(anyString());
+        verify(ticketDAO, never()).countTicketByVehicleRegNumber(anyString());
+        verify(ticketDAO, never()).updateTicket(any(Ticket.class));
+        verify(parkingSpotDAO, never()).updateParking(any(ParkingSpot.class));
     }
 
     @Test
     public void testProcessIncomingVehicle() throws Exception {
-        // Teste si la méthode d'entrée du véhicule réserve correctement une place de parking et enregistre un ticket.
+        // Teste si la méthode d'entrée du véhicule réserve une place et enregistre le ticket en une seule opération.
 
         // Condition du test
-        ParkingSpot parkingSpot = new ParkingSpot(1, ParkingType.CAR, true);  // La place de parking est actuellement disponible
+        Ticket ticket = new Ticket();
+        ticket.setParkingSpot(new ParkingSpot(1, ParkingType.CAR, false));
+        ticket.setVehicleRegNumber("ABCDEF");
+        ticket.setVisitCount(1);
         when(inputReaderUtil.readSelection()).thenReturn(1);  // Simuler la sélection du type de véhicule (voiture)
-        when(parkingSpotDAO.getNextAvailableSlot(any(ParkingType.class))).thenReturn(1);  // Simuler un emplacement disponible
+        when(ticketDAO.enterVehicle(eq(ParkingType.CAR), eq("ABCDEF"), any(Date.class))).thenReturn(ticket);
 
         // Exécution de la méthode à tester
         parkingService.processIncomingVehicle();
 
         // Condition de réussite du test
-        verify(parkingSpotDAO, Mockito.times(1)).getNextAvailableSlot(any(ParkingType.class));
         verify(inputReaderUtil, Mockito.times(1)).readSelection();
         verify(inputReaderUtil, Mockito.times(1)).readVehicleRegistrationNumber();
-        verify(ticketDAO, Mockito.times(1)).saveTicket(any(Ticket.class));
-        verify(parkingSpotDAO, Mockito.times(1)).updateParking(any(ParkingSpot.class));
+        verify(ticketDAO, Mockito.times(1)).enterVehicle(eq(ParkingType.CAR), eq("ABCDEF"), any(Date.class));
+        // Plus d'allers-retours séparés : tout passe par la transaction d'entrée
+        verify(parkingSpotDAO, never()).getNextAvailableSlot(any(ParkingType.class));
+        verify(parkingSpotDAO, never()).updateParking(any(ParkingSpot.class));
+        verify(ticketDAO, never()).saveTicket(any(Ticket.class));
+        verify(ticketDAO, never()).countTicketByVehicleRegNumber(anyString());
+    }
+
+    @Test
+    public void testProcessIncomingVehicleParkingFull() throws Exception {
+        // Teste le comportement lorsque la transaction d'entrée ne trouve aucune place libre.
+
+        // Condition du test
+        when(inputReaderUtil.readSelection()).thenReturn(2);
+        when(ticketDAO.enterVehicle(eq(ParkingType.BIKE), eq("ABCDEF"), any(Date.class))).thenReturn(null);
+
+        // Exécution de la méthode à tester
+        parkingService.processIncomingVehicle();
+
+        // Condition de réussite du test
+        verify(ticketDAO, Mockito.times(1)).enterVehicle(eq(ParkingType.BIKE), eq("ABCDEF"), any(Date.class));
+    }
+
+    @Test
+    public void testProcessIncomingVehicleWrongType() throws Exception {
+        // Teste qu'un type de véhicule invalide n'ouvre aucune transaction d'entrée.
+
+        // Condition du test
+        when(inputReaderUtil.readSelection()).thenReturn(3);
+
+        // Exécution de la méthode à tester
+        parkingService.processIncomingVehicle();
+
+        // Condition de réussite du test
+        verify(ticketDAO, never()).enterVehicle(any(), anyString(), any());
     }
 
     @Test
     public void processExitingVehicleTestUnableUpdate() {
-        // Teste le comportement du système lorsque la mise à jour du ticket échoue, en s'assurant que la place de parking n'est pas mise à jour.
+        // Teste le comportement du système lorsque la transaction de sortie échoue, en s'assurant que la place de parking n'est pas mise à jour.
 
         //Condition du test
-        ParkingSpot parkingSpot = new ParkingSpot(1, ParkingType.CAR, false);
-        when(ticketDAO.updateTicket(any(Ticket.class))).thenReturn(false);
+        when(ticketDAO.exitVehicle(eq("ABCDEF"), any(Date.class), any(FareCalculatorService.class))).thenReturn(null);
 
         //Execution du test
         parkingService.processExitingVehicle();
 
         //Condition de réussite du test
-        verify(parkingSpotDAO, never()).updateParking(parkingSpot);
+        verify(ticketDAO, Mockito.times(1)).exitVehicle(eq("ABCDEF"), any(Date.class), any(FareCalculatorService.class));
+        verify(parkingSpotDAO, never()).updateParking(any(ParkingSpot.class));
+    }
+
+    @Test
+    public void testExitMetricsTrackDiscountHitRate() {
+        // Vérifie que les sorties sont chronométrées et que la part des sorties avec remise est exposée en jauge.
+        MetricsRegistry metricsRegistry = new MetricsRegistry();
+        parkingService = new ParkingService(inputReaderUtil, parkingSpotDAO, ticketDAO, System.out, Clock.systemUTC(), metricsRegistry);
+        Ticket regular = new Ticket();
+        regular.setVisitCount(3);
+        when(ticketDAO.exitVehicle(anyString(), any(Date.class), any(FareCalculatorService.class)))
+                .thenReturn(regular.toRecord(), new Ticket().toRecord(), new Ticket().toRecord(), null);
+
+        for (int i = 0; i < 4; i++) {
+            parkingService.processExitingVehicle("ABCDEF");
+        }
+
+        assertEquals(4, metricsRegistry.timer(ParkingService.EXITING_TIMER).snapshot().getCount());
+        assertEquals(1, metricsRegistry.timer(ParkingService.EXITING_TIMER).getErrors());
+        assertEquals(3, metricsRegistry.counter(ParkingService.EXITS).sum());
+        assertEquals(1.0 / 3, metricsRegistry.getGauge(ParkingService.DISCOUNT_HIT_RATE), 1e-9);
     }
 
     @Test
@@ -174,4 +243,20 @@ public class ParkingServiceTest {
         verify(parkingSpotDAO, times(1)).getNextAvailableSlot(ParkingType.CAR);
     }
 
+    @Test
+    public void testProcessVehiclesUseInjectedClock() {
+        // Vérifie qu'en rejeu les heures d'entrée et de sortie viennent de l'horloge fournie et non de l'heure système.
+        ReplayClock clock = new ReplayClock();
+        ParkingService replayService = new ParkingService(null, parkingSpotDAO, ticketDAO, System.out, clock);
+
+        long inTime = System.currentTimeMillis() - (2 * 60 * 60 * 1000);
+        long outTime = System.currentTimeMillis() + (60 * 60 * 1000);
+        clock.setMillis(inTime);
+        replayService.processIncomingVehicle(ParkingType.CAR, "ABCDEF");
+        clock.setMillis(outTime);
+        TicketRecord ticket = replayService.processExitingVehicle("ABCDEF");
+
+        verify(ticketDAO, times(1)).enterVehicle(ParkingType.CAR, "ABCDEF", new Date(inTime));
+        assertEquals(outTime, ticket.getOutTimeMillis());
+    }
 }
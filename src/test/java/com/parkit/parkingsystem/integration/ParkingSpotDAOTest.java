@@ -0,0 +1,160 @@
+package com.parkit.parkingsystem.integration;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.ParkingSpotIndex;
+import com.parkit.parkingsystem.metrics.MetricsRegistry;
+import com.parkit.parkingsystem.metrics.Timer;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.service.OccupancyService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class ParkingSpotDAOTest {
+
+    @Mock
+    private DataBaseConfig dataBaseConfig;
+
+    @Mock
+    private Connection connection;
+
+    @Mock
+    private PreparedStatement preparedStatement;
+
+    private ParkingSpotDAO parkingSpotDAO;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        MockitoAnnotations.initMocks(this);
+        parkingSpotDAO = new ParkingSpotDAO();
+        parkingSpotDAO.dataBaseConfig = dataBaseConfig;
+        when(dataBaseConfig.getConnection()).thenReturn(connection);
+        when(connection.prepareStatement(anyString())).thenReturn(preparedStatement);
+    }
+
+    @Test
+    public void testUpdateParkingsInOneBatch() throws Exception {
+        // Vérifie que les places sont mises à jour en un seul lot et répercutées dans l'index.
+        ParkingSpotIndex parkingSpotIndex = new ParkingSpotIndex();
+        parkingSpotDAO.parkingSpotIndex = parkingSpotIndex;
+        when(preparedStatement.executeBatch()).thenReturn(new int[]{1, Statement.SUCCESS_NO_INFO});
+
+        boolean updated = parkingSpotDAO.updateParkings(Arrays.asList(
+                new ParkingSpot(1, ParkingType.CAR, true),
+                new ParkingSpot(4, ParkingType.BIKE, true)));
+
+        assertTrue(updated);
+        verify(preparedStatement, times(2)).addBatch();
+        verify(preparedStatement, never()).executeUpdate();
+        verify(connection, times(1)).commit();
+        assertEquals(1, parkingSpotIndex.getFreeCount(ParkingType.CAR));
+        assertEquals(1, parkingSpotIndex.getFreeCount(ParkingType.BIKE));
+        verify(dataBaseConfig, times(1)).closeConnection(connection);
+    }
+
+    @Test
+    public void testUpdateParkingsReportsMissingSpot() throws Exception {
+        // Vérifie qu'une place inconnue en base est signalée et n'entre pas dans l'index.
+        ParkingSpotIndex parkingSpotIndex = new ParkingSpotIndex();
+        parkingSpotDAO.parkingSpotIndex = parkingSpotIndex;
+        when(preparedStatement.executeBatch()).thenReturn(new int[]{1, 0});
+
+        boolean updated = parkingSpotDAO.updateParkings(Arrays.asList(
+                new ParkingSpot(1, ParkingType.CAR, true),
+                new ParkingSpot(99, ParkingType.CAR, true)));
+
+        assertFalse(updated);
+        assertEquals(1, parkingSpotIndex.getFreeCount(ParkingType.CAR));
+        assertEquals(1, parkingSpotIndex.peekNextAvailableSlot(ParkingType.CAR));
+    }
+
+    @Test
+    public void testUpdateParkingsFailureRollsBack() throws Exception {
+        // Vérifie qu'un lot en échec est annulé et que la connexion est libérée.
+        when(preparedStatement.executeBatch()).thenThrow(new java.sql.BatchUpdateException());
+
+        assertFalse(parkingSpotDAO.updateParkings(Arrays.asList(new ParkingSpot(1, ParkingType.CAR, true))));
+
+        verify(connection, never()).commit();
+        verify(dataBaseConfig, times(1)).rollback(connection);
+        verify(dataBaseConfig, times(1)).closeConnection(connection);
+    }
+
+    @Test
+    public void testFailuresAreCountedInMetrics() throws Exception {
+        // Vérifie que chaque appel est chronométré et qu'une exception absorbée par le DAO est comptée en erreur.
+        MetricsRegistry metricsRegistry = new MetricsRegistry();
+        parkingSpotDAO.metricsRegistry = metricsRegistry;
+        when(preparedStatement.executeUpdate()).thenReturn(1).thenThrow(new java.sql.SQLException("lock wait timeout"));
+
+        assertTrue(parkingSpotDAO.updateParking(new ParkingSpot(1, ParkingType.CAR, true)));
+        assertFalse(parkingSpotDAO.updateParking(new ParkingSpot(1, ParkingType.CAR, true)));
+
+        Timer timer = metricsRegistry.timer("ParkingSpotDAO.updateParking");
+        assertEquals(2, timer.snapshot().getCount());
+        assertEquals(1, timer.getErrors());
+    }
+
+    @Test
+    public void testFreeSpotGaugesReadIndex() {
+        // Vérifie que les jauges de places libres suivent l'index sans requête en base.
+        MetricsRegistry metricsRegistry = new MetricsRegistry();
+        parkingSpotDAO.metricsRegistry = metricsRegistry;
+        ParkingSpotIndex parkingSpotIndex = new ParkingSpotIndex();
+        parkingSpotIndex.reconcile(Arrays.asList(new ParkingSpot(1, ParkingType.CAR, true),
+                new ParkingSpot(2, ParkingType.CAR, true), new ParkingSpot(4, ParkingType.BIKE, false)));
+        parkingSpotDAO.parkingSpotIndex = parkingSpotIndex;
+
+        parkingSpotDAO.registerFreeSpotGauges();
+
+        assertEquals(2, metricsRegistry.getGauge("ParkingSpotDAO.freeSpots.CAR"));
+        assertEquals(0, metricsRegistry.getGauge("ParkingSpotDAO.freeSpots.BIKE"));
+        verifyZeroInteractions(dataBaseConfig);
+    }
+
+    @Test
+    public void testUpdateParkingMovesOccupancyCounters() throws Exception {
+        // Vérifie que chaque changement d'état écrit en base met à jour les compteurs d'occupation, et eux seuls en lecture.
+        OccupancyService occupancyService = new OccupancyService();
+        occupancyService.reconcile(Arrays.asList(new ParkingSpot(1, ParkingType.CAR, true), new ParkingSpot(2, ParkingType.CAR, true)));
+        parkingSpotDAO.parkingSpotListener = occupancyService;
+        parkingSpotDAO.freeSpotCounter = occupancyService::getFreeCount;
+        when(preparedStatement.executeUpdate()).thenReturn(1, 0);
+
+        assertTrue(parkingSpotDAO.updateParking(new ParkingSpot(1, ParkingType.CAR, false)));
+        assertFalse(parkingSpotDAO.updateParking(new ParkingSpot(2, ParkingType.CAR, false)));
+
+        assertEquals(1, occupancyService.getFreeCount(ParkingType.CAR));
+        assertEquals(1, parkingSpotDAO.getFreeSpotCount(ParkingType.CAR));
+        verify(dataBaseConfig, times(2)).getConnection();
+    }
+
+    @Test
+    public void testAvailabilityProbeReadsNoTable() throws Exception {
+        // Vérifie que la sonde de disponibilité n'exécute qu'un select 1, et qu'une connexion impossible la rend fausse.
+        ResultSet resultSet = mock(ResultSet.class);
+        when(preparedStatement.executeQuery()).thenReturn(resultSet);
+        when(resultSet.next()).thenReturn(true);
+
+        assertTrue(parkingSpotDAO.isAvailable());
+        verify(connection).prepareStatement(DBConstants.PING);
+        verify(preparedStatement).setQueryTimeout(anyInt());
+
+        when(dataBaseConfig.getConnection()).thenThrow(new SQLException("Timeout waiting for a DB connection"));
+        assertFalse(parkingSpotDAO.isAvailable());
+    }
+}
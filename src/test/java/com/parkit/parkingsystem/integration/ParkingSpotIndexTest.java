@@ -0,0 +1,136 @@
+package com.parkit.parkingsystem.integration;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSpotIndex;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ParkingSpotIndexTest {
+
+    private ParkingSpotIndex parkingSpotIndex;
+
+    @BeforeEach
+    public void setUp() {
+        parkingSpotIndex = new ParkingSpotIndex();
+        parkingSpotIndex.reconcile(Arrays.asList(
+                new ParkingSpot(1, ParkingType.CAR, true),
+                new ParkingSpot(2, ParkingType.CAR, false),
+                new ParkingSpot(3, ParkingType.CAR, true),
+                new ParkingSpot(4, ParkingType.BIKE, true),
+                new ParkingSpot(5, ParkingType.BIKE, true)));
+    }
+
+    @Test
+    public void testClaimReturnsLowestFreeSpotPerType() {
+        // Vérifie que la réservation renvoie la plus petite place libre du bon type.
+        assertEquals(1, parkingSpotIndex.claimNextAvailableSlot(ParkingType.CAR));
+        assertEquals(3, parkingSpotIndex.claimNextAvailableSlot(ParkingType.CAR));
+        assertEquals(-1, parkingSpotIndex.claimNextAvailableSlot(ParkingType.CAR));
+        assertEquals(4, parkingSpotIndex.claimNextAvailableSlot(ParkingType.BIKE));
+    }
+
+    @Test
+    public void testPeekDoesNotClaim() {
+        // Vérifie que la consultation ne retire pas la place de l'index.
+        assertEquals(1, parkingSpotIndex.peekNextAvailableSlot(ParkingType.CAR));
+        assertEquals(1, parkingSpotIndex.peekNextAvailableSlot(ParkingType.CAR));
+        assertEquals(2, parkingSpotIndex.getFreeCount(ParkingType.CAR));
+    }
+
+    @Test
+    public void testWriteThroughUpdatesFreeCount() {
+        // Vérifie que les mises à jour de place se reflètent dans l'index et ses compteurs.
+        parkingSpotIndex.update(new ParkingSpot(1, ParkingType.CAR, false));
+        assertEquals(1, parkingSpotIndex.getFreeCount(ParkingType.CAR));
+        assertEquals(3, parkingSpotIndex.peekNextAvailableSlot(ParkingType.CAR));
+
+        parkingSpotIndex.update(new ParkingSpot(2, ParkingType.CAR, true));
+        parkingSpotIndex.update(new ParkingSpot(2, ParkingType.CAR, true));
+        assertEquals(2, parkingSpotIndex.getFreeCount(ParkingType.CAR));
+        assertEquals(2, parkingSpotIndex.peekNextAvailableSlot(ParkingType.CAR));
+    }
+
+    @Test
+    public void testReconcileCorrectsDrift() {
+        // Vérifie que la réconciliation aligne l'index sur l'état de la base.
+        int corrections = parkingSpotIndex.reconcile(Arrays.asList(
+                new ParkingSpot(1, ParkingType.CAR, false),
+                new ParkingSpot(2, ParkingType.CAR, true),
+                new ParkingSpot(3, ParkingType.CAR, true)));
+
+        assertEquals(2, corrections);
+        assertEquals(2, parkingSpotIndex.claimNextAvailableSlot(ParkingType.CAR));
+        assertEquals(3, parkingSpotIndex.claimNextAvailableSlot(ParkingType.CAR));
+    }
+
+    @Test
+    public void testReconcileSkipsSpotsWrittenSinceTheRead() {
+        // Vérifie qu'une lecture en base antérieure à une réservation ne rend pas la place réservée à l'index.
+        long version = parkingSpotIndex.getVersion();
+        assertEquals(1, parkingSpotIndex.claimNextAvailableSlot(ParkingType.CAR));
+        parkingSpotIndex.markAvailable(ParkingType.CAR, 2);
+
+        int corrections = parkingSpotIndex.reconcile(Arrays.asList(
+                new ParkingSpot(1, ParkingType.CAR, true),
+                new ParkingSpot(2, ParkingType.CAR, false),
+                new ParkingSpot(3, ParkingType.CAR, false)), version);
+
+        assertEquals(1, corrections);
+        assertEquals(2, parkingSpotIndex.claimNextAvailableSlot(ParkingType.CAR));
+        assertEquals(-1, parkingSpotIndex.claimNextAvailableSlot(ParkingType.CAR));
+    }
+
+    @Test
+    public void testReconcileKeepsClaimedSpotsUntilWritten() {
+        // Vérifie qu'une place réservée mais pas encore occupée en base n'est pas rendue libre par une lecture ultérieure.
+        assertEquals(1, parkingSpotIndex.claimNextAvailableSlot(ParkingType.CAR));
+        long version = parkingSpotIndex.getVersion();
+
+        assertEquals(0, parkingSpotIndex.reconcile(Arrays.asList(new ParkingSpot(1, ParkingType.CAR, true)), version));
+        assertEquals(1, parkingSpotIndex.getFreeCount(ParkingType.CAR));
+
+        parkingSpotIndex.markOccupied(ParkingType.CAR, 1);
+        assertEquals(1, parkingSpotIndex.reconcile(Arrays.asList(new ParkingSpot(1, ParkingType.CAR, true)),
+                parkingSpotIndex.getVersion()));
+        assertEquals(2, parkingSpotIndex.getFreeCount(ParkingType.CAR));
+    }
+
+    @Test
+    public void testConcurrentClaimsNeverShareASpot() throws Exception {
+        // Vérifie que des bornes concurrentes n'obtiennent jamais la même place.
+        ParkingSpotIndex largeIndex = new ParkingSpotIndex();
+        for (int i = 1; i <= 1000; i++) {
+            largeIndex.markAvailable(ParkingType.CAR, i);
+        }
+        Set<Integer> claimed = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        for (int t = 0; t < 8; t++) {
+            executor.submit(() -> {
+                start.await();
+                int spot;
+                while ((spot = largeIndex.claimNextAvailableSlot(ParkingType.CAR)) > 0) {
+                    assertTrue(claimed.add(spot));
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(1000, claimed.size());
+        assertEquals(0, largeIndex.getFreeCount(ParkingType.CAR));
+    }
+}
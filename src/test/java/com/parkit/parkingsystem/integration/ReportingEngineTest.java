@@ -0,0 +1,202 @@
+package com.parkit.parkingsystem.integration;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.service.ReportingEngine;
+import com.parkit.parkingsystem.service.RevenueReport;
+import com.parkit.parkingsystem.util.ReplayClock;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ReportingEngineTest {
+
+    private static final long HOUR = 60 * 60 * 1000L;
+    private static final long DAY = 24 * HOUR;
+    // 2024-05-01T00:00:00Z
+    private static final long MAY_FIRST = 1714521600000L;
+
+    private ReplayClock clock;
+    private StubTicketDAO ticketDAO;
+
+    // Tickets en mémoire, triés par véhicule comme le parcours complet de TicketDAO
+    private static final class StubTicketDAO extends TicketDAO {
+        final List<Object[]> rows = new ArrayList<>();
+        long lastAfter = -1;
+        long lastUpTo = -1;
+        boolean fail;
+
+        void add(String vehicleRegNumber, ParkingType parkingType, long inTime, long outTime, double price) {
+            rows.add(new Object[]{vehicleRegNumber, parkingType, inTime, outTime, price});
+        }
+
+        @Override
+        public long scanTickets(int fetchSize, TicketScanHandler handler) {
+            return scan(Long.MIN_VALUE, Long.MAX_VALUE, handler);
+        }
+
+        @Override
+        public long scanTicketsClosedBetween(long afterMillis, long upToMillis, int fetchSize, TicketScanHandler handler) {
+            lastAfter = afterMillis;
+            lastUpTo = upToMillis;
+            return scan(afterMillis, upToMillis, handler);
+        }
+
+        private long scan(long after, long upTo, TicketScanHandler handler) {
+            if (fail) {
+                return -1;
+            }
+            rows.sort((a, b) -> ((String) a[0]).compareTo((String) b[0]));
+            long scanned = 0;
+            int visitCount = 0;
+            try {
+                for (int i = 0; i < rows.size(); i++) {
+                    Object[] row = rows.get(i);
+                    visitCount = i > 0 && rows.get(i - 1)[0].equals(row[0]) ? visitCount + 1 : 1;
+                    long outTime = (Long) row[3];
+                    if (after != Long.MIN_VALUE && (outTime <= after || outTime > upTo)) {
+                        continue;
+                    }
+                    handler.onTicket(i, (String) row[0], (ParkingType) row[1], (Long) row[2], outTime, (Double) row[4], visitCount);
+                    scanned++;
+                }
+            } catch (Exception ex) {
+                return -1;
+            }
+            return scanned;
+        }
+    }
+
+    @BeforeEach
+    public void setUp() {
+        clock = new ReplayClock();
+        clock.setMillis(MAY_FIRST + 2 * DAY);
+        ticketDAO = new StubTicketDAO();
+    }
+
+    @Test
+    public void testFullReportAggregates() throws Exception {
+        // Vérifie les recettes par type, heure et jour, la durée moyenne, la part de remises et le pic d'occupation.
+        ticketDAO.add("AAA", ParkingType.CAR, MAY_FIRST + 8 * HOUR, MAY_FIRST + 10 * HOUR, 3.0);
+        ticketDAO.add("AAA", ParkingType.CAR, MAY_FIRST + DAY + 8 * HOUR, MAY_FIRST + DAY + 9 * HOUR, 1.425);
+        ticketDAO.add("BBB", ParkingType.BIKE, MAY_FIRST + 9 * HOUR, MAY_FIRST + 10 * HOUR, 1.0);
+        ticketDAO.add("CCC", ParkingType.CAR, MAY_FIRST + 9 * HOUR + 1000, -1, 0.0);
+
+        RevenueReport report = new ReportingEngine(ticketDAO, 2, 0, clock).fullReport(100);
+
+        assertEquals(3, report.getTickets());
+        assertEquals(4.425, report.getRevenue(ParkingType.CAR), 1e-9);
+        assertEquals(1.0, report.getRevenue(ParkingType.BIKE), 1e-9);
+        assertEquals((2 * HOUR + HOUR + HOUR) / 3, report.getAverageDwellMillis());
+        assertEquals(1.5 * HOUR, report.getAverageDwellMillis(ParkingType.CAR));
+        assertEquals(1.0 / 3, report.getDiscountShare(), 1e-9);
+        assertEquals(1.425, report.getDiscountedRevenue(), 1e-9);
+
+        SortedMap<Long, Double> revenueByHour = report.getRevenueByHour();
+        assertEquals(2, revenueByHour.size());
+        assertEquals(4.0, revenueByHour.get(MAY_FIRST + 10 * HOUR), 1e-9);
+        assertEquals(1.425, revenueByHour.get(MAY_FIRST + DAY + 9 * HOUR), 1e-9);
+        SortedMap<Long, Double> revenueByDay = report.getRevenueByDay();
+        assertEquals(4.0, revenueByDay.get(MAY_FIRST), 1e-9);
+        assertEquals(1.425, revenueByDay.get(MAY_FIRST + DAY), 1e-9);
+
+        // AAA de 8h à 10h et BBB de 9h à 10h : deux véhicules présents à 9h et 10h
+        assertEquals(2, report.getPeakOccupancy());
+        assertEquals(MAY_FIRST + 9 * HOUR, report.getPeakOccupancyHour());
+    }
+
+    @Test
+    public void testIncrementalReportOnlyReadsTicketsClosedSinceWatermark() throws Exception {
+        // Vérifie que le mode incrémental ne lit que les nouvelles sorties et donne le même résultat qu'un rapport complet.
+        ticketDAO.add("AAA", ParkingType.CAR, MAY_FIRST, MAY_FIRST + HOUR, 1.5);
+        ReportingEngine reportingEngine = new ReportingEngine(ticketDAO, 2, 1000, clock);
+        reportingEngine.incrementalReport(100);
+        assertEquals(clock.millis() - 1000, reportingEngine.getWatermark());
+
+        clock.setMillis(clock.millis() + HOUR);
+        ticketDAO.add("BBB", ParkingType.BIKE, clock.millis() - 2 * HOUR, clock.millis() - HOUR / 2, 1.0);
+        ticketDAO.add("AAA", ParkingType.CAR, clock.millis() - HOUR, clock.millis(), 2.85);
+        RevenueReport incremental = reportingEngine.incrementalReport(100);
+
+        assertEquals(MAY_FIRST + 2 * DAY - 1000, ticketDAO.lastAfter);
+        assertEquals(clock.millis() - 1000, ticketDAO.lastUpTo);
+        // La sortie de AAA à l'instant même reste au rapport suivant
+        assertEquals(1, reportingEngine.getLastScanned());
+        assertEquals(2, incremental.getTickets());
+
+        clock.setMillis(clock.millis() + HOUR);
+        incremental = reportingEngine.incrementalReport(100);
+        RevenueReport full = new ReportingEngine(ticketDAO, 1, 1000, clock).fullReport(100);
+        assertEquals(full.getTickets(), incremental.getTickets());
+        assertEquals(full.getRevenue(), incremental.getRevenue(), 1e-9);
+        assertEquals(full.getDiscountShare(), incremental.getDiscountShare(), 1e-9);
+        assertEquals(full.getRevenueByHour(), incremental.getRevenueByHour());
+        assertEquals(full.getPeakOccupancy(), incremental.getPeakOccupancy());
+    }
+
+    @Test
+    public void testWatermarkWaitsForJournaledExits() throws Exception {
+        // Vérifie qu'une sortie encore dans le journal des bornes retient le watermark, et qu'elle est comptée une fois appliquée
+        // en base avec son heure de sortie d'origine.
+        AtomicLong oldestPendingTime = new AtomicLong(Long.MAX_VALUE);
+        ticketDAO.add("AAA", ParkingType.CAR, MAY_FIRST, MAY_FIRST + HOUR, 1.5);
+        ReportingEngine reportingEngine = new ReportingEngine(ticketDAO, 2, 1000, clock, oldestPendingTime::get);
+        reportingEngine.fullReport(100);
+
+        clock.setMillis(clock.millis() + HOUR);
+        long exitTime = clock.millis() - HOUR / 2;
+        oldestPendingTime.set(exitTime);
+        reportingEngine.incrementalReport(100);
+        assertEquals(exitTime - 1, reportingEngine.getWatermark());
+
+        ticketDAO.add("BBB", ParkingType.BIKE, exitTime - HOUR, exitTime, 1.0);
+        oldestPendingTime.set(Long.MAX_VALUE);
+        RevenueReport incremental = reportingEngine.incrementalReport(100);
+
+        assertEquals(clock.millis() - 1000, reportingEngine.getWatermark());
+        assertEquals(2, incremental.getTickets());
+        assertEquals(1.0, incremental.getRevenue(ParkingType.BIKE), 1e-9);
+    }
+
+    @Test
+    public void testParallelAggregationMatchesSingleWorker() throws Exception {
+        // Vérifie que l'agrégation répartie sur plusieurs workers donne le même rapport qu'un seul worker.
+        for (int i = 0; i < 20000; i++) {
+            long inTime = MAY_FIRST + (i % 40) * HOUR + i;
+            ticketDAO.add("CAR-" + (i % 5000), i % 3 == 0 ? ParkingType.BIKE : ParkingType.CAR, inTime, inTime + (i % 7 + 1) * HOUR, i % 11);
+        }
+
+        RevenueReport single = new ReportingEngine(ticketDAO, 1, 0, clock).fullReport(100);
+        RevenueReport parallel = new ReportingEngine(ticketDAO, 4, 0, clock).fullReport(100);
+
+        assertEquals(20000, parallel.getTickets());
+        assertEquals(single.getRevenue(), parallel.getRevenue(), 1e-6);
+        assertEquals(single.getAverageDwellMillis(), parallel.getAverageDwellMillis());
+        assertEquals(single.getDiscountShare(), parallel.getDiscountShare(), 1e-12);
+        assertEquals(single.getPeakOccupancy(), parallel.getPeakOccupancy());
+        assertEquals(single.getRevenueByDay().keySet(), parallel.getRevenueByDay().keySet());
+    }
+
+    @Test
+    public void testFailedScanKeepsWatermark() throws Exception {
+        // Vérifie qu'un parcours en échec ne fait pas avancer le watermark et ne modifie pas le rapport cumulé.
+        ticketDAO.add("AAA", ParkingType.CAR, MAY_FIRST, MAY_FIRST + HOUR, 1.5);
+        ReportingEngine reportingEngine = new ReportingEngine(ticketDAO, 2, 0, clock);
+        reportingEngine.fullReport(100);
+        long watermark = reportingEngine.getWatermark();
+
+        ticketDAO.fail = true;
+        clock.setMillis(clock.millis() + HOUR);
+        assertNull(reportingEngine.incrementalReport(100));
+        assertEquals(watermark, reportingEngine.getWatermark());
+
+        ticketDAO.fail = false;
+        assertEquals(1, reportingEngine.incrementalReport(100).getTickets());
+    }
+}
@@ -0,0 +1,183 @@
+package com.parkit.parkingsystem.integration;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.service.FareCalculatorService;
+import com.parkit.parkingsystem.service.RepricingJob;
+import com.parkit.parkingsystem.service.TariffEngine;
+import com.parkit.parkingsystem.service.TariffPlan;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RepricingJobTest {
+
+    private static final long HOUR = 60 * 60 * 1000L;
+
+    private final FareCalculatorService fareCalculatorService = new FareCalculatorService(new TariffEngine(TariffPlan.DEFAULT));
+
+    // Ticket lu par le parcours : un véhicule par ticket sauf indication contraire
+    private static final class Row {
+        final int id;
+        final String vehicleRegNumber;
+        final ParkingType parkingType;
+        final long inTime;
+        final long outTime;
+        final double price;
+
+        Row(int id, String vehicleRegNumber, ParkingType parkingType, long inTime, long outTime, double price) {
+            this.id = id;
+            this.vehicleRegNumber = vehicleRegNumber;
+            this.parkingType = parkingType;
+            this.inTime = inTime;
+            this.outTime = outTime;
+            this.price = price;
+        }
+    }
+
+    private static final class StubTicketDAO extends TicketDAO {
+        final Map<Integer, Double> written = new ConcurrentHashMap<>();
+        final AtomicInteger writeCalls = new AtomicInteger();
+        volatile int writtenBeforeScanEnd = -1;
+        private final Row[] rows;
+        private final boolean failAtEnd;
+
+        StubTicketDAO(boolean failAtEnd, Row... rows) {
+            this.rows = rows;
+            this.failAtEnd = failAtEnd;
+        }
+
+        @Override
+        public long scanTickets(int fetchSize, TicketScanHandler handler) {
+            try {
+                // Rang du ticket pour son véhicule, comme le parcours de TicketDAO
+                String previousVehicle = null;
+                int visitCount = 0;
+                for (Row row : rows) {
+                    visitCount = row.vehicleRegNumber.equals(previousVehicle) ? visitCount + 1 : 1;
+                    previousVehicle = row.vehicleRegNumber;
+                    handler.onTicket(row.id, row.vehicleRegNumber, row.parkingType, row.inTime, row.outTime, row.price, visitCount);
+                }
+            } catch (Exception ex) {
+                return -1;
+            }
+            writtenBeforeScanEnd = written.size();
+            return failAtEnd ? -1 : rows.length;
+        }
+
+        @Override
+        public boolean updateTicketPrices(int[] ids, double[] prices, int count) {
+            writeCalls.incrementAndGet();
+            for (int i = 0; i < count; i++) {
+                written.put(ids[i], prices[i]);
+            }
+            return true;
+        }
+    }
+
+    private static Row[] manyTickets(int count) {
+        Row[] rows = new Row[count];
+        for (int i = 0; i < count; i++) {
+            long duration = (i % 48 + 1) * HOUR / 2;
+            ParkingType parkingType = i % 3 == 0 ? ParkingType.BIKE : ParkingType.CAR;
+            double price = FareCalculatorService.calculateFare(0, duration, parkingType, false);
+            // Un ticket sur quatre a un prix enregistré erroné
+            rows[i] = new Row(i + 1, "CAR-" + i, parkingType, 0, duration, i % 4 == 0 ? price + 1 : price);
+        }
+        return rows;
+    }
+
+    @Test
+    public void testOnlyChangedPricesAreWritten() throws Exception {
+        // Vérifie que seuls les tickets dont le prix change sont réécrits, avec le prix recalculé.
+        Row[] rows = manyTickets(25000);
+        StubTicketDAO ticketDAO = new StubTicketDAO(false, rows);
+
+        RepricingJob.Report report = new RepricingJob(ticketDAO, fareCalculatorService, 1000, 4, true).run(0);
+
+        assertEquals(25000, report.getScanned());
+        assertEquals(25000, report.getPriced());
+        assertEquals(6250, report.getChanged());
+        assertEquals(6250, report.getWritten());
+        assertEquals(-6250.0, report.getPriceDelta(), 1e-6);
+        assertFalse(report.isFailed());
+        assertEquals(6250, ticketDAO.written.size());
+        for (Row row : rows) {
+            if (row.id % 4 == 1) {
+                assertEquals(row.price - 1, ticketDAO.written.get(row.id), 1e-9);
+            } else {
+                assertFalse(ticketDAO.written.containsKey(row.id));
+            }
+        }
+    }
+
+    @Test
+    public void testDiffsAreWrittenWhileScanning() throws Exception {
+        // Vérifie que les écarts partent en base pendant le parcours, lot par lot, sans attendre la fin de la table.
+        StubTicketDAO ticketDAO = new StubTicketDAO(false, manyTickets(20000));
+
+        new RepricingJob(ticketDAO, fareCalculatorService, 500, 2, true).run(0);
+
+        assertTrue(ticketDAO.writtenBeforeScanEnd > 0);
+        assertEquals(40, ticketDAO.writeCalls.get());
+    }
+
+    @Test
+    public void testVisitCountFollowsVehicleTickets() throws Exception {
+        // Vérifie que les passages suivants d'un même véhicule sont recalculés avec la remise de fidélité.
+        StubTicketDAO ticketDAO = new StubTicketDAO(false,
+                new Row(1, "AAA", ParkingType.CAR, 0, 2 * HOUR, 3.0),
+                new Row(2, "AAA", ParkingType.CAR, 3 * HOUR, 5 * HOUR, 3.0),
+                new Row(3, "AAA", ParkingType.CAR, 6 * HOUR, 8 * HOUR, 3.0 * 0.95),
+                new Row(4, "BBB", ParkingType.CAR, 0, 2 * HOUR, 3.0));
+
+        RepricingJob.Report report = new RepricingJob(ticketDAO, fareCalculatorService, 10, 1, true).run(0);
+
+        assertEquals(1, report.getChanged());
+        assertEquals(3.0 * 0.95, ticketDAO.written.get(2), 1e-9);
+    }
+
+    @Test
+    public void testOpenAndInvalidTicketsAreNotPriced() throws Exception {
+        // Vérifie que les tickets ouverts et les sorties antérieures à l'entrée ne sont ni tarifés ni réécrits.
+        StubTicketDAO ticketDAO = new StubTicketDAO(false,
+                new Row(1, "AAA", ParkingType.CAR, 0, -1, 0),
+                new Row(2, "BBB", ParkingType.CAR, 2 * HOUR, HOUR, 7),
+                new Row(3, "CCC", ParkingType.BIKE, 0, HOUR, 5));
+
+        RepricingJob.Report report = new RepricingJob(ticketDAO, fareCalculatorService, 10, 2, true).run(0);
+
+        assertEquals(3, report.getScanned());
+        assertEquals(1, report.getPriced());
+        assertEquals(1, report.getInvalid());
+        assertEquals(1, ticketDAO.written.size());
+        assertEquals(1.0, ticketDAO.written.get(3), 1e-9);
+    }
+
+    @Test
+    public void testDryRunWritesNothing() throws Exception {
+        // Vérifie qu'en audit seul, les écarts sont comptés mais rien n'est écrit.
+        StubTicketDAO ticketDAO = new StubTicketDAO(false, manyTickets(1000));
+
+        RepricingJob.Report report = new RepricingJob(ticketDAO, fareCalculatorService, 100, 2, false).run(0);
+
+        assertEquals(250, report.getChanged());
+        assertEquals(0, report.getWritten());
+        assertEquals(0, ticketDAO.writeCalls.get());
+    }
+
+    @Test
+    public void testScanFailureIsReported() throws Exception {
+        // Vérifie qu'un parcours interrompu est signalé dans le rapport.
+        StubTicketDAO ticketDAO = new StubTicketDAO(true, manyTickets(100));
+
+        RepricingJob.Report report = new RepricingJob(ticketDAO, fareCalculatorService, 1000, 2, true).run(0);
+
+        assertTrue(report.isFailed());
+        assertEquals(100, report.getScanned());
+    }
+}
@@ -0,0 +1,99 @@
+package com.parkit.parkingsystem.integration;
+
+import com.parkit.parkingsystem.config.SchemaMigrator;
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.integration.config.DataBaseTestConfig;
+import com.parkit.parkingsystem.integration.service.DataBasePrepareService;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SchemaMigratorIT {
+
+    private static DataBaseTestConfig dataBaseTestConfig = new DataBaseTestConfig();
+
+    @BeforeAll
+    public static void setUp() throws Exception {
+        dataBaseTestConfig.createSchemaIfMissing();
+        new DataBasePrepareService().clearDataBaseEntries();
+        assertEquals(SchemaMigrator.MIGRATIONS.length, new SchemaMigrator(dataBaseTestConfig).migrate());
+
+        // Quelques tickets pour que l'optimiseur ait un historique à parcourir
+        Connection connection = dataBaseTestConfig.getConnection();
+        try (PreparedStatement ps = connection.prepareStatement(DBConstants.SAVE_TICKET)) {
+            for (int i = 0; i < 200; i++) {
+                ps.setInt(1, 1 + (i % 3));
+                ps.setString(2, "PLATE" + i);
+                ps.setDouble(3, 0);
+                ps.setTimestamp(4, new Timestamp(System.currentTimeMillis() - i * 60000L));
+                ps.setTimestamp(5, null);
+                ps.executeUpdate();
+            }
+        } finally {
+            dataBaseTestConfig.closeConnection(connection);
+        }
+    }
+
+    @Test
+    public void testMigrateIsIdempotent() {
+        // Vérifie qu'un second démarrage ne rejoue aucune migration.
+        assertEquals(SchemaMigrator.MIGRATIONS.length, new SchemaMigrator(dataBaseTestConfig).migrate());
+    }
+
+    @Test
+    public void testGetTicketUsesVehicleInTimeIndex() throws Exception {
+        // Vérifie que la recherche du dernier ticket d'un véhicule passe par l'index (VEHICLE_REG_NUMBER, IN_TIME).
+        assertPlanUsesIndex(DBConstants.GET_TICKET, "t", "IDX_TICKET_VEHICLE_IN_TIME", "PLATE42");
+    }
+
+    @Test
+    public void testCountTicketUsesVehicleInTimeIndex() throws Exception {
+        // Vérifie que le comptage des passages d'un véhicule passe par le même index.
+        assertPlanUsesIndex(DBConstants.COUNT_TICKET, "ticket", "IDX_TICKET_VEHICLE_IN_TIME", "PLATE42");
+    }
+
+    @Test
+    public void testNextParkingSpotUsesTypeAvailableIndex() throws Exception {
+        // Vérifie que la recherche de la prochaine place libre passe par l'index (TYPE, AVAILABLE, PARKING_NUMBER).
+        assertPlanUsesIndex(DBConstants.GET_NEXT_PARKING_SPOT, "parking", "IDX_PARKING_TYPE_AVAILABLE", "CAR");
+    }
+
+    private void assertPlanUsesIndex(String query, String table, String index, String parameter) throws Exception {
+        Connection connection = dataBaseTestConfig.getConnection();
+        try (PreparedStatement ps = connection.prepareStatement("explain " + query)) {
+            // Même valeur pour chaque paramètre (COUNT_TICKET compte le véhicule dans ticket et ticket_archive)
+            for (int i = 1; i <= ps.getParameterMetaData().getParameterCount(); i++) {
+                ps.setString(i, parameter);
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                if (dataBaseTestConfig.isEmbedded()) {
+                    // H2 : plan en une colonne de texte, l'index choisi y figure en commentaire (noms en minuscules)
+                    assertTrue(rs.next());
+                    String plan = rs.getString(1).toLowerCase();
+                    assertTrue(plan.contains(index.toLowerCase()), "Plan for " + query + ": " + plan);
+                    return;
+                }
+                boolean found = false;
+                while (rs.next()) {
+                    String extra = rs.getString("Extra");
+                    if (extra != null && extra.contains("Select tables optimized away")) {
+                        // min() résolu directement dans l'index, sans lecture de la table
+                        found = true;
+                    } else if (table.equals(rs.getString("table"))) {
+                        assertEquals(index, rs.getString("key"), "Plan for " + query);
+                        found = true;
+                    }
+                }
+                assertTrue(found, "No plan row for table " + table);
+            }
+        } finally {
+            dataBaseTestConfig.closeConnection(connection);
+        }
+    }
+}
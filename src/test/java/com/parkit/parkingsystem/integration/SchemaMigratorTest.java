@@ -0,0 +1,151 @@
+package com.parkit.parkingsystem.integration;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.config.EmbeddedDataBaseConfig;
+import com.parkit.parkingsystem.config.SchemaMigrator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.mockito.Mockito.*;
+
+public class SchemaMigratorTest {
+
+    @Mock
+    private DataBaseConfig dataBaseConfig;
+
+    @Mock
+    private Connection connection;
+
+    @Mock
+    private Statement statement;
+
+    @Mock
+    private PreparedStatement preparedStatement;
+
+    @Mock
+    private ResultSet resultSet;
+
+    @Mock
+    private DatabaseMetaData metaData;
+
+    @Mock
+    private ResultSet tables;
+
+    private SchemaMigrator schemaMigrator;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        MockitoAnnotations.initMocks(this);
+        when(dataBaseConfig.getConnection()).thenReturn(connection);
+        when(connection.createStatement()).thenReturn(statement);
+        when(connection.prepareStatement(anyString())).thenReturn(preparedStatement);
+        when(statement.executeQuery(anyString())).thenReturn(resultSet);
+        when(resultSet.next()).thenReturn(true);
+        // Schéma vide : aucune colonne ni aucun index déjà présent
+        when(connection.getMetaData()).thenReturn(metaData);
+        when(metaData.getTables(any(), any(), anyString(), any())).thenReturn(tables);
+        schemaMigrator = new SchemaMigrator(dataBaseConfig);
+    }
+
+    @Test
+    public void testMigrateAppliesAllMigrationsOnFreshSchema() throws Exception {
+        // Vérifie que toutes les migrations sont appliquées et enregistrées sur un schéma vierge.
+        when(resultSet.getInt(1)).thenReturn(0);
+
+        int version = schemaMigrator.migrate();
+
+        assertEquals(SchemaMigrator.MIGRATIONS.length, version);
+        verify(statement, times(1)).execute(startsWith("create index IDX_TICKET_VEHICLE_IN_TIME"));
+        verify(statement, times(1)).execute(startsWith("create index IDX_PARKING_TYPE_AVAILABLE"));
+        verify(preparedStatement, times(SchemaMigrator.MIGRATIONS.length)).executeUpdate();
+        verify(dataBaseConfig, times(1)).closeConnection(connection);
+    }
+
+    @Test
+    public void testMigrateSkipsAlreadyAppliedMigrations() throws Exception {
+        // Vérifie que seules les migrations postérieures à la version enregistrée sont appliquées.
+        when(resultSet.getInt(1)).thenReturn(1);
+
+        int version = schemaMigrator.migrate();
+
+        assertEquals(SchemaMigrator.MIGRATIONS.length, version);
+        verify(statement, never()).execute(startsWith("create index IDX_TICKET_VEHICLE_IN_TIME"));
+        verify(statement, times(1)).execute(startsWith("create index IDX_PARKING_TYPE_AVAILABLE"));
+        verify(preparedStatement, times(1)).setInt(1, 2);
+    }
+
+    @Test
+    public void testMigrateFailureReturnsMinusOne() throws Exception {
+        // Vérifie qu'un échec de migration est signalé et que la connexion est libérée.
+        when(resultSet.getInt(1)).thenReturn(0);
+        when(statement.execute(startsWith("create index"))).thenThrow(new java.sql.SQLException("Duplicate key name"));
+
+        assertEquals(-1, schemaMigrator.migrate());
+        verify(preparedStatement, never()).executeUpdate();
+        verify(dataBaseConfig, times(1)).closeConnection(connection);
+    }
+
+    @Test
+    public void testInterruptedMigrationIsResumed() throws Exception {
+        // Vérifie qu'une migration dont un ordre DDL est déjà passé (MySQL ne l'annule pas) se termine au démarrage suivant.
+        DataBaseConfig embedded = new EmbeddedDataBaseConfig("jdbc:h2:mem:interruptedMigration;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1");
+        embedded.createSchemaIfMissing();
+        SchemaMigrator embeddedMigrator = new SchemaMigrator(embedded);
+        assertEquals(SchemaMigrator.MIGRATIONS.length, embeddedMigrator.migrate());
+        Connection con = embedded.getConnection();
+        try (Statement statement = con.createStatement()) {
+            // V5 interrompue après son premier ordre, V4 après son premier index
+            statement.execute("alter table ticket_archive drop column VISIT_COUNT");
+            statement.execute("drop index IDX_TICKET_ARCHIVE_OUT_TIME");
+            statement.execute("delete from schema_version where VERSION >= 4");
+        } finally {
+            embedded.closeConnection(con);
+        }
+
+        assertEquals(SchemaMigrator.MIGRATIONS.length, embeddedMigrator.migrate());
+        con = embedded.getConnection();
+        try (Statement statement = con.createStatement()) {
+            statement.executeQuery("select VISIT_COUNT from ticket_archive where OUT_TIME > now()").close();
+            try (ResultSet rs = statement.executeQuery("select count(*) from schema_version")) {
+                rs.next();
+                assertEquals(SchemaMigrator.MIGRATIONS.length, rs.getInt(1));
+            }
+        } finally {
+            embedded.closeConnection(con);
+        }
+    }
+
+    @Test
+    public void testBaselineScriptsLeaveMigrationsToMigrator() throws Exception {
+        // Vérifie que resources/Data.sql et db/schema.sql ne créent que le schéma de départ : tables, index et colonnes des
+        // migrations, ainsi que schema_version, ne sont créés que par SchemaMigrator (une seule définition par migration).
+        Pattern created = Pattern.compile("(?is)(?:create\\s+index|create\\s+table(?:\\s+if\\s+not\\s+exists)?|add\\s+column)\\s+(\\w+)");
+        for (String baseline : new String[]{"resources/Data.sql", "src/main/resources/db/schema.sql"}) {
+            String script = new String(Files.readAllBytes(Paths.get(baseline)), StandardCharsets.UTF_8).toLowerCase();
+            assertFalse(script.contains("schema_version"), baseline);
+            for (String migration : SchemaMigrator.MIGRATIONS) {
+                Matcher matcher = created.matcher(new String(Files.readAllBytes(
+                        Paths.get("src/main/resources/db/migration", migration)), StandardCharsets.UTF_8));
+                while (matcher.find()) {
+                    String name = matcher.group(1).toLowerCase();
+                    assertFalse(script.matches("(?s).*\\b" + name + "\\b.*"), baseline + " defines " + name + " of " + migration);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package com.parkit.parkingsystem.integration;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.config.EmbeddedDataBaseConfig;
+import com.parkit.parkingsystem.config.SchemaMigrator;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ShardRouter;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.dao.TicketRepository;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.model.TicketRecord;
+import com.parkit.parkingsystem.service.FareCalculatorService;
+import com.parkit.parkingsystem.service.RepricingJob;
+import com.parkit.parkingsystem.service.ReportingEngine;
+import com.parkit.parkingsystem.service.RevenueReport;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ShardRouterTest {
+
+    private static final long ONE_HOUR = 60 * 60 * 1000L;
+
+    private ShardRouter shardRouter;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        Map<String, DataBaseConfig> lots = new LinkedHashMap<>();
+        lots.put("north", lotDataBase("north"));
+        lots.put("south", lotDataBase("south"));
+        shardRouter = new ShardRouter(lots);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        shardRouter.close();
+        System.clearProperty(ShardRouter.LOTS);
+        System.clearProperty(ShardRouter.LOT_TIMEOUT_MS);
+    }
+
+    @Test
+    public void testLotsHaveTheirOwnSpots() {
+        // Vérifie que chaque site attribue ses propres places et marque les tickets de son identifiant.
+        Ticket north = shardRouter.getTicketDAO("north").enterVehicle(ParkingType.CAR, "AB-123", new Date(0));
+        Ticket south = shardRouter.getTicketDAO("south").enterVehicle(ParkingType.CAR, "CD-456", new Date(0));
+
+        assertEquals(1, north.getParkingSpot().getId());
+        assertEquals(1, south.getParkingSpot().getId());
+        assertEquals("north", north.getLotId());
+        assertEquals("south", south.getParkingSpot().getLotId());
+        assertNotEquals(north.getParkingSpot(), south.getParkingSpot());
+        assertEquals(2, shardRouter.getParkingSpotDAO("north").getFreeSpotCount(ParkingType.CAR));
+        assertNull(shardRouter.getTicketDAO("south").getTicket("AB-123"));
+    }
+
+    @Test
+    public void testWritesToAnotherLotAreRejected() {
+        // Vérifie qu'une place ou un ticket d'un autre site n'est pas écrit dans la base du site.
+        Ticket ticket = shardRouter.getTicketDAO("north").enterVehicle(ParkingType.CAR, "AB-123", new Date(0));
+        ticket.setOutTime(new Date(ONE_HOUR));
+
+        assertFalse(shardRouter.getParkingSpotDAO("south").updateParking(new ParkingSpot("north", 1, ParkingType.CAR, true)));
+        assertFalse(shardRouter.getTicketDAO("south").updateTicket(ticket));
+        assertTrue(shardRouter.getTicketDAO("north").updateTicket(ticket));
+    }
+
+    @Test
+    public void testRegularCustomerCountsAcrossLots() {
+        // Vérifie qu'un véhicule déjà venu sur un autre site obtient la remise client régulier.
+        TicketDAO north = shardRouter.getTicketDAO("north");
+        TicketDAO south = shardRouter.getTicketDAO("south");
+        north.enterVehicle(ParkingType.CAR, "AB-123", new Date(0));
+        north.exitVehicle("AB-123", new Date(ONE_HOUR), new FareCalculatorService());
+
+        Ticket entry = south.enterVehicle(ParkingType.CAR, "AB-123", new Date(2 * ONE_HOUR));
+        TicketRecord exit = south.exitVehicle("AB-123", new Date(3 * ONE_HOUR), new FareCalculatorService());
+
+        assertEquals(2, entry.getVisitCount());
+        assertEquals(1.425, exit.getPrice(), 0.001);
+        assertEquals(1, south.countTicketByVehicleRegNumber("AB-123"));
+        assertEquals(2, shardRouter.countTicketByVehicleRegNumber("AB-123"));
+    }
+
+    @Test
+    public void testCrossLotDiscountSurvivesRepricingAndReports() throws Exception {
+        // Vérifie que la re-tarification et le rapport de tous les sites gardent la remise accordée grâce à un autre site.
+        TicketDAO north = shardRouter.getTicketDAO("north");
+        TicketDAO south = shardRouter.getTicketDAO("south");
+        north.enterVehicle(ParkingType.CAR, "AB-123", new Date(0));
+        north.exitVehicle("AB-123", new Date(ONE_HOUR), new FareCalculatorService());
+        south.enterVehicle(ParkingType.CAR, "AB-123", new Date(2 * ONE_HOUR));
+        south.exitVehicle("AB-123", new Date(3 * ONE_HOUR), new FareCalculatorService());
+
+        RepricingJob.Report repricing = new RepricingJob(south, new FareCalculatorService(), 10, 1, true)
+                .run(TicketRepository.STREAMING_FETCH_SIZE);
+        RevenueReport report = ReportingEngine.fullReport(shardRouter, 2, 100);
+
+        assertEquals(1, repricing.getPriced());
+        assertEquals(0, repricing.getChanged());
+        assertEquals(1.425, south.getTicket("AB-123").getPrice(), 0.001);
+        assertEquals(0.5, report.getDiscountShare(), 0.001);
+        assertEquals(2.925, report.getRevenue(), 0.001);
+    }
+
+    @Test
+    public void testHungLotDoesNotBlockGates() throws Exception {
+        // Vérifie qu'un site qui ne répond plus ne bloque pas les entrées et sorties des autres : il compte pour 0 passage.
+        System.setProperty(ShardRouter.LOT_TIMEOUT_MS, "100");
+        CountDownLatch hung = new CountDownLatch(1);
+        Map<String, DataBaseConfig> lots = new LinkedHashMap<>();
+        lots.put("north", lotDataBase("north"));
+        lots.put("south", new EmbeddedDataBaseConfig("jdbc:h2:mem:parkit-lot-south;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1") {
+            @Override
+            public Connection getConnection() throws ClassNotFoundException, SQLException {
+                try {
+                    hung.await();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.getConnection();
+            }
+        });
+        ShardRouter hungRouter = new ShardRouter(lots);
+        try {
+            TicketDAO north = hungRouter.getTicketDAO("north");
+            TicketRecord exit = assertTimeout(Duration.ofSeconds(2), () -> {
+                assertNotNull(north.enterVehicle(ParkingType.CAR, "AB-123", new Date(0)));
+                return north.exitVehicle("AB-123", new Date(ONE_HOUR), new FareCalculatorService());
+            });
+            assertEquals(1, exit.getVisitCount());
+            assertEquals(1.5, exit.getPrice(), 0.001);
+        } finally {
+            hung.countDown();
+            hungRouter.close();
+        }
+    }
+
+    @Test
+    public void testReportMergesLots() throws Exception {
+        // Vérifie que le rapport de tous les sites additionne les tickets et recettes de chacun.
+        shardRouter.getTicketDAO("north").enterVehicle(ParkingType.CAR, "AB-123", new Date(0));
+        shardRouter.getTicketDAO("north").exitVehicle("AB-123", new Date(ONE_HOUR), new FareCalculatorService());
+        shardRouter.getTicketDAO("south").enterVehicle(ParkingType.BIKE, "CD-456", new Date(0));
+        shardRouter.getTicketDAO("south").exitVehicle("CD-456", new Date(ONE_HOUR), new FareCalculatorService());
+
+        RevenueReport report = ReportingEngine.fullReport(shardRouter, 2, 100);
+
+        assertEquals(2, report.getTickets());
+        assertEquals(1.5, report.getRevenue(ParkingType.CAR), 0.001);
+        assertEquals(1.0, report.getRevenue(ParkingType.BIKE), 0.001);
+    }
+
+    @Test
+    public void testConfiguredLotsNeedUrls() {
+        // Vérifie qu'un site sans URL de base est refusé et qu'un site inconnu n'est pas routé.
+        System.setProperty(ShardRouter.LOTS, "north,east");
+        System.setProperty(String.format(ShardRouter.LOT_URL, "north"), "jdbc:h2:mem:parkit-lot-north");
+        try {
+            assertThrows(IllegalArgumentException.class, ShardRouter::configured);
+        } finally {
+            System.clearProperty(String.format(ShardRouter.LOT_URL, "north"));
+        }
+        assertThrows(IllegalArgumentException.class, () -> shardRouter.getTicketDAO("east"));
+    }
+
+    private static DataBaseConfig lotDataBase(String lot) throws Exception {
+        EmbeddedDataBaseConfig dataBaseConfig = new EmbeddedDataBaseConfig(
+                "jdbc:h2:mem:parkit-lot-" + lot + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1");
+        dataBaseConfig.createSchemaIfMissing();
+        assertTrue(new SchemaMigrator(dataBaseConfig).migrate() >= 0);
+        Connection connection = dataBaseConfig.getConnection();
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("update parking set available = true");
+            statement.execute("delete from ticket");
+        } finally {
+            dataBaseConfig.closeConnection(connection);
+        }
+        return dataBaseConfig;
+    }
+}
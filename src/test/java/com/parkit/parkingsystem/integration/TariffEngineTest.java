@@ -0,0 +1,170 @@
+package com.parkit.parkingsystem.integration;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.service.FareCalculatorService;
+import com.parkit.parkingsystem.service.TariffEngine;
+import com.parkit.parkingsystem.service.TariffPlan;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Date;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TariffEngineTest {
+
+    private static final long HOUR = 60 * 60 * 1000L;
+    private static final long MINUTE = 60 * 1000L;
+
+    private static Properties tariff(String... entries) {
+        Properties properties = new Properties();
+        for (String entry : entries) {
+            int equals = entry.indexOf('=');
+            properties.setProperty(entry.substring(0, equals), entry.substring(equals + 1));
+        }
+        return properties;
+    }
+
+    private static Path writeTariff(String... lines) throws Exception {
+        Path file = Files.createTempFile("tariff", ".properties");
+        file.toFile().deleteOnExit();
+        Files.write(file, String.join("\n", lines).getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    @Test
+    public void testDefaultPlanMatchesHistoricalFares() {
+        // Vérifie que la grille par défaut redonne exactement les tarifs historiques.
+        long[] durations = {0, 29 * MINUTE, 30 * MINUTE, 45 * MINUTE, HOUR, 24 * HOUR, 7 * 24 * HOUR + 1234};
+        for (long duration : durations) {
+            for (ParkingType parkingType : ParkingType.values()) {
+                double rate = parkingType == ParkingType.CAR ? 1.5 : 1.0;
+                double expected = duration < 30 * MINUTE ? 0 : (duration / (1000.0 * 60 * 60)) * rate;
+                assertEquals(expected, TariffPlan.DEFAULT.price(0, duration, parkingType, 1));
+                assertEquals(duration < 30 * MINUTE ? 0 : expected * 0.95, TariffPlan.DEFAULT.price(0, duration, parkingType, 5));
+            }
+        }
+    }
+
+    @Test
+    public void testBandsArePricedBandByBand() {
+        // Vérifie que chaque tranche horaire est payée à son propre tarif.
+        TariffPlan plan = TariffPlan.compile(tariff("free.minutes=0", "CAR.bands=0:2,60:1,180:0.5", "BIKE.bands=0:1"));
+
+        assertEquals(1.0, plan.price(0, 30 * MINUTE, ParkingType.CAR, 1), 1e-9);
+        assertEquals(2.0, plan.price(0, HOUR, ParkingType.CAR, 1), 1e-9);
+        assertEquals(3.0, plan.price(0, 2 * HOUR, ParkingType.CAR, 1), 1e-9);
+        assertEquals(4.0, plan.price(0, 3 * HOUR, ParkingType.CAR, 1), 1e-9);
+        assertEquals(5.0, plan.price(0, 5 * HOUR, ParkingType.CAR, 1), 1e-9);
+        assertEquals(5.0, plan.price(0, 5 * HOUR, ParkingType.BIKE, 1), 1e-9);
+    }
+
+    @Test
+    public void testFreePeriodAndDailyCap() {
+        // Vérifie la période gratuite et le plafond appliqué à chaque période de 24h.
+        TariffPlan plan = TariffPlan.compile(tariff("free.minutes=15", "CAR.bands=0:2", "CAR.dailyCap=10", "BIKE.bands=0:1"));
+
+        assertEquals(0, plan.price(0, 14 * MINUTE, ParkingType.CAR, 1));
+        assertEquals(0.5, plan.price(0, 15 * MINUTE, ParkingType.CAR, 1), 1e-9);
+        assertEquals(10.0, plan.price(0, 8 * HOUR, ParkingType.CAR, 1), 1e-9);
+        assertEquals(24.0, plan.price(0, 50 * HOUR, ParkingType.CAR, 1), 1e-9);
+        assertEquals(50.0, plan.price(0, 50 * HOUR, ParkingType.BIKE, 1), 1e-9);
+    }
+
+    @Test
+    public void testDailyCapWithBands() {
+        // Vérifie que le plafond journalier s'applique au prix continu des tranches : un plafond jamais atteint ne change rien.
+        Properties bands = tariff("CAR.bands=0:1.5,180:1.0", "BIKE.bands=0:1");
+        TariffPlan uncapped = TariffPlan.compile(bands);
+        bands.setProperty("CAR.dailyCap", "1000");
+        TariffPlan unreached = TariffPlan.compile(bands);
+        bands.setProperty("CAR.dailyCap", "25");
+        TariffPlan capped = TariffPlan.compile(bands);
+
+        assertEquals(49.5, uncapped.price(0, 48 * HOUR, ParkingType.CAR, 1), 1e-9);
+        assertEquals(49.5, unreached.price(0, 48 * HOUR, ParkingType.CAR, 1), 1e-9);
+        assertEquals(uncapped.price(0, 100 * HOUR, ParkingType.CAR, 1), unreached.price(0, 100 * HOUR, ParkingType.CAR, 1), 1e-9);
+        // Premier jour : 3h à 1.5 puis 21h à 1.0 = 25.5 plafonné à 25 ; second jour : 24h à 1.0 ; puis 2h à 1.0
+        assertEquals(25 + 24 + 2, capped.price(0, 50 * HOUR, ParkingType.CAR, 1), 1e-9);
+        assertEquals(4.5, capped.price(0, 3 * HOUR, ParkingType.CAR, 1), 1e-9);
+    }
+
+    @Test
+    public void testLoyaltyTiers() {
+        // Vérifie que le palier de fidélité le plus élevé atteint s'applique.
+        TariffPlan plan = TariffPlan.compile(tariff("CAR.bands=0:1", "BIKE.bands=0:1", "loyalty=2:0.95,10:0.8"));
+
+        assertEquals(1.0, plan.loyaltyFactor(1));
+        assertEquals(0.95, plan.loyaltyFactor(2));
+        assertEquals(0.95, plan.loyaltyFactor(9));
+        assertEquals(0.8, plan.loyaltyFactor(10));
+        assertEquals(0.8, plan.loyaltyFactor(100));
+        assertEquals(8.0, plan.price(0, 10 * HOUR, ParkingType.CAR, 12), 1e-9);
+    }
+
+    @Test
+    public void testInvalidPlansAreRejected() {
+        // Vérifie qu'une grille incomplète ou mal formée est refusée à la compilation.
+        assertThrows(IllegalArgumentException.class, () -> TariffPlan.compile(tariff("CAR.bands=0:1")));
+        assertThrows(IllegalArgumentException.class, () -> TariffPlan.compile(tariff("CAR.bands=30:1", "BIKE.bands=0:1")));
+        assertThrows(IllegalArgumentException.class, () -> TariffPlan.compile(tariff("CAR.bands=0-1", "BIKE.bands=0:1")));
+        assertThrows(IllegalArgumentException.class, () -> TariffPlan.compile(tariff("CAR.bands=0:-1", "BIKE.bands=0:1")));
+    }
+
+    @Test
+    public void testReloadSwapsPlanAndKeepsCurrentOnError() throws Exception {
+        // Vérifie que le rechargement remplace la grille, et qu'une grille invalide laisse l'ancienne en vigueur.
+        Path file = writeTariff("CAR.bands=0:1.5", "BIKE.bands=0:1");
+        TariffEngine engine = new TariffEngine(file);
+        FareCalculatorService fareCalculatorService = new FareCalculatorService(engine);
+        TariffPlan initial = engine.getPlan();
+
+        Ticket ticket = new Ticket();
+        ticket.setParkingSpot(new ParkingSpot(1, ParkingType.CAR, false));
+        ticket.setInTime(new Date(0));
+        ticket.setOutTime(new Date(2 * HOUR));
+        fareCalculatorService.calculateFare(ticket);
+        assertEquals(3.0, ticket.getPrice(), 1e-9);
+
+        Files.write(file, "CAR.bands=0:2\nBIKE.bands=0:1\n".getBytes(StandardCharsets.UTF_8));
+        Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() + 1000));
+        assertTrue(engine.reloadIfModified());
+        assertNotSame(initial, engine.getPlan());
+        assertFalse(engine.reloadIfModified());
+        fareCalculatorService.calculateFare(ticket);
+        assertEquals(4.0, ticket.getPrice(), 1e-9);
+
+        Files.write(file, "CAR.bands=oops\n".getBytes(StandardCharsets.UTF_8));
+        TariffPlan reloaded = engine.getPlan();
+        assertFalse(engine.reload());
+        assertSame(reloaded, engine.getPlan());
+        fareCalculatorService.calculateFare(ticket);
+        assertEquals(4.0, ticket.getPrice(), 1e-9);
+    }
+
+    @Test
+    public void testDiscountUsesTicketVisitCount() throws Exception {
+        // Vérifie qu'avec remise, le palier de fidélité suit le nombre de passages du ticket.
+        TariffEngine engine = new TariffEngine(writeTariff("CAR.bands=0:1", "BIKE.bands=0:1", "loyalty=2:0.9,5:0.5"));
+        FareCalculatorService fareCalculatorService = new FareCalculatorService(engine);
+        Ticket ticket = new Ticket();
+        ticket.setParkingSpot(new ParkingSpot(1, ParkingType.CAR, false));
+        ticket.setInTime(new Date(0));
+        ticket.setOutTime(new Date(10 * HOUR));
+
+        ticket.setVisitCount(6);
+        fareCalculatorService.calculateFare(ticket, false);
+        assertEquals(10.0, ticket.getPrice(), 1e-9);
+        fareCalculatorService.calculateFare(ticket, true);
+        assertEquals(5.0, ticket.getPrice(), 1e-9);
+        ticket.setVisitCount(0);
+        fareCalculatorService.calculateFare(ticket, true);
+        assertEquals(9.0, ticket.getPrice(), 1e-9);
+    }
+}
@@ -0,0 +1,146 @@
+package com.parkit.parkingsystem.integration;
+
+import com.parkit.parkingsystem.config.EmbeddedDataBaseConfig;
+import com.parkit.parkingsystem.config.SchemaMigrator;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.metrics.MetricsRegistry;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.model.TicketRecord;
+import com.parkit.parkingsystem.service.FareCalculatorService;
+import com.parkit.parkingsystem.service.TicketArchiver;
+import com.parkit.parkingsystem.util.ReplayClock;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TicketArchiverTest {
+
+    private static final String URL = "jdbc:h2:mem:parkit-archive-test;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+    private static final long ONE_HOUR = 60 * 60 * 1000L;
+    private static final long ONE_DAY = 24 * ONE_HOUR;
+    private static final long START = 1_700_000_000_000L;
+
+    private TicketDAO ticketDAO;
+    private ReplayClock clock;
+    private MetricsRegistry metricsRegistry;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        EmbeddedDataBaseConfig dataBaseConfig = new EmbeddedDataBaseConfig(URL);
+        dataBaseConfig.createSchemaIfMissing();
+        assertTrue(new SchemaMigrator(dataBaseConfig).migrate() >= 0);
+        Connection connection = dataBaseConfig.getConnection();
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("update parking set available = true");
+            statement.execute("delete from ticket_archive");
+            statement.execute("delete from ticket");
+        } finally {
+            dataBaseConfig.closeConnection(connection);
+        }
+        ticketDAO = new TicketDAO(dataBaseConfig);
+        clock = new ReplayClock();
+        clock.setMillis(START + 100 * ONE_DAY);
+        metricsRegistry = new MetricsRegistry();
+    }
+
+    @Test
+    public void testOldClosedTicketsAreArchived() {
+        // Vérifie que seuls les tickets clôturés depuis plus de ageDays jours sont déplacés, et que les passages archivés comptent toujours.
+        visit("AB-123", START);
+        visit("AB-123", START + ONE_DAY);
+        ticketDAO.enterVehicle(ParkingType.CAR, "CD-456", new Date(START));
+        visit("EF-789", START + 99 * ONE_DAY);
+
+        assertEquals(2, archiver(10).archive());
+
+        assertNull(ticketDAO.getTicket("AB-123"));
+        assertNotNull(ticketDAO.getTicket("CD-456"));
+        assertNotNull(ticketDAO.getTicket("EF-789"));
+        assertEquals(2, ticketDAO.countTicketByVehicleRegNumber("AB-123"));
+        Ticket entry = ticketDAO.enterVehicle(ParkingType.CAR, "AB-123", new Date(START + 100 * ONE_DAY));
+        TicketRecord exit = ticketDAO.exitVehicle("AB-123", new Date(START + 100 * ONE_DAY + ONE_HOUR), new FareCalculatorService());
+        assertEquals(3, entry.getVisitCount());
+        assertEquals(3, exit.getVisitCount());
+        assertEquals(1.425, exit.getPrice(), 0.001);
+        assertNotNull(ticketDAO.exitVehicle("CD-456", new Date(START + 100 * ONE_DAY), new FareCalculatorService()));
+    }
+
+    @Test
+    public void testArchiveRunsInBatches() {
+        // Vérifie que l'archivage enchaîne les lots jusqu'à épuisement et compte les tickets déplacés.
+        for (int i = 0; i < 5; i++) {
+            visit("V" + i, START + i * ONE_HOUR);
+        }
+        visit("RECENT", START + 100 * ONE_DAY - ONE_HOUR);
+
+        assertEquals(5, archiver(2).archive());
+
+        assertEquals(0, archiver(2).archive());
+        assertEquals(5, metricsRegistry.counter(TicketArchiver.ARCHIVED).sum());
+    }
+
+    @Test
+    public void testScansIncludeArchivedTickets() {
+        // Vérifie que les parcours (re-tarification, rapports) lisent aussi les tickets archivés avec leur rang de passage.
+        visit("AB-123", START);
+        visit("AB-123", START + ONE_DAY);
+        visit("AB-123", START + 99 * ONE_DAY);
+        assertEquals(2, archiver(10).archive());
+
+        List<Integer> visitCounts = new ArrayList<>();
+        assertEquals(3, ticketDAO.scanTickets(100, (id, vehicleRegNumber, parkingType, inTime, outTime, price, visitCount) ->
+                visitCounts.add(visitCount)));
+        List<Integer> closedVisitCounts = new ArrayList<>();
+        assertEquals(2, ticketDAO.scanTicketsClosedBetween(START + ONE_DAY, START + 100 * ONE_DAY, 100,
+                (id, vehicleRegNumber, parkingType, inTime, outTime, price, visitCount) -> closedVisitCounts.add(visitCount)));
+
+        // Tickets courants d'abord (après les deux archivés), puis l'archive
+        assertEquals(Arrays.asList(3, 1, 2), visitCounts);
+        assertEquals(Arrays.asList(3, 2), closedVisitCounts);
+    }
+
+    @Test
+    public void testScansReadOneSnapshotWhileArchiving() {
+        // Vérifie qu'un lot archivé entre la lecture de ticket et celle de ticket_archive n'est ni compté deux fois ni manqué.
+        visit("AB-123", START);
+        visit("EF-789", START + ONE_DAY);
+        visit("CD-456", START + 99 * ONE_DAY);
+
+        List<Integer> ids = new ArrayList<>();
+        assertEquals(3, ticketDAO.scanTickets(100, (id, vehicleRegNumber, parkingType, inTime, outTime, price, visitCount) -> {
+            if (ids.isEmpty()) {
+                assertEquals(1, ticketDAO.archiveTickets(START + 10 * ONE_DAY, 1));
+            }
+            ids.add(id);
+        }));
+        assertEquals(3, ids.stream().distinct().count());
+
+        List<Integer> closedIds = new ArrayList<>();
+        assertEquals(3, ticketDAO.scanTicketsClosedBetween(START, START + 100 * ONE_DAY, 100,
+                (id, vehicleRegNumber, parkingType, inTime, outTime, price, visitCount) -> {
+                    if (closedIds.isEmpty()) {
+                        assertEquals(1, ticketDAO.archiveTickets(START + 10 * ONE_DAY, 1));
+                    }
+                    closedIds.add(id);
+                }));
+        assertEquals(3, closedIds.stream().distinct().count());
+    }
+
+    private TicketArchiver archiver(int batchSize) {
+        return new TicketArchiver(ticketDAO, 90, batchSize, clock, metricsRegistry);
+    }
+
+    private void visit(String vehicleRegNumber, long inTime) {
+        assertNotNull(ticketDAO.enterVehicle(ParkingType.CAR, vehicleRegNumber, new Date(inTime)));
+        assertNotNull(ticketDAO.exitVehicle(vehicleRegNumber, new Date(inTime + ONE_HOUR), new FareCalculatorService()));
+    }
+}
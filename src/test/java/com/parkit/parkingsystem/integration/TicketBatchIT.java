@@ -0,0 +1,130 @@
+package com.parkit.parkingsystem.integration;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.integration.config.DataBaseTestConfig;
+import com.parkit.parkingsystem.integration.service.DataBasePrepareService;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.model.TicketRecord;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Vérifie que les écritures par lots enregistrent les mêmes lignes que les écritures une par une sur la base de test.
+// Le débit des deux chemins est mesuré par TicketDAOBenchmark et ParkingSpotDAOBenchmark (profil benchmark).
+public class TicketBatchIT {
+
+    private static final int TICKETS = 100;
+    private static final long START = 1714550400000L;
+    private static final long ONE_HOUR = 60 * 60 * 1000;
+
+    private static DataBaseTestConfig dataBaseTestConfig = new DataBaseTestConfig();
+    private static TicketDAO ticketDAO;
+    private static ParkingSpotDAO parkingSpotDAO;
+    private static DataBasePrepareService dataBasePrepareService;
+
+    @BeforeAll
+    public static void setUp() throws Exception {
+        dataBaseTestConfig.prepareSchema();
+        ticketDAO = new TicketDAO(dataBaseTestConfig);
+        parkingSpotDAO = new ParkingSpotDAO();
+        parkingSpotDAO.dataBaseConfig = dataBaseTestConfig;
+        dataBasePrepareService = new DataBasePrepareService();
+    }
+
+    @BeforeEach
+    public void setUpPerTest() {
+        dataBasePrepareService.clearDataBaseEntries();
+    }
+
+    @Test
+    public void testBatchedTicketWritesStoreSameRows() {
+        // Vérifie qu'enregistrer puis clôturer des tickets par lots donne les mêmes tickets, ID compris, qu'un par un.
+        List<Ticket> singles = newTickets("S");
+        for (Ticket ticket : singles) {
+            ticketDAO.saveTicket(ticket);
+        }
+        List<Ticket> batched = newTickets("B");
+        int[] ids = ticketDAO.saveTickets(batched);
+        assertNotNull(ids);
+        assertEquals(TICKETS, ids.length);
+        for (int i = 0; i < TICKETS; i++) {
+            assertEquals(ids[i], batched.get(i).getId());
+        }
+
+        close(singles);
+        close(batched);
+        for (Ticket ticket : singles) {
+            ticket.setId(ticketDAO.getTicket(ticket.getVehicleRegNumber()).getId());
+            assertTrue(ticketDAO.updateTicket(ticket));
+        }
+        assertTrue(ticketDAO.updateTickets(batched));
+
+        for (int i = 0; i < TICKETS; i++) {
+            TicketRecord single = ticketDAO.getTicket(singles.get(i).getVehicleRegNumber());
+            TicketRecord batch = ticketDAO.getTicket(batched.get(i).getVehicleRegNumber());
+            assertEquals(batched.get(i).getId(), batch.getId());
+            assertEquals(single.getParkingNumber(), batch.getParkingNumber());
+            assertEquals(single.getPrice(), batch.getPrice());
+            assertEquals(single.getInTimeMillis(), batch.getInTimeMillis());
+            assertEquals(single.getOutTimeMillis(), batch.getOutTimeMillis());
+            assertTrue(batch.hasOutTime());
+        }
+    }
+
+    @Test
+    public void testBatchedParkingUpdatesStoreSameRows() {
+        // Vérifie que la mise à jour des places par lot laisse les places dans le même état que place par place.
+        List<ParkingSpot> parkingSpots = new ArrayList<>();
+        for (int i = 0; i < TICKETS; i++) {
+            parkingSpots.add(new ParkingSpot(1 + (i % 5), i % 5 < 3 ? ParkingType.CAR : ParkingType.BIKE, i % 7 == 0));
+        }
+        for (ParkingSpot parkingSpot : parkingSpots) {
+            assertTrue(parkingSpotDAO.updateParking(parkingSpot));
+        }
+        Map<Integer, Boolean> single = availability();
+
+        dataBasePrepareService.clearDataBaseEntries();
+        assertTrue(parkingSpotDAO.updateParkings(parkingSpots));
+
+        assertEquals(single, availability());
+        assertTrue(single.containsValue(false));
+    }
+
+    private static Map<Integer, Boolean> availability() {
+        Map<Integer, Boolean> availability = new LinkedHashMap<>();
+        for (ParkingSpot parkingSpot : parkingSpotDAO.getParkingSpots()) {
+            availability.put(parkingSpot.getId(), parkingSpot.isAvailable());
+        }
+        return availability;
+    }
+
+    private static List<Ticket> newTickets(String prefix) {
+        List<Ticket> tickets = new ArrayList<>(TICKETS);
+        for (int i = 0; i < TICKETS; i++) {
+            Ticket ticket = new Ticket();
+            ticket.setParkingSpot(new ParkingSpot(1 + (i % 3), ParkingType.CAR, false));
+            ticket.setVehicleRegNumber(prefix + "-" + i);
+            ticket.setInTimeMillis(START + i * ONE_HOUR);
+            tickets.add(ticket);
+        }
+        return tickets;
+    }
+
+    private static void close(List<Ticket> tickets) {
+        for (int i = 0; i < tickets.size(); i++) {
+            Ticket ticket = tickets.get(i);
+            ticket.setOutTimeMillis(ticket.getInTimeMillis() + (i + 1) * ONE_HOUR);
+            ticket.setPrice(1.5 * (i + 1));
+        }
+    }
+}
@@ -1,10 +1,17 @@
 package com.parkit.parkingsystem.integration;
 
 import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.DBConstants;
 import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.OpenTicketIndex;
+import com.parkit.parkingsystem.dao.ParkingSpotIndex;
 import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.dao.VisitCountCache;
+import com.parkit.parkingsystem.metrics.MetricsRegistry;
 import com.parkit.parkingsystem.model.ParkingSpot;
 import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.model.TicketRecord;
+import com.parkit.parkingsystem.service.FareCalculatorService;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -15,7 +22,9 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.Timestamp;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.List;
 
 import static org.junit.Assert.*;
 import static org.mockito.Mockito.*;
@@ -53,6 +62,7 @@ public class TicketDAOTest {
         ticketDAO = new TicketDAO(dataBaseConfig);
         when(dataBaseConfig.getConnection()).thenReturn(connection);
         when(connection.prepareStatement(anyString())).thenReturn(preparedStatement);
+        when(connection.prepareStatement(anyString(), anyInt())).thenReturn(preparedStatement);
     }
 
     @Test
@@ -64,6 +74,7 @@ public class TicketDAOTest {
         assertTrue(result);
 
         verify(preparedStatement, times(1)).execute();
+        verify(dataBaseConfig, times(1)).closePreparedStatement(preparedStatement);
         verify(dataBaseConfig, times(1)).closeConnection(connection);
     }
 
@@ -90,10 +101,13 @@ public class TicketDAOTest {
         when(resultSet.getTimestamp(4)).thenReturn(new Timestamp(ticket.getInTime().getTime()));
         when(resultSet.getTimestamp(5)).thenReturn(new Timestamp(ticket.getOutTime().getTime()));
 
-        Ticket fetchedTicket = ticketDAO.getTicket("ABC123");
+        TicketRecord fetchedTicket = ticketDAO.getTicket("ABC123");
 
         assertNotNull(fetchedTicket);
         assertEquals("ABC123", fetchedTicket.getVehicleRegNumber());
+        assertEquals(ParkingType.CAR, fetchedTicket.getParkingType());
+        assertEquals(ticket.getInTimeMillis(), fetchedTicket.getInTimeMillis());
+        assertEquals(ticket.getOutTimeMillis(), fetchedTicket.getOutTimeMillis());
         verify(dataBaseConfig, times(1)).closeConnection(connection);
     }
 
@@ -102,7 +116,7 @@ public class TicketDAOTest {
         //Vérifie qu'une exception survenant lors de la récupération d'un ticket renvoie un résultat nul et nettoie les ressources.
         when(preparedStatement.executeQuery()).thenThrow(new RuntimeException("Exception in get"));
 
-        Ticket fetchedTicket = ticketDAO.getTicket("ABC123");
+        TicketRecord fetchedTicket = ticketDAO.getTicket("ABC123");
 
         assertNull(fetchedTicket);
         verify(dataBaseConfig, times(1)).closeConnection(connection);
@@ -118,8 +132,9 @@ public class TicketDAOTest {
 
         verify(preparedStatement, times(1)).setDouble(1, ticket.getPrice());
         verify(preparedStatement, times(1)).setTimestamp(2, new Timestamp(ticket.getOutTime().getTime()));
-        verify(preparedStatement, times(1)).setInt(3, ticket.getId());
+        verify(preparedStatement, times(1)).setInt(4, ticket.getId());
         verify(preparedStatement, times(1)).execute();
+        verify(dataBaseConfig, times(1)).closePreparedStatement(preparedStatement);
         verify(dataBaseConfig, times(1)).closeConnection(connection);
     }
 
@@ -150,7 +165,7 @@ public class TicketDAOTest {
         verify(preparedStatement, times(1)).setDouble(1, ticket.getPrice());
         // Les vérifications suivantes ne sont pas nécessaires car une exception se produit avant que ces méthodes puissent être exécutées :
         // verify(preparedStatement, never()).setTimestamp(2, new Timestamp(ticket.getOutTime().getTime()));
-        verify(preparedStatement, times(1)).setInt(3, ticket.getId());
+        verify(preparedStatement, times(1)).setInt(4, ticket.getId());
 
         // Vérifie que la connexion a été fermée
         verify(dataBaseConfig, times(1)).closeConnection(connection);
@@ -166,6 +181,8 @@ public class TicketDAOTest {
         int count = ticketDAO.countTicketByVehicleRegNumber("ABC123");
         assertEquals(2, count);
 
+        verify(dataBaseConfig, times(1)).closeResultSet(resultSet);
+        verify(dataBaseConfig, times(1)).closePreparedStatement(preparedStatement);
         verify(dataBaseConfig, times(1)).closeConnection(connection);
     }
 
@@ -202,4 +219,472 @@ public class TicketDAOTest {
         verify(dataBaseConfig, times(1)).closeConnection(connection);
     }
 
-}
\ No newline at end of file
+
+    @Test
+    public void testEnterVehicle() throws Exception {
+        // Vérifie que l'entrée réserve la place, enregistre le ticket et valide une seule transaction.
+        when(preparedStatement.executeQuery()).thenReturn(resultSet);
+        when(preparedStatement.executeUpdate()).thenReturn(1);
+        when(preparedStatement.getGeneratedKeys()).thenReturn(resultSet);
+        when(resultSet.next()).thenReturn(true);
+        when(resultSet.getInt(1)).thenReturn(3);
+        when(resultSet.getInt(2)).thenReturn(1);
+        Date inTime = new Date();
+
+        Ticket entered = ticketDAO.enterVehicle(ParkingType.CAR, "ABC123", inTime);
+
+        assertNotNull(entered);
+        assertEquals(3, entered.getParkingSpot().getId());
+        assertFalse(entered.getParkingSpot().isAvailable());
+        assertEquals(2, entered.getVisitCount());
+        assertEquals(inTime, entered.getInTime());
+        verify(connection, times(1)).setAutoCommit(false);
+        verify(connection, times(1)).commit();
+        verify(dataBaseConfig, times(1)).getConnection();
+        verify(dataBaseConfig, times(1)).closeConnection(connection);
+    }
+
+    @Test
+    public void testEnterVehicleNoSpotAvailable() throws Exception {
+        // Vérifie qu'un parking complet annule la transaction et renvoie null.
+        when(preparedStatement.executeQuery()).thenReturn(resultSet);
+        when(resultSet.next()).thenReturn(false);
+
+        Ticket entered = ticketDAO.enterVehicle(ParkingType.BIKE, "ABC123", new Date());
+
+        assertNull(entered);
+        verify(connection, never()).commit();
+        verify(dataBaseConfig, times(1)).rollback(connection);
+        verify(preparedStatement, never()).executeUpdate();
+        verify(dataBaseConfig, times(1)).closeConnection(connection);
+    }
+
+    @Test
+    public void testEnterVehicleSpotTakenConcurrently() throws Exception {
+        // Vérifie qu'une place prise entre-temps n'est jamais attribuée deux fois.
+        when(preparedStatement.executeQuery()).thenReturn(resultSet);
+        when(preparedStatement.executeUpdate()).thenReturn(0);
+        when(resultSet.next()).thenReturn(true);
+        when(resultSet.getInt(1)).thenReturn(3);
+
+        Ticket entered = ticketDAO.enterVehicle(ParkingType.CAR, "ABC123", new Date());
+
+        assertNull(entered);
+        verify(connection, never()).commit();
+        verify(dataBaseConfig, times(1)).rollback(connection);
+    }
+
+    @Test
+    public void testEnterVehicleException() throws Exception {
+        // Vérifie qu'une erreur pendant l'insertion annule toute la transaction.
+        when(preparedStatement.executeQuery()).thenReturn(resultSet);
+        when(preparedStatement.executeUpdate()).thenReturn(1).thenThrow(new RuntimeException("Exception in insert"));
+        when(resultSet.next()).thenReturn(true);
+
+        Ticket entered = ticketDAO.enterVehicle(ParkingType.CAR, "ABC123", new Date());
+
+        assertNull(entered);
+        verify(connection, never()).commit();
+        verify(dataBaseConfig, times(1)).rollback(connection);
+        verify(dataBaseConfig, times(1)).closeConnection(connection);
+    }
+
+    @Test
+    public void testExitVehicle() throws Exception {
+        // Vérifie que la sortie lit le ticket et le nombre de passages en une requête, puis clôt et libère en un commit.
+        when(preparedStatement.executeQuery()).thenReturn(resultSet);
+        when(resultSet.next()).thenReturn(true);
+        when(resultSet.getInt(1)).thenReturn(1);
+        when(resultSet.getInt(2)).thenReturn(7);
+        when(resultSet.getString(6)).thenReturn("CAR");
+        when(resultSet.getInt(7)).thenReturn(2);
+        when(resultSet.getTimestamp(4)).thenReturn(new Timestamp(System.currentTimeMillis() - (60 * 60 * 1000)));
+        when(resultSet.getTimestamp(5)).thenReturn(null);
+        Date outTime = new Date();
+
+        TicketRecord exited = ticketDAO.exitVehicle("ABC123", outTime, new FareCalculatorService());
+
+        assertNotNull(exited);
+        assertEquals(7, exited.getId());
+        assertEquals(outTime.getTime(), exited.getOutTimeMillis());
+        assertEquals(1, exited.getParkingNumber());
+        assertEquals(2, exited.getVisitCount());
+        // Deux passages : la remise de 5% s'applique
+        assertEquals(1.425, exited.getPrice(), 0.01);
+        verify(preparedStatement, times(2)).executeUpdate();
+        verify(connection, times(1)).commit();
+        verify(dataBaseConfig, times(1)).getConnection();
+        verify(dataBaseConfig, times(1)).closeConnection(connection);
+    }
+
+    @Test
+    public void testExitVehicleWithoutOpenTicket() throws Exception {
+        // Vérifie qu'un ticket déjà clos n'est ni re-facturé ni mis à jour.
+        when(preparedStatement.executeQuery()).thenReturn(resultSet);
+        when(resultSet.next()).thenReturn(true);
+        when(resultSet.getTimestamp(5)).thenReturn(new Timestamp(System.currentTimeMillis()));
+
+        TicketRecord exited = ticketDAO.exitVehicle("ABC123", new Date(), new FareCalculatorService());
+
+        assertNull(exited);
+        verify(preparedStatement, never()).executeUpdate();
+        verify(connection, never()).commit();
+        verify(dataBaseConfig, times(1)).rollback(connection);
+    }
+
+    @Test
+    public void testExitVehicleFromOpenTicketIndex() throws Exception {
+        // Vérifie qu'un ticket ouvert indexé est clôturé sans être relu en base, puis retiré de l'index.
+        ticketDAO.openTicketIndex = new OpenTicketIndex(3, new MetricsRegistry());
+        long inTime = System.currentTimeMillis() - (60 * 60 * 1000);
+        ticketDAO.openTicketIndex.put("ABC123", new OpenTicketIndex.OpenTicket("ABC123", 7, 2, ParkingType.CAR, inTime, 2));
+        when(preparedStatement.executeUpdate()).thenReturn(1);
+
+        TicketRecord exited = ticketDAO.exitVehicle("ABC123", new Date(), new FareCalculatorService());
+
+        assertEquals(7, exited.getId());
+        assertEquals(2, exited.getParkingNumber());
+        assertEquals(1.425, exited.getPrice(), 0.01);
+        verify(preparedStatement, never()).executeQuery();
+        verify(connection).prepareStatement(DBConstants.UPDATE_OPEN_TICKET);
+        verify(connection, times(1)).commit();
+        assertNull(ticketDAO.openTicketIndex.get("ABC123"));
+    }
+
+    @Test
+    public void testPriceOpenTicketMatchesExitWithoutDatabase() throws Exception {
+        // Vérifie que le prix d'un ticket ouvert indexé est celui de la sortie, sans connexion ni retrait de l'index.
+        ticketDAO.openTicketIndex = new OpenTicketIndex(3, new MetricsRegistry());
+        long inTime = System.currentTimeMillis() - (60 * 60 * 1000);
+        ticketDAO.openTicketIndex.put("ABC123", new OpenTicketIndex.OpenTicket("ABC123", 7, 2, ParkingType.CAR, inTime, 2));
+        Date outTime = new Date();
+
+        TicketRecord priced = ticketDAO.priceOpenTicket("ABC123", outTime, new FareCalculatorService());
+
+        assertEquals(7, priced.getId());
+        assertEquals(outTime.getTime(), priced.getOutTimeMillis());
+        assertEquals(1.425, priced.getPrice(), 0.01);
+        assertNull(ticketDAO.priceOpenTicket("ZZ999", outTime, new FareCalculatorService()));
+        verifyZeroInteractions(dataBaseConfig);
+        assertNotNull(ticketDAO.openTicketIndex.get("ABC123"));
+
+        when(preparedStatement.executeUpdate()).thenReturn(1);
+        assertEquals(priced.getPrice(), ticketDAO.exitVehicle("ABC123", outTime, new FareCalculatorService()).getPrice(), 0);
+    }
+
+    @Test
+    public void testExitVehicleException() throws Exception {
+        // Vérifie qu'un échec lors de la libération de la place annule aussi la clôture du ticket.
+        when(preparedStatement.executeQuery()).thenReturn(resultSet);
+        when(resultSet.next()).thenReturn(true);
+        when(resultSet.getString(6)).thenReturn("CAR");
+        when(resultSet.getTimestamp(4)).thenReturn(new Timestamp(System.currentTimeMillis() - (60 * 60 * 1000)));
+        when(preparedStatement.executeUpdate()).thenReturn(1).thenThrow(new RuntimeException("Exception in parking update"));
+
+        TicketRecord exited = ticketDAO.exitVehicle("ABC123", new Date(), new FareCalculatorService());
+
+        assertNull(exited);
+        verify(connection, never()).commit();
+        verify(dataBaseConfig, times(1)).rollback(connection);
+        verify(dataBaseConfig, times(1)).closeConnection(connection);
+    }
+
+    @Test
+    public void testEnterVehicleWithSpotIndex() throws Exception {
+        // Vérifie qu'avec l'index la place vient de la mémoire, sans requête de recherche en base.
+        ParkingSpotIndex parkingSpotIndex = new ParkingSpotIndex();
+        parkingSpotIndex.markAvailable(ParkingType.CAR, 2);
+        ticketDAO.parkingSpotIndex = parkingSpotIndex;
+        when(preparedStatement.executeQuery()).thenReturn(resultSet);
+        when(preparedStatement.executeUpdate()).thenReturn(1);
+        when(preparedStatement.getGeneratedKeys()).thenReturn(resultSet);
+        when(resultSet.next()).thenReturn(true);
+        when(resultSet.getInt(1)).thenReturn(4);
+
+        Ticket entered = ticketDAO.enterVehicle(ParkingType.CAR, "ABC123", new Date());
+
+        assertNotNull(entered);
+        assertEquals(2, entered.getParkingSpot().getId());
+        assertEquals(5, entered.getVisitCount());
+        assertEquals(0, parkingSpotIndex.getFreeCount(ParkingType.CAR));
+        verify(connection, never()).prepareStatement(DBConstants.CLAIM_PARKING_SPOT);
+        verify(connection, never()).prepareStatement(DBConstants.CLAIM_PARKING_SPOT_AND_COUNT_TICKET);
+        verify(connection, times(1)).commit();
+    }
+
+    @Test
+    public void testEnterVehicleWithSpotIndexRollbackReleasesSpot() throws Exception {
+        // Vérifie qu'une transaction annulée remet la place dans l'index.
+        ParkingSpotIndex parkingSpotIndex = new ParkingSpotIndex();
+        parkingSpotIndex.markAvailable(ParkingType.CAR, 2);
+        ticketDAO.parkingSpotIndex = parkingSpotIndex;
+        when(preparedStatement.executeQuery()).thenReturn(resultSet);
+        when(preparedStatement.executeUpdate()).thenReturn(1).thenThrow(new RuntimeException("Exception in insert"));
+
+        Ticket entered = ticketDAO.enterVehicle(ParkingType.CAR, "ABC123", new Date());
+
+        assertNull(entered);
+        assertEquals(1, parkingSpotIndex.getFreeCount(ParkingType.CAR));
+        assertEquals(2, parkingSpotIndex.peekNextAvailableSlot(ParkingType.CAR));
+        verify(dataBaseConfig, times(1)).rollback(connection);
+    }
+
+    @Test
+    public void testEnterVehicleOnAssignedSpot() throws Exception {
+        // Vérifie qu'une entrée journalisée occupe exactement la place donnée à la borne, sans en chercher une autre.
+        ParkingSpotIndex parkingSpotIndex = new ParkingSpotIndex();
+        parkingSpotIndex.markAvailable(ParkingType.CAR, 2);
+        parkingSpotIndex.markAvailable(ParkingType.CAR, 5);
+        assertTrue(parkingSpotIndex.claim(ParkingType.CAR, 5));
+        ticketDAO.parkingSpotIndex = parkingSpotIndex;
+        when(preparedStatement.executeQuery()).thenReturn(resultSet);
+        when(preparedStatement.executeUpdate()).thenReturn(1);
+        when(preparedStatement.getGeneratedKeys()).thenReturn(resultSet);
+        when(resultSet.next()).thenReturn(true);
+
+        Ticket entered = ticketDAO.enterVehicle(ParkingType.CAR, 5, "ABC123", new Date());
+
+        assertNotNull(entered);
+        assertEquals(5, entered.getParkingSpot().getId());
+        verify(connection).prepareStatement(DBConstants.OCCUPY_PARKING_SPOT);
+        assertEquals(1, parkingSpotIndex.getFreeCount(ParkingType.CAR));
+        assertEquals(1, parkingSpotIndex.reconcile(Arrays.asList(new ParkingSpot(5, ParkingType.CAR, true))));
+        verify(connection, never()).prepareStatement(DBConstants.CLAIM_PARKING_SPOT);
+        verify(connection, times(1)).commit();
+    }
+
+    @Test
+    public void testEnterVehicleOnAssignedSpotAlreadyTaken() throws Exception {
+        // Vérifie qu'une place donnée à la borne mais déjà occupée en base est refusée, sans autre place à la place.
+        when(preparedStatement.executeUpdate()).thenReturn(0);
+
+        Ticket entered = ticketDAO.enterVehicle(ParkingType.CAR, 5, "ABC123", new Date());
+
+        assertNull(entered);
+        verify(preparedStatement, never()).executeQuery();
+        verify(connection, never()).commit();
+        verify(dataBaseConfig, times(1)).rollback(connection);
+    }
+
+    @Test
+    public void testCountTicketByVehicleRegNumberUsesCache() throws Exception {
+        // Vérifie qu'un comptage déjà en cache ne sollicite pas la base, et qu'un comptage lu en base y est conservé.
+        VisitCountCache visitCountCache = new VisitCountCache(100, 60000L);
+        ticketDAO.visitCountCache = visitCountCache;
+        when(preparedStatement.executeQuery()).thenReturn(resultSet);
+        when(resultSet.next()).thenReturn(true);
+        when(resultSet.getInt(1)).thenReturn(2);
+
+        assertEquals(2, ticketDAO.countTicketByVehicleRegNumber("ABC123"));
+        assertEquals(2, ticketDAO.countTicketByVehicleRegNumber("ABC123"));
+
+        verify(dataBaseConfig, times(1)).getConnection();
+        assertEquals(1, visitCountCache.getHits());
+    }
+
+    @Test
+    public void testSaveTicketIncrementsCachedCount() throws Exception {
+        // Vérifie qu'un ticket enregistré met à jour le nombre de passages en cache.
+        VisitCountCache visitCountCache = new VisitCountCache(100, 60000L);
+        visitCountCache.put("ABC123", 1);
+        ticketDAO.visitCountCache = visitCountCache;
+
+        ticketDAO.saveTicket(ticket);
+
+        assertEquals(2, visitCountCache.get("ABC123"));
+    }
+
+    @Test
+    public void testEnterVehicleWithCachedCountSkipsCount() throws Exception {
+        // Vérifie qu'avec un nombre de passages en cache l'entrée réserve la place sans sous-requête de comptage.
+        VisitCountCache visitCountCache = new VisitCountCache(100, 60000L);
+        visitCountCache.put("ABC123", 4);
+        ticketDAO.visitCountCache = visitCountCache;
+        when(preparedStatement.executeQuery()).thenReturn(resultSet);
+        when(preparedStatement.executeUpdate()).thenReturn(1);
+        when(preparedStatement.getGeneratedKeys()).thenReturn(resultSet);
+        when(resultSet.next()).thenReturn(true);
+        when(resultSet.getInt(1)).thenReturn(3);
+
+        Ticket entered = ticketDAO.enterVehicle(ParkingType.CAR, "ABC123", new Date());
+
+        assertNotNull(entered);
+        assertEquals(5, entered.getVisitCount());
+        assertEquals(5, visitCountCache.get("ABC123"));
+        verify(connection, times(1)).prepareStatement(DBConstants.CLAIM_PARKING_SPOT);
+        verify(connection, never()).prepareStatement(DBConstants.CLAIM_PARKING_SPOT_AND_COUNT_TICKET);
+        verify(preparedStatement, times(1)).setString(1, "CAR");
+        verify(resultSet, never()).getInt(2);
+    }
+
+    @Test
+    public void testExitVehicleWithCachedCount() throws Exception {
+        // Vérifie qu'avec un nombre de passages en cache la sortie lit le ticket sans sous-requête de comptage.
+        VisitCountCache visitCountCache = new VisitCountCache(100, 60000L);
+        visitCountCache.put("ABC123", 2);
+        ticketDAO.visitCountCache = visitCountCache;
+        when(preparedStatement.executeQuery()).thenReturn(resultSet);
+        when(resultSet.next()).thenReturn(true);
+        when(resultSet.getInt(1)).thenReturn(1);
+        when(resultSet.getString(6)).thenReturn("CAR");
+        when(resultSet.getTimestamp(4)).thenReturn(new Timestamp(System.currentTimeMillis() - (60 * 60 * 1000)));
+
+        TicketRecord exited = ticketDAO.exitVehicle("ABC123", new Date(), new FareCalculatorService());
+
+        assertNotNull(exited);
+        assertEquals(1.425, exited.getPrice(), 0.01);
+        verify(connection, times(1)).prepareStatement(DBConstants.GET_LAST_TICKET_FOR_UPDATE);
+        verify(resultSet, never()).getInt(7);
+    }
+
+    @Test
+    public void testSaveTicketsReturnsGeneratedIds() throws Exception {
+        // Vérifie que les tickets sont insérés en un lot, dans une transaction, et reçoivent leurs ID générés.
+        List<Ticket> tickets = Arrays.asList(newTicket("AAA"), newTicket("BBB"), newTicket("CCC"));
+        when(preparedStatement.getGeneratedKeys()).thenReturn(resultSet);
+        when(resultSet.next()).thenReturn(true, true, true, false);
+        when(resultSet.getInt(1)).thenReturn(10, 11, 12);
+
+        int[] ids = ticketDAO.saveTickets(tickets);
+
+        assertArrayEquals(new int[]{10, 11, 12}, ids);
+        assertEquals(11, tickets.get(1).getId());
+        verify(preparedStatement, times(3)).addBatch();
+        verify(preparedStatement, times(1)).executeBatch();
+        verify(preparedStatement, never()).execute();
+        verify(connection, times(1)).commit();
+        verify(dataBaseConfig, times(1)).closeResultSet(resultSet);
+        verify(dataBaseConfig, times(1)).closeConnection(connection);
+    }
+
+    @Test
+    public void testSaveTicketsFailureRollsBack() throws Exception {
+        // Vérifie qu'un lot en échec est annulé en entier et que les tickets ne reçoivent pas d'ID.
+        List<Ticket> tickets = Arrays.asList(newTicket("AAA"), newTicket("BBB"));
+        when(preparedStatement.executeBatch()).thenThrow(new java.sql.BatchUpdateException());
+
+        assertNull(ticketDAO.saveTickets(tickets));
+        assertEquals(0, tickets.get(0).getId());
+        verify(connection, never()).commit();
+        verify(dataBaseConfig, times(1)).rollback(connection);
+        verify(dataBaseConfig, times(1)).closeConnection(connection);
+    }
+
+    @Test
+    public void testUpdateTickets() throws Exception {
+        // Vérifie que les tickets sont clôturés en un lot, dans une seule transaction.
+        ticket.setPrice(3);
+        Ticket other = newTicket("BBB");
+        other.setId(2);
+        other.setOutTime(new Date());
+
+        assertTrue(ticketDAO.updateTickets(Arrays.asList(ticket, other)));
+
+        verify(preparedStatement, times(1)).setInt(4, 1);
+        verify(preparedStatement, times(1)).setInt(4, 2);
+        verify(preparedStatement, times(2)).addBatch();
+        verify(preparedStatement, times(1)).executeBatch();
+        verify(connection, times(1)).commit();
+    }
+
+    @Test
+    public void testUpdateTicketsNullOutTime() throws Exception {
+        // Vérifie qu'un ticket sans heure de sortie fait refuser tout le lot sans accès à la base.
+        assertFalse(ticketDAO.updateTickets(Arrays.asList(ticket, newTicket("BBB"))));
+
+        verify(dataBaseConfig, never()).getConnection();
+    }
+
+    @Test
+    public void testScanTicketsStreamsRows() throws Exception {
+        // Vérifie que le parcours utilise un curseur en avant seulement, sur les tickets courants puis archivés, et passe chaque ligne au handler.
+        when(connection.prepareStatement(anyString(), anyInt(), anyInt())).thenReturn(preparedStatement);
+        when(preparedStatement.executeQuery()).thenReturn(resultSet);
+        when(resultSet.next()).thenReturn(true, true, false);
+        when(resultSet.getInt(1)).thenReturn(1, 2);
+        when(resultSet.getString(2)).thenReturn("ABC123");
+        when(resultSet.getString(3)).thenReturn("CAR");
+        when(resultSet.getTimestamp(4)).thenReturn(new Timestamp(1000));
+        when(resultSet.getTimestamp(5)).thenReturn(new Timestamp(5000), (Timestamp) null);
+        when(resultSet.getDouble(6)).thenReturn(1.5, 0.0);
+        List<String> rows = new java.util.ArrayList<>();
+
+        long scanned = ticketDAO.scanTickets(Integer.MIN_VALUE, (id, vehicleRegNumber, parkingType, inTime, outTime, price, visitCount) ->
+                rows.add(id + ":" + parkingType + ":" + inTime + ":" + outTime + ":" + price + ":" + visitCount));
+
+        assertEquals(2, scanned);
+        // Deux tickets du même véhicule : le second est son deuxième passage
+        assertEquals(Arrays.asList("1:CAR:1000:5000:1.5:1", "2:CAR:1000:-1:0.0:2"), rows);
+        verify(connection).prepareStatement(DBConstants.SCAN_TICKETS, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        verify(connection).prepareStatement(DBConstants.SCAN_ARCHIVED_TICKETS, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        verify(preparedStatement, times(2)).setFetchSize(Integer.MIN_VALUE);
+        verify(dataBaseConfig, times(2)).closeResultSet(resultSet);
+        verify(dataBaseConfig, times(1)).closeConnection(connection);
+    }
+
+    @Test
+    public void testScanTicketsHandlerFailure() throws Exception {
+        // Vérifie qu'une erreur du handler arrête le parcours et libère la connexion.
+        when(connection.prepareStatement(anyString(), anyInt(), anyInt())).thenReturn(preparedStatement);
+        when(preparedStatement.executeQuery()).thenReturn(resultSet);
+        when(resultSet.next()).thenReturn(true);
+        when(resultSet.getString(3)).thenReturn("CAR");
+        when(resultSet.getTimestamp(4)).thenReturn(new Timestamp(1000));
+
+        when(resultSet.getString(2)).thenReturn("ABC123");
+        long scanned = ticketDAO.scanTickets(100, (id, vehicleRegNumber, parkingType, inTime, outTime, price, visitCount) -> {
+            throw new InterruptedException();
+        });
+
+        assertEquals(-1, scanned);
+        verify(dataBaseConfig, times(1)).closeConnection(connection);
+    }
+
+    @Test
+    public void testScanTicketsClosedBetween() throws Exception {
+        // Vérifie que le parcours incrémental borne les heures de sortie et lit le rang de passage fourni par la requête.
+        when(connection.prepareStatement(anyString(), anyInt(), anyInt())).thenReturn(preparedStatement);
+        when(preparedStatement.executeQuery()).thenReturn(resultSet);
+        when(resultSet.next()).thenReturn(true, false);
+        when(resultSet.getInt(1)).thenReturn(8);
+        when(resultSet.getString(2)).thenReturn("ABC123");
+        when(resultSet.getString(3)).thenReturn("BIKE");
+        when(resultSet.getTimestamp(4)).thenReturn(new Timestamp(1000));
+        when(resultSet.getTimestamp(5)).thenReturn(new Timestamp(5000));
+        when(resultSet.getInt(7)).thenReturn(4);
+        List<Integer> visitCounts = new java.util.ArrayList<>();
+
+        long scanned = ticketDAO.scanTicketsClosedBetween(100, 9000, 50,
+                (id, vehicleRegNumber, parkingType, inTime, outTime, price, visitCount) -> visitCounts.add(visitCount));
+
+        assertEquals(1, scanned);
+        assertEquals(Arrays.asList(4), visitCounts);
+        verify(connection).prepareStatement(DBConstants.SCAN_TICKETS_CLOSED_BETWEEN, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        verify(connection).prepareStatement(DBConstants.SCAN_ARCHIVED_TICKETS_CLOSED_BETWEEN, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        verify(preparedStatement, times(2)).setTimestamp(1, new Timestamp(100));
+        verify(preparedStatement, times(2)).setTimestamp(2, new Timestamp(9000));
+    }
+
+    @Test
+    public void testUpdateTicketPrices() throws Exception {
+        // Vérifie que seuls les count premiers prix sont envoyés, en un lot par table (courante et archive) et une transaction.
+        assertTrue(ticketDAO.updateTicketPrices(new int[]{4, 7, 9}, new double[]{1.5, 3.0, 9.9}, 2));
+
+        verify(connection).prepareStatement(DBConstants.UPDATE_TICKET_PRICE);
+        verify(connection).prepareStatement(DBConstants.UPDATE_ARCHIVED_TICKET_PRICE);
+        verify(preparedStatement, times(2)).setInt(2, 4);
+        verify(preparedStatement, times(2)).setInt(2, 7);
+        verify(preparedStatement, never()).setInt(2, 9);
+        verify(preparedStatement, times(4)).addBatch();
+        verify(preparedStatement, times(2)).executeBatch();
+        verify(connection, times(1)).commit();
+    }
+
+    private static Ticket newTicket(String vehicleRegNumber) {
+        Ticket newTicket = new Ticket();
+        newTicket.setParkingSpot(new ParkingSpot(2, ParkingType.CAR, false));
+        newTicket.setVehicleRegNumber(vehicleRegNumber);
+        newTicket.setInTime(new Date());
+        return newTicket;
+    }
+}
@@ -0,0 +1,74 @@
+package com.parkit.parkingsystem.integration;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.model.TicketRecord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TicketTest {
+
+    private Ticket ticket;
+
+    @BeforeEach
+    public void setUp() {
+        ticket = new Ticket();
+    }
+
+    @Test
+    public void testTimesAreCopied() {
+        // Vérifie qu'une Date reçue ou rendue par le ticket peut être modifiée sans changer ses heures.
+        Date inTime = new Date(1000);
+        ticket.setInTime(inTime);
+        inTime.setTime(5000);
+        ticket.getInTime().setTime(9000);
+
+        assertEquals(1000, ticket.getInTimeMillis());
+        assertEquals(new Date(1000), ticket.getInTime());
+    }
+
+    @Test
+    public void testMissingOutTime() {
+        // Vérifie qu'un ticket ouvert n'a pas d'heure de sortie, en Date comme en millisecondes.
+        assertFalse(ticket.hasOutTime());
+        assertNull(ticket.getOutTime());
+
+        ticket.setOutTimeMillis(2000);
+        assertTrue(ticket.hasOutTime());
+        assertEquals(new Date(2000), ticket.getOutTime());
+
+        ticket.setOutTime(null);
+        assertEquals(Ticket.NO_TIME, ticket.getOutTimeMillis());
+    }
+
+    @Test
+    public void testRecordIsASnapshot() {
+        // Vérifie que le ticket figé garde ses valeurs quand le ticket d'origine change ensuite.
+        ticket.setId(7);
+        ticket.setParkingSpot(new ParkingSpot(3, ParkingType.BIKE, false));
+        ticket.setVehicleRegNumber("AB-123");
+        ticket.setInTimeMillis(1000);
+        TicketRecord record = ticket.toRecord();
+        ticket.setOutTimeMillis(2000);
+        ticket.setPrice(1.5);
+
+        assertEquals(new TicketRecord(7, ticket.getLotId(), 3, ParkingType.BIKE, "AB-123", 0, 1000, Ticket.NO_TIME, 0), record);
+        assertFalse(record.hasOutTime());
+        assertTrue(ticket.toRecord().hasOutTime());
+    }
+
+    @Test
+    public void testParkingTypeLookup() {
+        // Vérifie que la recherche du type par nom ou par rang rend les constantes de l'énumération et refuse un nom inconnu.
+        assertSame(ParkingType.CAR, ParkingType.fromName("CAR"));
+        assertSame(ParkingType.BIKE, ParkingType.fromName("BIKE"));
+        assertSame(ParkingType.BIKE, ParkingType.fromOrdinal(ParkingType.BIKE.ordinal()));
+        assertThrows(IllegalArgumentException.class, () -> ParkingType.fromName("TRUCK"));
+        assertThrows(IllegalArgumentException.class, () -> ParkingType.fromName(null));
+    }
+}
@@ -0,0 +1,77 @@
+package com.parkit.parkingsystem.integration;
+
+import com.parkit.parkingsystem.dao.VisitCountCache;
+import com.parkit.parkingsystem.metrics.MetricsRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class VisitCountCacheTest {
+
+    @Test
+    public void testGetReturnsStoredCount() {
+        // Vérifie qu'un comptage enregistré est relu tel quel et compté comme succès.
+        VisitCountCache visitCountCache = new VisitCountCache(10, 60000L);
+        visitCountCache.put("ABC123", 3);
+
+        assertEquals(3, visitCountCache.get("ABC123"));
+        assertEquals(VisitCountCache.MISSING, visitCountCache.get("XYZ789"));
+        assertEquals(1, visitCountCache.getHits());
+        assertEquals(1, visitCountCache.getMisses());
+        assertEquals(0.5, visitCountCache.getHitRate());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEntryIsEvicted() {
+        // Vérifie qu'au-delà de la taille maximale l'immatriculation la moins récemment utilisée est retirée.
+        VisitCountCache visitCountCache = new VisitCountCache(2, 60000L);
+        visitCountCache.put("AAA", 1);
+        visitCountCache.put("BBB", 1);
+        visitCountCache.get("AAA");
+        visitCountCache.put("CCC", 1);
+
+        assertEquals(2, visitCountCache.size());
+        assertEquals(1, visitCountCache.get("AAA"));
+        assertEquals(VisitCountCache.MISSING, visitCountCache.get("BBB"));
+    }
+
+    @Test
+    public void testExpiredEntryIsReloaded() throws Exception {
+        // Vérifie qu'une entrée plus ancienne que le TTL n'est plus servie.
+        VisitCountCache visitCountCache = new VisitCountCache(10, 1L);
+        visitCountCache.put("ABC123", 3);
+        Thread.sleep(5);
+
+        assertEquals(VisitCountCache.MISSING, visitCountCache.get("ABC123"));
+        assertEquals(0, visitCountCache.size());
+    }
+
+    @Test
+    public void testIncrementOnlyUpdatesKnownVehicles() {
+        // Vérifie que l'incrément ne crée pas d'entrée pour un véhicule dont le nombre de passages est inconnu.
+        VisitCountCache visitCountCache = new VisitCountCache(10, 60000L);
+        visitCountCache.put("ABC123", 1);
+        visitCountCache.increment("ABC123");
+        visitCountCache.increment("XYZ789");
+
+        assertEquals(2, visitCountCache.get("ABC123"));
+        assertEquals(VisitCountCache.MISSING, visitCountCache.get("XYZ789"));
+    }
+
+    @Test
+    public void testHitsAndMissesArePublishedAsGauges() {
+        // Vérifie que succès, échecs et taux de succès du cache sont exportés avec les autres métriques.
+        VisitCountCache visitCountCache = new VisitCountCache(10, 60000L);
+        MetricsRegistry metricsRegistry = new MetricsRegistry();
+        visitCountCache.registerGauges(metricsRegistry);
+        visitCountCache.put("ABC123", 3);
+        visitCountCache.get("ABC123");
+        visitCountCache.get("ABC123");
+        visitCountCache.get("XYZ789");
+
+        assertEquals(2, metricsRegistry.getGauge(VisitCountCache.HITS));
+        assertEquals(1, metricsRegistry.getGauge(VisitCountCache.MISSES));
+        assertEquals(2.0 / 3, metricsRegistry.getGauge(VisitCountCache.HIT_RATE), 1e-9);
+        assertEquals(1, metricsRegistry.getGauge(VisitCountCache.SIZE));
+    }
+}
@@ -1,20 +1,57 @@
 package com.parkit.parkingsystem.integration.config;
 
+import com.parkit.parkingsystem.config.ConnectionPool;
 import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.config.EmbeddedDataBaseConfig;
+import com.parkit.parkingsystem.config.SchemaMigrator;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.sql.*;
 
+// Base des tests d'intégration et des benchmarks : H2 en mémoire par défaut, créée puis migrée par prepareSchema,
+// pour les lancer sans serveur. -Dparkit.test.db.url=jdbc:mysql://... les fait tourner sur la base de test MySQL
+// créée par resources/Data.sql.
 public class DataBaseTestConfig extends DataBaseConfig {
 
     private static final Logger logger = LogManager.getLogger("DataBaseTestConfig");
 
-    public Connection getConnection() throws ClassNotFoundException, SQLException {
-        logger.info("Create DB connection");
-        Class.forName("com.mysql.cj.jdbc.Driver");
-        return DriverManager.getConnection(
-                "jdbc:mysql://localhost:3306/test?serverTimezone=UTC&allowPublicKeyRetrieval=true", "root", "rootroot");
+    public static final String TEST_URL = "parkit.test.db.url";
+
+    private static final String DEFAULT_URL = "jdbc:h2:mem:parkit-test;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+
+    // Base choisie par parkit.test.db.url : même pool et mêmes options que la prod pour MySQL
+    private final DataBaseConfig backend = DataBaseConfig.forUrl(url());
+
+    public static String url() {
+        return System.getProperty(TEST_URL, DEFAULT_URL);
+    }
+
+    public boolean isEmbedded() {
+        return backend instanceof EmbeddedDataBaseConfig;
+    }
+
+    // Tables de Data.sql (stockage embarqué seulement) puis migrations ; sans effet sur une base déjà à jour.
+    public void prepareSchema() throws Exception {
+        createSchemaIfMissing();
+        if (new SchemaMigrator(this).migrate() < 0) {
+            throw new SQLException("Test DB migration failed");
+        }
+    }
+
+    @Override
+    public void createSchemaIfMissing() throws Exception {
+        backend.createSchemaIfMissing();
+    }
+
+    @Override
+    public ConnectionPool getPool() {
+        return backend.getPool();
+    }
+
+    @Override
+    public int getStreamingFetchSize() {
+        return backend.getStreamingFetchSize();
     }
 
     public void closeConnection(Connection con) {
@@ -49,4 +86,4 @@ public class DataBaseTestConfig extends DataBaseConfig {
             }
         }
     }
-}
\ No newline at end of file
+}
@@ -3,6 +3,8 @@ package com.parkit.parkingsystem.integration.service;
 import com.parkit.parkingsystem.integration.config.DataBaseTestConfig;
 
 import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
 
 public class DataBasePrepareService {
 
@@ -13,11 +15,15 @@ public class DataBasePrepareService {
         try{
             connection = dataBaseTestConfig.getConnection();
 
-            //set parking entries to available
-            connection.prepareStatement("update parking set available = true").execute();
+            // La connexion retourne au pool : on ferme les statements pour ne pas les accumuler.
+            try (Statement statement = connection.createStatement()) {
+                //set parking entries to available
+                statement.execute("update parking set available = true");
 
-            //clear ticket entries;
-            connection.prepareStatement("truncate table ticket").execute();
+                //clear ticket entries;
+                statement.execute("truncate table ticket");
+                statement.execute("truncate table ticket_archive");
+            }
 
         }catch(Exception e){
             e.printStackTrace();
@@ -26,5 +32,35 @@ public class DataBasePrepareService {
         }
     }
 
+    // Recule l'heure d'entrée du ticket ouvert pour simuler une durée de stationnement.
+    public void shiftOpenTicketInTime(String vehicleRegNumber, int minutes){
+        shift("update ticket set IN_TIME = timestampadd(MINUTE, ?, IN_TIME) where VEHICLE_REG_NUMBER = ? and OUT_TIME is null",
+                vehicleRegNumber, minutes);
+    }
+
+    // Recule les tickets clôturés du véhicule (entrée et sortie) : un passage simulé ensuite reste le plus récent.
+    public void shiftClosedTickets(String vehicleRegNumber, int minutes){
+        shift("update ticket set IN_TIME = timestampadd(MINUTE, ?, IN_TIME), OUT_TIME = timestampadd(MINUTE, ?, OUT_TIME) where VEHICLE_REG_NUMBER = ? and OUT_TIME is not null",
+                vehicleRegNumber, minutes, minutes);
+    }
+
+    // timestampadd est compris par MySQL comme par H2
+    private void shift(String sql, String vehicleRegNumber, int... minutes){
+        Connection connection = null;
+        try{
+            connection = dataBaseTestConfig.getConnection();
+            try (PreparedStatement ps = connection.prepareStatement(sql)) {
+                for (int i = 0; i < minutes.length; i++) {
+                    ps.setInt(i + 1, -minutes[i]);
+                }
+                ps.setString(minutes.length + 1, vehicleRegNumber);
+                ps.executeUpdate();
+            }
+        }catch(Exception e){
+            e.printStackTrace();
+        }finally {
+            dataBaseTestConfig.closeConnection(connection);
+        }
+    }
 
 }
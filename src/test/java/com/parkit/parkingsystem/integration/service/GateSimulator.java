@@ -0,0 +1,108 @@
+package com.parkit.parkingsystem.integration.service;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.dao.TicketPricing;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.model.TicketRecord;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Bornes simulées pour les tests du mode serveur : un TicketDAO sans base dont chaque transaction prend
+// DB_LATENCY_MILLIS, et des clients TCP qui font entrer puis sortir VEHICLES_PER_GATE véhicules chacun.
+public class GateSimulator {
+
+    // Latence simulée d'une transaction en base
+    public static final long DB_LATENCY_MILLIS = 5;
+    public static final int VEHICLES_PER_GATE = 20;
+
+    private final AtomicInteger nextSpot = new AtomicInteger();
+
+    public TicketDAO ticketDAO() {
+        return new TicketDAO() {
+            @Override
+            public Ticket enterVehicle(ParkingType parkingType, String vehicleRegNumber, Date inTime) {
+                simulateLatency();
+                Ticket ticket = new Ticket();
+                ticket.setParkingSpot(new ParkingSpot(nextSpot.incrementAndGet(), parkingType, false));
+                ticket.setVehicleRegNumber(vehicleRegNumber);
+                ticket.setInTime(inTime);
+                ticket.setVisitCount(1);
+                return ticket;
+            }
+
+            @Override
+            public TicketRecord exitVehicle(String vehicleRegNumber, Date outTime, TicketPricing ticketPricing) {
+                simulateLatency();
+                long inTime = outTime.getTime() - (60 * 60 * 1000);
+                double price = ticketPricing.calculateFare(ParkingType.CAR, inTime, outTime.getTime(), 1, false);
+                return new TicketRecord(0, null, 1, ParkingType.CAR, vehicleRegNumber, price, inTime, outTime.getTime(), 1);
+            }
+        };
+    }
+
+    // Chaque borne fait entrer puis sortir ses véhicules, quitte, et renvoie tout ce qu'elle a affiché.
+    public List<String> runGates(int port, int gateCount) throws Exception {
+        ExecutorService clients = Executors.newFixedThreadPool(gateCount);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int gate = 0; gate < gateCount; gate++) {
+                String platePrefix = "GATE" + gate + "-";
+                results.add(clients.submit(() -> runGate(port, platePrefix)));
+            }
+            List<String> outputs = new ArrayList<>();
+            for (Future<String> result : results) {
+                outputs.add(result.get());
+            }
+            return outputs;
+        } finally {
+            clients.shutdown();
+        }
+    }
+
+    private String runGate(int port, String platePrefix) throws Exception {
+        try (Socket socket = new Socket("localhost", port)) {
+            StringBuilder commands = new StringBuilder();
+            for (int i = 0; i < VEHICLES_PER_GATE; i++) {
+                commands.append("1\n1\n").append(platePrefix).append(i).append('\n');
+                commands.append("2\n").append(platePrefix).append(i).append('\n');
+            }
+            commands.append("3\n");
+            OutputStream out = socket.getOutputStream();
+            out.write(commands.toString().getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            return readAll(socket.getInputStream());
+        }
+    }
+
+    // Lit tout ce que le serveur envoie jusqu'à ce qu'il ferme la connexion.
+    public static String readAll(InputStream in) throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            output.write(buffer, 0, read);
+        }
+        return new String(output.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static void simulateLatency() {
+        try {
+            Thread.sleep(DB_LATENCY_MILLIS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}